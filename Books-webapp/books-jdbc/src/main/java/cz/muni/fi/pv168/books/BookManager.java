@@ -4,12 +4,24 @@ import java.util.List;
 
 public interface BookManager {
 
+    @ReadOnly
     List<Book> getAllBooks() throws BookException;
 
+    /**
+     * Returns books ordered by id, one page at a time.
+     *
+     * @param token token of the next page from previous page or null for the first page
+     * @param limit maximal number of books on the page
+     * @throws IllegalArgumentException when limit is not positive or token is not valid
+     */
+    @ReadOnly
+    Page<Book> getBooksPage(String token, int limit) throws BookException;
+
     void createBook(Book book) throws BookException;
 
     //atd.
 
+    @ReadOnly
     Book getBookById(Long id) throws BookException;
 
     void updateBook(Book book) throws BookException;
@@ -41,6 +41,32 @@ public class BookManagerImpl implements BookManager {
         }
     }
 
+    @Override
+    public Page<Book> getBooksPage(String token, int limit) throws BookException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive");
+        long afterId = Page.decodeToken(token);
+        try (Connection con = dataSource.getConnection()) {
+            try (PreparedStatement st = con.prepareStatement("select * from books where id > ? order by id fetch first ? rows only")) {
+                st.setLong(1, afterId);
+                // one extra row tells whether there is the next page
+                st.setLong(2, limit + 1L);
+                ResultSet rs = st.executeQuery();
+                List<Book> books = new ArrayList<>();
+                while (rs.next()) {
+                    Long id = rs.getLong("id");
+                    String name = rs.getString("name");
+                    String author = rs.getString("author");
+                    books.add(new Book(id, name, author));
+                }
+                log.debug("getting page of {} books after id {}", books.size(), afterId);
+                return Page.fromRows(books, limit, Book::getId);
+            }
+        } catch (SQLException e) {
+            log.error("cannot select books", e);
+            throw new BookException("database select failed", e);
+        }
+    }
+
     @Override
     public void createBook(Book book) throws BookException {
         try (Connection con = dataSource.getConnection()) {
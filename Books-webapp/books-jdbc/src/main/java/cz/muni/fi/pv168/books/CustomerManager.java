@@ -15,8 +15,20 @@ public interface CustomerManager {
 
     void createCustomer(Customer customer);
 
+    @ReadOnly
     List<Customer> getAllCustomers();
 
+    /**
+     * Returns customers ordered by id, one page at a time.
+     *
+     * @param token token of the next page from previous page or null for the first page
+     * @param limit maximal number of customers on the page
+     * @throws IllegalArgumentException when limit is not positive or token is not valid
+     */
+    @ReadOnly
+    Page<Customer> getCustomersPage(String token, int limit);
+
+    @ReadOnly
     Customer getCustomerById(long id);
 
 }
@@ -61,6 +61,17 @@ public class CustomerManagerImpl implements CustomerManager {
         });
     }
 
+    @Override
+    public Page<Customer> getCustomersPage(String token, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive");
+        long afterId = Page.decodeToken(token);
+        log.debug("selecting page of customers after id={}", afterId);
+        // one extra row tells whether there is the next page
+        List<Customer> customers = jdbc.query("SELECT * FROM customers WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY",
+                customerMapper, afterId, limit + 1L);
+        return Page.fromRows(customers, limit, Customer::getId);
+    }
+
     @Override
     public Customer getCustomerById(long id) {
         log.debug("selecting customer id={}",id);
@@ -4,10 +4,12 @@ import java.util.List;
 
 public interface LeaseManager {
 
+    @ReadOnly
     List<Lease> getLeasesForCustomer(Customer c);
 
     void createLease(Lease lease);
 
+    @ReadOnly
     List<Book> getAvailableBooks();
 
 }
@@ -15,16 +15,31 @@ public class Main {
 
     private final static Logger log = LoggerFactory.getLogger(Main.class);
 
+    /**
+     * Creates data source from /jdbc.properties. When property jdbc.replica.url
+     * is set, reads of managers wrapped by
+     * {@link ReadWriteRoutingDataSource#routeReads(Class, Object)} go to the replica.
+     */
     public static DataSource getDataSource() throws IOException {
-        HikariDataSource ds = new HikariDataSource();
-
         //load connection properties from a file
         Properties p = new Properties();
         p.load(Main.class.getResourceAsStream("/jdbc.properties"));
 
+        DataSource primary = createDataSource(p, p.getProperty("jdbc.url"));
+        String replicaUrl = p.getProperty("jdbc.replica.url");
+        if (replicaUrl == null || replicaUrl.isEmpty()) {
+            return primary;
+        }
+        log.info("reads are routed to replica {}", replicaUrl);
+        return new ReadWriteRoutingDataSource(primary, createDataSource(p, replicaUrl));
+    }
+
+    private static DataSource createDataSource(Properties p, String url) {
+        HikariDataSource ds = new HikariDataSource();
+
         //set connection
         ds.setDriverClassName(p.getProperty("jdbc.driver"));
-        ds.setJdbcUrl(p.getProperty("jdbc.url"));
+        ds.setJdbcUrl(url);
         ds.setUsername(p.getProperty("jdbc.user"));
         ds.setPassword(p.getProperty("jdbc.password"));
 
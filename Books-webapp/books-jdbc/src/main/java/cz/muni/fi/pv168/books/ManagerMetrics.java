@@ -0,0 +1,184 @@
+package cz.muni.fi.pv168.books;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Collects per-method statistics of managers: number of calls, number of
+ * calls which threw an exception and latency histograms. Manager is
+ * measured when it is wrapped by {@link #instrument(Class, Object)}.
+ * <p>
+ * Recording of a call takes two reads of {@link System#nanoTime()} and a few
+ * atomic increments without locks, so the metrics can stay enabled in
+ * production. The statistics can be read from {@link #getStats()}, from
+ * JMX after {@link #registerMBeans(MBeanServer)} or as a text table from
+ * {@link #dump()}.
+ * <p>
+ * Methods returning streams are measured until the stream is returned, the
+ * time of reading the stream is not included.
+ */
+public class ManagerMetrics {
+
+    /**
+     * JMX domain of the MBeans.
+     */
+    public static final String JMX_DOMAIN = "cz.muni.fi.pv168.books";
+
+    private final Map<String, MethodStats> stats = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns proxy of given manager, which records statistics of all
+     * methods of the interface. Overloaded methods share the statistics.
+     *
+     * @param type interface of the manager
+     * @param manager manager
+     * @param <T> type of the manager
+     * @return proxy of the manager
+     * @throws IllegalArgumentException when some argument is null or when
+     * type is not an interface
+     */
+    public <T> T instrument(Class<T> type, T manager) {
+        if (type == null) throw new IllegalArgumentException("type is null");
+        if (manager == null) throw new IllegalArgumentException("manager is null");
+        if (!type.isInterface()) throw new IllegalArgumentException(type.getName() + " is not an interface");
+        Map<Method, MethodStats> methodStats = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            String key = type.getSimpleName() + "." + method.getName();
+            methodStats.put(method, stats.computeIfAbsent(key, (k) -> new MethodStats(type.getSimpleName(), method.getName())));
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            MethodStats methodStat = methodStats.get(method);
+            if (methodStat == null) {
+                // equals(), hashCode() and toString()
+                return invoke(method, manager, args);
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = invoke(method, manager, args);
+                failed = false;
+                return result;
+            } finally {
+                methodStat.record(System.nanoTime() - start, failed);
+            }
+        }));
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * @return statistics of all instrumented methods ordered by manager and
+     * method name
+     */
+    public List<MethodStats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * Returns statistics of given method.
+     *
+     * @param type interface of the manager
+     * @param method name of the method
+     * @return statistics or null when the method is not instrumented
+     */
+    public MethodStats getStats(Class<?> type, String method) {
+        return stats.get(type.getSimpleName() + "." + method);
+    }
+
+    /**
+     * Registers MBean of each method instrumented so far, named
+     * {@code cz.muni.fi.pv168.books:type=ManagerMetrics,manager=...,method=...}.
+     *
+     * When some MBean can't be registered, e.g. because of the same name
+     * registered by another instance, MBeans registered by this call are
+     * unregistered again.
+     *
+     * @param server MBean server
+     * @throws JMException when some MBean can't be registered
+     */
+    public void registerMBeans(MBeanServer server) throws JMException {
+        List<ObjectName> registered = new ArrayList<>();
+        try {
+            for (MethodStats methodStats : stats.values()) {
+                ObjectName name = objectName(methodStats);
+                server.registerMBean(methodStats, name);
+                registered.add(name);
+            }
+        } catch (JMException ex) {
+            for (ObjectName name : registered) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (JMException unregisterEx) {
+                    ex.addSuppressed(unregisterEx);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Unregisters MBeans registered by {@link #registerMBeans(MBeanServer)}.
+     *
+     * @param server MBean server
+     * @throws JMException when some MBean can't be unregistered
+     */
+    public void unregisterMBeans(MBeanServer server) throws JMException {
+        for (MethodStats methodStats : stats.values()) {
+            ObjectName name = objectName(methodStats);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+    }
+
+    static ObjectName objectName(MethodStats methodStats) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=ManagerMetrics,manager=" + methodStats.getManager()
+                + ",method=" + methodStats.getMethod());
+    }
+
+    /**
+     * Returns statistics of all methods which were called as a text table.
+     * Latencies are in microseconds.
+     *
+     * @return text table
+     */
+    public String dump() {
+        StringWriter result = new StringWriter();
+        PrintWriter out = new PrintWriter(result);
+        out.printf("%-45s %10s %8s %10s %10s %10s %10s %10s%n",
+                "method", "calls", "errors", "mean", "p50", "p99", "p999", "max");
+        for (MethodStats methodStats : stats.values()) {
+            long calls = methodStats.getCalls();
+            if (calls == 0) {
+                continue;
+            }
+            LatencyHistogram.Snapshot latencies = methodStats.getLatencies();
+            out.printf("%-45s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    methodStats.getManager() + "." + methodStats.getMethod(), calls, methodStats.getErrors(),
+                    latencies.getMeanNanos() / 1000,
+                    latencies.getValueAtQuantile(0.5) / 1000.0,
+                    latencies.getValueAtQuantile(0.99) / 1000.0,
+                    latencies.getValueAtQuantile(0.999) / 1000.0,
+                    latencies.getMaxNanos() / 1000.0);
+        }
+        out.flush();
+        return result.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package cz.muni.fi.pv168.books;
+
+/**
+ * JMX interface of {@link MethodStats}. Latencies are in microseconds.
+ */
+public interface MethodStatsMBean {
+
+    String getManager();
+
+    String getMethod();
+
+    long getCalls();
+
+    long getErrors();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
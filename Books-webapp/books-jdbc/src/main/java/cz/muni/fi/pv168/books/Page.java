@@ -0,0 +1,88 @@
+package cz.muni.fi.pv168.books;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of results of keyset pagination. The next page is requested with the opaque
+ * token returned by {@link #getNextToken()}; it encodes the id of the last item,
+ * so the next page starts with an index seek and does not skip any rows.
+ *
+ * @param <T> type of page items
+ */
+public final class Page<T> {
+
+    private static final String TOKEN_PREFIX = "after:";
+
+    private final List<T> items;
+    private final String nextToken;
+
+    public Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return token for the next page or null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" + "items=" + items + ", nextToken='" + nextToken + '\'' + '}';
+    }
+
+    /**
+     * Creates page from rows of a query ordered by id and limited to {@code limit + 1} rows,
+     * the extra row only tells that there is the next page.
+     */
+    static <T> Page<T> fromRows(List<T> rows, int limit, ToLongFunction<T> idGetter) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(items, encodeToken(idGetter.applyAsLong(items.get(limit - 1))));
+    }
+
+    static String encodeToken(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((TOKEN_PREFIX + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return id after which the page starts, 0 for the first page (generated ids are positive)
+     * @throws IllegalArgumentException when the token is not valid
+     */
+    static long decodeToken(String token) {
+        if (token == null) {
+            return 0;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid continuation token: " + token, e);
+        }
+        if (!decoded.startsWith(TOKEN_PREFIX)) {
+            throw new IllegalArgumentException("invalid continuation token: " + token);
+        }
+        try {
+            return Long.parseLong(decoded.substring(TOKEN_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid continuation token: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cz.muni.fi.pv168.books;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DataSource which sends reads to read replica and everything else to the
+ * primary database.
+ * <p>
+ * Manager wrapped by {@link #routeReads(Class, Object)} executes methods
+ * annotated with {@link ReadOnly} in read-only mode, connections obtained
+ * in this mode come from the replica. The replica may be behind the primary
+ * database, so a request which reads its own changes should run in
+ * {@link Scope} opened by {@link #openScope()}: once the primary database is
+ * used within the scope, the following reads in the scope use it too.
+ * <p>
+ * Read-only mode and scopes are bound to the current thread.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private enum Target { PRIMARY, REPLICA }
+
+    private final ThreadLocal<Boolean> readOnly = ThreadLocal.withInitial(() -> false);
+    private final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        if (primary == null) throw new IllegalArgumentException("primary is null");
+        if (replica == null) throw new IllegalArgumentException("replica is null");
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Returns proxy of given manager, which executes methods annotated with
+     * {@link ReadOnly} on the replica. The manager must use this data source.
+     *
+     * @param type interface of the manager
+     * @param manager manager
+     * @throws IllegalArgumentException when some argument is null or type is not an interface
+     */
+    public <T> T routeReads(Class<T> type, T manager) {
+        if (type == null) throw new IllegalArgumentException("type is null");
+        if (manager == null) throw new IllegalArgumentException("manager is null");
+        if (!type.isInterface()) throw new IllegalArgumentException(type.getName() + " is not an interface");
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Boolean previous = readOnly.get();
+            readOnly.set(method.isAnnotationPresent(ReadOnly.class));
+            try {
+                return method.invoke(manager, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                readOnly.set(previous);
+            }
+        }));
+    }
+
+    /**
+     * Opens scope of the current thread in which the reads following a change
+     * go to the primary database. Scopes can be nested.
+     *
+     * @return new scope, which must be closed by the same thread
+     */
+    public Scope openScope() {
+        Scope scope = new Scope(currentScope.get());
+        currentScope.set(scope);
+        return scope;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Scope scope = currentScope.get();
+        if (readOnly.get() && (scope == null || !scope.written)) {
+            return Target.REPLICA;
+        }
+        if (scope != null) {
+            scope.written = true;
+        }
+        return Target.PRIMARY;
+    }
+
+    /**
+     * Scope with read-your-writes consistency, see {@link #openScope()}.
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final Scope outer;
+        private boolean written;
+        private boolean closed;
+
+        private Scope(Scope outer) {
+            this.outer = outer;
+        }
+
+        /**
+         * @return true if the primary database was used within this scope
+         */
+        public boolean isWritten() {
+            return written;
+        }
+
+        /**
+         * Closes this scope, the outer scope becomes current again.
+         *
+         * @throws IllegalStateException when this scope is not the innermost open scope of current thread
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            if (currentScope.get() != this) {
+                throw new IllegalStateException("scope is not the innermost open scope of current thread");
+            }
+            closed = true;
+            if (outer == null) {
+                currentScope.remove();
+            } else {
+                outer.written |= written;
+                currentScope.set(outer);
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.*;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertThat;
 
 @RunWith(SpringJUnit4ClassRunner.class) //Spring se zúčastní unit testů
@@ -28,6 +29,30 @@ public class BookManagerImplTest {
         assertThat("number of all books", allBooks.size(), is(2));
     }
 
+    @Test
+    public void testGetBooksPage() throws Exception {
+        Book b3 = new Book(null, "Egypťan Sinuhet", "Mika Waltari");
+        bookManager.createBook(b3);
+        Page<Book> first = bookManager.getBooksPage(null, 2);
+        assertThat(first.getItems(), is(asList(bookManager.getBookById(1L), bookManager.getBookById(2L))));
+        assertThat("has next page", first.hasNext(), is(true));
+        Page<Book> second = bookManager.getBooksPage(first.getNextToken(), 2);
+        assertThat(second.getItems(), is(asList(b3)));
+        assertThat("has next page", second.hasNext(), is(false));
+    }
+
+    @Test
+    public void testGetBooksPageWithMaximalLimit() throws Exception {
+        Page<Book> page = bookManager.getBooksPage(null, Integer.MAX_VALUE);
+        assertThat(page.getItems(), is(bookManager.getAllBooks()));
+        assertThat("has next page", page.hasNext(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBooksPageWithInvalidToken() throws Exception {
+        bookManager.getBooksPage("xyz", 2);
+    }
+
     @Test
     public void testCreateBook() throws Exception {
         Book b1 = new Book(null, "Egypťan Sinuhet", "Mika Waltari");
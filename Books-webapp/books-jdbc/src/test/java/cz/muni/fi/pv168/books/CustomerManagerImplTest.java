@@ -9,6 +9,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import static org.hamcrest.CoreMatchers.*;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -27,6 +28,25 @@ public class CustomerManagerImplTest {
         assertThat(c1.getFullname(), is(equalTo("Karel Čtvrtý")));
     }
 
+    @Test
+    public void testGetCustomersPage() {
+        Customer c2 = new Customer(null, "Jan Novák", "Dlouhá 1", "603123456", "novak@gmail.com");
+        customerManager.createCustomer(c2);
+        Page<Customer> first = customerManager.getCustomersPage(null, 1);
+        assertThat(first.getItems(), is(asList(customerManager.getCustomerById(1))));
+        assertThat("has next page", first.hasNext(), is(true));
+        Page<Customer> second = customerManager.getCustomersPage(first.getNextToken(), 1);
+        assertThat(second.getItems(), is(asList(c2)));
+        assertThat("has next page", second.hasNext(), is(false));
+    }
+
+    @Test
+    public void testGetCustomersPageWithMaximalLimit() {
+        Page<Customer> page = customerManager.getCustomersPage(null, Integer.MAX_VALUE);
+        assertThat(page.getItems(), is(customerManager.getAllCustomers()));
+        assertThat("has next page", page.hasNext(), is(false));
+    }
+
     @Test
     public void testCreateCustomer() {
         Customer c2 = new Customer(null, "Jan Novák", "Dlouhá 1", "603123456", "novak@gmail.com");
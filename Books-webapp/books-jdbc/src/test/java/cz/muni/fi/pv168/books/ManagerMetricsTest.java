@@ -0,0 +1,102 @@
+package cz.muni.fi.pv168.books;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Tests statistics collected by {@link ManagerMetrics}.
+ */
+public class ManagerMetricsTest {
+
+    private EmbeddedDatabase db;
+    private ManagerMetrics metrics;
+    private BookManager bookManager;
+
+    @Before
+    public void setUp() {
+        db = new EmbeddedDatabaseBuilder()
+                .setName("booksMetricsDB")
+                .setType(DERBY)
+                .setScriptEncoding("utf-8")
+                .addScript("classpath:schema-javadb.sql")
+                .addScript("classpath:test-data.sql")
+                .build();
+        metrics = new ManagerMetrics();
+        bookManager = metrics.instrument(BookManager.class, new BookManagerImpl(db));
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void countCallsAndErrors() throws BookException {
+        bookManager.getAllBooks();
+        bookManager.getAllBooks();
+        try {
+            bookManager.deleteBook(999_999L);
+            fail("BookException expected");
+        } catch (BookException ex) {
+            // expected, the exception is not wrapped by the proxy
+        }
+
+        MethodStats getAllStats = metrics.getStats(BookManager.class, "getAllBooks");
+        assertThat(getAllStats.getCalls(), is(2L));
+        assertThat(getAllStats.getErrors(), is(0L));
+        assertThat(getAllStats.getLatencies().getCount(), is(2L));
+        MethodStats deleteStats = metrics.getStats(BookManager.class, "deleteBook");
+        assertThat(deleteStats.getCalls(), is(1L));
+        assertThat(deleteStats.getErrors(), is(1L));
+        assertThat(metrics.dump(), containsString("BookManager.getAllBooks"));
+        assertThat(metrics.dump(), not(containsString("BookManager.createBook")));
+    }
+
+    @Test
+    public void registerMBeans() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        bookManager.getAllBooks();
+
+        metrics.registerMBeans(server);
+
+        ObjectName name = new ObjectName("cz.muni.fi.pv168.books:type=ManagerMetrics,manager=BookManager,method=getAllBooks");
+        assertThat(server.getAttribute(name, "Calls"), is((Object) 1L));
+        metrics.unregisterMBeans(server);
+        assertThat(server.isRegistered(name), is(false));
+    }
+
+    @Test
+    public void registerMBeansWithDuplicateName() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        ManagerMetrics other = new ManagerMetrics();
+        other.instrument(CustomerManager.class, new CustomerManagerImpl(db));
+        other.registerMBeans(server);
+        metrics.instrument(CustomerManager.class, new CustomerManagerImpl(db));
+
+        try {
+            metrics.registerMBeans(server);
+            fail("InstanceAlreadyExistsException expected");
+        } catch (InstanceAlreadyExistsException ex) {
+            // expected, the names of CustomerManager are taken by other metrics
+        }
+
+        ObjectName customerName = new ObjectName("cz.muni.fi.pv168.books:type=ManagerMetrics,manager=CustomerManager,method=getAllCustomers");
+        ObjectName bookName = new ObjectName("cz.muni.fi.pv168.books:type=ManagerMetrics,manager=BookManager,method=getAllBooks");
+        // MBeans of BookManager, which were registered first, are unregistered again
+        assertThat(server.isRegistered(bookName), is(false));
+        assertThat(server.isRegistered(customerName), is(true));
+    }
+}
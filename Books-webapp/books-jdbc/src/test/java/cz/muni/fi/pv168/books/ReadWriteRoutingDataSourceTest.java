@@ -0,0 +1,135 @@
+package cz.muni.fi.pv168.books;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+
+import java.sql.SQLException;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Tests routing of reads to replica. Replica is a second database updated
+ * only by {@link TestReplicator}, so it does not see changes until the
+ * replication.
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase replica;
+    private TestReplicator replicator;
+    private ReadWriteRoutingDataSource routing;
+    private BookManager bookManager;
+    private CustomerManager customerManager;
+    private LeaseManager leaseManager;
+
+    private static EmbeddedDatabase createDatabase(String name) {
+        return new EmbeddedDatabaseBuilder()
+                .setName(name)
+                .setType(DERBY)
+                .setScriptEncoding("utf-8")
+                .addScript("classpath:schema-javadb.sql")
+                .addScript("classpath:test-data.sql")
+                .build();
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        primary = createDatabase("booksPrimaryDB");
+        replica = createDatabase("booksReplicaDB");
+        replicator = new TestReplicator(primary, replica)
+                .table("books", "id", "name", "author")
+                .table("customers", "id", "fullname", "address", "phone", "email")
+                .table("leases", "id", "bookId", "customerId", "startDate", "expectedEnd", "realEnd");
+        routing = new ReadWriteRoutingDataSource(primary, replica);
+        bookManager = routing.routeReads(BookManager.class, new BookManagerImpl(routing));
+        customerManager = routing.routeReads(CustomerManager.class, new CustomerManagerImpl(routing));
+        LeaseManagerImpl leaseManagerImpl = new LeaseManagerImpl(routing);
+        leaseManagerImpl.setBookManager(bookManager);
+        leaseManagerImpl.setCustomerManager(customerManager);
+        leaseManager = routing.routeReads(LeaseManager.class, leaseManagerImpl);
+    }
+
+    @After
+    public void tearDown() {
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    public void testWritesGoToPrimary() throws BookException {
+        bookManager.createBook(new Book(null, "Krakatit", "Karel Čapek"));
+        assertThat(new BookManagerImpl(primary).getAllBooks().size(), is(3));
+        assertThat(new BookManagerImpl(replica).getAllBooks().size(), is(2));
+    }
+
+    @Test
+    public void testReadsGoToReplica() throws BookException, SQLException {
+        Book book = new Book(null, "Krakatit", "Karel Čapek");
+        bookManager.createBook(book);
+        Customer customer = new Customer(null, "Jan Novák", "Dlouhá 1", "603123456", "novak@gmail.com");
+        customerManager.createCustomer(customer);
+        assertThat(bookManager.getAllBooks(), not(hasItem(book)));
+        assertThat(customerManager.getAllCustomers(), not(hasItem(customer)));
+        assertThat(leaseManager.getAvailableBooks(), not(hasItem(book)));
+
+        replicator.replicate();
+
+        assertThat(bookManager.getBookById(book.getId()), is(equalTo(book)));
+        assertThat(customerManager.getCustomerById(customer.getId()), is(equalTo(customer)));
+        assertThat(leaseManager.getAvailableBooks(), hasItem(book));
+    }
+
+    @Test
+    public void testScopeReadsItsOwnWrites() throws BookException {
+        Book book = new Book(null, "Krakatit", "Karel Čapek");
+        try (ReadWriteRoutingDataSource.Scope scope = routing.openScope()) {
+            assertThat(bookManager.getAllBooks().size(), is(2));
+            assertThat("written", scope.isWritten(), is(false));
+            bookManager.createBook(book);
+            assertThat("written", scope.isWritten(), is(true));
+            assertThat(bookManager.getAllBooks(), hasItem(book));
+        }
+        //replica is not replicated yet
+        assertThat(bookManager.getAllBooks(), not(hasItem(book)));
+    }
+
+    @Test
+    public void testScopeOfCustomerManager() {
+        Customer customer = new Customer(null, "Jan Novák", "Dlouhá 1", "603123456", "novak@gmail.com");
+        try (ReadWriteRoutingDataSource.Scope scope = routing.openScope()) {
+            customerManager.createCustomer(customer);
+            assertThat("written", scope.isWritten(), is(true));
+            assertThat(customerManager.getCustomerById(customer.getId()), is(equalTo(customer)));
+        }
+    }
+
+    @Test
+    public void testCloseScopeOutOfOrder() {
+        ReadWriteRoutingDataSource.Scope outer = routing.openScope();
+        ReadWriteRoutingDataSource.Scope inner = routing.openScope();
+        try {
+            outer.close();
+            fail("outer scope closed before inner scope");
+        } catch (IllegalStateException e) {
+            //no code
+        }
+        inner.close();
+        outer.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteReadsOfClass() {
+        routing.routeReads(BookManagerImpl.class, new BookManagerImpl(routing));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testManagerExceptionIsPassedThrough() throws BookException {
+        bookManager.getBooksPage(null, 0);
+    }
+}
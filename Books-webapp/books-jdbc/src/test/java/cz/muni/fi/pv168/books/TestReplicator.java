@@ -0,0 +1,93 @@
+package cz.muni.fi.pv168.books;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replicates tables from primary database to read replica on demand, so the
+ * tests can control when the replica catches up with the primary database.
+ * Replication copies whole tables, tables must be registered in the order in
+ * which they can be filled (referenced tables first).
+ */
+public class TestReplicator {
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final Map<String, String[]> tables = new LinkedHashMap<>();
+
+    public TestReplicator(DataSource primary, DataSource replica) {
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    /**
+     * Registers table to be replicated. Identity column ID of the table in
+     * the replica is changed to be generated by default, so the rows can be
+     * copied with their ids.
+     *
+     * @param table name of the table
+     * @param columns copied columns, generated columns must not be included
+     * @return this replicator
+     */
+    public TestReplicator table(String table, String... columns) throws SQLException {
+        try (Connection conn = replica.getConnection();
+             Statement st = conn.createStatement()) {
+            st.executeUpdate("ALTER TABLE " + table + " ALTER COLUMN ID SET GENERATED BY DEFAULT");
+        }
+        tables.put(table, columns);
+        return this;
+    }
+
+    /**
+     * Replaces content of registered tables in the replica with current
+     * content of the primary database.
+     */
+    public void replicate() throws SQLException {
+        try (Connection source = primary.getConnection();
+             Connection target = replica.getConnection()) {
+            target.setAutoCommit(false);
+            List<String> names = new ArrayList<>(tables.keySet());
+            Collections.reverse(names);
+            try (Statement st = target.createStatement()) {
+                for (String table : names) {
+                    st.executeUpdate("DELETE FROM " + table);
+                }
+            }
+            for (Map.Entry<String, String[]> table : tables.entrySet()) {
+                copy(source, target, table.getKey(), table.getValue());
+            }
+            target.commit();
+        }
+    }
+
+    private static void copy(Connection source, Connection target, String table, String[] columns) throws SQLException {
+        String columnList = String.join(",", columns);
+        String params = String.join(",", Collections.nCopies(columns.length, "?"));
+        try (Statement select = source.createStatement();
+             ResultSet rs = select.executeQuery("SELECT " + columnList + " FROM " + table);
+             PreparedStatement insert = target.prepareStatement(
+                     "INSERT INTO " + table + " (" + columnList + ") VALUES (" + params + ")")) {
+            while (rs.next()) {
+                for (int i = 1; i <= columns.length; i++) {
+                    Object value = rs.getObject(i);
+                    if (value == null) {
+                        insert.setNull(i, rs.getMetaData().getColumnType(i));
+                    } else {
+                        insert.setObject(i, value);
+                    }
+                }
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+}
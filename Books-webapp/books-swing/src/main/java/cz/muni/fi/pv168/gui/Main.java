@@ -4,6 +4,7 @@ import cz.muni.fi.pv168.books.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
 import javax.sql.DataSource;
 import javax.swing.Box;
 import javax.swing.JFrame;
@@ -21,6 +22,7 @@ import java.awt.EventQueue;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -43,6 +45,16 @@ public class Main {
         customerManager = new CustomerManagerImpl(dataSource);
         bookManager = new BookManagerImpl(dataSource);
         leaseManager = new LeaseManagerImpl(dataSource);
+        //measure calls of managers, the statistics can be seen in JConsole
+        ManagerMetrics metrics = new ManagerMetrics();
+        customerManager = metrics.instrument(CustomerManager.class, customerManager);
+        bookManager = metrics.instrument(BookManager.class, bookManager);
+        leaseManager = metrics.instrument(LeaseManager.class, leaseManager);
+        try {
+            metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+        } catch (JMException e) {
+            log.error("cannot register metrics of managers", e);
+        }
 
         //create GUI
         EventQueue.invokeLater(() -> {
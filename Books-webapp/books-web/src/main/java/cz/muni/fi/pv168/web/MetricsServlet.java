@@ -0,0 +1,27 @@
+package cz.muni.fi.pv168.web;
+
+import cz.muni.fi.pv168.books.ManagerMetrics;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Returns statistics of manager calls as plain text table.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ManagerMetrics metrics = (ManagerMetrics) getServletContext().getAttribute(StartListener.METRICS_ATTRIBUTE);
+        if (metrics == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "metrics are not enabled");
+            return;
+        }
+        response.setContentType("text/plain;charset=utf-8");
+        response.getWriter().print(metrics.dump());
+    }
+}
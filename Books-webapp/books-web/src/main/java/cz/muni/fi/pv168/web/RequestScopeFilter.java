@@ -0,0 +1,45 @@
+package cz.muni.fi.pv168.web;
+
+import cz.muni.fi.pv168.books.ReadWriteRoutingDataSource;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import java.io.IOException;
+
+/**
+ * Processes each request in {@link ReadWriteRoutingDataSource.Scope}, so the
+ * request reads its own changes even when reads are routed to read replica.
+ * Does nothing when the application does not use read replica.
+ */
+@WebFilter("/*")
+public class RequestScopeFilter implements Filter {
+
+    public static final String DATA_SOURCE_ATTRIBUTE = "routingDataSource";
+
+    private ReadWriteRoutingDataSource dataSource;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        dataSource = (ReadWriteRoutingDataSource) filterConfig.getServletContext().getAttribute(DATA_SOURCE_ATTRIBUTE);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (dataSource == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try (ReadWriteRoutingDataSource.Scope scope = dataSource.openScope()) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
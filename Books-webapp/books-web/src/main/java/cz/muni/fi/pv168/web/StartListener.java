@@ -1,32 +1,64 @@
 package cz.muni.fi.pv168.web;
 
+import cz.muni.fi.pv168.books.BookManager;
 import cz.muni.fi.pv168.books.BookManagerImpl;
+import cz.muni.fi.pv168.books.CustomerManager;
 import cz.muni.fi.pv168.books.CustomerManagerImpl;
 import cz.muni.fi.pv168.books.Main;
+import cz.muni.fi.pv168.books.ManagerMetrics;
+import cz.muni.fi.pv168.books.ReadWriteRoutingDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 
 @WebListener
 public class StartListener implements ServletContextListener {
 
+    public static final String METRICS_ATTRIBUTE = "managerMetrics";
+
     private final static Logger log = LoggerFactory.getLogger(StartListener.class);
 
+    //metriky registrované v JMX, null když registrace selhala
+    private ManagerMetrics registeredMetrics;
+
     @Override
     public void contextInitialized(ServletContextEvent ev) {
         log.info("webová aplikace inicializována");
         ServletContext servletContext = ev.getServletContext();
         try {
             DataSource dataSource = Main.getDataSource();
-            servletContext.setAttribute("customerManager", new CustomerManagerImpl(dataSource));
-            servletContext.setAttribute("bookManager", new BookManagerImpl(dataSource));
+            CustomerManager customerManager = new CustomerManagerImpl(dataSource);
+            BookManager bookManager = new BookManagerImpl(dataSource);
+            if (dataSource instanceof ReadWriteRoutingDataSource) {
+                //čtení jdou na repliku, RequestScopeFilter zajistí čtení vlastních změn
+                ReadWriteRoutingDataSource routing = (ReadWriteRoutingDataSource) dataSource;
+                customerManager = routing.routeReads(CustomerManager.class, customerManager);
+                bookManager = routing.routeReads(BookManager.class, bookManager);
+                servletContext.setAttribute(RequestScopeFilter.DATA_SOURCE_ATTRIBUTE, routing);
+            }
+            //metriky volání manažerů jsou na adrese /metrics a pokud to jde, tak i v JMX
+            ManagerMetrics metrics = new ManagerMetrics();
+            customerManager = metrics.instrument(CustomerManager.class, customerManager);
+            bookManager = metrics.instrument(BookManager.class, bookManager);
+            servletContext.setAttribute(METRICS_ATTRIBUTE, metrics);
+            servletContext.setAttribute("customerManager", customerManager);
+            servletContext.setAttribute("bookManager", bookManager);
             log.info("vytvořeny manažery a uloženy do atributů servletContextu");
+            try {
+                metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+                registeredMetrics = metrics;
+            } catch (JMException e) {
+                //aplikace funguje i bez JMX
+                log.error("Nepovedlo se registrovat metriky do JMX", e);
+            }
         } catch (IOException e) {
             log.error("Nepovedlo se vytvořit databázi", e);
         }
@@ -35,5 +67,14 @@ public class StartListener implements ServletContextListener {
     @Override
     public void contextDestroyed(ServletContextEvent ev) {
         log.info("aplikace končí");
+        //při opětovném nasazení aplikace by jinak kolidovala jména MBeanů
+        if (registeredMetrics != null) {
+            try {
+                registeredMetrics.unregisterMBeans(ManagementFactory.getPlatformMBeanServer());
+            } catch (JMException e) {
+                log.error("Nepovedlo se odregistrovat metriky z JMX", e);
+            }
+            registeredMetrics = null;
+        }
     }
 }
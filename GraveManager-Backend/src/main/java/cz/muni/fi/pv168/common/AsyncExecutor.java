@@ -0,0 +1,206 @@
+package cz.muni.fi.pv168.common;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking manager calls in background and returns their results as
+ * {@link CompletableFuture}. The number of calls running at the same time is
+ * limited, usually to the size of the connection pool, so the calls don't
+ * just wait for free connection in the pool.
+ * <p>
+ * When the limit is reached, {@link #supply(Supplier)} blocks the calling
+ * thread until some running call finishes. When no call finishes within the
+ * acquire timeout, the returned future fails with
+ * {@link ServiceFailureException}. This is the backpressure for the callers
+ * producing calls faster than the database can handle them.
+ * <p>
+ * The default executor uses virtual threads when running on Java 21 or newer,
+ * otherwise it uses a pool of daemon threads of the same size as the limit.
+ *
+ * @author Petr Adámek
+ */
+public final class AsyncExecutor implements AutoCloseable {
+
+    /**
+     * Default maximal time to wait until some running call finishes.
+     */
+    public static final Duration DEFAULT_ACQUIRE_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+
+    /**
+     * Creates new async executor, which runs calls in given executor. Given
+     * executor is not shut down by {@link #close()}.
+     *
+     * @param executor executor for running the calls
+     * @param maxConcurrency maximal number of calls running at the same time
+     * @param acquireTimeout maximal time to wait until some running call
+     * finishes when the limit is reached
+     * @throws IllegalArgumentException when executor or acquireTimeout is
+     * null, acquireTimeout is negative or maxConcurrency is not positive
+     * number
+     */
+    public AsyncExecutor(ExecutorService executor, int maxConcurrency, Duration acquireTimeout) {
+        this(executor, false, maxConcurrency, acquireTimeout);
+    }
+
+    private AsyncExecutor(ExecutorService executor, boolean ownsExecutor, int maxConcurrency, Duration acquireTimeout) {
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency is not positive number");
+        if (acquireTimeout == null) throw new IllegalArgumentException("acquireTimeout is null");
+        if (acquireTimeout.isNegative()) throw new IllegalArgumentException("acquireTimeout is negative");
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    /**
+     * Creates new async executor with the default executor.
+     *
+     * @param maxConcurrency maximal number of calls running at the same time
+     * @param acquireTimeout maximal time to wait until some running call
+     * finishes when the limit is reached
+     * @return async executor
+     * @throws IllegalArgumentException when acquireTimeout is null or
+     * negative or maxConcurrency is not positive number
+     */
+    public static AsyncExecutor create(int maxConcurrency, Duration acquireTimeout) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency is not positive number");
+        return new AsyncExecutor(defaultExecutor(maxConcurrency), true, maxConcurrency, acquireTimeout);
+    }
+
+    /**
+     * Creates new async executor with the default executor, which runs at
+     * most as many calls at the same time as is the maximal size of given
+     * connection pool.
+     *
+     * @param dataSource connection pool used by the managers
+     * @return async executor
+     * @throws IllegalArgumentException when dataSource is null
+     */
+    public static AsyncExecutor forPool(HikariDataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        return create(dataSource.getMaximumPoolSize(), DEFAULT_ACQUIRE_TIMEOUT);
+    }
+
+    private static ExecutorService defaultExecutor(int maxConcurrency) {
+        try {
+            // Java 21+, the project is compiled for Java 8
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            ThreadFactory threadFactory = (runnable) -> {
+                Thread thread = new Thread(runnable, "async-manager-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(maxConcurrency, threadFactory);
+        }
+    }
+
+    /**
+     * @return maximal number of calls running at the same time
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return number of calls which can be started without waiting
+     */
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Runs given call in background. Exception thrown by the call completes
+     * the returned future exceptionally.
+     *
+     * @param call call to be run
+     * @param <T> type of the result
+     * @return future result of the call
+     * @throws IllegalArgumentException when call is null
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> call) {
+        if (call == null) throw new IllegalArgumentException("call is null");
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                result.completeExceptionally(new ServiceFailureException(
+                        "No call finished within acquire timeout, " + maxConcurrency + " calls are running"));
+                return result;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(new ServiceFailureException("Interrupted when waiting for running call", ex));
+            return result;
+        }
+        try {
+            executor.execute(() -> {
+                T value;
+                try {
+                    value = call.get();
+                } catch (Throwable ex) {
+                    permits.release();
+                    result.completeExceptionally(ex);
+                    return;
+                }
+                // dependent stages may run in this thread and issue next
+                // calls, so the permit must be released before completion
+                permits.release();
+                result.complete(value);
+            });
+        } catch (RejectedExecutionException ex) {
+            permits.release();
+            result.completeExceptionally(new ServiceFailureException("Call was rejected by executor", ex));
+        }
+        return result;
+    }
+
+    /**
+     * Runs given call in background. Exception thrown by the call completes
+     * the returned future exceptionally.
+     *
+     * @param call call to be run
+     * @return future completed when the call finishes
+     * @throws IllegalArgumentException when call is null
+     */
+    public CompletableFuture<Void> run(Runnable call) {
+        if (call == null) throw new IllegalArgumentException("call is null");
+        return supply(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Shuts down the default executor, calls which are already running are
+     * finished. Executor given to the constructor is not shut down.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of CSV records as defined in RFC 4180. Fields may be
+ * quoted with double quotes, quoted fields may contain separators, line
+ * breaks and doubled quotes. Records are separated by LF or CRLF.
+ * <p>
+ * The input is read through fixed size buffer and only the current record
+ * is kept in memory, so files of any size can be read. Length of one record
+ * is limited to protect against malformed input (e.g. unterminated quote)
+ * consuming the whole memory.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Petr Adámek
+ */
+public class CsvReader implements Closeable {
+
+    /**
+     * Default maximal length of one record in characters.
+     */
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 1 << 20;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+    private long lineNumber = 1;
+    private long recordLineNumber;
+
+    /**
+     * Creates new reader.
+     *
+     * @param reader reader of CSV data, it doesn't need to be buffered
+     * @param maxRecordLength maximal length of one record in characters
+     * @throws IllegalArgumentException when reader is null or
+     * maxRecordLength is not positive number
+     */
+    public CsvReader(Reader reader, int maxRecordLength) {
+        if (reader == null) throw new IllegalArgumentException("reader is null");
+        if (maxRecordLength <= 0) throw new IllegalArgumentException("maxRecordLength is not positive number");
+        this.reader = reader;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * Creates new reader with {@link #DEFAULT_MAX_RECORD_LENGTH}.
+     *
+     * @param reader reader of CSV data, it doesn't need to be buffered
+     */
+    public CsvReader(Reader reader) {
+        this(reader, DEFAULT_MAX_RECORD_LENGTH);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return fields of the record or null at the end of input
+     * @throws IOException when reading fails, the record is longer than
+     * allowed or quoted field is not terminated
+     */
+    public List<String> readRecord() throws IOException {
+        if (!fill()) {
+            return null;
+        }
+        recordLineNumber = lineNumber;
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        int recordLength = 0;
+        boolean quoted = false;
+        boolean afterQuote = false;
+        while (fill()) {
+            char c = buffer[position++];
+            if (++recordLength > maxRecordLength) {
+                throw new IOException("Record at line " + recordLineNumber + " is longer than " + maxRecordLength + " characters");
+            }
+            if (quoted) {
+                if (c == '"') {
+                    if (fill() && buffer[position] == '"') {
+                        position++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    field.append(c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == '\n') {
+                lineNumber++;
+                fields.add(field.toString());
+                return fields;
+            } else if (c == '\r' && fill() && buffer[position] == '\n') {
+                // CR is dropped only as a part of CRLF
+            } else if (c == '"' && field.length() == 0 && !afterQuote) {
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IOException("Quoted field at line " + recordLineNumber + " is not terminated");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * @return number of the line where the last read record started
+     */
+    public long getRecordLineNumber() {
+        return recordLineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (position == limit) {
+            if (endOfInput) {
+                return false;
+            }
+            int read = reader.read(buffer);
+            position = 0;
+            limit = Math.max(read, 0);
+            endOfInput = read == -1;
+        }
+        return true;
+    }
+}
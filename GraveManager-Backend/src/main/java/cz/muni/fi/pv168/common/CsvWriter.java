@@ -0,0 +1,87 @@
+package cz.muni.fi.pv168.common;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer of CSV records as defined in RFC 4180, readable by
+ * {@link CsvReader}. Fields containing separator, quote or line break are
+ * quoted, null fields are written as empty fields. Records are separated by
+ * LF.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Petr Adámek
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+    private final Writer writer;
+
+    /**
+     * Creates new writer.
+     *
+     * @param writer writer of CSV data, it should be buffered
+     * @throws IllegalArgumentException when writer is null
+     */
+    public CsvWriter(Writer writer) {
+        if (writer == null) throw new IllegalArgumentException("writer is null");
+        this.writer = writer;
+    }
+
+    /**
+     * Writes one record.
+     *
+     * @param fields fields of the record
+     * @throws IOException when writing fails
+     */
+    public void writeRecord(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(fields[i]);
+        }
+        writer.write('\n');
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        if (!needsQuotes(field)) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
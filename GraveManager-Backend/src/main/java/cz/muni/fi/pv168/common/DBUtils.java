@@ -7,7 +7,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Some DB tools.
@@ -39,6 +47,202 @@ public class DBUtils {
         }
     }
 
+    /**
+     * Binds attributes of given entity to parameters of prepared statement.
+     *
+     * @param <T> type of entity
+     */
+    @FunctionalInterface
+    public interface StatementBinder<T> {
+
+        void bind(PreparedStatement st, T entity) throws SQLException;
+    }
+
+    /**
+     * Inserts given entities using JDBC statement batching and returns keys
+     * generated for them. Statement is executed every batchSize rows.
+     * <p>
+     * Derby returns from getGeneratedKeys() only the key of the last row
+     * inserted by executeBatch(), so keys for the other rows are computed from
+     * this one. This works only when nobody else can insert into the same
+     * table in the meantime, therefore the caller must lock the table in
+     * exclusive mode within the current transaction before calling this method.
+     *
+     * @param st insert statement prepared with Statement.RETURN_GENERATED_KEYS
+     * @param entities entities to be inserted
+     * @param batchSize maximal number of rows sent in one batch
+     * @param binder binder setting statement parameters for given entity
+     * @param <T> type of entity
+     * @return generated keys in the same order as given entities
+     * @throws SQLException when operation fails
+     */
+    public static <T> List<Long> insertInBatches(PreparedStatement st, Collection<T> entities, int batchSize,
+                                                 StatementBinder<T> binder) throws SQLException {
+        List<Long> keys = new ArrayList<>(entities.size());
+        int pending = 0;
+        for (T entity : entities) {
+            binder.bind(st, entity);
+            st.addBatch();
+            if (++pending == batchSize) {
+                executeBatch(st, pending, keys);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            executeBatch(st, pending, keys);
+        }
+        return keys;
+    }
+
+    private static void executeBatch(PreparedStatement st, int rows, List<Long> keys) throws SQLException {
+        st.executeBatch();
+        long lastKey;
+        try (ResultSet rs = st.getGeneratedKeys()) {
+            lastKey = getLastId(rs);
+        }
+        for (long key = lastKey - rows + 1; key <= lastKey; key++) {
+            keys.add(key);
+        }
+    }
+
+    private static long getLastId(ResultSet keys) throws SQLException {
+        Long result = null;
+        while (keys.next()) {
+            result = keys.getLong(1);
+        }
+        if (result == null) {
+            throw new IllegalArgumentException("Given ResultSet contain no rows");
+        }
+        return result;
+    }
+
+    /**
+     * Creates object from the current row of ResultSet.
+     *
+     * @param <T> type of created object
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+
+        T mapRow(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Creates row mapper for given ResultSet. This allows the mapper to
+     * prepare everything what depends on the ResultSet, e.g. positions of
+     * the columns, only once and not for each row.
+     *
+     * @param <T> type of created objects
+     */
+    @FunctionalInterface
+    public interface RowMapperFactory<T> {
+
+        RowMapper<T> create(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Executes given query and returns its results as lazily populated
+     * stream. Rows are fetched from open database cursor when the stream is
+     * consumed, so the connection is held until the stream is closed or all
+     * rows are read. The stream must be always closed, preferably with
+     * try-with-resources statement.
+     *
+     * @param ds datasource
+     * @param sql query without parameters
+     * @param fetchSize number of rows fetched from the database at once
+     * @param mapperFactory factory of mapper creating object from each row
+     * @param <T> type of stream elements
+     * @return stream of query results
+     * @throws SQLException when the query can't be executed
+     */
+    public static <T> Stream<T> stream(DataSource ds, String sql, int fetchSize, RowMapperFactory<T> mapperFactory) throws SQLException {
+        Connection conn = ds.getConnection();
+        try {
+            PreparedStatement st = conn.prepareStatement(sql);
+            st.setFetchSize(fetchSize);
+            ResultSet rs = st.executeQuery();
+            ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(conn, st, rs, mapperFactory.create(rs));
+            return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        } catch (SQLException ex) {
+            // statement is closed together with the connection
+            conn.close();
+            throw ex;
+        }
+    }
+
+    private static class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final Connection conn;
+        private final PreparedStatement st;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private boolean closed;
+
+        private ResultSetSpliterator(Connection conn, PreparedStatement st, ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.st = st;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    // release resources as soon as possible
+                    close();
+                    return false;
+                }
+                action.accept(mapper.mapRow(rs));
+                return true;
+            } catch (SQLException ex) {
+                close();
+                throw new ServiceFailureException("Error when reading query results", ex);
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // all resources are closed even when closing of some of them fails
+            SQLException failure = null;
+            try {
+                rs.close();
+            } catch (SQLException ex) {
+                failure = ex;
+            } finally {
+                try {
+                    st.close();
+                } catch (SQLException ex) {
+                    failure = suppress(failure, ex);
+                } finally {
+                    try {
+                        conn.close();
+                    } catch (SQLException ex) {
+                        failure = suppress(failure, ex);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw new ServiceFailureException("Error when closing query results", failure);
+            }
+        }
+
+        private static SQLException suppress(SQLException failure, SQLException ex) {
+            if (failure == null) {
+                return ex;
+            }
+            failure.addSuppressed(ex);
+            return failure;
+        }
+    }
+
     /**
      * Executes SQL script.
      *
@@ -48,13 +252,25 @@ public class DBUtils {
      */
     public static void executeSqlScript(DataSource ds, InputStream is) throws SQLException, IOException {
         try (Connection c = ds.getConnection()) {
-            Scanner s = new Scanner(is).useDelimiter(";");
-            while (s.hasNext()) {
-                String sql = s.next().trim();
-                if (sql.isEmpty()) continue;
-                try (PreparedStatement st1 = c.prepareStatement(sql)) {
-                    st1.execute();
-                }
+            executeSqlScript(c, is);
+        }
+    }
+
+    /**
+     * Executes SQL script using given connection, so that the script could be
+     * executed within a transaction.
+     *
+     * @param c connection
+     * @param is InputStream obtained by getClass().getResourceAsStream()
+     * @throws SQLException when operation fails
+     */
+    public static void executeSqlScript(Connection c, InputStream is) throws SQLException, IOException {
+        Scanner s = new Scanner(is).useDelimiter(";");
+        while (s.hasNext()) {
+            String sql = s.next().trim();
+            if (sql.isEmpty()) continue;
+            try (PreparedStatement st1 = c.prepareStatement(sql)) {
+                st1.execute();
             }
         }
     }
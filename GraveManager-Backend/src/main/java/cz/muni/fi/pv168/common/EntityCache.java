@@ -0,0 +1,221 @@
+package cz.muni.fi.pv168.common;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Read-through cache of entities bounded by size. When the cache is full,
+ * the least recently used entity is evicted. Entities can also expire after
+ * given time to live.
+ * <p>
+ * Entities are mutable, so the cache stores its own copy of each loaded
+ * entity and returns a new copy on each hit. Entities which were not found
+ * (the loader returned null) are not cached.
+ * <p>
+ * This class is thread safe. Loader is called outside of the lock, so slow
+ * database query doesn't block other threads. When the entity is invalidated
+ * during loading, loaded value is returned but not stored, so the cache never
+ * keeps data older than the last invalidation.
+ *
+ * @param <K> type of the key
+ * @param <V> type of cached entities
+ * @author Petr Adámek
+ */
+public class EntityCache<K, V> {
+
+    private final int maximumSize;
+    private final Duration timeToLive;
+    private final Clock clock;
+    private final UnaryOperator<V> copier;
+    private final Map<K, Entry<V>> entries;
+
+    private long generation;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates new cache.
+     *
+     * @param maximumSize maximal number of cached entities
+     * @param timeToLive time after which cached entity expires or null if
+     * entities don't expire
+     * @param clock clock used for expiration
+     * @param copier function creating copy of the entity
+     * @throws IllegalArgumentException when maximumSize is not positive
+     * number, timeToLive is not positive, or clock or copier is null
+     */
+    public EntityCache(int maximumSize, Duration timeToLive, Clock clock, UnaryOperator<V> copier) {
+        if (maximumSize <= 0) throw new IllegalArgumentException("maximumSize is not positive number");
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("timeToLive is not positive");
+        }
+        if (clock == null) throw new IllegalArgumentException("clock is null");
+        if (copier == null) throw new IllegalArgumentException("copier is null");
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.copier = copier;
+        // access order makes the first entry the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns copy of the entity with given key. When the entity is not
+     * cached or it has expired, it is loaded with given loader.
+     *
+     * @param key key of the entity
+     * @param loader function loading the entity, may return null
+     * @return copy of the entity or null when the loader returned null
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && !entry.isExpired(clock.instant())) {
+                hitCount++;
+                return copier.apply(entry.value);
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            missCount++;
+            loadGeneration = generation;
+        }
+        V value = loader.apply(key);
+        if (value == null) {
+            return null;
+        }
+        V cached = copier.apply(value);
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                Instant expiresAt = timeToLive == null ? null : clock.instant().plus(timeToLive);
+                entries.put(key, new Entry<>(cached, expiresAt));
+                evictIfNeeded();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Removes the entity with given key from the cache.
+     *
+     * @param key key of the entity
+     */
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all entities from the cache.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    /**
+     * Returns number of entities in the cache, including expired entities
+     * which were not removed yet.
+     *
+     * @return number of entities in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns snapshot of cache statistics.
+     *
+     * @return cache statistics
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hitCount, missCount, evictionCount);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (entries.size() > maximumSize) {
+            iterator.next();
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final Instant expiresAt;
+
+        private Entry(V value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(Instant now) {
+            return expiresAt != null && !now.isBefore(expiresAt);
+        }
+    }
+
+    /**
+     * Statistics of the cache usage.
+     */
+    public static final class Statistics {
+
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+
+        private Statistics(long hitCount, long missCount, long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        /**
+         * @return number of requests served from the cache
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * @return number of requests which had to be loaded
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * @return number of entities evicted because the cache was full
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return ratio of requests served from the cache or 0 when there
+         * was no request yet
+         */
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{"
+                    + "hitCount=" + hitCount
+                    + ", missCount=" + missCount
+                    + ", evictionCount=" + evictionCount
+                    + '}';
+        }
+    }
+}
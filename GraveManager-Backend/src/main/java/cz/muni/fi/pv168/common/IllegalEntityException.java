@@ -8,6 +8,8 @@ package cz.muni.fi.pv168.common;
  */
 public class IllegalEntityException extends RuntimeException {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates a new instance of
      * <code>IllegalEntityException</code> without detail message.
@@ -0,0 +1,89 @@
+package cz.muni.fi.pv168.common;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of calls of one manager method collected by
+ * {@link ManagerMetrics}: number of calls, number of calls which threw an
+ * exception and histogram of latencies of all calls.
+ *
+ * @author Petr Adámek
+ */
+public final class MethodStats implements MethodStatsMBean {
+
+    private final String manager;
+    private final String method;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    MethodStats(String manager, String method) {
+        this.manager = manager;
+        this.method = method;
+    }
+
+    void record(long nanos, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        latencies.record(nanos);
+    }
+
+    @Override
+    public String getManager() {
+        return manager;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return snapshot of latencies of the calls
+     */
+    public LatencyHistogram.Snapshot getLatencies() {
+        return latencies.snapshot();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latencies.snapshot().getMeanNanos() / 1000;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latencies.snapshot().getValueAtQuantile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latencies.snapshot().getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latencies.snapshot().getValueAtQuantile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latencies.snapshot().getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "MethodStats{" + manager + "." + method + ", calls=" + getCalls() + ", errors=" + getErrors() + '}';
+    }
+}
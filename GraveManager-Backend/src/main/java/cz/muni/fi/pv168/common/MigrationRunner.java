@@ -0,0 +1,163 @@
+package cz.muni.fi.pv168.common;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Applies versioned SQL scripts to the database. Each script is executed
+ * with {@link DBUtils#executeSqlScript(Connection, InputStream)} within its
+ * own transaction together with recording its version into SCHEMA_VERSION
+ * table, so each script is applied exactly once and migrations which
+ * already ran are skipped.
+ *
+ * @author Petr Adámek
+ */
+public class MigrationRunner {
+
+    private final DataSource dataSource;
+    private final Class<?> resourceBase;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    /**
+     * Creates new runner.
+     *
+     * @param dataSource datasource
+     * @param resourceBase class used for loading scripts as resources
+     */
+    public MigrationRunner(DataSource dataSource, Class<?> resourceBase) {
+        this.dataSource = dataSource;
+        this.resourceBase = resourceBase;
+    }
+
+    /**
+     * Registers migration.
+     *
+     * @param version version of the schema after applying the script, must be positive and unique
+     * @param description short description of the migration
+     * @param resource name of the script resource relative to resource base class
+     * @return this runner
+     * @throws IllegalArgumentException when version is not positive or it is already registered
+     */
+    public MigrationRunner migration(int version, String description, String resource) {
+        if (version <= 0) throw new IllegalArgumentException("version is not positive number");
+        for (Migration migration : migrations) {
+            if (migration.version == version) throw new IllegalArgumentException("duplicate version " + version);
+        }
+        migrations.add(new Migration(version, description, resource));
+        return this;
+    }
+
+    /**
+     * Returns version of the schema recorded in the database.
+     *
+     * @return current version or 0 when no migration has been applied yet
+     * @throws ServiceFailureException when db operation fails
+     */
+    public int getCurrentVersion() {
+        try (Connection conn = dataSource.getConnection()) {
+            createVersionTableIfNeeded(conn);
+            return readCurrentVersion(conn);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when reading schema version", ex);
+        }
+    }
+
+    /**
+     * Applies all migrations with version greater than the current version
+     * of the schema.
+     *
+     * @return number of applied migrations
+     * @throws ServiceFailureException when db operation or loading of some script fails
+     */
+    public int migrate() {
+        List<Migration> ordered = new ArrayList<>(migrations);
+        ordered.sort(Comparator.comparingInt(migration -> migration.version));
+        int applied = 0;
+        try (Connection conn = dataSource.getConnection()) {
+            createVersionTableIfNeeded(conn);
+            for (Migration migration : ordered) {
+                if (apply(conn, migration)) {
+                    applied++;
+                }
+            }
+        } catch (SQLException | IOException ex) {
+            throw new ServiceFailureException("Error when migrating database schema", ex);
+        }
+        return applied;
+    }
+
+    private boolean apply(Connection conn, Migration migration) throws SQLException, IOException {
+        try (PreparedStatement lockSt = conn.prepareStatement("LOCK TABLE SCHEMA_VERSION IN EXCLUSIVE MODE");
+             PreparedStatement st = conn.prepareStatement(
+                     "INSERT INTO SCHEMA_VERSION (version, description) VALUES (?,?)")) {
+            // Start transaction, lock prevents concurrent runners to apply the same script
+            conn.setAutoCommit(false);
+            lockSt.execute();
+            if (readCurrentVersion(conn) >= migration.version) {
+                conn.commit();
+                return false;
+            }
+            try (InputStream is = resourceBase.getResourceAsStream(migration.resource)) {
+                if (is == null) throw new IOException("Script " + migration.resource + " not found");
+                DBUtils.executeSqlScript(conn, is);
+            }
+            st.setInt(1, migration.version);
+            st.setString(2, migration.description);
+            st.executeUpdate();
+            conn.commit();
+            return true;
+        } catch (Exception ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static void createVersionTableIfNeeded(Connection conn) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, "SCHEMA_VERSION", null)) {
+            if (rs.next()) {
+                return;
+            }
+        }
+        try (PreparedStatement st = conn.prepareStatement(
+                "CREATE TABLE SCHEMA_VERSION (" +
+                        "VERSION INTEGER NOT NULL PRIMARY KEY, " +
+                        "DESCRIPTION VARCHAR(255), " +
+                        "APPLIED TIMESTAMP DEFAULT CURRENT_TIMESTAMP)")) {
+            st.execute();
+        } catch (SQLException ex) {
+            // table could be created by another runner in the meantime
+            if (!"X0Y32".equals(ex.getSQLState())) throw ex;
+        }
+    }
+
+    private static int readCurrentVersion(Connection conn) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("SELECT MAX(version) FROM SCHEMA_VERSION");
+             ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static class Migration {
+
+        private final int version;
+        private final String description;
+        private final String resource;
+
+        private Migration(int version, String description, String resource) {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cz.muni.fi.pv168.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of results returned by keyset pagination. The page contains
+ * opaque continuation token which can be used to get the next page. The token
+ * encodes the id of the last entity on this page, so the next page is found
+ * with index seek instead of skipping all previous rows.
+ *
+ * @param <T> type of page items
+ * @author Petr Adámek
+ */
+public final class Page<T> {
+
+    private static final String TOKEN_PREFIX = "after:";
+
+    private final List<T> items;
+    private final String nextToken;
+
+    /**
+     * Creates new page.
+     *
+     * @param items items on this page
+     * @param nextToken continuation token for the next page or null if this
+     * is the last page
+     */
+    public Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * Returns unmodifiable list of items on this page.
+     *
+     * @return items on this page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns continuation token for the next page.
+     *
+     * @return continuation token or null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * Returns true if there is the next page.
+     *
+     * @return true if there is the next page
+     */
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{" + "items=" + items + ", nextToken=" + nextToken + '}';
+    }
+
+    /**
+     * Creates page from rows returned by keyset query. The query is expected
+     * to be ordered by id and to return up to {@code limit + 1} rows; the
+     * extra row just indicates that there is the next page.
+     *
+     * @param rows rows returned by the query
+     * @param limit maximal number of items on the page
+     * @param idGetter function returning id of the item
+     * @param <T> type of page items
+     * @return page with at most {@code limit} items
+     */
+    public static <T> Page<T> fromRows(List<T> rows, int limit, ToLongFunction<T> idGetter) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(items, encodeToken(idGetter.applyAsLong(items.get(limit - 1))));
+    }
+
+    /**
+     * Creates continuation token pointing after entity with given id.
+     *
+     * @param lastId id of the last entity on the page
+     * @return continuation token
+     */
+    public static String encodeToken(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((TOKEN_PREFIX + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Returns id of the last entity on the previous page encoded in given
+     * continuation token.
+     *
+     * @param token continuation token or null for the first page
+     * @return id after which the page starts, 0 for the first page (generated
+     * ids are positive)
+     * @throws IllegalArgumentException when the token is not valid
+     */
+    public static long decodeToken(String token) {
+        if (token == null) {
+            return 0;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("invalid continuation token: " + token, ex);
+        }
+        if (!decoded.startsWith(TOKEN_PREFIX)) {
+            throw new IllegalArgumentException("invalid continuation token: " + token);
+        }
+        try {
+            return Long.parseLong(decoded.substring(TOKEN_PREFIX.length()));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid continuation token: " + token, ex);
+        }
+    }
+}
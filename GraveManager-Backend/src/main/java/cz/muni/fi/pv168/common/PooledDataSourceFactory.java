@@ -0,0 +1,136 @@
+package cz.muni.fi.pv168.common;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.time.Duration;
+
+/**
+ * Creates pooled datasource, so the managers don't pay for opening a new
+ * physical connection in each method. Closing the connection obtained from
+ * the pool just returns it back to the pool.
+ * <p>
+ * Prepared statements are not cached by the pool itself. Embedded Derby keeps
+ * compiled statements in its own statement cache shared by all connections
+ * and the managers always prepare the same literal SQL strings, so preparing
+ * statement on a pooled connection does not compile it again.
+ *
+ * @author Petr Adámek
+ */
+public class PooledDataSourceFactory {
+
+    /**
+     * Default maximal number of connections in the pool.
+     */
+    public static final int DEFAULT_POOL_SIZE = 10;
+
+    /**
+     * Default maximal time to wait for free connection.
+     */
+    public static final Duration DEFAULT_CONNECTION_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String jdbcUrl;
+    private String username;
+    private String password;
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private Duration connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+    private Duration leakDetectionThreshold = Duration.ZERO;
+
+    /**
+     * Creates new factory.
+     *
+     * @param jdbcUrl JDBC URL of the database, e.g. {@code jdbc:derby:memory:gravemgr;create=true}
+     */
+    public PooledDataSourceFactory(String jdbcUrl) {
+        if (jdbcUrl == null) throw new IllegalArgumentException("jdbcUrl is null");
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    /**
+     * Sets credentials used for opening connections.
+     *
+     * @param username user name
+     * @param password password
+     * @return this factory
+     */
+    public PooledDataSourceFactory credentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+        return this;
+    }
+
+    /**
+     * Sets maximal number of connections in the pool.
+     *
+     * @param poolSize maximal number of connections
+     * @return this factory
+     * @throws IllegalArgumentException when poolSize is not positive number
+     */
+    public PooledDataSourceFactory poolSize(int poolSize) {
+        if (poolSize <= 0) throw new IllegalArgumentException("poolSize is not positive number");
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    /**
+     * Sets maximal time to wait for free connection. When no connection
+     * becomes free within this time, {@code getConnection()} throws
+     * SQLException.
+     *
+     * @param connectionTimeout maximal time to wait, at least 250 ms
+     * @return this factory
+     * @throws IllegalArgumentException when connectionTimeout is null or shorter than 250 ms
+     */
+    public PooledDataSourceFactory connectionTimeout(Duration connectionTimeout) {
+        if (connectionTimeout == null) throw new IllegalArgumentException("connectionTimeout is null");
+        if (connectionTimeout.toMillis() < 250) throw new IllegalArgumentException("connectionTimeout is shorter than 250 ms");
+        this.connectionTimeout = connectionTimeout;
+        return this;
+    }
+
+    /**
+     * Enables leak detection. When connection is not returned to the pool
+     * within given time, a warning with stack trace of the code which
+     * borrowed the connection is logged. HikariCP logs through SLF4J, so the
+     * application must provide some SLF4J binding (e.g. logback-classic),
+     * otherwise the warnings are silently dropped.
+     *
+     * @param leakDetectionThreshold time after which not returned connection
+     * is reported, zero disables leak detection, otherwise at least 2 s
+     * @return this factory
+     * @throws IllegalArgumentException when leakDetectionThreshold is null,
+     * negative or shorter than 2 s
+     */
+    public PooledDataSourceFactory leakDetectionThreshold(Duration leakDetectionThreshold) {
+        if (leakDetectionThreshold == null) throw new IllegalArgumentException("leakDetectionThreshold is null");
+        if (leakDetectionThreshold.isNegative()) throw new IllegalArgumentException("leakDetectionThreshold is negative");
+        if (!leakDetectionThreshold.isZero() && leakDetectionThreshold.toMillis() < 2000) {
+            throw new IllegalArgumentException("leakDetectionThreshold is shorter than 2 s");
+        }
+        this.leakDetectionThreshold = leakDetectionThreshold;
+        return this;
+    }
+
+    /**
+     * Creates new pooled datasource. The returned datasource is also
+     * {@link AutoCloseable}, it should be closed when it is not needed
+     * anymore to close all pooled connections.
+     *
+     * @return pooled datasource
+     * @throws ServiceFailureException when the pool can't be initialized
+     */
+    public HikariDataSource create() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(poolSize);
+        config.setConnectionTimeout(connectionTimeout.toMillis());
+        config.setLeakDetectionThreshold(leakDetectionThreshold.toMillis());
+        try {
+            return new HikariDataSource(config);
+        } catch (RuntimeException ex) {
+            throw new ServiceFailureException("Error when creating connection pool", ex);
+        }
+    }
+}
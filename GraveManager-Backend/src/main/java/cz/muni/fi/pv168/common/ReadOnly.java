@@ -0,0 +1,20 @@
+package cz.muni.fi.pv168.common;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks manager method which only reads data from the database. When the
+ * manager is wrapped by {@link ReadWriteRoutingDataSource#routeReads(Class, Object)},
+ * such method may be executed on read replica.
+ *
+ * @author Petr Adámek
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadOnly {
+}
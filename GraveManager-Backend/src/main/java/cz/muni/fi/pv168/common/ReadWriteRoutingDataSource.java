@@ -0,0 +1,206 @@
+package cz.muni.fi.pv168.common;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * DataSource which sends reads to read replica and everything else to the
+ * primary database, so the load of queries can be moved away from the
+ * database handling the changes.
+ * <p>
+ * The managers obtain connections directly from the data source, so they
+ * can't tell which connection is used for reading. Therefore the routing is
+ * driven by the manager methods: manager wrapped by
+ * {@link #routeReads(Class, Object)} executes methods annotated with
+ * {@link ReadOnly} in read-only mode, and connections obtained in this mode
+ * come from the replica. All other connections come from the primary
+ * database.
+ * <p>
+ * The replica is usually a bit behind the primary database, so a client
+ * could miss its own change when it reads it back. To avoid this, the
+ * client can open {@link Scope} (e.g. for one request) with
+ * {@link #openScope()}. Once a connection to the primary database is
+ * obtained within the scope, all following reads in the same scope go to
+ * the primary database too.
+ * <p>
+ * Read-only mode and scopes are bound to the current thread. Streams
+ * returned by read-only methods hold replica connection until they are
+ * closed.
+ *
+ * @author Petr Adámek
+ */
+public class ReadWriteRoutingDataSource implements DataSource {
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ThreadLocal<Boolean> readOnly = ThreadLocal.withInitial(() -> false);
+    private final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    /**
+     * Creates new routing data source.
+     *
+     * @param primary data source of the primary database
+     * @param replica data source of the read replica
+     * @throws IllegalArgumentException when some argument is null
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        if (primary == null) throw new IllegalArgumentException("primary is null");
+        if (replica == null) throw new IllegalArgumentException("replica is null");
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    /**
+     * Returns proxy of given manager, which executes methods annotated
+     * with {@link ReadOnly} in read-only mode, so they use the replica.
+     * The manager must use this data source.
+     *
+     * @param type interface of the manager
+     * @param manager manager
+     * @param <T> type of the manager
+     * @return proxy of the manager
+     * @throws IllegalArgumentException when some argument is null or when
+     * type is not an interface
+     */
+    public <T> T routeReads(Class<T> type, T manager) {
+        if (type == null) throw new IllegalArgumentException("type is null");
+        if (manager == null) throw new IllegalArgumentException("manager is null");
+        if (!type.isInterface()) throw new IllegalArgumentException(type.getName() + " is not an interface");
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Boolean previous = readOnly.get();
+            readOnly.set(method.isAnnotationPresent(ReadOnly.class));
+            try {
+                return method.invoke(manager, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            } finally {
+                readOnly.set(previous);
+            }
+        }));
+    }
+
+    /**
+     * Opens scope of the current thread in which the reads following a
+     * change go to the primary database. Scopes can be nested, the change
+     * made in the inner scope is visible to the outer scope too.
+     *
+     * @return new scope, which must be closed by the same thread
+     */
+    public Scope openScope() {
+        Scope scope = new Scope(currentScope.get());
+        currentScope.set(scope);
+        return scope;
+    }
+
+    private DataSource route() {
+        Scope scope = currentScope.get();
+        if (readOnly.get() && (scope == null || !scope.written)) {
+            return replica;
+        }
+        if (scope != null) {
+            scope.written = true;
+        }
+        return primary;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route().getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+        replica.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+        replica.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    /**
+     * Scope with read-your-writes consistency, see {@link #openScope()}.
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final Scope outer;
+        private boolean written;
+        private boolean closed;
+
+        private Scope(Scope outer) {
+            this.outer = outer;
+        }
+
+        /**
+         * @return true if connection to the primary database was obtained
+         * within this scope, so the reads go to the primary database
+         */
+        public boolean isWritten() {
+            return written;
+        }
+
+        /**
+         * Closes this scope, the outer scope becomes current again.
+         *
+         * @throws IllegalStateException when this scope is not the innermost
+         * open scope of the current thread
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            if (currentScope.get() != this) {
+                throw new IllegalStateException("scope is not the innermost open scope of current thread");
+            }
+            closed = true;
+            if (outer == null) {
+                currentScope.remove();
+            } else {
+                outer.written |= written;
+                currentScope.set(outer);
+            }
+        }
+    }
+}
@@ -7,6 +7,8 @@ package cz.muni.fi.pv168.common;
  */
 public class ServiceFailureException extends RuntimeException {
 
+    private static final long serialVersionUID = 1L;
+
     public ServiceFailureException(String msg) {
         super(msg);
     }
@@ -7,6 +7,8 @@ package cz.muni.fi.pv168.common;
  */
 public class ValidationException extends RuntimeException {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates a new instance of
      * <code>ValidationException</code> without detail message.
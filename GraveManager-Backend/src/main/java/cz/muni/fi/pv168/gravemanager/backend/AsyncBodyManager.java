@@ -0,0 +1,97 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.Page;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link BodyManager}, which allows to issue
+ * independent lookups concurrently. Each method returns future result without
+ * waiting for the operation, it waits only when the limit of concurrently
+ * running operations is reached (see {@link cz.muni.fi.pv168.common.AsyncExecutor}).
+ * Exceptions documented in {@link BodyManager} complete the returned future
+ * exceptionally, they are not thrown by the method itself.
+ * <p>
+ * Streams are not provided, they hold database connection until they
+ * are closed, use {@link BodyManager#streamAllBodies()} instead.
+ *
+ * @author Petr Adámek
+ */
+public interface AsyncBodyManager {
+
+    /**
+     * Asynchronous variant of {@link BodyManager#createBody(Body)}.
+     *
+     * @param body body
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> createBody(Body body);
+
+    /**
+     * Asynchronous variant of {@link BodyManager#createBodies(Collection)}.
+     *
+     * @param bodies bodies
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> createBodies(Collection<Body> bodies);
+
+    /**
+     * Asynchronous variant of {@link BodyManager#getBody(Long)}.
+     *
+     * @param id primary key of requested body
+     * @return future result
+     */
+    CompletableFuture<Body> getBody(Long id);
+
+    /**
+     * Asynchronous variant of {@link BodyManager#updateBody(Body)}.
+     *
+     * @param body body
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> updateBody(Body body);
+
+    /**
+     * Asynchronous variant of {@link BodyManager#deleteBody(Body)}.
+     *
+     * @param body body
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> deleteBody(Body body);
+
+    /**
+     * Asynchronous variant of {@link BodyManager#findAllBodies()}.
+     *
+     * @return future result
+     */
+    CompletableFuture<List<Body>> findAllBodies();
+
+    /**
+     * Asynchronous variant of {@link BodyManager#findBodiesDiedBetween(LocalDate, LocalDate)}.
+     *
+     * @param from first day of the interval
+     * @param to last day of the interval
+     * @return future result
+     */
+    CompletableFuture<List<Body>> findBodiesDiedBetween(LocalDate from, LocalDate to);
+
+    /**
+     * Asynchronous variant of {@link BodyManager#findBodiesPage(String, int)}.
+     *
+     * @param token continuation token from the previous page or null for the first page
+     * @param limit maximal number of entities on the page
+     * @return future result
+     */
+    CompletableFuture<Page<Body>> findBodiesPage(String token, int limit);
+
+    /**
+     * Asynchronous variant of {@link BodyManager#findAllBodiesAsTable()}.
+     *
+     * @return future result
+     */
+    CompletableFuture<BodyTable> findAllBodiesAsTable();
+
+}
@@ -0,0 +1,80 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.AsyncExecutor;
+import cz.muni.fi.pv168.common.Page;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation of {@link AsyncBodyManager}, which runs methods of given
+ * {@link BodyManager} in {@link AsyncExecutor}.
+ *
+ * @author Petr Adámek
+ */
+public class AsyncBodyManagerImpl implements AsyncBodyManager {
+
+    private final BodyManager delegate;
+    private final AsyncExecutor executor;
+
+    /**
+     * Creates new async manager.
+     *
+     * @param delegate manager which performs the operations
+     * @param executor executor for running the operations
+     * @throws IllegalArgumentException when delegate or executor is null
+     */
+    public AsyncBodyManagerImpl(BodyManager delegate, AsyncExecutor executor) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> createBody(Body body) {
+        return executor.run(() -> delegate.createBody(body));
+    }
+
+    @Override
+    public CompletableFuture<Void> createBodies(Collection<Body> bodies) {
+        return executor.run(() -> delegate.createBodies(bodies));
+    }
+
+    @Override
+    public CompletableFuture<Body> getBody(Long id) {
+        return executor.supply(() -> delegate.getBody(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateBody(Body body) {
+        return executor.run(() -> delegate.updateBody(body));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteBody(Body body) {
+        return executor.run(() -> delegate.deleteBody(body));
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findAllBodies() {
+        return executor.supply(() -> delegate.findAllBodies());
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findBodiesDiedBetween(LocalDate from, LocalDate to) {
+        return executor.supply(() -> delegate.findBodiesDiedBetween(from, to));
+    }
+
+    @Override
+    public CompletableFuture<Page<Body>> findBodiesPage(String token, int limit) {
+        return executor.supply(() -> delegate.findBodiesPage(token, limit));
+    }
+
+    @Override
+    public CompletableFuture<BodyTable> findAllBodiesAsTable() {
+        return executor.supply(() -> delegate.findAllBodiesAsTable());
+    }
+}
@@ -0,0 +1,103 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link CemeteryManager}, which allows to issue
+ * independent lookups concurrently. Each method returns future result without
+ * waiting for the operation, it waits only when the limit of concurrently
+ * running operations is reached (see {@link cz.muni.fi.pv168.common.AsyncExecutor}).
+ * Exceptions documented in {@link CemeteryManager} complete the returned future
+ * exceptionally, they are not thrown by the method itself.
+ * <p>
+ * Streams are not provided, they hold database connection until they
+ * are closed, use {@link CemeteryManager#streamUnburiedBodies()} instead.
+ *
+ * @author Petr Adámek
+ */
+public interface AsyncCemeteryManager {
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#findGraveWithBody(Body)}.
+     *
+     * @param body body
+     * @return future result
+     */
+    CompletableFuture<Grave> findGraveWithBody(Body body);
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#findBodiesInGrave(Grave)}.
+     *
+     * @param grave grave
+     * @return future result
+     */
+    CompletableFuture<List<Body>> findBodiesInGrave(Grave grave);
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#findBodiesInGraves(Collection)}.
+     *
+     * @param graves graves
+     * @return future result
+     */
+    CompletableFuture<Map<Grave, List<Body>>> findBodiesInGraves(Collection<Grave> graves);
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#findGravesWithBodies(Collection)}.
+     *
+     * @param bodies bodies
+     * @return future result
+     */
+    CompletableFuture<Map<Body, Grave>> findGravesWithBodies(Collection<Body> bodies);
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#findUnburiedBodies()}.
+     *
+     * @return future result
+     */
+    CompletableFuture<List<Body>> findUnburiedBodies();
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#findEmptyGraves()}.
+     *
+     * @return future result
+     */
+    CompletableFuture<List<Grave>> findEmptyGraves();
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#findGravesWithSomeFreeSpace()}.
+     *
+     * @return future result
+     */
+    CompletableFuture<List<Grave>> findGravesWithSomeFreeSpace();
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#putBodyIntoGrave(Body, Grave)}.
+     *
+     * @param body body
+     * @param grave grave
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> putBodyIntoGrave(Body body, Grave grave);
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#buryAll(Collection, PlacementPolicy)}.
+     *
+     * @param bodies bodies
+     * @param policy policy for choosing graves
+     * @return future result
+     */
+    CompletableFuture<Map<Body, Grave>> buryAll(Collection<Body> bodies, PlacementPolicy policy);
+
+    /**
+     * Asynchronous variant of {@link CemeteryManager#removeBodyFromGrave(Body, Grave)}.
+     *
+     * @param body body
+     * @param grave grave
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> removeBodyFromGrave(Body body, Grave grave);
+
+}
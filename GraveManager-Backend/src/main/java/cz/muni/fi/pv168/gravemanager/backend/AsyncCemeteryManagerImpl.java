@@ -0,0 +1,83 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.AsyncExecutor;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation of {@link AsyncCemeteryManager}, which runs methods of given
+ * {@link CemeteryManager} in {@link AsyncExecutor}.
+ *
+ * @author Petr Adámek
+ */
+public class AsyncCemeteryManagerImpl implements AsyncCemeteryManager {
+
+    private final CemeteryManager delegate;
+    private final AsyncExecutor executor;
+
+    /**
+     * Creates new async manager.
+     *
+     * @param delegate manager which performs the operations
+     * @param executor executor for running the operations
+     * @throws IllegalArgumentException when delegate or executor is null
+     */
+    public AsyncCemeteryManagerImpl(CemeteryManager delegate, AsyncExecutor executor) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Grave> findGraveWithBody(Body body) {
+        return executor.supply(() -> delegate.findGraveWithBody(body));
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findBodiesInGrave(Grave grave) {
+        return executor.supply(() -> delegate.findBodiesInGrave(grave));
+    }
+
+    @Override
+    public CompletableFuture<Map<Grave, List<Body>>> findBodiesInGraves(Collection<Grave> graves) {
+        return executor.supply(() -> delegate.findBodiesInGraves(graves));
+    }
+
+    @Override
+    public CompletableFuture<Map<Body, Grave>> findGravesWithBodies(Collection<Body> bodies) {
+        return executor.supply(() -> delegate.findGravesWithBodies(bodies));
+    }
+
+    @Override
+    public CompletableFuture<List<Body>> findUnburiedBodies() {
+        return executor.supply(() -> delegate.findUnburiedBodies());
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findEmptyGraves() {
+        return executor.supply(() -> delegate.findEmptyGraves());
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findGravesWithSomeFreeSpace() {
+        return executor.supply(() -> delegate.findGravesWithSomeFreeSpace());
+    }
+
+    @Override
+    public CompletableFuture<Void> putBodyIntoGrave(Body body, Grave grave) {
+        return executor.run(() -> delegate.putBodyIntoGrave(body, grave));
+    }
+
+    @Override
+    public CompletableFuture<Map<Body, Grave>> buryAll(Collection<Body> bodies, PlacementPolicy policy) {
+        return executor.supply(() -> delegate.buryAll(bodies, policy));
+    }
+
+    @Override
+    public CompletableFuture<Void> removeBodyFromGrave(Body body, Grave grave) {
+        return executor.run(() -> delegate.removeBodyFromGrave(body, grave));
+    }
+}
@@ -0,0 +1,80 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.Page;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of {@link GraveManager}, which allows to issue
+ * independent lookups concurrently. Each method returns future result without
+ * waiting for the operation, it waits only when the limit of concurrently
+ * running operations is reached (see {@link cz.muni.fi.pv168.common.AsyncExecutor}).
+ * Exceptions documented in {@link GraveManager} complete the returned future
+ * exceptionally, they are not thrown by the method itself.
+ * <p>
+ * Streams are not provided, they hold database connection until they
+ * are closed, use {@link GraveManager#streamAllGraves()} instead.
+ *
+ * @author Petr Adámek
+ */
+public interface AsyncGraveManager {
+
+    /**
+     * Asynchronous variant of {@link GraveManager#createGrave(Grave)}.
+     *
+     * @param grave grave
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> createGrave(Grave grave);
+
+    /**
+     * Asynchronous variant of {@link GraveManager#createGraves(Collection)}.
+     *
+     * @param graves graves
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> createGraves(Collection<Grave> graves);
+
+    /**
+     * Asynchronous variant of {@link GraveManager#getGrave(Long)}.
+     *
+     * @param id primary key of requested grave
+     * @return future result
+     */
+    CompletableFuture<Grave> getGrave(Long id);
+
+    /**
+     * Asynchronous variant of {@link GraveManager#updateGrave(Grave)}.
+     *
+     * @param grave grave
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> updateGrave(Grave grave);
+
+    /**
+     * Asynchronous variant of {@link GraveManager#deleteGrave(Grave)}.
+     *
+     * @param grave grave
+     * @return future completed when the operation finishes
+     */
+    CompletableFuture<Void> deleteGrave(Grave grave);
+
+    /**
+     * Asynchronous variant of {@link GraveManager#findAllGraves()}.
+     *
+     * @return future result
+     */
+    CompletableFuture<List<Grave>> findAllGraves();
+
+    /**
+     * Asynchronous variant of {@link GraveManager#findGravesPage(String, int)}.
+     *
+     * @param token continuation token from the previous page or null for the first page
+     * @param limit maximal number of entities on the page
+     * @return future result
+     */
+    CompletableFuture<Page<Grave>> findGravesPage(String token, int limit);
+
+}
@@ -0,0 +1,69 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.AsyncExecutor;
+import cz.muni.fi.pv168.common.Page;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation of {@link AsyncGraveManager}, which runs methods of given
+ * {@link GraveManager} in {@link AsyncExecutor}.
+ *
+ * @author Petr Adámek
+ */
+public class AsyncGraveManagerImpl implements AsyncGraveManager {
+
+    private final GraveManager delegate;
+    private final AsyncExecutor executor;
+
+    /**
+     * Creates new async manager.
+     *
+     * @param delegate manager which performs the operations
+     * @param executor executor for running the operations
+     * @throws IllegalArgumentException when delegate or executor is null
+     */
+    public AsyncGraveManagerImpl(GraveManager delegate, AsyncExecutor executor) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> createGrave(Grave grave) {
+        return executor.run(() -> delegate.createGrave(grave));
+    }
+
+    @Override
+    public CompletableFuture<Void> createGraves(Collection<Grave> graves) {
+        return executor.run(() -> delegate.createGraves(graves));
+    }
+
+    @Override
+    public CompletableFuture<Grave> getGrave(Long id) {
+        return executor.supply(() -> delegate.getGrave(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateGrave(Grave grave) {
+        return executor.run(() -> delegate.updateGrave(grave));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteGrave(Grave grave) {
+        return executor.run(() -> delegate.deleteGrave(grave));
+    }
+
+    @Override
+    public CompletableFuture<List<Grave>> findAllGraves() {
+        return executor.supply(() -> delegate.findAllGraves());
+    }
+
+    @Override
+    public CompletableFuture<Page<Grave>> findGravesPage(String token, int limit) {
+        return executor.supply(() -> delegate.findGravesPage(token, limit));
+    }
+}
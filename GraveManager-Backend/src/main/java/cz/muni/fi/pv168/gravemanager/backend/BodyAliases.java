@@ -0,0 +1,130 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Directory of bodies which were moved into another shard, see
+ * {@link Shards}. Moved body keeps its global id, the id is stored in table
+ * BODY_ALIAS in the shard which holds the body now. The row is deleted
+ * together with the body. Aliases from all shards are loaded into memory
+ * when the shards are opened, so translation of ids needs no queries.
+ *
+ * @author Petr Adámek
+ */
+final class BodyAliases {
+
+    private final List<DataSource> dataSources;
+    private final NavigableMap<Long, Location> locationByGlobalId = new ConcurrentSkipListMap<>();
+    private final List<Map<Long, Long>> globalIdByLocalId = new ArrayList<>();
+
+    /**
+     * Creates new directory and loads aliases from all shards.
+     *
+     * @throws ServiceFailureException when db operation fails
+     */
+    BodyAliases(List<DataSource> dataSources) {
+        this.dataSources = dataSources;
+        for (int shard = 0; shard < dataSources.size(); shard++) {
+            globalIdByLocalId.add(new ConcurrentHashMap<>());
+            try (Connection conn = dataSources.get(shard).getConnection();
+                 PreparedStatement st = conn.prepareStatement("SELECT bodyId, globalId FROM Body_Alias");
+                 ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    put(rs.getLong(2), new Location(shard, rs.getLong(1)));
+                }
+            } catch (SQLException ex) {
+                throw new ServiceFailureException("Error when loading body aliases from the db", ex);
+            }
+        }
+    }
+
+    /**
+     * @return location of moved body with given global id or null when the
+     * body was not moved
+     */
+    Location get(long globalId) {
+        return locationByGlobalId.get(globalId);
+    }
+
+    /**
+     * @return global id of moved body stored in given shard with given local
+     * id or null when the body was not moved
+     */
+    Long getGlobalId(int shard, long localId) {
+        return globalIdByLocalId.get(shard).get(localId);
+    }
+
+    /**
+     * @return moved bodies with global ids in given range ordered by global id
+     */
+    NavigableMap<Long, Location> between(long after, long last) {
+        return locationByGlobalId.subMap(after, false, last, true);
+    }
+
+    /**
+     * Stores alias of body with given local id into given shard. The body
+     * is still found at its previous location until {@link #moved} is called.
+     *
+     * @throws ServiceFailureException when db operation fails
+     */
+    void insert(int shard, long localId, long globalId) {
+        try (Connection conn = dataSources.get(shard).getConnection();
+             PreparedStatement st = conn.prepareStatement("INSERT INTO Body_Alias (bodyId, globalId) VALUES (?, ?)")) {
+            st.setLong(1, localId);
+            st.setLong(2, globalId);
+            st.executeUpdate();
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when inserting body alias into the db", ex);
+        }
+    }
+
+    /**
+     * Updates location of the body after it was moved.
+     */
+    synchronized void moved(long globalId, Location location) {
+        remove(globalId);
+        put(globalId, location);
+    }
+
+    /**
+     * Forgets the location of deleted body. The row in the database is
+     * deleted together with the body.
+     */
+    synchronized void remove(long globalId) {
+        Location location = locationByGlobalId.remove(globalId);
+        if (location != null) {
+            globalIdByLocalId.get(location.shard).remove(location.localId);
+        }
+    }
+
+    private void put(long globalId, Location location) {
+        locationByGlobalId.put(globalId, location);
+        globalIdByLocalId.get(location.shard).put(location.localId, globalId);
+    }
+
+    /**
+     * Shard and id in the shard of moved body.
+     */
+    static final class Location {
+
+        final int shard;
+        final long localId;
+
+        Location(int shard, long localId) {
+            this.shard = shard;
+            this.localId = localId;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package cz.muni.fi.pv168.gravemanager.backend;
 
 import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ReadOnly;
 import cz.muni.fi.pv168.common.ServiceFailureException;
 import cz.muni.fi.pv168.common.ValidationException;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This service allows to manipulate with bodies.
@@ -25,6 +30,21 @@ public interface BodyManager {
      * @throws ServiceFailureException when db operation fails.
      */
     void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException;
+
+    /**
+     * Stores all given bodies into database within single transaction. Ids
+     * for the new bodies are automatically generated and stored into id
+     * attribute of each body. Either all bodies are stored or none of them.
+     *
+     * @param bodies bodies to be created.
+     * @throws IllegalArgumentException when bodies collection is null or it
+     * contains null.
+     * @throws IllegalEntityException when some body has already assigned id.
+     * @throws ValidationException when some body breaks validation rules
+     * (see {@link #createBody(Body)}).
+     * @throws ServiceFailureException when db operation fails.
+     */
+    void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException;
     
     /**
      * Returns body with given id.
@@ -34,6 +54,7 @@ public interface BodyManager {
      * @throws IllegalArgumentException when given id is null.
      * @throws ServiceFailureException when db operation fails.
      */
+    @ReadOnly
     Body getBody(Long id) throws ServiceFailureException;
     
     /**
@@ -65,6 +86,64 @@ public interface BodyManager {
      * @return list of all bodies in database.
      * @throws ServiceFailureException when db operation fails.
      */
+    @ReadOnly
     List<Body> findAllBodies() throws ServiceFailureException;
+
+    /**
+     * Returns bodies which died within given interval, including both
+     * bounds. Bodies with unknown date of death are not returned.
+     *
+     * @param from first day of the interval.
+     * @param to last day of the interval.
+     * @return list of bodies ordered by date of death, bodies which died on
+     * the same day are ordered by id.
+     * @throws IllegalArgumentException when from or to is null.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    @ReadOnly
+    List<Body> findBodiesDiedBetween(LocalDate from, LocalDate to) throws ServiceFailureException;
+
+    /**
+     * Returns one page of bodies ordered by id. The first page is returned
+     * when the token is null, next pages are obtained by passing continuation
+     * token returned in the previous page. Each page is found with index
+     * seek, so the time needed to get a page does not depend on how deep in
+     * the table the page is.
+     *
+     * @param token continuation token from the previous page or null for
+     * the first page.
+     * @param limit maximal number of bodies on the page.
+     * @return page of bodies.
+     * @throws IllegalArgumentException when limit is not positive number or
+     * token is not valid.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    @ReadOnly
+    Page<Body> findBodiesPage(String token, int limit) throws ServiceFailureException;
+
+    /**
+     * Returns stream of all bodies in the database. The bodies are read lazily from
+     * open database cursor, so memory consumption does not depend on the
+     * number of bodies. The stream holds database connection until it is
+     * closed, so it must be always closed, preferably with try-with-resources
+     * statement.
+     *
+     * @return stream of all bodies in database.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    @ReadOnly
+    Stream<Body> streamAllBodies() throws ServiceFailureException;
+
+    /**
+     * Returns all bodies in the database in columnar {@link BodyTable}, in
+     * no particular order. The table needs much less memory than list of
+     * Body objects and it allows filtering and aggregation without creating
+     * them, so it is suitable for analytics over all bodies.
+     *
+     * @return table of all bodies in database.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    @ReadOnly
+    BodyTable findAllBodiesAsTable() throws ServiceFailureException;
     
 }
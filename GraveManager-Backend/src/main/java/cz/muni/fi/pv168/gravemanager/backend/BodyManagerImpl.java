@@ -2,6 +2,7 @@ package cz.muni.fi.pv168.gravemanager.backend;
 
 import cz.muni.fi.pv168.common.DBUtils;
 import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
 import cz.muni.fi.pv168.common.ServiceFailureException;
 import cz.muni.fi.pv168.common.ValidationException;
 
@@ -10,7 +11,11 @@ import java.sql.*;
 import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This class implements BodyManager service.
@@ -19,8 +24,26 @@ import java.util.List;
  */
 public class BodyManagerImpl implements BodyManager {
 
+    /**
+     * Default number of rows sent to the database in one JDBC batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Default number of rows fetched from the database at once by the
+     * methods returning stream.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    /**
+     * Order of bodies returned by {@link #findBodiesDiedBetween(LocalDate, LocalDate)}.
+     */
+    static final Comparator<Body> BY_DIED = Comparator.comparing(Body::getDied).thenComparing(Body::getId);
+
     private final DataSource dataSource;
     private final Clock clock;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     @SuppressWarnings("WeakerAccess")
     public BodyManagerImpl(DataSource dataSource, Clock clock) {
@@ -28,6 +51,30 @@ public class BodyManagerImpl implements BodyManager {
         this.clock = clock;
     }
 
+    /**
+     * Sets number of rows sent to the database in one JDBC batch by
+     * {@link #createBodies(Collection)}.
+     *
+     * @param batchSize number of rows in one batch
+     * @throws IllegalArgumentException when batchSize is not positive number
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize is not positive number");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets number of rows fetched from the database at once by the methods
+     * returning stream.
+     *
+     * @param fetchSize number of rows fetched at once
+     * @throws IllegalArgumentException when fetchSize is not positive number
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize is not positive number");
+        this.fetchSize = fetchSize;
+    }
+
     @Override
     public List<Body> findAllBodies() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
@@ -38,9 +85,78 @@ public class BodyManagerImpl implements BodyManager {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bodies are found with range scan of the index on date of death,
+     * so the time does not depend on the number of bodies outside the
+     * interval.
+     */
+    @Override
+    public List<Body> findBodiesDiedBetween(LocalDate from, LocalDate to) throws ServiceFailureException {
+        if (from == null) throw new IllegalArgumentException("from is null");
+        if (to == null) throw new IllegalArgumentException("to is null");
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     // Derby estimates a quarter of the table for range with parameters,
+                     // so it would prefer table scan although the interval is usually short
+                     "SELECT id, name, gender, born, died, vampire FROM Body --DERBY-PROPERTIES index=BODY_DIED_IDX\n" +
+                             "WHERE died BETWEEN ? AND ? ORDER BY died, id")) {
+            st.setDate(1, toSqlDate(from));
+            st.setDate(2, toSqlDate(to));
+            return executeQueryForMultipleBodies(st);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting bodies died between " + from + " and " + to + " from DB", ex);
+        }
+    }
+
+    @Override
+    public Page<Body> findBodiesPage(String token, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long afterId = Page.decodeToken(token);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, name, gender, born, died, vampire FROM Body WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY")) {
+            st.setLong(1, afterId);
+            // one extra row tells whether there is the next page
+            st.setLong(2, limit + 1L);
+            return Page.fromRows(executeQueryForMultipleBodies(st), limit, Body::getId);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting page of bodies from DB", ex);
+        }
+    }
+
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        try {
+            return DBUtils.stream(dataSource, "SELECT id, name, gender, born, died, vampire FROM Body",
+                    fetchSize, BodyRowMapper::new);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting all bodies from DB", ex);
+        }
+    }
+
+    @Override
+    public BodyTable findAllBodiesAsTable() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, name, gender, born, died, vampire FROM Body")) {
+            st.setFetchSize(fetchSize);
+            try (ResultSet rs = st.executeQuery()) {
+                BodyTable.Builder builder = new BodyTable.Builder(rs);
+                while (rs.next()) {
+                    builder.addRow(rs);
+                }
+                return builder.build();
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting all bodies from DB", ex);
+        }
+    }
+
     @Override
     public void createBody(Body body) throws ServiceFailureException {
-        validate(body);
+        validate(body, clock);
         if (body.getId() != null) throw new IllegalEntityException("body id is already set");
 
         try (Connection conn = dataSource.getConnection();
@@ -67,6 +183,48 @@ public class BodyManagerImpl implements BodyManager {
         }
     }
 
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        for (Body body : bodies) {
+            validate(body, clock);
+            if (body.getId() != null) throw new IllegalEntityException("body id is already set");
+        }
+        if (bodies.isEmpty()) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement lockSt = conn.prepareStatement("LOCK TABLE Body IN EXCLUSIVE MODE");
+                 PreparedStatement st = conn.prepareStatement(
+                         "INSERT INTO Body (name,gender,born,died,vampire) VALUES (?,?,?,?,?)",
+                         Statement.RETURN_GENERATED_KEYS)) {
+                // Start transaction, exclusive lock guarantees that generated ids are consecutive
+                conn.setAutoCommit(false);
+                lockSt.execute();
+                List<Long> ids = DBUtils.insertInBatches(st, bodies, batchSize, (insertSt, body) -> {
+                    insertSt.setString(1, body.getName());
+                    insertSt.setString(2, toString(body.getGender()));
+                    insertSt.setDate(3, toSqlDate(body.getBorn()));
+                    insertSt.setDate(4, toSqlDate(body.getDied()));
+                    insertSt.setBoolean(5, body.isVampire());
+                });
+                conn.commit();
+                // ids are assigned only after successful commit
+                Iterator<Long> idIterator = ids.iterator();
+                for (Body body : bodies) {
+                    body.setId(idIterator.next());
+                }
+            } catch (Exception ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when inserting bodies into db", ex);
+        }
+    }
+
     @Override
     public Body getBody(Long id) throws ServiceFailureException {
         if (id == null) throw new IllegalArgumentException("id is null");
@@ -76,7 +234,7 @@ public class BodyManagerImpl implements BodyManager {
             st.setLong(1, id);
             try (ResultSet rs = st.executeQuery()) {
                 if (rs.next()) {
-                    return rowToBody(rs);
+                    return new BodyRowMapper(rs).mapRow(rs);
                 } else {
                     return null;
                 }
@@ -88,7 +246,7 @@ public class BodyManagerImpl implements BodyManager {
 
     @Override
     public void updateBody(Body body) throws ServiceFailureException {
-        validate(body);
+        validate(body, clock);
 
         if (body.getId() == null) throw new IllegalEntityException("body id is null");
 
@@ -114,11 +272,24 @@ public class BodyManagerImpl implements BodyManager {
         if (body == null) throw new IllegalArgumentException("body is null");
         if (body.getId() == null) throw new IllegalEntityException("body id is null");
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement st = conn.prepareStatement("DELETE FROM Body WHERE id = ?")) {
-            st.setLong(1, body.getId());
-            int count = st.executeUpdate();
-            if (count != 1) throw new IllegalEntityException("deleted " + count + " instead of 1 body");
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement occupiedSt = conn.prepareStatement(
+                    "UPDATE Grave SET occupied = occupied - 1 WHERE id = (SELECT graveId FROM Body WHERE id = ?)");
+                 PreparedStatement st = conn.prepareStatement("DELETE FROM Body WHERE id = ?")) {
+                // Start transaction so that the body is deleted together with decreasing occupancy of its grave
+                conn.setAutoCommit(false);
+                occupiedSt.setLong(1, body.getId());
+                occupiedSt.executeUpdate();
+                st.setLong(1, body.getId());
+                int count = st.executeUpdate();
+                if (count != 1) throw new IllegalEntityException("deleted " + count + " instead of 1 body");
+                conn.commit();
+            } catch (Exception ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException ex) {
             throw new ServiceFailureException("Error when deleting body from the db", ex);
         }
@@ -126,26 +297,16 @@ public class BodyManagerImpl implements BodyManager {
 
     static List<Body> executeQueryForMultipleBodies(PreparedStatement st) throws SQLException {
         try (ResultSet rs = st.executeQuery()) {
+            BodyRowMapper mapper = new BodyRowMapper(rs);
             List<Body> result = new ArrayList<>();
             while (rs.next()) {
-                result.add(rowToBody(rs));
+                result.add(mapper.mapRow(rs));
             }
             return result;
         }
     }
 
-    static private Body rowToBody(ResultSet rs) throws SQLException {
-        Body body = new Body();
-        body.setId(rs.getLong("id"));
-        body.setName(rs.getString("name"));
-        body.setGender(toGender(rs.getString("gender")));
-        body.setBorn(toLocalDate(rs.getDate("born")));
-        body.setDied(toLocalDate(rs.getDate("died")));
-        body.setVampire(rs.getBoolean("vampire"));
-        return body;
-    }
-
-    private void validate(Body body) {
+    static void validate(Body body, Clock clock) {
         if (body == null) {
             throw new IllegalArgumentException("grave is null");
         }
@@ -167,20 +328,12 @@ public class BodyManagerImpl implements BodyManager {
         }
     }
 
-    private static Gender toGender(String gender) {
-        return gender == null ? null : Gender.valueOf(gender);
-    }
-
-    private static String toString(Gender gender) {
+    static String toString(Gender gender) {
         return gender == null ? null : gender.name();
     }
 
-    private static Date toSqlDate(LocalDate localDate) {
+    static Date toSqlDate(LocalDate localDate) {
         return localDate == null ? null : Date.valueOf(localDate);
     }
 
-    private static LocalDate toLocalDate(Date date) {
-        return date == null ? null : date.toLocalDate();
-    }
-
 }
@@ -0,0 +1,80 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates {@link Body} from rows of ResultSet. Positions of the columns are
+ * resolved by their names only once when the mapper is created, so the
+ * mapper should be created once per ResultSet and reused for all its rows.
+ *
+ * @author Petr Adámek
+ */
+class BodyRowMapper implements DBUtils.RowMapper<Body> {
+
+    private static final Map<String, Gender> GENDERS = new HashMap<>();
+
+    static {
+        for (Gender gender : Gender.values()) {
+            GENDERS.put(gender.name(), gender);
+        }
+    }
+
+    private final int idColumn;
+    private final int nameColumn;
+    private final int genderColumn;
+    private final int bornColumn;
+    private final int diedColumn;
+    private final int vampireColumn;
+
+    BodyRowMapper(ResultSet rs) throws SQLException {
+        this(rs, "id");
+    }
+
+    /**
+     * Creates mapper for ResultSet where id of the body is in column with
+     * given label, e.g. when the body is joined with a grave.
+     */
+    BodyRowMapper(ResultSet rs, String idColumnLabel) throws SQLException {
+        idColumn = rs.findColumn(idColumnLabel);
+        nameColumn = rs.findColumn("name");
+        genderColumn = rs.findColumn("gender");
+        bornColumn = rs.findColumn("born");
+        diedColumn = rs.findColumn("died");
+        vampireColumn = rs.findColumn("vampire");
+    }
+
+    @Override
+    public Body mapRow(ResultSet rs) throws SQLException {
+        Body body = new Body();
+        body.setId(rs.getLong(idColumn));
+        body.setName(rs.getString(nameColumn));
+        body.setGender(toGender(rs.getString(genderColumn)));
+        body.setBorn(toLocalDate(rs.getDate(bornColumn)));
+        body.setDied(toLocalDate(rs.getDate(diedColumn)));
+        body.setVampire(rs.getBoolean(vampireColumn));
+        return body;
+    }
+
+    static Gender toGender(String gender) {
+        if (gender == null) {
+            return null;
+        }
+        Gender result = GENDERS.get(gender);
+        if (result == null) {
+            throw new IllegalArgumentException("Unknown gender " + gender);
+        }
+        return result;
+    }
+
+    static LocalDate toLocalDate(Date date) {
+        // embedded Derby doesn't support getObject(int, LocalDate.class)
+        return date == null ? null : date.toLocalDate();
+    }
+}
@@ -0,0 +1,452 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.function.IntPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Immutable columnar table of bodies intended for bulk analytics over
+ * millions of bodies. Instead of one {@link Body} object per body, each
+ * attribute is stored in its own primitive array: ids in {@code long[]},
+ * dates as epoch days in {@code int[]}, gender as ordinal in {@code byte[]},
+ * vampire flags in a bit set and names as codes into a dictionary of
+ * distinct names.
+ * <p>
+ * Rows are addressed by their index. Filters are {@link IntPredicate}s over
+ * row indexes, so bodies can be filtered and aggregated without creating
+ * Body objects. Tables are created by {@link BodyManager#findAllBodiesAsTable()}.
+ *
+ * @author Petr Adámek
+ */
+public final class BodyTable {
+
+    /**
+     * Value stored in date columns when the date is not known.
+     */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final Gender[] GENDERS = Gender.values();
+    private static final byte NO_GENDER = -1;
+    private static final double DAYS_PER_YEAR = 365.2425;
+
+    private final int size;
+    private final long[] ids;
+    private final int[] nameCodes;
+    private final String[] names;
+    private final byte[] genders;
+    private final int[] born;
+    private final int[] died;
+    private final BitSet vampires;
+
+    private BodyTable(int size, long[] ids, int[] nameCodes, String[] names, byte[] genders,
+                      int[] born, int[] died, BitSet vampires) {
+        this.size = size;
+        this.ids = ids;
+        this.nameCodes = nameCodes;
+        this.names = names;
+        this.genders = genders;
+        this.born = born;
+        this.died = died;
+        this.vampires = vampires;
+    }
+
+    /**
+     * @return number of bodies in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of distinct names
+     */
+    public int distinctNameCount() {
+        return names.length;
+    }
+
+    public long getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    public String getName(int row) {
+        checkRow(row);
+        return names[nameCodes[row]];
+    }
+
+    public Gender getGender(int row) {
+        checkRow(row);
+        return genders[row] == NO_GENDER ? null : GENDERS[genders[row]];
+    }
+
+    /**
+     * @param row index of the row
+     * @return date of birth as epoch day or {@link #NO_DATE}
+     */
+    public int getBornEpochDay(int row) {
+        checkRow(row);
+        return born[row];
+    }
+
+    /**
+     * @param row index of the row
+     * @return date of death as epoch day or {@link #NO_DATE}
+     */
+    public int getDiedEpochDay(int row) {
+        checkRow(row);
+        return died[row];
+    }
+
+    public LocalDate getBorn(int row) {
+        return toLocalDate(getBornEpochDay(row));
+    }
+
+    public LocalDate getDied(int row) {
+        return toLocalDate(getDiedEpochDay(row));
+    }
+
+    public boolean isVampire(int row) {
+        checkRow(row);
+        return vampires.get(row);
+    }
+
+    /**
+     * Creates Body object from given row.
+     *
+     * @param row index of the row
+     * @return new body
+     */
+    public Body toBody(int row) {
+        Body body = new Body();
+        body.setId(getId(row));
+        body.setName(getName(row));
+        body.setGender(getGender(row));
+        body.setBorn(getBorn(row));
+        body.setDied(getDied(row));
+        body.setVampire(isVampire(row));
+        return body;
+    }
+
+    /**
+     * @return filter accepting vampires
+     */
+    public IntPredicate vampires() {
+        return vampires::get;
+    }
+
+    /**
+     * @param gender gender
+     * @return filter accepting bodies with given gender
+     */
+    public IntPredicate gender(Gender gender) {
+        byte ordinal = gender == null ? NO_GENDER : (byte) gender.ordinal();
+        return (row) -> genders[row] == ordinal;
+    }
+
+    /**
+     * Returns filter accepting bodies with given name. The name is looked up
+     * in the dictionary only once, rows are then compared by name codes.
+     *
+     * @param name name
+     * @return filter accepting bodies with given name
+     */
+    public IntPredicate name(String name) {
+        int code = Arrays.asList(names).indexOf(name);
+        if (code < 0) {
+            return (row) -> false;
+        }
+        return (row) -> nameCodes[row] == code;
+    }
+
+    /**
+     * Returns filter accepting bodies which died within given interval,
+     * including both bounds. Bodies with unknown date of death are not
+     * accepted.
+     *
+     * @param from first day of the interval
+     * @param to last day of the interval
+     * @return filter accepting bodies which died within the interval
+     * @throws IllegalArgumentException when from or to is null
+     */
+    public IntPredicate diedBetween(LocalDate from, LocalDate to) {
+        if (from == null) throw new IllegalArgumentException("from is null");
+        if (to == null) throw new IllegalArgumentException("to is null");
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        return (row) -> died[row] != NO_DATE && died[row] >= first && died[row] <= last;
+    }
+
+    /**
+     * Returns indexes of rows accepted by given filter.
+     *
+     * @param filter filter
+     * @return indexes of accepted rows in ascending order
+     */
+    public int[] select(IntPredicate filter) {
+        if (filter == null) throw new IllegalArgumentException("filter is null");
+        int[] result = new int[16];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (filter.test(row)) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = row;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @param filter filter
+     * @return number of rows accepted by given filter
+     */
+    public int count(IntPredicate filter) {
+        if (filter == null) throw new IllegalArgumentException("filter is null");
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (filter.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts bodies accepted by given filter by their gender.
+     *
+     * @param filter filter
+     * @return number of accepted bodies for each gender
+     */
+    public Map<Gender, Integer> countByGender(IntPredicate filter) {
+        if (filter == null) throw new IllegalArgumentException("filter is null");
+        int[] counts = new int[GENDERS.length];
+        for (int row = 0; row < size; row++) {
+            if (genders[row] != NO_GENDER && filter.test(row)) {
+                counts[genders[row]]++;
+            }
+        }
+        Map<Gender, Integer> result = new EnumMap<>(Gender.class);
+        for (Gender gender : GENDERS) {
+            result.put(gender, counts[gender.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Computes average age at death in years of bodies accepted by given
+     * filter. Bodies with unknown date of birth or death are skipped.
+     *
+     * @param filter filter
+     * @return average age or empty value when there is no such body
+     */
+    public OptionalDouble averageAgeAtDeath(IntPredicate filter) {
+        if (filter == null) throw new IllegalArgumentException("filter is null");
+        long days = 0;
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (born[row] != NO_DATE && died[row] != NO_DATE && filter.test(row)) {
+                days += died[row] - born[row];
+                count++;
+            }
+        }
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(days / DAYS_PER_YEAR / count);
+    }
+
+    /**
+     * Returns copy of this table with ids translated by given function.
+     */
+    BodyTable withIds(LongUnaryOperator mapping) {
+        long[] mappedIds = new long[size];
+        for (int row = 0; row < size; row++) {
+            mappedIds[row] = mapping.applyAsLong(ids[row]);
+        }
+        return new BodyTable(size, mappedIds, nameCodes, names, genders, born, died, vampires);
+    }
+
+    /**
+     * Returns table with rows of all given tables. Name dictionaries are
+     * merged, so each distinct name is still stored only once.
+     */
+    static BodyTable concat(List<BodyTable> tables) {
+        int size = 0;
+        for (BodyTable table : tables) {
+            size += table.size;
+        }
+        long[] ids = new long[size];
+        int[] nameCodes = new int[size];
+        byte[] genders = new byte[size];
+        int[] born = new int[size];
+        int[] died = new int[size];
+        BitSet vampires = new BitSet(size);
+        Map<String, Integer> nameDictionary = new HashMap<>();
+        int offset = 0;
+        for (BodyTable table : tables) {
+            int[] codes = new int[table.names.length];
+            for (int code = 0; code < codes.length; code++) {
+                codes[code] = nameDictionary.computeIfAbsent(table.names[code], (name) -> nameDictionary.size());
+            }
+            System.arraycopy(table.ids, 0, ids, offset, table.size);
+            System.arraycopy(table.genders, 0, genders, offset, table.size);
+            System.arraycopy(table.born, 0, born, offset, table.size);
+            System.arraycopy(table.died, 0, died, offset, table.size);
+            for (int row = 0; row < table.size; row++) {
+                nameCodes[offset + row] = codes[table.nameCodes[row]];
+            }
+            for (int row = table.vampires.nextSetBit(0); row >= 0; row = table.vampires.nextSetBit(row + 1)) {
+                vampires.set(offset + row);
+            }
+            offset += table.size;
+        }
+        String[] names = new String[nameDictionary.size()];
+        nameDictionary.forEach((name, code) -> names[code] = name);
+        return new BodyTable(size, ids, nameCodes, names, genders, born, died, vampires);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " is out of range 0.." + (size - 1));
+        }
+    }
+
+    private static LocalDate toLocalDate(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    @Override
+    public String toString() {
+        return "BodyTable{"
+                + "size=" + size
+                + ", distinctNames=" + names.length
+                + '}';
+    }
+
+    /**
+     * Fills the table from rows of ResultSet with the same columns as Body
+     * table or from Body instances. Positions of the columns are resolved
+     * when the builder is created.
+     */
+    static class Builder {
+
+        private final int idColumn;
+        private final int nameColumn;
+        private final int genderColumn;
+        private final int bornColumn;
+        private final int diedColumn;
+        private final int vampireColumn;
+
+        private final Map<String, Integer> nameDictionary = new HashMap<>();
+        private final Map<String, Byte> genderOrdinals = new HashMap<>();
+        private final BitSet vampires = new BitSet();
+        private long[] ids = new long[1024];
+        private int[] nameCodes = new int[1024];
+        private byte[] genders = new byte[1024];
+        private int[] born = new int[1024];
+        private int[] died = new int[1024];
+        private int size;
+
+        Builder(ResultSet rs) throws SQLException {
+            this(rs.findColumn("id"), rs.findColumn("name"), rs.findColumn("gender"),
+                    rs.findColumn("born"), rs.findColumn("died"), rs.findColumn("vampire"));
+        }
+
+        /**
+         * Creates builder filled with {@link #addBody(Body)}.
+         */
+        Builder() {
+            this(0, 0, 0, 0, 0, 0);
+        }
+
+        private Builder(int idColumn, int nameColumn, int genderColumn, int bornColumn, int diedColumn,
+                        int vampireColumn) {
+            this.idColumn = idColumn;
+            this.nameColumn = nameColumn;
+            this.genderColumn = genderColumn;
+            this.bornColumn = bornColumn;
+            this.diedColumn = diedColumn;
+            this.vampireColumn = vampireColumn;
+            for (Gender gender : GENDERS) {
+                genderOrdinals.put(gender.name(), (byte) gender.ordinal());
+            }
+        }
+
+        /**
+         * Adds current row of given ResultSet.
+         */
+        void addRow(ResultSet rs) throws SQLException {
+            add(rs.getLong(idColumn), rs.getString(nameColumn), toGenderOrdinal(rs.getString(genderColumn)),
+                    toEpochDay(rs, bornColumn), toEpochDay(rs, diedColumn), rs.getBoolean(vampireColumn));
+        }
+
+        /**
+         * Adds row with given body.
+         */
+        void addBody(Body body) {
+            add(body.getId(), body.getName(),
+                    body.getGender() == null ? NO_GENDER : (byte) body.getGender().ordinal(),
+                    body.getBorn() == null ? NO_DATE : (int) body.getBorn().toEpochDay(),
+                    body.getDied() == null ? NO_DATE : (int) body.getDied().toEpochDay(),
+                    body.isVampire());
+        }
+
+        private void add(long id, String name, byte gender, int bornEpochDay, int diedEpochDay, boolean vampire) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                nameCodes = Arrays.copyOf(nameCodes, capacity);
+                genders = Arrays.copyOf(genders, capacity);
+                born = Arrays.copyOf(born, capacity);
+                died = Arrays.copyOf(died, capacity);
+            }
+            ids[size] = id;
+            nameCodes[size] = nameDictionary.computeIfAbsent(name, (n) -> nameDictionary.size());
+            genders[size] = gender;
+            born[size] = bornEpochDay;
+            died[size] = diedEpochDay;
+            if (vampire) {
+                vampires.set(size);
+            }
+            size++;
+        }
+
+        BodyTable build() {
+            String[] names = new String[nameDictionary.size()];
+            nameDictionary.forEach((name, code) -> names[code] = name);
+            return new BodyTable(size,
+                    Arrays.copyOf(ids, size),
+                    Arrays.copyOf(nameCodes, size),
+                    names,
+                    Arrays.copyOf(genders, size),
+                    Arrays.copyOf(born, size),
+                    Arrays.copyOf(died, size),
+                    (BitSet) vampires.clone());
+        }
+
+        private byte toGenderOrdinal(String gender) {
+            if (gender == null) {
+                return NO_GENDER;
+            }
+            Byte result = genderOrdinals.get(gender);
+            if (result == null) {
+                throw new IllegalArgumentException("Unknown gender " + gender);
+            }
+            return result;
+        }
+
+        private static int toEpochDay(ResultSet rs, int column) throws SQLException {
+            // embedded Derby doesn't support getObject(int, LocalDate.class)
+            Date date = rs.getDate(column);
+            return date == null ? NO_DATE : (int) date.toLocalDate().toEpochDay();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.EntityCache;
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of BodyManager which caches bodies returned by
+ * {@link #getBody(Long)}. Cached body is invalidated when it is updated or
+ * deleted through this manager, so all modifications of bodies must be done
+ * through this decorator. Other methods are just delegated.
+ *
+ * @author Petr Adámek
+ */
+public class CachingBodyManager implements BodyManager {
+
+    private final BodyManager delegate;
+    private final EntityCache<Long, Body> cache;
+
+    /**
+     * Creates new caching manager.
+     *
+     * @param delegate decorated manager
+     * @param maximumSize maximal number of cached bodies
+     * @param timeToLive time after which cached body expires or null if
+     * bodies don't expire
+     * @param clock clock used for expiration
+     */
+    public CachingBodyManager(BodyManager delegate, int maximumSize, Duration timeToLive, Clock clock) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        this.delegate = delegate;
+        this.cache = new EntityCache<>(maximumSize, timeToLive, clock, CachingBodyManager::copyOf);
+    }
+
+    /**
+     * Creates new caching manager with bodies which don't expire.
+     *
+     * @param delegate decorated manager
+     * @param maximumSize maximal number of cached bodies
+     */
+    public CachingBodyManager(BodyManager delegate, int maximumSize) {
+        this(delegate, maximumSize, null, Clock.systemUTC());
+    }
+
+    /**
+     * Returns statistics of the cache.
+     *
+     * @return statistics of the cache
+     */
+    public EntityCache.Statistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    @Override
+    public void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createBody(body);
+    }
+
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createBodies(bodies);
+    }
+
+    @Override
+    public Body getBody(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        return cache.get(id, delegate::getBody);
+    }
+
+    @Override
+    public void updateBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        try {
+            delegate.updateBody(body);
+        } finally {
+            invalidate(body);
+        }
+    }
+
+    @Override
+    public void deleteBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        try {
+            delegate.deleteBody(body);
+        } finally {
+            invalidate(body);
+        }
+    }
+
+    @Override
+    public List<Body> findAllBodies() throws ServiceFailureException {
+        return delegate.findAllBodies();
+    }
+
+    @Override
+    public List<Body> findBodiesDiedBetween(LocalDate from, LocalDate to) throws ServiceFailureException {
+        return delegate.findBodiesDiedBetween(from, to);
+    }
+
+    @Override
+    public Page<Body> findBodiesPage(String token, int limit) throws ServiceFailureException {
+        return delegate.findBodiesPage(token, limit);
+    }
+
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        return delegate.streamAllBodies();
+    }
+
+    @Override
+    public BodyTable findAllBodiesAsTable() throws ServiceFailureException {
+        return delegate.findAllBodiesAsTable();
+    }
+
+    private void invalidate(Body body) {
+        if (body != null && body.getId() != null) {
+            cache.invalidate(body.getId());
+        }
+    }
+
+    static Body copyOf(Body body) {
+        Body copy = new Body();
+        copy.setId(body.getId());
+        copy.setName(body.getName());
+        copy.setGender(body.getGender());
+        copy.setBorn(body.getBorn());
+        copy.setDied(body.getDied());
+        copy.setVampire(body.isVampire());
+        return copy;
+    }
+}
@@ -0,0 +1,126 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.EntityCache;
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of GraveManager which caches graves returned by
+ * {@link #getGrave(Long)}. Cached grave is invalidated when it is updated or
+ * deleted through this manager, so all modifications of graves must be done
+ * through this decorator. Other methods are just delegated.
+ *
+ * @author Petr Adámek
+ */
+public class CachingGraveManager implements GraveManager {
+
+    private final GraveManager delegate;
+    private final EntityCache<Long, Grave> cache;
+
+    /**
+     * Creates new caching manager.
+     *
+     * @param delegate decorated manager
+     * @param maximumSize maximal number of cached graves
+     * @param timeToLive time after which cached grave expires or null if
+     * graves don't expire
+     * @param clock clock used for expiration
+     */
+    public CachingGraveManager(GraveManager delegate, int maximumSize, Duration timeToLive, Clock clock) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        this.delegate = delegate;
+        this.cache = new EntityCache<>(maximumSize, timeToLive, clock, CachingGraveManager::copyOf);
+    }
+
+    /**
+     * Creates new caching manager with graves which don't expire.
+     *
+     * @param delegate decorated manager
+     * @param maximumSize maximal number of cached graves
+     */
+    public CachingGraveManager(GraveManager delegate, int maximumSize) {
+        this(delegate, maximumSize, null, Clock.systemUTC());
+    }
+
+    /**
+     * Returns statistics of the cache.
+     *
+     * @return statistics of the cache
+     */
+    public EntityCache.Statistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGrave(grave);
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGraves(graves);
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        return cache.get(id, delegate::getGrave);
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        try {
+            delegate.updateGrave(grave);
+        } finally {
+            invalidate(grave);
+        }
+    }
+
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        try {
+            delegate.deleteGrave(grave);
+        } finally {
+            invalidate(grave);
+        }
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        return delegate.findAllGraves();
+    }
+
+    @Override
+    public Page<Grave> findGravesPage(String token, int limit) throws ServiceFailureException {
+        return delegate.findGravesPage(token, limit);
+    }
+
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return delegate.streamAllGraves();
+    }
+
+    private void invalidate(Grave grave) {
+        if (grave != null && grave.getId() != null) {
+            cache.invalidate(grave.getId());
+        }
+    }
+
+    static Grave copyOf(Grave grave) {
+        Grave copy = new Grave();
+        copy.setId(grave.getId());
+        copy.setColumn(grave.getColumn());
+        copy.setRow(grave.getRow());
+        copy.setCapacity(grave.getCapacity());
+        copy.setNote(grave.getNote());
+        return copy;
+    }
+}
@@ -1,8 +1,12 @@
 package cz.muni.fi.pv168.gravemanager.backend;
 
 import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ReadOnly;
 import cz.muni.fi.pv168.common.ServiceFailureException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * This service allows to manipulate with associations between graves and 
@@ -22,6 +26,7 @@ public interface CemeteryManager {
      * @throws IllegalEntityException when given body has null id 
      * @throws ServiceFailureException when db operation fails
      */
+    @ReadOnly
     Grave findGraveWithBody(Body body) throws ServiceFailureException, IllegalEntityException;
     
     /**
@@ -33,7 +38,41 @@ public interface CemeteryManager {
      * @throws IllegalEntityException when given grave has null id 
      * @throws ServiceFailureException when db operation fails
      */
+    @ReadOnly
     List<Body> findBodiesInGrave(Grave grave) throws ServiceFailureException, IllegalEntityException;
+
+    /**
+     * Find all bodies that are placed in given graves. All graves are
+     * searched with constant number of database statements, so this method
+     * should be used instead of calling {@link #findBodiesInGrave(Grave)}
+     * for each grave.
+     *
+     * @param graves graves that we want to search
+     * @return map with list of bodies placed in each given grave, in the
+     * iteration order of given graves; graves without bodies are mapped to
+     * empty list
+     * @throws IllegalArgumentException when graves is null or contains null
+     * @throws IllegalEntityException when some grave has null id
+     * @throws ServiceFailureException when db operation fails
+     */
+    @ReadOnly
+    Map<Grave, List<Body>> findBodiesInGraves(Collection<Grave> graves) throws ServiceFailureException, IllegalEntityException;
+
+    /**
+     * Find graves that contain given bodies. All bodies are searched with
+     * constant number of database statements, so this method should be used
+     * instead of calling {@link #findGraveWithBody(Body)} for each body.
+     *
+     * @param bodies bodies that we want to find
+     * @return map with grave containing each given body, in the iteration
+     * order of given bodies; bodies which are not placed in any grave are
+     * mapped to null
+     * @throws IllegalArgumentException when bodies is null or contains null
+     * @throws IllegalEntityException when some body has null id
+     * @throws ServiceFailureException when db operation fails
+     */
+    @ReadOnly
+    Map<Body, Grave> findGravesWithBodies(Collection<Body> bodies) throws ServiceFailureException, IllegalEntityException;
     
     /**
      * Find all bodies that are not placed in any grave. 
@@ -41,14 +80,29 @@ public interface CemeteryManager {
      * @return collection of all unburied bodies
      * @throws ServiceFailureException when db operation fails.
      */
+    @ReadOnly
     List<Body> findUnburiedBodies() throws ServiceFailureException;
 
+    /**
+     * Returns stream of all bodies that are not placed in any grave. The
+     * bodies are read lazily from open database cursor, so memory consumption
+     * does not depend on the number of bodies. The stream holds database
+     * connection until it is closed, so it must be always closed, preferably
+     * with try-with-resources statement.
+     *
+     * @return stream of all unburied bodies
+     * @throws ServiceFailureException when db operation fails.
+     */
+    @ReadOnly
+    Stream<Body> streamUnburiedBodies() throws ServiceFailureException;
+
     /**
      * Find all graves that contain no body. 
      * 
      * @return collection of all empty graves
      * @throws ServiceFailureException when db operation fails.
      */
+    @ReadOnly
     List<Grave> findEmptyGraves() throws ServiceFailureException;
 
     /**
@@ -57,10 +111,12 @@ public interface CemeteryManager {
      * @return collection of all empty graves
      * @throws ServiceFailureException when db operation fails.
      */
+    @ReadOnly
     List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException;
 
     /**
-     * Inserts body into given grave.
+     * Inserts body into given grave. Given body is not modified, in
+     * particular its id stays the same.
      * 
      * @param body body to be placed to given grave
      * @param grave grave for placing given body
@@ -71,6 +127,25 @@ public interface CemeteryManager {
      * @throws ServiceFailureException when db operation fails.
      */
     void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException;
+
+    /**
+     * Inserts all given bodies into graves with some free space. Graves are
+     * chosen by given placement policy. Either all bodies are placed or none
+     * of them. Given bodies are not modified, so they can be kept in hash
+     * based collections.
+     *
+     * @param bodies bodies to be placed into graves
+     * @param policy policy for choosing graves
+     * @return map with grave chosen for each body, in the iteration order of
+     * given bodies
+     * @throws IllegalArgumentException when bodies or policy is null, or when
+     * bodies contain null
+     * @throws IllegalEntityException when some body is already placed in some
+     * grave, when some body has null id or does not exist in database or when
+     * there is not enough free space in graves for all bodies
+     * @throws ServiceFailureException when db operation fails.
+     */
+    Map<Body, Grave> buryAll(Collection<Body> bodies, PlacementPolicy policy) throws ServiceFailureException, IllegalEntityException;
     
     /**
      * Removes body from given grave.
@@ -1,14 +1,27 @@
 package cz.muni.fi.pv168.gravemanager.backend;
 
+import cz.muni.fi.pv168.common.DBUtils;
 import cz.muni.fi.pv168.common.IllegalEntityException;
 import cz.muni.fi.pv168.common.ServiceFailureException;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 /**
  * This class implements CemeteryManager service.
@@ -17,13 +30,57 @@ import java.util.List;
  */
 public class CemeteryManagerImpl implements CemeteryManager {
 
+    /**
+     * Default number of rows sent to the database in one JDBC batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Default number of rows fetched from the database at once by the
+     * methods returning stream.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    /**
+     * Number of ids in IN list of queries for multiple graves or bodies.
+     */
+    static final int IN_LIST_SIZE = 100;
+    static final String IN_LIST_PLACEHOLDERS = String.join(",", Collections.nCopies(IN_LIST_SIZE, "?"));
+
     private DataSource dataSource;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private final Map<String, BodyConstraints> bodyConstraintsByUrl = new ConcurrentHashMap<>();
 
     @SuppressWarnings("WeakerAccess")
     public CemeteryManagerImpl(DataSource dataSource) {
         this.dataSource = dataSource;
     }
 
+    /**
+     * Sets number of rows sent to the database in one JDBC batch by
+     * {@link #buryAll(Collection, PlacementPolicy)}.
+     *
+     * @param batchSize number of rows in one batch
+     * @throws IllegalArgumentException when batchSize is not positive number
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize is not positive number");
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * Sets number of rows fetched from the database at once by the methods
+     * returning stream.
+     *
+     * @param fetchSize number of rows fetched at once
+     * @throws IllegalArgumentException when fetchSize is not positive number
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize is not positive number");
+        this.fetchSize = fetchSize;
+    }
 
     @Override
     public Grave findGraveWithBody(Body body) throws ServiceFailureException, IllegalEntityException {
@@ -59,6 +116,158 @@ public class CemeteryManagerImpl implements CemeteryManager {
         }
     }
 
+    @Override
+    public Map<Grave, List<Body>> findBodiesInGraves(Collection<Grave> graves) throws ServiceFailureException, IllegalEntityException {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        Map<Long, List<Body>> bodiesByGraveId = new HashMap<>();
+        for (Grave grave : graves) {
+            if (grave == null) throw new IllegalArgumentException("grave is null");
+            if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+            bodiesByGraveId.put(grave.getId(), new ArrayList<>());
+        }
+        if (!bodiesByGraveId.isEmpty()) {
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement st = conn.prepareStatement(
+                         // Derby estimates each id in the IN list as a separate match, so
+                         // with the whole list it would prefer table scan of small table.
+                         // The hint names index of the foreign key, see BodyConstraints.
+                         "SELECT id, graveId, name, gender, born, died, vampire FROM Body " +
+                                 "--DERBY-PROPERTIES constraint=" + bodyConstraints(conn).graveForeignKey + "\n" +
+                                 "WHERE graveId IN (" + IN_LIST_PLACEHOLDERS + ")")) {
+                for (List<Long> chunk : chunks(bodiesByGraveId.keySet())) {
+                    setInList(st, chunk);
+                    try (ResultSet rs = st.executeQuery()) {
+                        BodyRowMapper mapper = new BodyRowMapper(rs);
+                        int graveIdColumn = rs.findColumn("graveId");
+                        while (rs.next()) {
+                            bodiesByGraveId.get(rs.getLong(graveIdColumn)).add(mapper.mapRow(rs));
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                throw new ServiceFailureException("Error when trying to find bodies in graves", ex);
+            }
+        }
+        Map<Grave, List<Body>> result = new LinkedHashMap<>();
+        for (Grave grave : graves) {
+            result.put(grave, bodiesByGraveId.get(grave.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Body, Grave> findGravesWithBodies(Collection<Body> bodies) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        Set<Long> bodyIds = new LinkedHashSet<>();
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+            bodyIds.add(body.getId());
+        }
+        Map<Long, Grave> graveByBodyId = new HashMap<>();
+        if (!bodyIds.isEmpty()) {
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement st = conn.prepareStatement(
+                         // see findBodiesInGraves() for the reason of the index hints,
+                         // graves are then looked up by id for each found body
+                         "SELECT Grave.id, col, row, capacity, note, Body.id AS bodyId " +
+                                 "FROM --DERBY-PROPERTIES joinOrder=FIXED\n" +
+                                 "Body --DERBY-PROPERTIES constraint=" + bodyConstraints(conn).primaryKey + "\n" +
+                                 "JOIN Grave --DERBY-PROPERTIES joinStrategy=NESTEDLOOP\n" +
+                                 "ON Grave.id = Body.graveId " +
+                                 "WHERE Body.id IN (" + IN_LIST_PLACEHOLDERS + ")")) {
+                for (List<Long> chunk : chunks(bodyIds)) {
+                    setInList(st, chunk);
+                    try (ResultSet rs = st.executeQuery()) {
+                        GraveRowMapper mapper = new GraveRowMapper(rs);
+                        int bodyIdColumn = rs.findColumn("bodyId");
+                        while (rs.next()) {
+                            graveByBodyId.put(rs.getLong(bodyIdColumn), mapper.mapRow(rs));
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                throw new ServiceFailureException("Error when trying to find graves with bodies", ex);
+            }
+        }
+        Map<Body, Grave> result = new LinkedHashMap<>();
+        for (Body body : bodies) {
+            result.put(body, graveByBodyId.get(body.getId()));
+        }
+        return result;
+    }
+
+    private BodyConstraints bodyConstraints(Connection conn) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        BodyConstraints constraints = bodyConstraintsByUrl.get(metaData.getURL());
+        if (constraints == null) {
+            constraints = BodyConstraints.find(metaData, conn.getSchema());
+            bodyConstraintsByUrl.put(metaData.getURL(), constraints);
+        }
+        return constraints;
+    }
+
+    /**
+     * Names of the constraints of table BODY, which are used in index hints.
+     * Derby can't create another index with the same columns as index of a
+     * constraint, and the constraints have generated names, which differ in
+     * each database. Therefore the names are read from the database metadata.
+     */
+    private static final class BodyConstraints {
+
+        final String primaryKey;
+        final String graveForeignKey;
+
+        private BodyConstraints(String primaryKey, String graveForeignKey) {
+            this.primaryKey = primaryKey;
+            this.graveForeignKey = graveForeignKey;
+        }
+
+        static BodyConstraints find(DatabaseMetaData metaData, String schema) throws SQLException {
+            String primaryKey = null;
+            try (ResultSet rs = metaData.getPrimaryKeys(null, schema, "BODY")) {
+                if (rs.next()) {
+                    primaryKey = rs.getString("PK_NAME");
+                }
+            }
+            String graveForeignKey = null;
+            try (ResultSet rs = metaData.getImportedKeys(null, schema, "BODY")) {
+                while (rs.next()) {
+                    if ("GRAVE".equals(rs.getString("PKTABLE_NAME"))) {
+                        graveForeignKey = rs.getString("FK_NAME");
+                    }
+                }
+            }
+            if (primaryKey == null || graveForeignKey == null) {
+                throw new SQLException("Constraints of table BODY not found in schema " + schema);
+            }
+            return new BodyConstraints(primaryKey, graveForeignKey);
+        }
+    }
+
+    static List<List<Long>> chunks(Collection<Long> ids) {
+        List<List<Long>> result = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(IN_LIST_SIZE);
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == IN_LIST_SIZE) {
+                result.add(chunk);
+                chunk = new ArrayList<>(IN_LIST_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    static void setInList(PreparedStatement st, List<Long> ids) throws SQLException {
+        for (int i = 0; i < IN_LIST_SIZE; i++) {
+            // the last chunk is padded with its last id, so all chunks can use the same statement
+            st.setLong(i + 1, ids.get(Math.min(i, ids.size() - 1)));
+        }
+    }
+
     @Override
     public List<Body> findUnburiedBodies() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
@@ -70,14 +279,25 @@ public class CemeteryManagerImpl implements CemeteryManager {
         }
     }
 
+    @Override
+    public Stream<Body> streamUnburiedBodies() throws ServiceFailureException {
+        try {
+            return DBUtils.stream(dataSource,
+                    "SELECT id, name, gender, born, died, vampire FROM Body WHERE graveId IS NULL",
+                    fetchSize, BodyRowMapper::new);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when trying to find unburied bodies", ex);
+        }
+    }
+
     @Override
     public List<Grave> findEmptyGraves() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement st = conn.prepareStatement(
-                     "SELECT Grave.id, col, row, capacity, note " +
-                             "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
-                             "GROUP BY Grave.id, col, row, capacity, note " +
-                             "HAVING COUNT(Body.id) = 0")) {
+                     // Derby has no statistics about distribution of values, so it would
+                     // not use the index although usually there are only few empty graves
+                     "SELECT id, col, row, capacity, note FROM Grave --DERBY-PROPERTIES index=GRAVE_OCCUPIED_IDX\n" +
+                             "WHERE occupied = 0")) {
             return GraveManagerImpl.executeQueryForMultipleGraves(st);
         } catch (SQLException ex) {
             throw new ServiceFailureException("Error when trying to find empty graves", ex);
@@ -88,17 +308,26 @@ public class CemeteryManagerImpl implements CemeteryManager {
     public List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement st = conn.prepareStatement(
-                     "SELECT Grave.id, col, row, capacity, note " +
-                             "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
-                             "GROUP BY Grave.id, col, row, capacity, note " +
-                             "HAVING COUNT(Body.id) < capacity")) {
-
+                     // see findEmptyGraves() for the reason of the index hint
+                     "SELECT id, col, row, capacity, note FROM Grave --DERBY-PROPERTIES index=GRAVE_FREE_IDX\n" +
+                             "WHERE free > 0")) {
             return GraveManagerImpl.executeQueryForMultipleGraves(st);
         } catch (SQLException ex) {
             throw new ServiceFailureException("Error when trying to find graves with some free space", ex);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Free space is reserved by single conditional update of grave occupancy,
+     * which both checks the capacity and increments the counter. The update
+     * keeps exclusive lock of the grave row until the transaction ends, so
+     * concurrent burials into the same grave are serialized on this row only
+     * and the capacity can't be exceeded at any isolation level. The body is
+     * updated after that, so the grave row is always locked before the body
+     * row, same as in {@link #removeBodyFromGrave(Body, Grave)}.
+     */
     @Override
     public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
         if (grave == null) throw new IllegalArgumentException("grave is null");
@@ -108,10 +337,9 @@ public class CemeteryManagerImpl implements CemeteryManager {
 
         try (Connection conn = dataSource.getConnection()) {
             try (PreparedStatement st = conn.prepareStatement("UPDATE Body SET graveId = ? WHERE id = ? AND graveId IS NULL")) {
-                // Start transaction so that the check for enough space in grave and putting body into the grave are atomic
+                // Start transaction so that the reservation of space in grave and putting body into the grave are atomic
                 conn.setAutoCommit(false);
-                //check if the grave has some free capacity left
-                checkIfGraveHasSpace(conn, grave);
+                reserveSpaceInGrave(conn, grave);
                 //put the body into the grave
                 st.setLong(1, grave.getId());
                 st.setLong(2, body.getId());
@@ -134,18 +362,182 @@ public class CemeteryManagerImpl implements CemeteryManager {
         }
     }
 
-    private static void checkIfGraveHasSpace(Connection conn, Grave grave) throws IllegalEntityException, SQLException {
-        try (PreparedStatement checkSt = conn.prepareStatement(
-                "SELECT capacity, COUNT(Body.id) AS bodiesCount " +
-                        "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
-                        "WHERE Grave.id = ? " +
-                        "GROUP BY Grave.id, capacity")) {
+    @Override
+    public Map<Body, Grave> buryAll(Collection<Body> bodies, PlacementPolicy policy) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        if (policy == null) throw new IllegalArgumentException("policy is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        Map<Body, Grave> placements = new LinkedHashMap<>();
+        if (bodies.isEmpty()) {
+            return placements;
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement lockSt = conn.prepareStatement("LOCK TABLE Grave IN EXCLUSIVE MODE");
+                 PreparedStatement st = conn.prepareStatement("UPDATE Body SET graveId = ? WHERE id = ? AND graveId IS NULL");
+                 PreparedStatement occupiedSt = conn.prepareStatement("UPDATE Grave SET occupied = occupied + ? WHERE id = ?")) {
+                // Start transaction, exclusive lock of GRAVE guarantees that occupancy
+                // snapshot is valid until the placements are applied, because every
+                // other burial or removal updates the occupancy counter in GRAVE
+                conn.setAutoCommit(false);
+                lockSt.execute();
+                List<GraveOccupancy> graves = findGraveOccupancies(conn);
+                graves.sort(policy.getOrder());
+                computePlacements(bodies, graves, placements);
+                applyPlacements(st, placements);
+                applyOccupancies(occupiedSt, graves);
+                conn.commit();
+            } catch (Exception ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when burying bodies", ex);
+        }
+        return placements;
+    }
+
+    /**
+     * Returns occupancy of all graves with some free space.
+     */
+    List<GraveOccupancy> findGraveOccupancies() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection()) {
+            return findGraveOccupancies(conn);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when trying to find graves with some free space", ex);
+        }
+    }
+
+    /**
+     * Places bodies into graves chosen by the caller. Either all bodies are
+     * placed or none of them.
+     *
+     * @param placements grave for each body
+     * @throws IllegalEntityException when some body is already placed in some
+     * grave or does not exist or when some grave does not have enough free
+     * space
+     * @throws ServiceFailureException when db operation fails.
+     */
+    void placeBodies(Map<Body, Grave> placements) throws ServiceFailureException, IllegalEntityException {
+        Map<Grave, Integer> addedBodies = new LinkedHashMap<>();
+        placements.values().forEach((grave) -> addedBodies.merge(grave, 1, Integer::sum));
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement reserveSt = conn.prepareStatement(
+                    "UPDATE Grave SET occupied = occupied + ? WHERE id = ? AND occupied + ? <= capacity");
+                 PreparedStatement st = conn.prepareStatement("UPDATE Body SET graveId = ? WHERE id = ? AND graveId IS NULL")) {
+                // graves are updated first to keep the same locking order as putBodyIntoGrave()
+                conn.setAutoCommit(false);
+                for (Map.Entry<Grave, Integer> entry : addedBodies.entrySet()) {
+                    reserveSt.setInt(1, entry.getValue());
+                    reserveSt.setLong(2, entry.getKey().getId());
+                    reserveSt.setInt(3, entry.getValue());
+                    if (reserveSt.executeUpdate() != 1) {
+                        throw new IllegalEntityException("Grave " + entry.getKey() + " does not have space for "
+                                + entry.getValue() + " bodies or it does not exist in the database");
+                    }
+                }
+                applyPlacements(st, placements);
+                conn.commit();
+            } catch (Exception ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when burying bodies", ex);
+        }
+    }
+
+    private static List<GraveOccupancy> findGraveOccupancies(Connection conn) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT id, col, row, capacity, note, occupied FROM Grave --DERBY-PROPERTIES index=GRAVE_FREE_IDX\n" +
+                        "WHERE free > 0");
+             ResultSet rs = st.executeQuery()) {
+            GraveRowMapper mapper = new GraveRowMapper(rs);
+            int occupiedColumn = rs.findColumn("occupied");
+            List<GraveOccupancy> result = new ArrayList<>();
+            while (rs.next()) {
+                result.add(new GraveOccupancy(mapper.mapRow(rs), rs.getInt(occupiedColumn)));
+            }
+            return result;
+        }
+    }
+
+    static void computePlacements(Collection<Body> bodies, List<GraveOccupancy> graves,
+                                          Map<Body, Grave> placements) {
+        Iterator<GraveOccupancy> graveIterator = graves.iterator();
+        GraveOccupancy current = null;
+        for (Body body : bodies) {
+            while (current == null || current.getFreeSlots() == 0) {
+                if (!graveIterator.hasNext()) {
+                    throw new IllegalEntityException("There is not enough free space in graves for " + bodies.size() + " bodies");
+                }
+                current = graveIterator.next();
+            }
+            if (placements.put(body, current.getGrave()) != null) {
+                throw new IllegalEntityException("Body " + body + " is given more than once");
+            }
+            current.addBody();
+        }
+    }
+
+    private void applyPlacements(PreparedStatement st, Map<Body, Grave> placements) throws SQLException {
+        List<Body> batch = new ArrayList<>(Math.min(batchSize, placements.size()));
+        for (Map.Entry<Body, Grave> placement : placements.entrySet()) {
+            st.setLong(1, placement.getValue().getId());
+            st.setLong(2, placement.getKey().getId());
+            st.addBatch();
+            batch.add(placement.getKey());
+            if (batch.size() == batchSize) {
+                executePlacementBatch(st, batch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            executePlacementBatch(st, batch);
+        }
+    }
+
+    private static void applyOccupancies(PreparedStatement st, List<GraveOccupancy> graves) throws SQLException {
+        for (GraveOccupancy occupancy : graves) {
+            if (occupancy.getAddedBodies() > 0) {
+                st.setInt(1, occupancy.getAddedBodies());
+                st.setLong(2, occupancy.getGrave().getId());
+                st.addBatch();
+            }
+        }
+        st.executeBatch();
+    }
+
+    private static void executePlacementBatch(PreparedStatement st, List<Body> batch) throws SQLException {
+        int[] counts = st.executeBatch();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 1) {
+                throw new IllegalEntityException("Body " + batch.get(i) + " not found or it is already placed in some grave");
+            }
+        }
+        batch.clear();
+    }
+
+    private static void reserveSpaceInGrave(Connection conn, Grave grave) throws IllegalEntityException, SQLException {
+        try (PreparedStatement st = conn.prepareStatement(
+                "UPDATE Grave SET occupied = occupied + 1 WHERE id = ? AND occupied < capacity")) {
+            st.setLong(1, grave.getId());
+            if (st.executeUpdate() == 1) {
+                return;
+            }
+        }
+        // nothing was updated, find out why
+        try (PreparedStatement checkSt = conn.prepareStatement("SELECT id FROM Grave WHERE id = ?")) {
             checkSt.setLong(1, grave.getId());
             try (ResultSet rs = checkSt.executeQuery()) {
                 if (rs.next()) {
-                    if (rs.getInt("capacity") <= rs.getInt("bodiesCount")) {
-                        throw new IllegalEntityException("Grave " + grave + " is already full");
-                    }
+                    throw new IllegalEntityException("Grave " + grave + " is already full");
                 } else {
                     throw new IllegalEntityException("Grave " + grave + " does not exist in the database");
                 }
@@ -159,15 +551,55 @@ public class CemeteryManagerImpl implements CemeteryManager {
         if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
         if (body == null) throw new IllegalArgumentException("body is null");
         if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement(
+                    "UPDATE Body SET graveId = NULL WHERE id = ? AND graveId = ?")) {
+                // Start transaction so that the body and occupancy of the grave are updated atomically,
+                // grave is updated first to keep the same locking order as putBodyIntoGrave()
+                conn.setAutoCommit(false);
+                updateOccupied(conn, grave.getId(), -1);
+                st.setLong(1, body.getId());
+                st.setLong(2, grave.getId());
+                int count = st.executeUpdate();
+                if (count != 1) throw new IllegalEntityException("updated " + count + " instead of 1 body");
+                conn.commit();
+            } catch (Exception ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when putting body into grave", ex);
+        }
+    }
+
+    /**
+     * Recomputes number of bodies placed in each grave from BODY table and
+     * fixes the graves where it does not match the stored occupancy. This is
+     * needed only when BODY table has been modified without using the
+     * managers.
+     *
+     * @return number of fixed graves
+     * @throws ServiceFailureException when db operation fails.
+     */
+    public int repairOccupancy() throws ServiceFailureException {
         try (Connection conn = dataSource.getConnection();
              PreparedStatement st = conn.prepareStatement(
-                     "UPDATE Body SET graveId = NULL WHERE id = ? AND graveId = ?")) {
-            st.setLong(1, body.getId());
-            st.setLong(2, grave.getId());
-            int count = st.executeUpdate();
-            if (count != 1) throw new IllegalEntityException("updated " + count + " instead of 1 body");
+                     "UPDATE Grave SET occupied = (SELECT COUNT(*) FROM Body WHERE Body.graveId = Grave.id) " +
+                             "WHERE occupied <> (SELECT COUNT(*) FROM Body WHERE Body.graveId = Grave.id)")) {
+            return st.executeUpdate();
         } catch (SQLException ex) {
-            throw new ServiceFailureException("Error when putting body into grave", ex);
+            throw new ServiceFailureException("Error when repairing occupancy of graves", ex);
+        }
+    }
+
+    private static void updateOccupied(Connection conn, Long graveId, int delta) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("UPDATE Grave SET occupied = occupied + ? WHERE id = ?")) {
+            st.setInt(1, delta);
+            st.setLong(2, graveId);
+            int count = st.executeUpdate();
+            if (count != 1) throw new IllegalEntityException("updated " + count + " instead of 1 grave");
         }
     }
 }
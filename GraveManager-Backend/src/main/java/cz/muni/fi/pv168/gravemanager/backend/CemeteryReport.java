@@ -0,0 +1,307 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Aggregated statistics of the whole cemetery computed by
+ * {@link CemeteryStatistics}. The report contains only counters, so its
+ * size does not depend on the number of bodies.
+ *
+ * @author Petr Adámek
+ */
+public final class CemeteryReport {
+
+    /**
+     * Width of the lifespan ranges in years.
+     */
+    public static final int LIFESPAN_RANGE_YEARS = 10;
+
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final long bodyCount;
+    private final long buriedCount;
+    private final long vampireCount;
+    private final long buriedVampireCount;
+    private final Map<Gender, Long> genderCounts;
+    private final long[] lifespanCounts;
+    private final long lifespanSum;
+    private final long lifespanKnownCount;
+    private final SortedMap<Integer, Long> burialsByYearOfDeath;
+    private final SortedMap<Integer, RowOccupancy> occupancyByRow;
+
+    private CemeteryReport(Accumulator acc, SortedMap<Integer, RowOccupancy> occupancyByRow) {
+        this.bodyCount = acc.bodyCount;
+        this.buriedCount = acc.buriedCount;
+        this.vampireCount = acc.vampireCount;
+        this.buriedVampireCount = acc.buriedVampireCount;
+        Map<Gender, Long> genders = new EnumMap<>(Gender.class);
+        for (Gender gender : GENDERS) {
+            genders.put(gender, acc.genderCounts[gender.ordinal()]);
+        }
+        this.genderCounts = Collections.unmodifiableMap(genders);
+        int last = acc.lifespanCounts.length;
+        while (last > 0 && acc.lifespanCounts[last - 1] == 0) {
+            last--;
+        }
+        this.lifespanCounts = Arrays.copyOf(acc.lifespanCounts, last);
+        this.lifespanSum = acc.lifespanSum;
+        this.lifespanKnownCount = acc.lifespanKnownCount;
+        this.burialsByYearOfDeath = Collections.unmodifiableSortedMap(new TreeMap<>(acc.burialsByYearOfDeath));
+        this.occupancyByRow = Collections.unmodifiableSortedMap(occupancyByRow);
+    }
+
+    /**
+     * @return number of all bodies
+     */
+    public long getBodyCount() {
+        return bodyCount;
+    }
+
+    /**
+     * @return number of bodies placed in some grave
+     */
+    public long getBuriedCount() {
+        return buriedCount;
+    }
+
+    /**
+     * @return number of bodies which are not placed in any grave
+     */
+    public long getUnburiedCount() {
+        return bodyCount - buriedCount;
+    }
+
+    /**
+     * @return number of all vampires
+     */
+    public long getVampireCount() {
+        return vampireCount;
+    }
+
+    /**
+     * @return number of vampires placed in some grave
+     */
+    public long getBuriedVampireCount() {
+        return buriedVampireCount;
+    }
+
+    /**
+     * @return number of bodies of each gender
+     */
+    public Map<Gender, Long> getGenderCounts() {
+        return genderCounts;
+    }
+
+    /**
+     * Returns distribution of lifespans of bodies with known date of birth
+     * and death. Element with index i is number of bodies which lived at
+     * least {@code i * LIFESPAN_RANGE_YEARS} and less than
+     * {@code (i + 1) * LIFESPAN_RANGE_YEARS} years. The array ends with the
+     * last non-empty range.
+     *
+     * @return number of bodies in each lifespan range
+     */
+    public long[] getLifespanCounts() {
+        return lifespanCounts.clone();
+    }
+
+    /**
+     * @return average lifespan in whole years of bodies with known date of
+     * birth and death, or empty when there is no such body
+     */
+    public OptionalDouble getAverageLifespan() {
+        return lifespanKnownCount == 0 ? OptionalDouble.empty()
+                : OptionalDouble.of((double) lifespanSum / lifespanKnownCount);
+    }
+
+    /**
+     * Returns number of buried bodies by year of their death. Date of the
+     * burial itself is not stored, so year of death is used instead. Buried
+     * bodies with unknown date of death are not included.
+     *
+     * @return number of buried bodies by year of death, ordered by year
+     */
+    public SortedMap<Integer, Long> getBurialsByYearOfDeath() {
+        return burialsByYearOfDeath;
+    }
+
+    /**
+     * @return occupancy of graves in each row, ordered by row
+     */
+    public SortedMap<Integer, RowOccupancy> getOccupancyByRow() {
+        return occupancyByRow;
+    }
+
+    @Override
+    public String toString() {
+        return "CemeteryReport{"
+                + "bodyCount=" + bodyCount
+                + ", buriedCount=" + buriedCount
+                + ", vampireCount=" + vampireCount
+                + ", genderCounts=" + genderCounts
+                + ", rows=" + occupancyByRow.size()
+                + '}';
+    }
+
+    /**
+     * Occupancy of graves in one row.
+     */
+    public static final class RowOccupancy {
+
+        private final int row;
+        private final long graveCount;
+        private final long capacity;
+        private final long occupied;
+
+        RowOccupancy(int row, long graveCount, long capacity, long occupied) {
+            this.row = row;
+            this.graveCount = graveCount;
+            this.capacity = capacity;
+            this.occupied = occupied;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * @return number of graves in the row
+         */
+        public long getGraveCount() {
+            return graveCount;
+        }
+
+        /**
+         * @return total capacity of graves in the row
+         */
+        public long getCapacity() {
+            return capacity;
+        }
+
+        /**
+         * @return number of bodies placed in graves in the row
+         */
+        public long getOccupied() {
+            return occupied;
+        }
+
+        /**
+         * @return number of free slots in graves in the row
+         */
+        public long getFree() {
+            return capacity - occupied;
+        }
+
+        @Override
+        public String toString() {
+            return "RowOccupancy{row=" + row + ", graveCount=" + graveCount
+                    + ", capacity=" + capacity + ", occupied=" + occupied + '}';
+        }
+    }
+
+    /**
+     * Mutable partial aggregates of a part of bodies. Accumulators of
+     * different parts are combined with {@link #merge(Accumulator)}.
+     */
+    static final class Accumulator {
+
+        private static final int MAX_LIFESPAN_RANGES = 16;
+
+        private long bodyCount;
+        private long buriedCount;
+        private long vampireCount;
+        private long buriedVampireCount;
+        private final long[] genderCounts = new long[GENDERS.length];
+        private final long[] lifespanCounts = new long[MAX_LIFESPAN_RANGES];
+        private long lifespanSum;
+        private long lifespanKnownCount;
+        private final Map<Integer, Long> burialsByYearOfDeath = new HashMap<>();
+        private final Map<Integer, Long> occupiedByRow = new HashMap<>();
+
+        /**
+         * Adds one body.
+         *
+         * @param gender gender of the body
+         * @param born date of birth or null
+         * @param died date of death or null
+         * @param vampire true if the body is vampire
+         * @param graveRow row of the grave containing the body or null when
+         * the body is not buried
+         */
+        void add(Gender gender, LocalDate born, LocalDate died, boolean vampire, Integer graveRow) {
+            bodyCount++;
+            if (gender != null) {
+                genderCounts[gender.ordinal()]++;
+            }
+            if (vampire) {
+                vampireCount++;
+            }
+            if (born != null && died != null) {
+                long years = Math.max(0, ChronoUnit.YEARS.between(born, died));
+                lifespanCounts[(int) Math.min(years / LIFESPAN_RANGE_YEARS, MAX_LIFESPAN_RANGES - 1)]++;
+                lifespanSum += years;
+                lifespanKnownCount++;
+            }
+            if (graveRow != null) {
+                buriedCount++;
+                if (vampire) {
+                    buriedVampireCount++;
+                }
+                occupiedByRow.merge(graveRow, 1L, Long::sum);
+                if (died != null) {
+                    burialsByYearOfDeath.merge(died.getYear(), 1L, Long::sum);
+                }
+            }
+        }
+
+        /**
+         * Adds all aggregates of other accumulator to this one.
+         *
+         * @param other other accumulator
+         * @return this accumulator
+         */
+        Accumulator merge(Accumulator other) {
+            bodyCount += other.bodyCount;
+            buriedCount += other.buriedCount;
+            vampireCount += other.vampireCount;
+            buriedVampireCount += other.buriedVampireCount;
+            for (int i = 0; i < genderCounts.length; i++) {
+                genderCounts[i] += other.genderCounts[i];
+            }
+            for (int i = 0; i < lifespanCounts.length; i++) {
+                lifespanCounts[i] += other.lifespanCounts[i];
+            }
+            lifespanSum += other.lifespanSum;
+            lifespanKnownCount += other.lifespanKnownCount;
+            other.burialsByYearOfDeath.forEach((year, count) -> burialsByYearOfDeath.merge(year, count, Long::sum));
+            other.occupiedByRow.forEach((row, count) -> occupiedByRow.merge(row, count, Long::sum));
+            return this;
+        }
+
+        /**
+         * Creates report from the aggregates of bodies and given graves.
+         *
+         * @param gravesByRow number of graves and their total capacity in
+         * each row, as array of two elements
+         * @return report
+         */
+        CemeteryReport toReport(Map<Integer, long[]> gravesByRow) {
+            SortedMap<Integer, RowOccupancy> rows = new TreeMap<>();
+            gravesByRow.forEach((row, graves) ->
+                    rows.put(row, new RowOccupancy(row, graves[0], graves[1], occupiedByRow.getOrDefault(row, 0L))));
+            // grave may be created concurrently with the bodies being read
+            occupiedByRow.forEach((row, occupied) ->
+                    rows.computeIfAbsent(row, (r) -> new RowOccupancy(r, 0, 0, occupied)));
+            return new CemeteryReport(this, rows);
+        }
+    }
+}
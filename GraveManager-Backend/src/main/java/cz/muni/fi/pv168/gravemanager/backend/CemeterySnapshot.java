@@ -0,0 +1,245 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable in-memory model of the whole cemetery, i.e. all graves together
+ * with bodies placed in them and all unburied bodies. Snapshots are created
+ * and refreshed by {@link CemeterySnapshotLoader}.
+ * <p>
+ * Graves are ordered by id and addressed by their index in the snapshot.
+ * Bodies of all graves are kept in one array where bodies of each grave form
+ * a continuous range, so occupancy, free slots and bodies of the grave with
+ * given index are available in constant time. Index of the grave with given
+ * id is found with binary search.
+ * <p>
+ * Entities are mutable, so all methods return new copies of graves and
+ * bodies.
+ *
+ * @author Petr Adámek
+ */
+public final class CemeterySnapshot {
+
+    private final long version;
+    private final long[] graveIds;
+    private final Grave[] graves;
+    private final int[] bodyOffsets;
+    private final Body[] buriedBodies;
+    private final Body[] unburiedBodies;
+    private final int totalCapacity;
+
+    private CemeterySnapshot(long version, Grave[] graves, int[] bodyOffsets, Body[] buriedBodies, Body[] unburiedBodies) {
+        this.version = version;
+        this.graves = graves;
+        this.bodyOffsets = bodyOffsets;
+        this.buriedBodies = buriedBodies;
+        this.unburiedBodies = unburiedBodies;
+        this.graveIds = new long[graves.length];
+        int capacity = 0;
+        for (int i = 0; i < graves.length; i++) {
+            graveIds[i] = graves[i].getId();
+            capacity += graves[i].getCapacity();
+        }
+        this.totalCapacity = capacity;
+    }
+
+    /**
+     * Returns version of the data in this snapshot. It is id of the last
+     * change from the change log which is included in this snapshot.
+     *
+     * @return version of the snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return number of graves
+     */
+    public int getGraveCount() {
+        return graves.length;
+    }
+
+    /**
+     * Returns index of the grave with given id.
+     *
+     * @param graveId id of the grave
+     * @return index of the grave or -1 when there is no such grave
+     */
+    public int indexOfGrave(long graveId) {
+        int index = Arrays.binarySearch(graveIds, graveId);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * @param index index of the grave
+     * @return copy of the grave with given index
+     * @throws IndexOutOfBoundsException when index is out of range
+     */
+    public Grave getGrave(int index) {
+        return CachingGraveManager.copyOf(graves[index]);
+    }
+
+    /**
+     * @return copies of all graves ordered by id
+     */
+    public List<Grave> getGraves() {
+        List<Grave> result = new ArrayList<>(graves.length);
+        for (Grave grave : graves) {
+            result.add(CachingGraveManager.copyOf(grave));
+        }
+        return result;
+    }
+
+    /**
+     * @param index index of the grave
+     * @return number of bodies in the grave with given index
+     * @throws IndexOutOfBoundsException when index is out of range
+     */
+    public int getOccupied(int index) {
+        return bodyOffsets[index + 1] - bodyOffsets[index];
+    }
+
+    /**
+     * @param index index of the grave
+     * @return number of free slots in the grave with given index
+     * @throws IndexOutOfBoundsException when index is out of range
+     */
+    public int getFreeSlots(int index) {
+        return graves[index].getCapacity() - getOccupied(index);
+    }
+
+    /**
+     * @param index index of the grave
+     * @return copies of bodies in the grave with given index ordered by id
+     * @throws IndexOutOfBoundsException when index is out of range
+     */
+    public List<Body> getBodiesInGrave(int index) {
+        return copyOf(buriedBodies, bodyOffsets[index], bodyOffsets[index + 1]);
+    }
+
+    /**
+     * @return copies of bodies which are not placed in any grave ordered by id
+     */
+    public List<Body> getUnburiedBodies() {
+        return copyOf(unburiedBodies, 0, unburiedBodies.length);
+    }
+
+    /**
+     * @return number of bodies which are not placed in any grave
+     */
+    public int getUnburiedBodyCount() {
+        return unburiedBodies.length;
+    }
+
+    /**
+     * @return sum of capacities of all graves
+     */
+    public int getTotalCapacity() {
+        return totalCapacity;
+    }
+
+    /**
+     * @return number of bodies placed in graves
+     */
+    public int getTotalOccupied() {
+        return buriedBodies.length;
+    }
+
+    /**
+     * @return number of free slots in all graves
+     */
+    public int getTotalFreeSlots() {
+        return totalCapacity - buriedBodies.length;
+    }
+
+    /**
+     * Returns grave with given index without copying, for use by the loader.
+     */
+    Grave graveAt(int index) {
+        return graves[index];
+    }
+
+    /**
+     * Returns bodies of grave with given index without copying, for use by
+     * the loader.
+     */
+    List<Body> bodiesAt(int index) {
+        return Arrays.asList(buriedBodies).subList(bodyOffsets[index], bodyOffsets[index + 1]);
+    }
+
+    /**
+     * Returns unburied bodies without copying, for use by the loader.
+     */
+    List<Body> unburiedBodies() {
+        return Arrays.asList(unburiedBodies);
+    }
+
+    private static List<Body> copyOf(Body[] bodies, int from, int to) {
+        List<Body> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(CachingBodyManager.copyOf(bodies[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CemeterySnapshot{"
+                + "version=" + version
+                + ", graves=" + graves.length
+                + ", buriedBodies=" + buriedBodies.length
+                + ", unburiedBodies=" + unburiedBodies.length
+                + '}';
+    }
+
+    /**
+     * Builds snapshot from graves added in ascending order of their ids,
+     * each followed by its bodies.
+     */
+    static class Builder {
+
+        private final List<Grave> graves = new ArrayList<>();
+        private final List<Integer> bodyOffsets = new ArrayList<>();
+        private final List<Body> buriedBodies = new ArrayList<>();
+        private final List<Body> unburiedBodies = new ArrayList<>();
+
+        Builder addGrave(Grave grave) {
+            if (!graves.isEmpty() && graves.get(graves.size() - 1).getId() >= grave.getId()) {
+                throw new IllegalArgumentException("graves are not added in ascending order of ids");
+            }
+            graves.add(grave);
+            bodyOffsets.add(buriedBodies.size());
+            return this;
+        }
+
+        /**
+         * Adds body into the last added grave.
+         */
+        Builder addBody(Body body) {
+            if (graves.isEmpty()) throw new IllegalStateException("no grave added");
+            buriedBodies.add(body);
+            return this;
+        }
+
+        Builder addUnburiedBody(Body body) {
+            unburiedBodies.add(body);
+            return this;
+        }
+
+        CemeterySnapshot build(long version) {
+            int[] offsets = new int[graves.size() + 1];
+            for (int i = 0; i < bodyOffsets.size(); i++) {
+                offsets[i] = bodyOffsets.get(i);
+            }
+            offsets[graves.size()] = buriedBodies.size();
+            return new CemeterySnapshot(version,
+                    graves.toArray(new Grave[0]),
+                    offsets,
+                    buriedBodies.toArray(new Body[0]),
+                    unburiedBodies.toArray(new Body[0]));
+        }
+    }
+}
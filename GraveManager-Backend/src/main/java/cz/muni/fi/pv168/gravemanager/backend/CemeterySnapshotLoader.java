@@ -0,0 +1,285 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Loads {@link CemeterySnapshot} from the database and keeps it up to date.
+ * <p>
+ * Each modification of graves and bodies is recorded into the change log
+ * (see {@link ChangeFeed}). Version of the snapshot is sequence number of
+ * the last change included in it, so {@link #refresh(CemeterySnapshot)} reloads just the
+ * graves and bodies changed since the snapshot was created. When there is
+ * too many changes, whole snapshot is loaded again.
+ * <p>
+ * Changes done while the snapshot is loaded may be included in it or not,
+ * but they are always applied by the next refresh.
+ *
+ * @author Petr Adámek
+ */
+public class CemeterySnapshotLoader {
+
+    private static final String SELECT_CHANGE_LOG_BOUNDS =
+            "SELECT MIN(id), MAX(id) FROM Change_Log";
+
+    private final DataSource dataSource;
+
+    /**
+     * Creates new loader.
+     *
+     * @param dataSource datasource
+     */
+    @SuppressWarnings("WeakerAccess")
+    public CemeterySnapshotLoader(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Loads snapshot of the whole cemetery.
+     *
+     * @return new snapshot
+     * @throws ServiceFailureException when db operation fails
+     */
+    public CemeterySnapshot load() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection()) {
+            // the version is read first, so changes done during the load are applied by the next refresh
+            long version = readChangeLogBounds(conn)[1];
+            return load(conn, version);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when loading cemetery snapshot", ex);
+        }
+    }
+
+    /**
+     * Returns snapshot with all changes done since given snapshot was
+     * created. Only changed graves and bodies are loaded from the database.
+     *
+     * @param snapshot snapshot to be refreshed
+     * @return given snapshot when there is no change, new snapshot otherwise
+     * @throws ServiceFailureException when db operation fails
+     */
+    public CemeterySnapshot refresh(CemeterySnapshot snapshot) throws ServiceFailureException {
+        if (snapshot == null) throw new IllegalArgumentException("snapshot is null");
+        try (Connection conn = dataSource.getConnection()) {
+            long[] bounds = readChangeLogBounds(conn);
+            long oldestChange = bounds[0];
+            long version = bounds[1];
+            if (version <= snapshot.getVersion()) {
+                return snapshot;
+            }
+            if (oldestChange > snapshot.getVersion() + 1) {
+                // changes after the snapshot version may have been compacted
+                return load(conn, version);
+            }
+            Set<Long> graveIds = new TreeSet<>();
+            Set<Long> bodyIds = new TreeSet<>();
+            int maxChanges = (snapshot.getGraveCount() + snapshot.getTotalOccupied() + snapshot.getUnburiedBodyCount()) / 4;
+            if (!readChanges(conn, snapshot.getVersion(), version, maxChanges, graveIds, bodyIds)) {
+                return load(conn, version);
+            }
+            CemeterySnapshot result = applyChanges(conn, snapshot, version, graveIds, bodyIds);
+            return result != null ? result : load(conn, version);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when refreshing cemetery snapshot", ex);
+        }
+    }
+
+    private static long[] readChangeLogBounds(Connection conn) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement(SELECT_CHANGE_LOG_BOUNDS);
+             ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return new long[]{rs.getLong(1), rs.getLong(2)};
+        }
+    }
+
+    private static CemeterySnapshot load(Connection conn, long version) throws SQLException {
+        CemeterySnapshot.Builder builder = new CemeterySnapshot.Builder();
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT Grave.id, col, row, capacity, note, " +
+                        "Body.id AS bodyId, name, gender, born, died, vampire " +
+                        "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
+                        "ORDER BY Grave.id, Body.id");
+             ResultSet rs = st.executeQuery()) {
+            GraveRowMapper graveMapper = new GraveRowMapper(rs);
+            BodyRowMapper bodyMapper = new BodyRowMapper(rs, "bodyId");
+            int idColumn = rs.findColumn("id");
+            int bodyIdColumn = rs.findColumn("bodyId");
+            long lastGraveId = 0;
+            boolean first = true;
+            while (rs.next()) {
+                long graveId = rs.getLong(idColumn);
+                if (first || graveId != lastGraveId) {
+                    builder.addGrave(graveMapper.mapRow(rs));
+                    lastGraveId = graveId;
+                    first = false;
+                }
+                rs.getLong(bodyIdColumn);
+                if (!rs.wasNull()) {
+                    builder.addBody(bodyMapper.mapRow(rs));
+                }
+            }
+        }
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT id, name, gender, born, died, vampire FROM Body WHERE graveId IS NULL ORDER BY id");
+             ResultSet rs = st.executeQuery()) {
+            BodyRowMapper bodyMapper = new BodyRowMapper(rs);
+            while (rs.next()) {
+                builder.addUnburiedBody(bodyMapper.mapRow(rs));
+            }
+        }
+        return builder.build(version);
+    }
+
+    /**
+     * Reads ids of graves and bodies changed after given version up to the
+     * new version.
+     *
+     * @return false when there are more than maxChanges changes
+     */
+    private static boolean readChanges(Connection conn, long fromVersion, long toVersion, int maxChanges,
+                                       Set<Long> graveIds, Set<Long> bodyIds) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT COUNT(*) FROM Change_Log WHERE id > ? AND id <= ?")) {
+            st.setLong(1, fromVersion);
+            st.setLong(2, toVersion);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                if (rs.getLong(1) > maxChanges) {
+                    return false;
+                }
+            }
+        }
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT DISTINCT graveId, bodyId FROM Change_Log WHERE id > ? AND id <= ?")) {
+            st.setLong(1, fromVersion);
+            st.setLong(2, toVersion);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    long graveId = rs.getLong(1);
+                    if (!rs.wasNull()) {
+                        graveIds.add(graveId);
+                    }
+                    long bodyId = rs.getLong(2);
+                    if (!rs.wasNull()) {
+                        bodyIds.add(bodyId);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates new snapshot from the old one by reloading changed graves and
+     * bodies.
+     *
+     * @return new snapshot or null when the changes are not consistent (e.g.
+     * body was placed into grave created after the change log was read)
+     */
+    private static CemeterySnapshot applyChanges(Connection conn, CemeterySnapshot snapshot, long version,
+                                                 Set<Long> graveIds, Set<Long> bodyIds) throws SQLException {
+        Map<Long, Grave> graves = new TreeMap<>();
+        Map<Long, Body> bodies = new TreeMap<>();
+        Map<Long, Long> graveIdByBodyId = new HashMap<>();
+        for (int i = 0; i < snapshot.getGraveCount(); i++) {
+            Grave grave = snapshot.graveAt(i);
+            graves.put(grave.getId(), grave);
+            for (Body body : snapshot.bodiesAt(i)) {
+                bodies.put(body.getId(), body);
+                graveIdByBodyId.put(body.getId(), grave.getId());
+            }
+        }
+        for (Body body : snapshot.unburiedBodies()) {
+            bodies.put(body.getId(), body);
+        }
+
+        // deleted entities are just removed, the others are replaced with reloaded ones
+        graves.keySet().removeAll(graveIds);
+        bodies.keySet().removeAll(bodyIds);
+        graveIdByBodyId.keySet().removeAll(bodyIds);
+        loadGraves(conn, graveIds, graves);
+        loadBodies(conn, bodyIds, bodies, graveIdByBodyId);
+
+        Map<Long, List<Body>> bodiesByGraveId = new HashMap<>();
+        List<Body> unburiedBodies = new ArrayList<>();
+        for (Body body : bodies.values()) {
+            Long graveId = graveIdByBodyId.get(body.getId());
+            if (graveId == null) {
+                unburiedBodies.add(body);
+            } else if (graves.containsKey(graveId)) {
+                bodiesByGraveId.computeIfAbsent(graveId, (id) -> new ArrayList<>()).add(body);
+            } else {
+                return null;
+            }
+        }
+        CemeterySnapshot.Builder builder = new CemeterySnapshot.Builder();
+        for (Grave grave : graves.values()) {
+            builder.addGrave(grave);
+            for (Body body : bodiesByGraveId.getOrDefault(grave.getId(), Collections.emptyList())) {
+                builder.addBody(body);
+            }
+        }
+        unburiedBodies.forEach(builder::addUnburiedBody);
+        return builder.build(version);
+    }
+
+    private static void loadGraves(Connection conn, Set<Long> ids, Map<Long, Grave> graves) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT id, col, row, capacity, note FROM Grave " +
+                        "WHERE id IN (" + CemeteryManagerImpl.IN_LIST_PLACEHOLDERS + ")")) {
+            for (List<Long> chunk : CemeteryManagerImpl.chunks(ids)) {
+                CemeteryManagerImpl.setInList(st, chunk);
+                try (ResultSet rs = st.executeQuery()) {
+                    GraveRowMapper mapper = new GraveRowMapper(rs);
+                    while (rs.next()) {
+                        Grave grave = mapper.mapRow(rs);
+                        graves.put(grave.getId(), grave);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void loadBodies(Connection conn, Set<Long> ids, Map<Long, Body> bodies,
+                                   Map<Long, Long> graveIdByBodyId) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement st = conn.prepareStatement(
+                "SELECT id, graveId, name, gender, born, died, vampire FROM Body " +
+                        "WHERE id IN (" + CemeteryManagerImpl.IN_LIST_PLACEHOLDERS + ")")) {
+            for (List<Long> chunk : CemeteryManagerImpl.chunks(ids)) {
+                CemeteryManagerImpl.setInList(st, chunk);
+                try (ResultSet rs = st.executeQuery()) {
+                    BodyRowMapper mapper = new BodyRowMapper(rs);
+                    int graveIdColumn = rs.findColumn("graveId");
+                    while (rs.next()) {
+                        Body body = mapper.mapRow(rs);
+                        bodies.put(body.getId(), body);
+                        long graveId = rs.getLong(graveIdColumn);
+                        if (!rs.wasNull()) {
+                            graveIdByBodyId.put(body.getId(), graveId);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
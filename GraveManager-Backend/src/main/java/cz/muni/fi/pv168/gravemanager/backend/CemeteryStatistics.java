@@ -0,0 +1,202 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static cz.muni.fi.pv168.gravemanager.backend.BodyRowMapper.toGender;
+import static cz.muni.fi.pv168.gravemanager.backend.BodyRowMapper.toLocalDate;
+
+/**
+ * Computes {@link CemeteryReport} directly from the database. All
+ * statistics of bodies are aggregated in one pass over the cursor of bodies
+ * joined with their graves, no entities are created and no list of bodies
+ * is kept in memory. Graves are aggregated by the database, so only one row
+ * per grave row is transferred.
+ * <p>
+ * Large cemeteries can be processed by {@link #compute(int)}, which splits
+ * the bodies into ranges of ids, aggregates each range on its own connection
+ * in a fork/join pool and merges the partial aggregates.
+ *
+ * @author Petr Adámek
+ */
+public class CemeteryStatistics {
+
+    /**
+     * Default number of rows fetched from the database at once.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final String SELECT_BODIES =
+            "SELECT gender, born, died, vampire, row FROM Body LEFT JOIN Grave ON Body.graveId = Grave.id";
+
+    private static final String SELECT_BODIES_IN_RANGE =
+            SELECT_BODIES + " WHERE Body.id BETWEEN ? AND ?";
+
+    private static final String SELECT_BODY_ID_BOUNDS =
+            "SELECT MIN(id), MAX(id) FROM Body";
+
+    private static final String SELECT_GRAVES_BY_ROW =
+            "SELECT row, COUNT(*), SUM(CAST(capacity AS BIGINT)) FROM Grave GROUP BY row";
+
+    private final DataSource dataSource;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * Creates new statistics service.
+     *
+     * @param dataSource datasource
+     */
+    public CemeteryStatistics(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Sets number of rows fetched from the database at once.
+     *
+     * @param fetchSize number of rows fetched at once
+     * @throws IllegalArgumentException when fetchSize is not positive number
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize is not positive number");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Computes statistics of the whole cemetery in one pass over all bodies.
+     *
+     * @return statistics of the cemetery
+     * @throws ServiceFailureException when db operation fails
+     */
+    public CemeteryReport compute() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection()) {
+            Map<Integer, long[]> gravesByRow = findGravesByRow(conn);
+            CemeteryReport.Accumulator bodies;
+            try (PreparedStatement st = conn.prepareStatement(SELECT_BODIES)) {
+                bodies = aggregateBodies(st);
+            }
+            return bodies.toReport(gravesByRow);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when computing cemetery statistics", ex);
+        }
+    }
+
+    /**
+     * Computes statistics of the whole cemetery, bodies are split into given
+     * number of ranges which are aggregated in parallel. Each range is read
+     * in its own transaction, so unlike {@link #compute()}, bodies modified
+     * during the computation may be counted according to different states.
+     *
+     * @param parallelism number of ranges aggregated in parallel, the
+     * datasource should provide at least so many connections at once
+     * @return statistics of the cemetery
+     * @throws IllegalArgumentException when parallelism is not positive number
+     * @throws ServiceFailureException when db operation fails
+     */
+    public CemeteryReport compute(int parallelism) throws ServiceFailureException {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism is not positive number");
+        if (parallelism == 1) {
+            return compute();
+        }
+        Map<Integer, long[]> gravesByRow;
+        long minId;
+        long maxId;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(SELECT_BODY_ID_BOUNDS)) {
+            gravesByRow = findGravesByRow(conn);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                minId = rs.getLong(1);
+                if (rs.wasNull()) {
+                    return new CemeteryReport.Accumulator().toReport(gravesByRow);
+                }
+                maxId = rs.getLong(2);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when computing cemetery statistics", ex);
+        }
+        long rangeSize = Math.max(1, (maxId - minId) / parallelism + 1);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new AggregateTask(minId, maxId, rangeSize)).toReport(gravesByRow);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Map<Integer, long[]> findGravesByRow(Connection conn) throws SQLException {
+        Map<Integer, long[]> result = new HashMap<>();
+        try (PreparedStatement st = conn.prepareStatement(SELECT_GRAVES_BY_ROW);
+             ResultSet rs = st.executeQuery()) {
+            while (rs.next()) {
+                result.put(rs.getInt(1), new long[]{rs.getLong(2), rs.getLong(3)});
+            }
+        }
+        return result;
+    }
+
+    private CemeteryReport.Accumulator aggregateBodies(PreparedStatement st) throws SQLException {
+        st.setFetchSize(fetchSize);
+        CemeteryReport.Accumulator result = new CemeteryReport.Accumulator();
+        try (ResultSet rs = st.executeQuery()) {
+            while (rs.next()) {
+                int row = rs.getInt(5);
+                Integer graveRow = rs.wasNull() ? null : row;
+                result.add(toGender(rs.getString(1)), toLocalDate(rs.getDate(2)), toLocalDate(rs.getDate(3)),
+                        rs.getBoolean(4), graveRow);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Aggregates bodies with ids in given range. Ranges longer than range
+     * size are split in halves, which are aggregated in parallel and merged.
+     */
+    private class AggregateTask extends RecursiveTask<CemeteryReport.Accumulator> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long fromId;
+        private final long toId;
+        private final long rangeSize;
+
+        AggregateTask(long fromId, long toId, long rangeSize) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        protected CemeteryReport.Accumulator compute() {
+            if (toId - fromId < rangeSize) {
+                return aggregateRange();
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            AggregateTask left = new AggregateTask(fromId, middle, rangeSize);
+            AggregateTask right = new AggregateTask(middle + 1, toId, rangeSize);
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+
+        private CemeteryReport.Accumulator aggregateRange() {
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement st = conn.prepareStatement(SELECT_BODIES_IN_RANGE)) {
+                st.setLong(1, fromId);
+                st.setLong(2, toId);
+                return aggregateBodies(st);
+            } catch (SQLException ex) {
+                throw new ServiceFailureException("Error when computing cemetery statistics", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.time.Instant;
+
+/**
+ * One modification of a grave or a body recorded in the change log and
+ * returned by {@link ChangeFeed}.
+ *
+ * @author Petr Adámek
+ */
+public final class Change {
+
+    /**
+     * Type of the modified entity.
+     */
+    public enum EntityType {
+        GRAVE, BODY
+    }
+
+    /**
+     * Kind of the modification. Body which was placed into a grave is
+     * recorded as {@link #BURY}, body which was removed from its grave as
+     * {@link #UNBURY}. Change of the grave occupancy is recorded as
+     * {@link #UPDATE} of the grave.
+     */
+    public enum Operation {
+        CREATE, UPDATE, DELETE, BURY, UNBURY
+    }
+
+    private final long sequence;
+    private final EntityType entityType;
+    private final long entityId;
+    private final Operation operation;
+    private final Instant created;
+
+    Change(long sequence, EntityType entityType, long entityId, Operation operation, Instant created) {
+        this.sequence = sequence;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.operation = operation;
+        this.created = created;
+    }
+
+    /**
+     * @return sequence number of the change, changes are ordered by it
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return time when the change was recorded by the database
+     */
+    public Instant getCreated() {
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return "Change{"
+                + "sequence=" + sequence
+                + ", entityType=" + entityType
+                + ", entityId=" + entityId
+                + ", operation=" + operation
+                + '}';
+    }
+}
@@ -0,0 +1,272 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed of modifications of graves and bodies. Changes are recorded into
+ * append-only CHANGE_LOG table by database triggers, so they are written in
+ * the same transaction as the modification itself, regardless of which
+ * manager (or batch operation) did it, and changes of rolled back
+ * transactions are never visible.
+ * <p>
+ * Consumers remember sequence number of the last change they processed and
+ * {@link #poll(long, int) poll} for changes after it. The log is kept
+ * bounded by calling one of the compact methods periodically, or by
+ * {@link #scheduleCompaction(Duration, Duration)}. The latest change is
+ * never removed by compaction, so consumer which missed compacted changes is
+ * always detected and must load its data from scratch.
+ *
+ * @author Petr Adámek
+ */
+public class ChangeFeed implements AutoCloseable {
+
+    private final DataSource dataSource;
+    private final Clock clock;
+    private ScheduledExecutorService compactionExecutor;
+    private volatile ServiceFailureException lastCompactionFailure;
+
+    /**
+     * Creates new change feed.
+     *
+     * @param dataSource datasource
+     * @param clock clock used for computing retention of compacted changes
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ChangeFeed(DataSource dataSource, Clock clock) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        if (clock == null) throw new IllegalArgumentException("clock is null");
+        this.dataSource = dataSource;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns sequence number of the latest change. Consumer which loads its
+     * data from scratch should read it before loading, so changes done
+     * during the load are polled later.
+     *
+     * @return sequence number of the latest change or 0 when there is no change
+     * @throws ServiceFailureException when db operation fails
+     */
+    public long getLastSequence() throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement("SELECT MAX(id) FROM Change_Log");
+             ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when reading last change sequence", ex);
+        }
+    }
+
+    /**
+     * Returns changes with sequence number greater than given one, ordered
+     * by sequence number.
+     *
+     * @param afterSequence sequence number of the last change already
+     * processed by the consumer
+     * @param limit maximal number of returned changes
+     * @return batch of changes
+     * @throws IllegalArgumentException when limit is not positive number
+     * @throws ServiceFailureException when db operation fails
+     */
+    public Batch poll(long afterSequence, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        try (Connection conn = dataSource.getConnection()) {
+            List<Change> changes = new ArrayList<>();
+            try (PreparedStatement st = conn.prepareStatement(
+                    "SELECT id, graveId, bodyId, operation, created FROM Change_Log " +
+                            "WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY")) {
+                st.setLong(1, afterSequence);
+                st.setInt(2, limit);
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        changes.add(rowToChange(rs));
+                    }
+                }
+            }
+            // oldest change is read after the changes, so compaction running
+            // in between can cause false truncation only, never a missed one
+            long oldestSequence;
+            try (PreparedStatement st = conn.prepareStatement("SELECT MIN(id) FROM Change_Log");
+                 ResultSet rs = st.executeQuery()) {
+                rs.next();
+                oldestSequence = rs.getLong(1);
+            }
+            boolean truncated = oldestSequence > afterSequence + 1;
+            long lastSequence = changes.isEmpty() ? afterSequence : changes.get(changes.size() - 1).getSequence();
+            return new Batch(changes, lastSequence, truncated);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when polling changes after " + afterSequence, ex);
+        }
+    }
+
+    /**
+     * Removes changes with sequence number lower than given one. Use it when
+     * all consumers have already processed changes up to given sequence
+     * number.
+     *
+     * @param sequence sequence number of the oldest change to keep
+     * @return number of removed changes
+     * @throws ServiceFailureException when db operation fails
+     */
+    public int compact(long sequence) throws ServiceFailureException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "DELETE FROM Change_Log WHERE id < ? AND id < (SELECT MAX(id) FROM Change_Log)")) {
+            st.setLong(1, sequence);
+            return st.executeUpdate();
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when compacting changes before " + sequence, ex);
+        }
+    }
+
+    /**
+     * Removes changes older than given retention period.
+     *
+     * @param retention how long the changes are kept
+     * @return number of removed changes
+     * @throws IllegalArgumentException when retention is null or negative
+     * @throws ServiceFailureException when db operation fails
+     */
+    public int compact(Duration retention) throws ServiceFailureException {
+        if (retention == null) throw new IllegalArgumentException("retention is null");
+        if (retention.isNegative()) throw new IllegalArgumentException("retention is negative");
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "DELETE FROM Change_Log WHERE created < ? AND id < (SELECT MAX(id) FROM Change_Log)")) {
+            st.setTimestamp(1, Timestamp.from(clock.instant().minus(retention)));
+            return st.executeUpdate();
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when compacting changes older than " + retention, ex);
+        }
+    }
+
+    /**
+     * Starts removing changes older than given retention period
+     * periodically. The changes are removed by a background thread until
+     * the feed is closed, failure of the last compaction is available from
+     * {@link #getLastCompactionFailure()}.
+     *
+     * @param retention how long the changes are kept
+     * @param period time between the end of one compaction and the start of
+     * the next one
+     * @throws IllegalArgumentException when some argument is null, when
+     * retention is negative or when period is not positive
+     * @throws IllegalStateException when the compaction is already scheduled
+     */
+    public synchronized void scheduleCompaction(Duration retention, Duration period) {
+        if (retention == null) throw new IllegalArgumentException("retention is null");
+        if (retention.isNegative()) throw new IllegalArgumentException("retention is negative");
+        if (period == null) throw new IllegalArgumentException("period is null");
+        if (period.isZero() || period.isNegative()) throw new IllegalArgumentException("period is not positive");
+        if (compactionExecutor != null) throw new IllegalStateException("compaction is already scheduled");
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor((task) -> {
+            Thread thread = new Thread(task, "change-feed-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionExecutor.scheduleWithFixedDelay(() -> compactScheduled(retention),
+                period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void compactScheduled(Duration retention) {
+        try {
+            compact(retention);
+            lastCompactionFailure = null;
+        } catch (ServiceFailureException ex) {
+            lastCompactionFailure = ex;
+        }
+    }
+
+    /**
+     * @return failure of the last periodic compaction or null when it
+     * succeeded
+     */
+    public ServiceFailureException getLastCompactionFailure() {
+        return lastCompactionFailure;
+    }
+
+    /**
+     * Stops periodic compaction, if it is scheduled. Compaction which is
+     * just running is finished first.
+     */
+    @Override
+    public synchronized void close() {
+        if (compactionExecutor == null) {
+            return;
+        }
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        compactionExecutor = null;
+    }
+
+    private static Change rowToChange(ResultSet rs) throws SQLException {
+        long sequence = rs.getLong("id");
+        long graveId = rs.getLong("graveId");
+        boolean isGrave = !rs.wasNull();
+        Change.EntityType entityType = isGrave ? Change.EntityType.GRAVE : Change.EntityType.BODY;
+        long entityId = isGrave ? graveId : rs.getLong("bodyId");
+        Change.Operation operation = Change.Operation.valueOf(rs.getString("operation"));
+        return new Change(sequence, entityType, entityId, operation, rs.getTimestamp("created").toInstant());
+    }
+
+    /**
+     * Changes returned by one call of {@link #poll(long, int)}.
+     */
+    public static final class Batch {
+
+        private final List<Change> changes;
+        private final long lastSequence;
+        private final boolean truncated;
+
+        private Batch(List<Change> changes, long lastSequence, boolean truncated) {
+            this.changes = Collections.unmodifiableList(changes);
+            this.lastSequence = lastSequence;
+            this.truncated = truncated;
+        }
+
+        /**
+         * @return changes ordered by sequence number
+         */
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        /**
+         * @return sequence number to be passed to the next poll
+         */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        /**
+         * Returns true when some changes after the polled sequence number
+         * were already removed by compaction. Consumer must then load its
+         * data from scratch.
+         *
+         * @return true when some changes are missing
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+}
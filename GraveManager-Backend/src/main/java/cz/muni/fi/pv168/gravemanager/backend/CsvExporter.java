@@ -0,0 +1,166 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.CsvWriter;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports bodies and graves into CSV files which can be imported by
+ * {@link CsvImporter}.
+ * <p>
+ * Rows are written directly from open database cursor, so memory
+ * consumption does not depend on the number of exported rows.
+ *
+ * @author Petr Adámek
+ */
+public class CsvExporter {
+
+    /**
+     * Default number of rows fetched from the database in one round trip.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final String[] BODY_HEADER = {"id", "graveId", "name", "gender", "born", "died", "vampire"};
+    private static final String[] GRAVE_HEADER = {"id", "row", "column", "capacity", "note"};
+
+    private final DataSource dataSource;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    /**
+     * Creates new exporter.
+     *
+     * @param dataSource datasource
+     */
+    @SuppressWarnings("WeakerAccess")
+    public CsvExporter(DataSource dataSource) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Sets number of rows fetched from the database in one round trip.
+     *
+     * @param fetchSize number of rows fetched at once
+     * @throws IllegalArgumentException when fetchSize is not positive number
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize is not positive number");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Exports all bodies into given file. Files with name ending with .gz
+     * are compressed.
+     *
+     * @param file target file, it is overwritten when exists
+     * @return number of exported bodies
+     * @throws ServiceFailureException when writing of the file or db
+     * operation fails
+     */
+    public long exportBodies(Path file) throws ServiceFailureException {
+        try (Writer writer = openWriter(file)) {
+            return exportBodies(writer);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when writing " + file, ex);
+        }
+    }
+
+    /**
+     * Exports all bodies into given writer. The writer is flushed, but not
+     * closed.
+     *
+     * @param writer target writer, it should be buffered
+     * @return number of exported bodies
+     * @throws ServiceFailureException when writing or db operation fails
+     */
+    public long exportBodies(Writer writer) throws ServiceFailureException {
+        return export(writer, "bodies",
+                "SELECT id, graveId, name, gender, born, died, vampire FROM Body",
+                BODY_HEADER);
+    }
+
+    /**
+     * Exports all graves into given file. Files with name ending with .gz
+     * are compressed.
+     *
+     * @param file target file, it is overwritten when exists
+     * @return number of exported graves
+     * @throws ServiceFailureException when writing of the file or db
+     * operation fails
+     */
+    public long exportGraves(Path file) throws ServiceFailureException {
+        try (Writer writer = openWriter(file)) {
+            return exportGraves(writer);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when writing " + file, ex);
+        }
+    }
+
+    /**
+     * Exports all graves into given writer. The writer is flushed, but not
+     * closed.
+     *
+     * @param writer target writer, it should be buffered
+     * @return number of exported graves
+     * @throws ServiceFailureException when writing or db operation fails
+     */
+    public long exportGraves(Writer writer) throws ServiceFailureException {
+        return export(writer, "graves",
+                "SELECT id, row, col, capacity, note FROM Grave",
+                GRAVE_HEADER);
+    }
+
+    private long export(Writer writer, String entities, String sql, String[] header) {
+        CsvWriter csvWriter = new CsvWriter(writer);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(sql)) {
+            st.setFetchSize(fetchSize);
+            csvWriter.writeRecord(header);
+            long rows = 0;
+            // one array is reused for all rows, values are converted by the driver
+            String[] fields = new String[header.length];
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < fields.length; i++) {
+                        fields[i] = rs.getString(i + 1);
+                    }
+                    csvWriter.writeRecord(fields);
+                    rows++;
+                }
+            }
+            csvWriter.flush();
+            return rows;
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when exporting " + entities + " from db", ex);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when writing " + entities, ex);
+        }
+    }
+
+    private static Writer openWriter(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        try {
+            if (file.getFileName().toString().endsWith(".gz")) {
+                out = new GZIPOutputStream(out, 64 * 1024);
+            }
+            return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        } catch (IOException ex) {
+            out.close();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.CsvReader;
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports bodies and graves from CSV files of any size.
+ * <p>
+ * The file is read with {@link CsvReader} by the calling thread, each row
+ * is validated with the same rules as in {@link BodyManagerImpl} and
+ * {@link GraveManagerImpl} and valid rows are passed in batches through
+ * bounded queue to worker threads. Each worker inserts batches with its own
+ * connection using JDBC statement batching, so memory consumption does not
+ * depend on the size of the file. Invalid rows are skipped and reported in
+ * {@link ImportResult}.
+ * <p>
+ * The import is not atomic. Each batch is committed separately, so rows
+ * inserted before a failure stay in the database and as the batches are
+ * inserted in parallel, they need not be the rows at the beginning of the
+ * file. Message of the {@link ServiceFailureException} thrown on failure
+ * contains number of committed rows and ranges of lines where the
+ * committed records start, e.g. {@code 1000 rows from lines 2-501,
+ * 1002-1501 are committed}. The import can be resumed by importing again
+ * only the records outside of these ranges.
+ * <p>
+ * The first row of the file is a header with column names. Columns of
+ * bodies are name, gender, born, died and vampire, columns of graves are
+ * row, column, capacity and note. Dates are in ISO format (yyyy-MM-dd),
+ * empty fields mean null, and other columns (e.g. id written by
+ * {@link CsvExporter}) are ignored.
+ *
+ * @author Petr Adámek
+ */
+public class CsvImporter {
+
+    /**
+     * Default number of rows inserted in one batch and one transaction.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Default number of worker threads inserting rows.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Maximal number of rejected rows reported in {@link ImportResult}.
+     */
+    public static final int MAX_REPORTED_REJECTIONS = 1000;
+
+    private final DataSource dataSource;
+    private final Clock clock;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int threads = DEFAULT_THREADS;
+
+    /**
+     * Creates new importer.
+     *
+     * @param dataSource datasource
+     * @param clock clock used for validation of dates
+     */
+    @SuppressWarnings("WeakerAccess")
+    public CsvImporter(DataSource dataSource, Clock clock) {
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        if (clock == null) throw new IllegalArgumentException("clock is null");
+        this.dataSource = dataSource;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets number of rows inserted in one batch and one transaction.
+     *
+     * @param batchSize number of rows in one batch
+     * @throws IllegalArgumentException when batchSize is not positive number
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize is not positive number");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets number of worker threads, each of them uses its own connection.
+     *
+     * @param threads number of worker threads
+     * @throws IllegalArgumentException when threads is not positive number
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("threads is not positive number");
+        this.threads = threads;
+    }
+
+    /**
+     * Imports bodies from given CSV file. Files with name ending with .gz
+     * are decompressed.
+     *
+     * @param file CSV file in UTF-8
+     * @return result of the import
+     * @throws ValidationException when header of the file is missing
+     * some required column
+     * @throws ServiceFailureException when reading of the file or db
+     * operation fails
+     */
+    public ImportResult importBodies(Path file) throws ServiceFailureException {
+        try (Reader reader = openReader(file)) {
+            return importBodies(reader);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when reading " + file, ex);
+        }
+    }
+
+    /**
+     * Imports bodies from given CSV data.
+     *
+     * @param reader reader of CSV data
+     * @return result of the import
+     * @throws ValidationException when header of the data is missing
+     * some required column
+     * @throws ServiceFailureException when reading of the data or db
+     * operation fails
+     */
+    public ImportResult importBodies(Reader reader) throws ServiceFailureException {
+        return importRecords(reader, "bodies",
+                "INSERT INTO Body (name,gender,born,died,vampire) VALUES (?,?,?,?,?)",
+                this::bodyParser,
+                (st, body) -> {
+                    st.setString(1, body.getName());
+                    st.setString(2, BodyManagerImpl.toString(body.getGender()));
+                    st.setDate(3, BodyManagerImpl.toSqlDate(body.getBorn()));
+                    st.setDate(4, BodyManagerImpl.toSqlDate(body.getDied()));
+                    st.setBoolean(5, body.isVampire());
+                });
+    }
+
+    /**
+     * Imports graves from given CSV file. Files with name ending with .gz
+     * are decompressed.
+     *
+     * @param file CSV file in UTF-8
+     * @return result of the import
+     * @throws ValidationException when header of the file is missing
+     * some required column
+     * @throws ServiceFailureException when reading of the file or db
+     * operation fails
+     */
+    public ImportResult importGraves(Path file) throws ServiceFailureException {
+        try (Reader reader = openReader(file)) {
+            return importGraves(reader);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when reading " + file, ex);
+        }
+    }
+
+    /**
+     * Imports graves from given CSV data.
+     *
+     * @param reader reader of CSV data
+     * @return result of the import
+     * @throws ValidationException when header of the data is missing
+     * some required column
+     * @throws ServiceFailureException when reading of the data or db
+     * operation fails
+     */
+    public ImportResult importGraves(Reader reader) throws ServiceFailureException {
+        return importRecords(reader, "graves",
+                "INSERT INTO Grave (col,row,capacity,note) VALUES (?,?,?,?)",
+                CsvImporter::graveParser,
+                (st, grave) -> {
+                    st.setInt(1, grave.getColumn());
+                    st.setInt(2, grave.getRow());
+                    st.setInt(3, grave.getCapacity());
+                    st.setString(4, grave.getNote());
+                });
+    }
+
+    private <T> ImportResult importRecords(Reader reader, String entities, String insertSql,
+                                           RecordParserFactory<T> parserFactory,
+                                           DBUtils.StatementBinder<T> binder) {
+        long start = System.nanoTime();
+        CsvReader csvReader = new CsvReader(reader);
+        CommittedLines committed = new CommittedLines();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<String> header = csvReader.readRecord();
+            if (header == null) {
+                return new ImportResult(0, 0, new ArrayList<>(), Duration.ofNanos(System.nanoTime() - start));
+            }
+            RecordParser<T> parser = parserFactory.create(header);
+
+            // the queue is bounded, so slow database slows down reading instead of filling the memory
+            BlockingQueue<Batch<T>> queue = new ArrayBlockingQueue<>(threads * 2);
+            List<Future<Long>> workers = new ArrayList<>();
+            long importedRows = 0;
+            long rejectedRows = 0;
+            List<ImportResult.RejectedRow> rejections = new ArrayList<>();
+            Batch<T> batch = new Batch<>(csvReader.getRecordLineNumber() + 1, batchSize);
+            for (List<String> record = csvReader.readRecord(); record != null; record = csvReader.readRecord()) {
+                batch.lastLine = csvReader.getRecordLineNumber();
+                if (record.size() == 1 && record.get(0).isEmpty()) {
+                    // empty line
+                    continue;
+                }
+                try {
+                    batch.rows.add(parser.parse(record));
+                } catch (ValidationException ex) {
+                    rejectedRows++;
+                    if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                        rejections.add(new ImportResult.RejectedRow(csvReader.getRecordLineNumber(), ex.getMessage()));
+                    }
+                    continue;
+                }
+                if (batch.rows.size() == batchSize) {
+                    if (workers.isEmpty()) {
+                        // The first batch is inserted before the workers are started. The first
+                        // execution compiles the statement and its triggers and when more
+                        // connections do it concurrently, Derby deadlocks on generating of
+                        // identity values.
+                        importedRows += insertBatch(insertSql, batch, binder, committed);
+                        for (int i = 0; i < threads; i++) {
+                            workers.add(executor.submit(() -> insertBatches(queue, insertSql, binder, committed)));
+                        }
+                    } else {
+                        put(queue, batch, workers);
+                    }
+                    batch = new Batch<>(batch.lastLine + 1, batchSize);
+                }
+            }
+            if (workers.isEmpty()) {
+                importedRows += insertBatch(insertSql, batch, binder, committed);
+            } else {
+                if (!batch.rows.isEmpty()) {
+                    put(queue, batch, workers);
+                }
+                // empty batch tells the worker to finish
+                for (int i = 0; i < workers.size(); i++) {
+                    put(queue, new Batch<>(0, 0), workers);
+                }
+                for (Future<Long> worker : workers) {
+                    importedRows += worker.get();
+                }
+            }
+            return new ImportResult(importedRows, rejectedRows, rejections, Duration.ofNanos(System.nanoTime() - start));
+        } catch (IOException ex) {
+            stopWorkers(executor);
+            throw new ServiceFailureException("Error when reading " + entities + ", " + committed, ex);
+        } catch (SQLException ex) {
+            stopWorkers(executor);
+            throw new ServiceFailureException("Error when inserting " + entities + " into db, " + committed, ex);
+        } catch (ExecutionException ex) {
+            stopWorkers(executor);
+            throw new ServiceFailureException("Error when inserting " + entities + " into db, " + committed, ex.getCause());
+        } catch (InterruptedException ex) {
+            stopWorkers(executor);
+            Thread.currentThread().interrupt();
+            throw new ServiceFailureException("Import of " + entities + " was interrupted, " + committed, ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> long insertBatch(String insertSql, Batch<T> batch, DBUtils.StatementBinder<T> binder,
+                                 CommittedLines committed) throws SQLException {
+        if (batch.rows.isEmpty()) {
+            return 0;
+        }
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(insertSql)) {
+            conn.setAutoCommit(false);
+            try {
+                insertBatch(conn, st, batch.rows, binder);
+                committed.add(batch);
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return batch.rows.size();
+    }
+
+    private <T> long insertBatches(BlockingQueue<Batch<T>> queue, String insertSql, DBUtils.StatementBinder<T> binder,
+                                   CommittedLines committed) throws SQLException, InterruptedException {
+        long insertedRows = 0;
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(insertSql)) {
+            conn.setAutoCommit(false);
+            try {
+                for (Batch<T> batch = queue.take(); !batch.rows.isEmpty(); batch = queue.take()) {
+                    insertBatch(conn, st, batch.rows, binder);
+                    committed.add(batch);
+                    insertedRows += batch.rows.size();
+                }
+            } catch (SQLException | InterruptedException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return insertedRows;
+    }
+
+    private static <T> void insertBatch(Connection conn, PreparedStatement st, List<T> batch,
+                                        DBUtils.StatementBinder<T> binder) throws SQLException {
+        for (T entity : batch) {
+            binder.bind(st, entity);
+            st.addBatch();
+        }
+        st.executeBatch();
+        conn.commit();
+    }
+
+    /**
+     * Puts batch into the queue. While the queue is full, workers are
+     * checked, so failure of a worker is not waited for forever.
+     */
+    private static <T> void put(BlockingQueue<Batch<T>> queue, Batch<T> batch, List<Future<Long>> workers)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            for (Future<Long> worker : workers) {
+                if (worker.isDone()) {
+                    worker.get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the workers and waits until they finish, so committed lines
+     * reported in the exception don't change any more.
+     */
+    private static void stopWorkers(ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RecordParser<Body> bodyParser(List<String> header) {
+        int name = column(header, "name", true);
+        int gender = column(header, "gender", true);
+        int born = column(header, "born", false);
+        int died = column(header, "died", false);
+        int vampire = column(header, "vampire", false);
+        return (record) -> {
+            Body body = new Body();
+            body.setName(field(record, name));
+            body.setGender(parseGender(field(record, gender)));
+            body.setBorn(parseDate(field(record, born), "born"));
+            body.setDied(parseDate(field(record, died), "died"));
+            body.setVampire(parseBoolean(field(record, vampire), "vampire"));
+            BodyManagerImpl.validate(body, clock);
+            return body;
+        };
+    }
+
+    private static RecordParser<Grave> graveParser(List<String> header) {
+        int row = column(header, "row", true);
+        int column = column(header, "column", true);
+        int capacity = column(header, "capacity", true);
+        int note = column(header, "note", false);
+        return (record) -> {
+            Grave grave = new Grave();
+            grave.setRow(parseInt(field(record, row), "row"));
+            grave.setColumn(parseInt(field(record, column), "column"));
+            grave.setCapacity(parseInt(field(record, capacity), "capacity"));
+            grave.setNote(field(record, note));
+            GraveManagerImpl.validate(grave);
+            return grave;
+        };
+    }
+
+    private static int column(List<String> header, String name, boolean required) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        if (required) {
+            throw new ValidationException("column " + name + " is missing in header");
+        }
+        return -1;
+    }
+
+    private static String field(List<String> record, int index) {
+        if (index < 0 || index >= record.size() || record.get(index).isEmpty()) {
+            return null;
+        }
+        return record.get(index);
+    }
+
+    private static Gender parseGender(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Gender.valueOf(value);
+        } catch (IllegalArgumentException ex) {
+            throw new ValidationException("gender " + value + " is not valid");
+        }
+    }
+
+    private static LocalDate parseDate(String value, String name) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException ex) {
+            throw new ValidationException(name + " " + value + " is not valid date");
+        }
+    }
+
+    private static boolean parseBoolean(String value, String name) {
+        if (value == null || value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        throw new ValidationException(name + " " + value + " is not true or false");
+    }
+
+    private static int parseInt(String value, String name) {
+        if (value == null) {
+            throw new ValidationException(name + " is null");
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new ValidationException(name + " " + value + " is not valid number");
+        }
+    }
+
+    private static Reader openReader(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            if (file.getFileName().toString().endsWith(".gz")) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Valid rows of the records starting on lines from firstLine to
+     * lastLine, the other records on these lines are empty or rejected.
+     */
+    private static final class Batch<T> {
+
+        private final List<T> rows;
+        private final long firstLine;
+        private long lastLine;
+
+        Batch(long firstLine, int batchSize) {
+            this.rows = new ArrayList<>(batchSize);
+            this.firstLine = firstLine;
+            this.lastLine = firstLine - 1;
+        }
+    }
+
+    /**
+     * Number of committed rows and merged ranges of lines of committed
+     * batches, reported when the import fails.
+     */
+    private static final class CommittedLines {
+
+        private final NavigableMap<Long, Long> ranges = new TreeMap<>();
+        private long rows;
+
+        synchronized void add(Batch<?> batch) {
+            rows += batch.rows.size();
+            long firstLine = batch.firstLine;
+            long lastLine = batch.lastLine;
+            Map.Entry<Long, Long> previous = ranges.lowerEntry(firstLine);
+            if (previous != null && previous.getValue() == firstLine - 1) {
+                ranges.remove(previous.getKey());
+                firstLine = previous.getKey();
+            }
+            Long next = ranges.remove(lastLine + 1);
+            if (next != null) {
+                lastLine = next;
+            }
+            ranges.put(firstLine, lastLine);
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (rows == 0) {
+                return "no rows are committed";
+            }
+            StringBuilder sb = new StringBuilder().append(rows).append(" rows from lines ");
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                if (range.getKey() > ranges.firstKey()) {
+                    sb.append(", ");
+                }
+                sb.append(range.getKey()).append('-').append(range.getValue());
+            }
+            return sb.append(" are committed").toString();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordParser<T> {
+        T parse(List<String> record) throws ValidationException;
+    }
+
+    @FunctionalInterface
+    private interface RecordParserFactory<T> {
+        RecordParser<T> create(List<String> header) throws ValidationException;
+    }
+}
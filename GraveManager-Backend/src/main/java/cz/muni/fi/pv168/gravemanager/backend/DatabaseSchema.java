@@ -0,0 +1,49 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.MigrationRunner;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+
+/**
+ * This class defines versions of the database schema used by the managers.
+ * New changes of the schema must be added as new migration with the next
+ * version number, existing scripts must not be changed.
+ *
+ * @author Petr Adámek
+ */
+public final class DatabaseSchema {
+
+    private DatabaseSchema() {
+    }
+
+    /**
+     * Creates migration runner with all versions of the schema.
+     *
+     * @param dataSource datasource
+     * @return migration runner
+     */
+    public static MigrationRunner migrationRunner(DataSource dataSource) {
+        return new MigrationRunner(dataSource, DatabaseSchema.class)
+                .migration(1, "create tables", "createTables.sql")
+                .migration(2, "add indexes", "addIndexes.sql")
+                .migration(3, "create change log", "createChangeLog.sql")
+                .migration(4, "add change operations", "addChangeOperations.sql")
+                .migration(5, "add body aliases", "addBodyAliases.sql")
+                .migration(6, "add composite indexes", "addCompositeIndexes.sql")
+                .migration(7, "drop composite indexes", "dropCompositeIndexes.sql")
+                .migration(8, "log only updates of grave attributes", "restrictGraveUpdateLog.sql");
+    }
+
+    /**
+     * Brings the schema in given database to the latest version. Migrations
+     * which already ran are skipped.
+     *
+     * @param dataSource datasource
+     * @return number of applied migrations
+     * @throws ServiceFailureException when db operation fails
+     */
+    public static int migrate(DataSource dataSource) throws ServiceFailureException {
+        return migrationRunner(dataSource).migrate();
+    }
+}
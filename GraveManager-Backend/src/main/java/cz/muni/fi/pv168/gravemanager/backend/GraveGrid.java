@@ -0,0 +1,177 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory grid index of grave positions. The plane is divided into square
+ * cells of {@link #CELL_SIZE} rows and columns and each cell holds graves
+ * placed in it, so graves near some position are found by looking into a few
+ * cells only. Only positions are indexed, free space is not, because it is
+ * changed also by other managers.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Petr Adámek
+ */
+class GraveGrid {
+
+    static final int CELL_SIZE = 16;
+
+    private static final Comparator<Grave> BY_ID = Comparator.comparing(Grave::getId);
+
+    private final Map<Long, List<Grave>> cells = new HashMap<>();
+    private final Map<Long, Grave> gravesById = new HashMap<>();
+    private int minCellRow = Integer.MAX_VALUE;
+    private int maxCellRow = Integer.MIN_VALUE;
+    private int minCellColumn = Integer.MAX_VALUE;
+    private int maxCellColumn = Integer.MIN_VALUE;
+
+    /**
+     * Adds grave to the index or moves it to its new position when it is
+     * already indexed.
+     */
+    void put(Grave grave) {
+        remove(grave.getId());
+        Grave copy = CachingGraveManager.copyOf(grave);
+        gravesById.put(copy.getId(), copy);
+        int cellRow = cell(copy.getRow());
+        int cellColumn = cell(copy.getColumn());
+        cells.computeIfAbsent(key(cellRow, cellColumn), (key) -> new ArrayList<>()).add(copy);
+        minCellRow = Math.min(minCellRow, cellRow);
+        maxCellRow = Math.max(maxCellRow, cellRow);
+        minCellColumn = Math.min(minCellColumn, cellColumn);
+        maxCellColumn = Math.max(maxCellColumn, cellColumn);
+    }
+
+    void remove(Long id) {
+        Grave grave = gravesById.remove(id);
+        if (grave == null) {
+            return;
+        }
+        long key = key(cell(grave.getRow()), cell(grave.getColumn()));
+        List<Grave> cell = cells.get(key);
+        cell.remove(grave);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    void clear() {
+        cells.clear();
+        gravesById.clear();
+        minCellRow = Integer.MAX_VALUE;
+        maxCellRow = Integer.MIN_VALUE;
+        minCellColumn = Integer.MAX_VALUE;
+        maxCellColumn = Integer.MIN_VALUE;
+    }
+
+    int size() {
+        return gravesById.size();
+    }
+
+    /**
+     * Returns copies of graves at given position ordered by id.
+     */
+    List<Grave> findAt(int row, int column) {
+        return findInRectangle(row, column, row, column);
+    }
+
+    /**
+     * Returns copies of graves within given rectangle (including its border)
+     * ordered by id.
+     */
+    List<Grave> findInRectangle(int row1, int column1, int row2, int column2) {
+        int minRow = Math.min(row1, row2);
+        int maxRow = Math.max(row1, row2);
+        int minColumn = Math.min(column1, column2);
+        int maxColumn = Math.max(column1, column2);
+        List<Grave> result = new ArrayList<>();
+        long rectangleCells = (long) (cell(maxRow) - cell(minRow) + 1) * (cell(maxColumn) - cell(minColumn) + 1);
+        if (rectangleCells > cells.size()) {
+            // rectangle is huge, it is cheaper to check all non-empty cells
+            for (List<Grave> cell : cells.values()) {
+                addInRectangle(cell, minRow, minColumn, maxRow, maxColumn, result);
+            }
+        } else {
+            for (int cellRow = cell(minRow); cellRow <= cell(maxRow); cellRow++) {
+                for (int cellColumn = cell(minColumn); cellColumn <= cell(maxColumn); cellColumn++) {
+                    List<Grave> cell = cells.get(key(cellRow, cellColumn));
+                    if (cell != null) {
+                        addInRectangle(cell, minRow, minColumn, maxRow, maxColumn, result);
+                    }
+                }
+            }
+        }
+        result.sort(BY_ID);
+        return result;
+    }
+
+    /**
+     * Returns copies of graves in cells which have Chebyshev distance
+     * {@code ring} (in cells) from the cell containing given position.
+     */
+    List<Grave> findInRing(int row, int column, int ring) {
+        int centerRow = cell(row);
+        int centerColumn = cell(column);
+        List<Grave> result = new ArrayList<>();
+        for (int cellRow = centerRow - ring; cellRow <= centerRow + ring; cellRow++) {
+            boolean border = cellRow == centerRow - ring || cellRow == centerRow + ring;
+            // inner rows of the ring contain just the first and the last cell
+            int step = border ? 1 : Math.max(2 * ring, 1);
+            for (int cellColumn = centerColumn - ring; cellColumn <= centerColumn + ring; cellColumn += step) {
+                List<Grave> cell = cells.get(key(cellRow, cellColumn));
+                if (cell != null) {
+                    for (Grave grave : cell) {
+                        result.add(CachingGraveManager.copyOf(grave));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the highest ring which can contain some grave or -1 when the
+     * index is empty. Empty cells are not removed from the bounds, so the
+     * value may be higher than necessary.
+     */
+    int maxRing(int row, int column) {
+        if (gravesById.isEmpty()) {
+            return -1;
+        }
+        int centerRow = cell(row);
+        int centerColumn = cell(column);
+        return Math.max(
+                Math.max(Math.abs(centerRow - minCellRow), Math.abs(centerRow - maxCellRow)),
+                Math.max(Math.abs(centerColumn - minCellColumn), Math.abs(centerColumn - maxCellColumn)));
+    }
+
+    /**
+     * Returns the lowest possible distance between given position and any
+     * grave in given ring.
+     */
+    static double minDistanceInRing(int ring) {
+        return Math.max(0, (ring - 1) * CELL_SIZE + 1);
+    }
+
+    private static void addInRectangle(List<Grave> cell, int minRow, int minColumn, int maxRow, int maxColumn, List<Grave> result) {
+        for (Grave grave : cell) {
+            if (grave.getRow() >= minRow && grave.getRow() <= maxRow
+                    && grave.getColumn() >= minColumn && grave.getColumn() <= maxColumn) {
+                result.add(CachingGraveManager.copyOf(grave));
+            }
+        }
+    }
+
+    private static int cell(int coordinate) {
+        return Math.floorDiv(coordinate, CELL_SIZE);
+    }
+
+    private static long key(int cellRow, int cellColumn) {
+        return ((long) cellRow << 32) | (cellColumn & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,49 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import java.util.List;
+
+/**
+ * This service allows to find graves by their position given by row and
+ * column.
+ *
+ * @author Petr Adámek
+ */
+public interface GraveLocator {
+
+    /**
+     * Returns grave at given position. When there are more graves at the same
+     * position, the one with the lowest id is returned.
+     *
+     * @param row row of the grave.
+     * @param column column of the grave.
+     * @return grave at given position or null if there is no such grave.
+     */
+    Grave findGraveAt(int row, int column);
+
+    /**
+     * Returns all graves within rectangle given by two opposite corners. Graves
+     * on the border of the rectangle are included.
+     *
+     * @param row1 row of the first corner.
+     * @param column1 column of the first corner.
+     * @param row2 row of the second corner.
+     * @param column2 column of the second corner.
+     * @return list of graves ordered by id.
+     */
+    List<Grave> findGravesInRectangle(int row1, int column1, int row2, int column2);
+
+    /**
+     * Returns grave with some free space which is the nearest one to given
+     * position. Distance is measured as euclidean distance of positions. When
+     * there are more graves with the same distance, the one with the lowest
+     * id is returned.
+     *
+     * @param row row of the position.
+     * @param column column of the position.
+     * @return the nearest grave with some free space or null if all graves are full.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    Grave findNearestGraveWithFreeSpace(int row, int column) throws ServiceFailureException;
+
+}
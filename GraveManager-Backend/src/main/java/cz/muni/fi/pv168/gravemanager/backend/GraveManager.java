@@ -1,9 +1,13 @@
 package cz.muni.fi.pv168.gravemanager.backend;
 
 import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ReadOnly;
 import cz.muni.fi.pv168.common.ServiceFailureException;
 import cz.muni.fi.pv168.common.ValidationException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This service allows to manipulate with graves.
@@ -26,6 +30,21 @@ public interface GraveManager {
      * @throws ServiceFailureException when db operation fails.
      */
     void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException;
+
+    /**
+     * Stores all given graves into database within single transaction. Ids
+     * for the new graves are automatically generated and stored into id
+     * attribute of each grave. Either all graves are stored or none of them.
+     *
+     * @param graves graves to be created.
+     * @throws IllegalArgumentException when graves collection is null or it
+     * contains null.
+     * @throws ValidationException when some grave breaks validation rules
+     * (see {@link #createGrave(Grave)}).
+     * @throws IllegalEntityException when some grave has already assigned id.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException;
     
     /**
      * Returns grave with given id.
@@ -35,6 +54,7 @@ public interface GraveManager {
      * @throws IllegalArgumentException when given id is null.
      * @throws ServiceFailureException when db operation fails.
      */
+    @ReadOnly
     Grave getGrave(Long id) throws ServiceFailureException;
     
     /**
@@ -66,6 +86,38 @@ public interface GraveManager {
      * @return list of all graves in database.
      * @throws ServiceFailureException when db operation fails.
      */
+    @ReadOnly
     List<Grave> findAllGraves() throws ServiceFailureException;
+
+    /**
+     * Returns one page of graves ordered by id. The first page is returned
+     * when the token is null, next pages are obtained by passing continuation
+     * token returned in the previous page. Each page is found with index
+     * seek, so the time needed to get a page does not depend on how deep in
+     * the table the page is.
+     *
+     * @param token continuation token from the previous page or null for
+     * the first page.
+     * @param limit maximal number of graves on the page.
+     * @return page of graves.
+     * @throws IllegalArgumentException when limit is not positive number or
+     * token is not valid.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    @ReadOnly
+    Page<Grave> findGravesPage(String token, int limit) throws ServiceFailureException;
+
+    /**
+     * Returns stream of all graves in the database. The graves are read lazily from
+     * open database cursor, so memory consumption does not depend on the
+     * number of graves. The stream holds database connection until it is
+     * closed, so it must be always closed, preferably with try-with-resources
+     * statement.
+     *
+     * @return stream of all graves in database.
+     * @throws ServiceFailureException when db operation fails.
+     */
+    @ReadOnly
+    Stream<Grave> streamAllGraves() throws ServiceFailureException;
     
 }
@@ -2,13 +2,17 @@ package cz.muni.fi.pv168.gravemanager.backend;
 
 import cz.muni.fi.pv168.common.DBUtils;
 import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
 import cz.muni.fi.pv168.common.ServiceFailureException;
 import cz.muni.fi.pv168.common.ValidationException;
 
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This class implements GraveManager service.
@@ -17,13 +21,50 @@ import java.util.List;
  */
 public class GraveManagerImpl implements GraveManager {
 
+    /**
+     * Default number of rows sent to the database in one JDBC batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Default number of rows fetched from the database at once by the
+     * methods returning stream.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
     private DataSource dataSource;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     @SuppressWarnings("WeakerAccess")
     public GraveManagerImpl(DataSource dataSource) {
         this.dataSource = dataSource;
     }
 
+    /**
+     * Sets number of rows sent to the database in one JDBC batch by
+     * {@link #createGraves(Collection)}.
+     *
+     * @param batchSize number of rows in one batch
+     * @throws IllegalArgumentException when batchSize is not positive number
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize is not positive number");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets number of rows fetched from the database at once by the methods
+     * returning stream.
+     *
+     * @param fetchSize number of rows fetched at once
+     * @throws IllegalArgumentException when fetchSize is not positive number
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize is not positive number");
+        this.fetchSize = fetchSize;
+    }
+
     @Override
     public List<Grave> findAllGraves() {
         try (Connection conn = dataSource.getConnection();
@@ -34,6 +75,32 @@ public class GraveManagerImpl implements GraveManager {
         }
     }
 
+    @Override
+    public Page<Grave> findGravesPage(String token, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long afterId = Page.decodeToken(token);
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id, col, row, capacity, note FROM Grave WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY")) {
+            st.setLong(1, afterId);
+            // one extra row tells whether there is the next page
+            st.setLong(2, limit + 1L);
+            return Page.fromRows(executeQueryForMultipleGraves(st), limit, Grave::getId);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting page of graves from DB", ex);
+        }
+    }
+
+    @Override
+    public Stream<Grave> streamAllGraves() {
+        try {
+            return DBUtils.stream(dataSource, "SELECT id, col, row, capacity, note FROM Grave",
+                    fetchSize, GraveRowMapper::new);
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when getting all graves from DB", ex);
+        }
+    }
+
     @Override
     public void createGrave(Grave grave) {
         validate(grave);
@@ -52,6 +119,46 @@ public class GraveManagerImpl implements GraveManager {
         }
     }
 
+    @Override
+    public void createGraves(Collection<Grave> graves) {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        for (Grave grave : graves) {
+            validate(grave);
+            if (grave.getId() != null) throw new IllegalEntityException("grave id is already set");
+        }
+        if (graves.isEmpty()) {
+            return;
+        }
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement lockSt = conn.prepareStatement("LOCK TABLE Grave IN EXCLUSIVE MODE");
+                 PreparedStatement st = conn.prepareStatement("INSERT INTO Grave (row,col,capacity,note) VALUES (?,?,?,?)",
+                         Statement.RETURN_GENERATED_KEYS)) {
+                // Start transaction, exclusive lock guarantees that generated ids are consecutive
+                conn.setAutoCommit(false);
+                lockSt.execute();
+                List<Long> ids = DBUtils.insertInBatches(st, graves, batchSize, (insertSt, grave) -> {
+                    insertSt.setInt(1, grave.getRow());
+                    insertSt.setInt(2, grave.getColumn());
+                    insertSt.setInt(3, grave.getCapacity());
+                    insertSt.setString(4, grave.getNote());
+                });
+                conn.commit();
+                // ids are assigned only after successful commit
+                Iterator<Long> idIterator = ids.iterator();
+                for (Grave grave : graves) {
+                    grave.setId(idIterator.next());
+                }
+            } catch (Exception ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when inserting graves into db", ex);
+        }
+    }
+
     @Override
     public Grave getGrave(Long id) {
         if (id == null) throw new IllegalArgumentException("id is null");
@@ -99,7 +206,7 @@ public class GraveManagerImpl implements GraveManager {
     static Grave executeQueryForSingleGrave(PreparedStatement st) throws SQLException, ServiceFailureException {
         try (ResultSet rs = st.executeQuery()) {
             if (rs.next()) {
-                return rowToGrave(rs);
+                return new GraveRowMapper(rs).mapRow(rs);
             } else {
                 return null;
             }
@@ -108,25 +215,16 @@ public class GraveManagerImpl implements GraveManager {
 
     static List<Grave> executeQueryForMultipleGraves(PreparedStatement st) throws SQLException {
         try (ResultSet rs = st.executeQuery()) {
+            GraveRowMapper mapper = new GraveRowMapper(rs);
             List<Grave> result = new ArrayList<>();
             while (rs.next()) {
-                result.add(rowToGrave(rs));
+                result.add(mapper.mapRow(rs));
             }
             return result;
         }
     }
 
-    private static Grave rowToGrave(ResultSet rs) throws SQLException {
-        Grave result = new Grave();
-        result.setId(rs.getLong("id"));
-        result.setColumn(rs.getInt("col"));
-        result.setRow(rs.getInt("row"));
-        result.setCapacity(rs.getInt("capacity"));
-        result.setNote(rs.getString("note"));
-        return result;
-    }
-
-    private static void validate(Grave grave) {
+    static void validate(Grave grave) {
         if (grave == null) {
             throw new IllegalArgumentException("grave is null");
         }
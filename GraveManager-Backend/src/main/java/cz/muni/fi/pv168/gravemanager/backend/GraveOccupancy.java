@@ -0,0 +1,47 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+/**
+ * This class holds grave together with number of bodies placed in it.
+ *
+ * @author Petr Adámek
+ */
+class GraveOccupancy {
+
+    private final Grave grave;
+    private int occupied;
+    private int addedBodies;
+
+    GraveOccupancy(Grave grave, int occupied) {
+        this.grave = grave;
+        this.occupied = occupied;
+    }
+
+    Grave getGrave() {
+        return grave;
+    }
+
+    int getOccupied() {
+        return occupied;
+    }
+
+    int getFreeSlots() {
+        return grave.getCapacity() - occupied;
+    }
+
+    int getAddedBodies() {
+        return addedBodies;
+    }
+
+    void addBody() {
+        occupied++;
+        addedBodies++;
+    }
+
+    @Override
+    public String toString() {
+        return "GraveOccupancy{"
+                + "grave=" + grave
+                + ", occupied=" + occupied
+                + '}';
+    }
+}
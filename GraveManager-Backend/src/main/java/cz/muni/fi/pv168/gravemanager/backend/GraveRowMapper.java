@@ -0,0 +1,41 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Creates {@link Grave} from rows of ResultSet. Positions of the columns are
+ * resolved by their names only once when the mapper is created, so the
+ * mapper should be created once per ResultSet and reused for all its rows.
+ *
+ * @author Petr Adámek
+ */
+class GraveRowMapper implements DBUtils.RowMapper<Grave> {
+
+    private final int idColumn;
+    private final int columnColumn;
+    private final int rowColumn;
+    private final int capacityColumn;
+    private final int noteColumn;
+
+    GraveRowMapper(ResultSet rs) throws SQLException {
+        idColumn = rs.findColumn("id");
+        columnColumn = rs.findColumn("col");
+        rowColumn = rs.findColumn("row");
+        capacityColumn = rs.findColumn("capacity");
+        noteColumn = rs.findColumn("note");
+    }
+
+    @Override
+    public Grave mapRow(ResultSet rs) throws SQLException {
+        Grave result = new Grave();
+        result.setId(rs.getLong(idColumn));
+        result.setColumn(rs.getInt(columnColumn));
+        result.setRow(rs.getInt(rowColumn));
+        result.setCapacity(rs.getInt(capacityColumn));
+        result.setNote(rs.getString(noteColumn));
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of CSV import done by {@link CsvImporter}.
+ *
+ * @author Petr Adámek
+ */
+public final class ImportResult {
+
+    private final long importedRows;
+    private final long rejectedRows;
+    private final List<RejectedRow> rejections;
+    private final Duration elapsed;
+
+    ImportResult(long importedRows, long rejectedRows, List<RejectedRow> rejections, Duration elapsed) {
+        this.importedRows = importedRows;
+        this.rejectedRows = rejectedRows;
+        this.rejections = Collections.unmodifiableList(rejections);
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return number of rows inserted into the database
+     */
+    public long getImportedRows() {
+        return importedRows;
+    }
+
+    /**
+     * @return number of rows which were rejected because they are not valid
+     */
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    /**
+     * Returns details of rejected rows. Only first
+     * {@link CsvImporter#MAX_REPORTED_REJECTIONS} rejections are kept, so the
+     * list may be shorter than {@link #getRejectedRows()}.
+     *
+     * @return rejected rows ordered by line number
+     */
+    public List<RejectedRow> getRejections() {
+        return rejections;
+    }
+
+    /**
+     * @return time spent by the import
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return number of imported rows per second
+     */
+    public double getRowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : importedRows * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportResult{"
+                + "importedRows=" + importedRows
+                + ", rejectedRows=" + rejectedRows
+                + ", elapsed=" + elapsed
+                + String.format(", rowsPerSecond=%.0f", getRowsPerSecond())
+                + '}';
+    }
+
+    /**
+     * Row of CSV file which was not imported.
+     */
+    public static final class RejectedRow {
+
+        private final long lineNumber;
+        private final String message;
+
+        RejectedRow(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        /**
+         * @return number of the line where the row starts
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return reason why the row was rejected
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of BodyManager which keeps bodies in {@link InMemoryStore}.
+ * Bodies are returned in the order of their ids.
+ *
+ * @author Petr Adámek
+ */
+public class InMemoryBodyManager implements BodyManager {
+
+    private final InMemoryStore store;
+    private final Clock clock;
+
+    /**
+     * Creates new manager.
+     *
+     * @param store store holding the bodies
+     * @param clock clock used for validation of bodies
+     */
+    public InMemoryBodyManager(InMemoryStore store, Clock clock) {
+        if (store == null) throw new IllegalArgumentException("store is null");
+        if (clock == null) throw new IllegalArgumentException("clock is null");
+        this.store = store;
+        this.clock = clock;
+    }
+
+    @Override
+    public void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        BodyManagerImpl.validate(body, clock);
+        if (body.getId() != null) throw new IllegalEntityException("body id is already set");
+        long id = store.reserveBodyIds(1);
+        store.bodies().put(id, new InMemoryStore.BodyRecord(copyWithId(body, id)));
+        body.setId(id);
+    }
+
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        for (Body body : bodies) {
+            BodyManagerImpl.validate(body, clock);
+            if (body.getId() != null) throw new IllegalEntityException("body id is already set");
+        }
+        if (bodies.isEmpty()) {
+            return;
+        }
+        long id = store.reserveBodyIds(bodies.size());
+        List<Body> copies = new ArrayList<>(bodies.size());
+        for (Body body : bodies) {
+            copies.add(copyWithId(body, id++));
+        }
+        copies.forEach((copy) -> store.bodies().put(copy.getId(), new InMemoryStore.BodyRecord(copy)));
+        Iterator<Body> copyIterator = copies.iterator();
+        for (Body body : bodies) {
+            body.setId(copyIterator.next().getId());
+        }
+    }
+
+    @Override
+    public Body getBody(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        InMemoryStore.BodyRecord record = store.bodies().get(id);
+        return record == null ? null : CachingBodyManager.copyOf(record.body);
+    }
+
+    @Override
+    public void updateBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        BodyManagerImpl.validate(body, clock);
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        InMemoryStore.BodyRecord record = store.bodies().get(body.getId());
+        if (record == null) throw new IllegalEntityException("updated 0 body records instead of 1");
+        record.body = CachingBodyManager.copyOf(body);
+        if (record.graveId.get() == InMemoryStore.DELETED) {
+            throw new IllegalEntityException("updated 0 body records instead of 1");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * When the body is placed in some grave, it is removed from the grave
+     * while holding the lock of the grave.
+     */
+    @Override
+    public void deleteBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        InMemoryStore.BodyRecord record = store.bodies().get(body.getId());
+        if (record == null) throw new IllegalEntityException("deleted 0 instead of 1 body");
+        while (!markDeleted(record, body.getId())) {
+            // the body has been placed into or removed from some grave meanwhile, try again
+        }
+        store.bodies().remove(body.getId(), record);
+    }
+
+    private boolean markDeleted(InMemoryStore.BodyRecord record, long bodyId) {
+        long graveId = record.graveId.get();
+        if (graveId == InMemoryStore.DELETED) {
+            throw new IllegalEntityException("deleted 0 instead of 1 body");
+        }
+        if (graveId == InMemoryStore.NO_GRAVE) {
+            return record.graveId.compareAndSet(InMemoryStore.NO_GRAVE, InMemoryStore.DELETED);
+        }
+        ReentrantLock lock = store.lockOf(graveId);
+        lock.lock();
+        try {
+            if (!record.graveId.compareAndSet(graveId, InMemoryStore.DELETED)) {
+                return false;
+            }
+            // grave with bodies can't be deleted, so it still exists
+            store.graves().get(graveId).removeBody(bodyId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Body> findAllBodies() throws ServiceFailureException {
+        return streamAllBodies().collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Body> findBodiesDiedBetween(LocalDate from, LocalDate to) throws ServiceFailureException {
+        if (from == null) throw new IllegalArgumentException("from is null");
+        if (to == null) throw new IllegalArgumentException("to is null");
+        return store.bodies().values().stream()
+                .filter((record) -> diedBetween(record.body, from, to))
+                .map((record) -> CachingBodyManager.copyOf(record.body))
+                .sorted(BodyManagerImpl.BY_DIED)
+                .collect(Collectors.toList());
+    }
+
+    static boolean diedBetween(Body body, LocalDate from, LocalDate to) {
+        return body.getDied() != null && !body.getDied().isBefore(from) && !body.getDied().isAfter(to);
+    }
+
+    @Override
+    public Page<Body> findBodiesPage(String token, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long afterId = Page.decodeToken(token);
+        // one extra body tells whether there is the next page
+        List<Body> rows = store.bodies().tailMap(afterId, false).values().stream()
+                .limit(limit + 1L)
+                .map((record) -> CachingBodyManager.copyOf(record.body))
+                .collect(Collectors.toList());
+        return Page.fromRows(rows, limit, Body::getId);
+    }
+
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        return store.bodies().values().stream().map((record) -> CachingBodyManager.copyOf(record.body));
+    }
+
+    @Override
+    public BodyTable findAllBodiesAsTable() throws ServiceFailureException {
+        BodyTable.Builder builder = new BodyTable.Builder();
+        // the table is built from private copies, so the bodies don't need to be copied
+        store.bodies().values().forEach((record) -> builder.addBody(record.body));
+        return builder.build();
+    }
+
+    private static Body copyWithId(Body body, long id) {
+        Body copy = CachingBodyManager.copyOf(body);
+        copy.setId(id);
+        return copy;
+    }
+}
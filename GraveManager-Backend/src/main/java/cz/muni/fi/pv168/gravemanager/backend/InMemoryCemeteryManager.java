@@ -0,0 +1,234 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of CemeteryManager over {@link InMemoryStore}.
+ * <p>
+ * Putting body into a grave and removing it holds only the lock of the
+ * grave, so burials into different graves don't wait for each other.
+ * {@link #buryAll(Collection, PlacementPolicy)} holds the locks of all
+ * graves, same as the database implementation locks the whole table.
+ *
+ * @author Petr Adámek
+ */
+public class InMemoryCemeteryManager implements CemeteryManager {
+
+    private final InMemoryStore store;
+
+    /**
+     * Creates new manager.
+     *
+     * @param store store holding the graves and bodies
+     */
+    public InMemoryCemeteryManager(InMemoryStore store) {
+        if (store == null) throw new IllegalArgumentException("store is null");
+        this.store = store;
+    }
+
+    @Override
+    public Grave findGraveWithBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        return findGrave(body.getId());
+    }
+
+    private Grave findGrave(long bodyId) {
+        InMemoryStore.BodyRecord record = store.bodies().get(bodyId);
+        if (record == null) {
+            return null;
+        }
+        InMemoryStore.GraveRecord grave = store.graves().get(record.graveId.get());
+        return grave == null ? null : CachingGraveManager.copyOf(grave.grave);
+    }
+
+    @Override
+    public List<Body> findBodiesInGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        return findBodies(grave.getId());
+    }
+
+    private List<Body> findBodies(long graveId) {
+        InMemoryStore.GraveRecord record = store.graves().get(graveId);
+        if (record == null) {
+            return new ArrayList<>();
+        }
+        List<Long> bodyIds;
+        ReentrantLock lock = store.lockOf(graveId);
+        lock.lock();
+        try {
+            bodyIds = new ArrayList<>(record.bodyIds);
+        } finally {
+            lock.unlock();
+        }
+        List<Body> result = new ArrayList<>(bodyIds.size());
+        for (Long bodyId : bodyIds) {
+            InMemoryStore.BodyRecord body = store.bodies().get(bodyId);
+            if (body != null) {
+                result.add(CachingBodyManager.copyOf(body.body));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findBodiesInGraves(Collection<Grave> graves) throws ServiceFailureException, IllegalEntityException {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        Map<Long, List<Body>> bodiesByGraveId = new HashMap<>();
+        for (Grave grave : graves) {
+            if (grave == null) throw new IllegalArgumentException("grave is null");
+            if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+            bodiesByGraveId.put(grave.getId(), null);
+        }
+        bodiesByGraveId.replaceAll((graveId, bodies) -> findBodies(graveId));
+        Map<Grave, List<Body>> result = new LinkedHashMap<>();
+        for (Grave grave : graves) {
+            result.put(grave, bodiesByGraveId.get(grave.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Body, Grave> findGravesWithBodies(Collection<Body> bodies) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        Map<Body, Grave> result = new LinkedHashMap<>();
+        for (Body body : bodies) {
+            result.put(body, findGrave(body.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Body> findUnburiedBodies() throws ServiceFailureException {
+        return streamUnburiedBodies().collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<Body> streamUnburiedBodies() throws ServiceFailureException {
+        return store.bodies().values().stream()
+                .filter((record) -> record.graveId.get() == InMemoryStore.NO_GRAVE)
+                .map((record) -> CachingBodyManager.copyOf(record.body));
+    }
+
+    @Override
+    public List<Grave> findEmptyGraves() throws ServiceFailureException {
+        return store.graves().values().stream()
+                .filter((record) -> record.occupied == 0)
+                .map((record) -> CachingGraveManager.copyOf(record.grave))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException {
+        return store.graves().values().stream()
+                .filter((record) -> record.getFreeSlots() > 0)
+                .map((record) -> CachingGraveManager.copyOf(record.grave))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The capacity is checked and the body is placed while holding the lock
+     * of the grave, so the capacity can't be exceeded.
+     */
+    @Override
+    public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        ReentrantLock lock = store.lockOf(grave.getId());
+        lock.lock();
+        try {
+            InMemoryStore.GraveRecord graveRecord = store.graves().get(grave.getId());
+            if (graveRecord == null) {
+                throw new IllegalEntityException("Grave " + grave + " does not exist in the database");
+            }
+            if (graveRecord.getFreeSlots() <= 0) {
+                throw new IllegalEntityException("Grave " + grave + " is already full");
+            }
+            InMemoryStore.BodyRecord bodyRecord = store.bodies().get(body.getId());
+            if (bodyRecord == null || !bodyRecord.graveId.compareAndSet(InMemoryStore.NO_GRAVE, grave.getId())) {
+                throw new IllegalEntityException("Body " + body + " not found or it is already placed in some grave");
+            }
+            graveRecord.addBody(body.getId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<Body, Grave> buryAll(Collection<Body> bodies, PlacementPolicy policy) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        if (policy == null) throw new IllegalArgumentException("policy is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        Map<Body, Grave> placements = new LinkedHashMap<>();
+        if (bodies.isEmpty()) {
+            return placements;
+        }
+        store.lockAll();
+        try {
+            List<GraveOccupancy> graves = store.graves().values().stream()
+                    .filter((record) -> record.getFreeSlots() > 0)
+                    .map((record) -> new GraveOccupancy(CachingGraveManager.copyOf(record.grave), record.occupied))
+                    .collect(Collectors.toList());
+            graves.sort(policy.getOrder());
+            CemeteryManagerImpl.computePlacements(bodies, graves, placements);
+            List<InMemoryStore.BodyRecord> placed = new ArrayList<>(placements.size());
+            for (Map.Entry<Body, Grave> placement : placements.entrySet()) {
+                InMemoryStore.BodyRecord record = store.bodies().get(placement.getKey().getId());
+                if (record == null || !record.graveId.compareAndSet(InMemoryStore.NO_GRAVE, placement.getValue().getId())) {
+                    // roll back, bodies placed into locked graves can't be changed by anybody else
+                    placed.forEach((placedRecord) -> placedRecord.graveId.set(InMemoryStore.NO_GRAVE));
+                    throw new IllegalEntityException("Body " + placement.getKey() + " not found or it is already placed in some grave");
+                }
+                placed.add(record);
+            }
+            placements.forEach((body, grave) -> store.graves().get(grave.getId()).addBody(body.getId()));
+        } finally {
+            store.unlockAll();
+        }
+        return placements;
+    }
+
+    @Override
+    public void removeBodyFromGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        ReentrantLock lock = store.lockOf(grave.getId());
+        lock.lock();
+        try {
+            InMemoryStore.GraveRecord graveRecord = store.graves().get(grave.getId());
+            if (graveRecord == null) throw new IllegalEntityException("updated 0 instead of 1 grave");
+            InMemoryStore.BodyRecord bodyRecord = store.bodies().get(body.getId());
+            if (bodyRecord == null || !bodyRecord.graveId.compareAndSet(grave.getId(), InMemoryStore.NO_GRAVE)) {
+                throw new IllegalEntityException("updated 0 instead of 1 body");
+            }
+            graveRecord.removeBody(body.getId());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of GraveManager which keeps graves in {@link InMemoryStore}.
+ * Graves are returned in the order of their ids.
+ *
+ * @author Petr Adámek
+ */
+public class InMemoryGraveManager implements GraveManager {
+
+    private final InMemoryStore store;
+
+    /**
+     * Creates new manager.
+     *
+     * @param store store holding the graves
+     */
+    public InMemoryGraveManager(InMemoryStore store) {
+        if (store == null) throw new IllegalArgumentException("store is null");
+        this.store = store;
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        GraveManagerImpl.validate(grave);
+        if (grave.getId() != null) throw new IllegalEntityException("grave id is already set");
+        long id = store.reserveGraveIds(1);
+        store.graves().put(id, new InMemoryStore.GraveRecord(copyWithId(grave, id)));
+        grave.setId(id);
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        for (Grave grave : graves) {
+            GraveManagerImpl.validate(grave);
+            if (grave.getId() != null) throw new IllegalEntityException("grave id is already set");
+        }
+        if (graves.isEmpty()) {
+            return;
+        }
+        long id = store.reserveGraveIds(graves.size());
+        List<Grave> copies = new ArrayList<>(graves.size());
+        for (Grave grave : graves) {
+            copies.add(copyWithId(grave, id++));
+        }
+        copies.forEach((copy) -> store.graves().put(copy.getId(), new InMemoryStore.GraveRecord(copy)));
+        Iterator<Grave> copyIterator = copies.iterator();
+        for (Grave grave : graves) {
+            grave.setId(copyIterator.next().getId());
+        }
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        InMemoryStore.GraveRecord record = store.graves().get(id);
+        return record == null ? null : CachingGraveManager.copyOf(record.grave);
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        GraveManagerImpl.validate(grave);
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        Grave copy = CachingGraveManager.copyOf(grave);
+        ReentrantLock lock = store.lockOf(grave.getId());
+        lock.lock();
+        try {
+            InMemoryStore.GraveRecord record = store.graves().get(grave.getId());
+            if (record == null) throw new IllegalEntityException("updated 0 instead of 1 grave");
+            record.grave = copy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Grave with some bodies can't be deleted, same as in the database
+     * where the bodies reference the grave.
+     */
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        ReentrantLock lock = store.lockOf(grave.getId());
+        lock.lock();
+        try {
+            InMemoryStore.GraveRecord record = store.graves().get(grave.getId());
+            if (record == null) throw new IllegalEntityException("deleted 0 instead of 1 grave");
+            if (record.occupied > 0) {
+                throw new ServiceFailureException("Error when deleting grave " + grave + ", it contains some bodies");
+            }
+            store.graves().remove(grave.getId());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        return streamAllGraves().collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<Grave> findGravesPage(String token, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long afterId = Page.decodeToken(token);
+        // one extra grave tells whether there is the next page
+        List<Grave> rows = store.graves().tailMap(afterId, false).values().stream()
+                .limit(limit + 1L)
+                .map((record) -> CachingGraveManager.copyOf(record.grave))
+                .collect(Collectors.toList());
+        return Page.fromRows(rows, limit, Grave::getId);
+    }
+
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return store.graves().values().stream().map((record) -> CachingGraveManager.copyOf(record.grave));
+    }
+
+    private static Grave copyWithId(Grave grave, long id) {
+        Grave copy = CachingGraveManager.copyOf(grave);
+        copy.setId(id);
+        return copy;
+    }
+}
@@ -0,0 +1,464 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Storage of graves and bodies in memory, which is shared by
+ * {@link InMemoryGraveManager}, {@link InMemoryBodyManager} and
+ * {@link InMemoryCemeteryManager}. It is intended for simulations and for
+ * hot standby, the managers have the same semantics as the JDBC
+ * implementations.
+ * <p>
+ * Graves and bodies are kept in concurrent maps ordered by id. Changes of
+ * the bodies placed in a grave are guarded by a lock chosen by the grave id
+ * from a fixed set of locks (lock striping), so burials into different
+ * graves usually don't wait for each other. Body is placed into a grave
+ * with atomic compare-and-set of its grave id, so it can't be placed into
+ * two graves at once. Operations over all graves, i.e.
+ * {@link InMemoryCemeteryManager#buryAll(java.util.Collection, PlacementPolicy)}
+ * and saving of the snapshot, acquire all the locks.
+ * <p>
+ * Content of the store can be saved into a snapshot file, either on demand
+ * or periodically, and a new store can be loaded from it.
+ *
+ * @author Petr Adámek
+ */
+public final class InMemoryStore implements AutoCloseable {
+
+    /**
+     * Default number of locks guarding the graves.
+     */
+    public static final int DEFAULT_STRIPES = 256;
+
+    /**
+     * Grave id of unburied body.
+     */
+    static final long NO_GRAVE = 0;
+
+    /**
+     * Grave id of deleted body.
+     */
+    static final long DELETED = -1;
+
+    private static final int SNAPSHOT_MAGIC = 0x47524156;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_VERSION_WITHOUT_STRIPES = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final ConcurrentSkipListMap<Long, GraveRecord> graves = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, BodyRecord> bodies = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextGraveId = new AtomicLong(1);
+    private final AtomicLong nextBodyId = new AtomicLong(1);
+    private final ReentrantLock[] locks;
+    private final Object snapshotFileLock = new Object();
+    private ScheduledExecutorService snapshotExecutor;
+    private Path snapshotFile;
+    private volatile ServiceFailureException lastSnapshotFailure;
+
+    /**
+     * Creates new empty store with {@link #DEFAULT_STRIPES} locks.
+     */
+    public InMemoryStore() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates new empty store.
+     *
+     * @param stripes number of locks guarding the graves
+     * @throws IllegalArgumentException when stripes is not positive number
+     */
+    public InMemoryStore(int stripes) {
+        if (stripes <= 0) throw new IllegalArgumentException("stripes is not positive number");
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Creates new store with content of given snapshot file. The store has
+     * the same number of locks as the store which saved the snapshot.
+     *
+     * @param file snapshot file saved by {@link #saveSnapshot(Path)}
+     * @return new store
+     * @throws IllegalArgumentException when file is null
+     * @throws ServiceFailureException when the file can't be read or it is
+     * not valid snapshot
+     */
+    public static InMemoryStore loadSnapshot(Path file) throws ServiceFailureException {
+        if (file == null) throw new IllegalArgumentException("file is null");
+        InMemoryStore store;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new ServiceFailureException("File " + file + " is not a snapshot of the store");
+            }
+            int version = in.readInt();
+            int stripes;
+            if (version == SNAPSHOT_VERSION) {
+                stripes = in.readInt();
+            } else if (version == SNAPSHOT_VERSION_WITHOUT_STRIPES) {
+                stripes = DEFAULT_STRIPES;
+            } else {
+                throw new ServiceFailureException("File " + file + " is not a snapshot of the store");
+            }
+            if (stripes <= 0) {
+                throw new ServiceFailureException("Snapshot " + file + " has invalid number of locks " + stripes);
+            }
+            store = new InMemoryStore(stripes);
+            store.nextGraveId.set(in.readLong());
+            store.nextBodyId.set(in.readLong());
+            int graveCount = in.readInt();
+            for (int i = 0; i < graveCount; i++) {
+                Grave grave = new Grave();
+                grave.setId(in.readLong());
+                grave.setRow(in.readInt());
+                grave.setColumn(in.readInt());
+                grave.setCapacity(in.readInt());
+                grave.setNote(readString(in));
+                store.graves.put(grave.getId(), new GraveRecord(grave));
+            }
+            int bodyCount = in.readInt();
+            for (int i = 0; i < bodyCount; i++) {
+                Body body = new Body();
+                body.setId(in.readLong());
+                long graveId = in.readLong();
+                body.setName(readString(in));
+                body.setGender(GENDERS[in.readByte()]);
+                body.setBorn(readDate(in));
+                body.setDied(readDate(in));
+                body.setVampire(in.readBoolean());
+                BodyRecord record = new BodyRecord(body);
+                if (graveId != NO_GRAVE) {
+                    GraveRecord grave = store.graves.get(graveId);
+                    if (grave == null) {
+                        throw new ServiceFailureException("Body " + body + " is placed in grave " + graveId
+                                + ", which is not in snapshot " + file);
+                    }
+                    record.graveId.set(graveId);
+                    grave.addBody(body.getId());
+                }
+                store.bodies.put(body.getId(), record);
+            }
+        } catch (IOException | IndexOutOfBoundsException ex) {
+            throw new ServiceFailureException("Error when loading snapshot " + file, ex);
+        }
+        // never reuse ids of loaded entities, even if the saved counters are behind them
+        if (!store.graves.isEmpty()) {
+            store.nextGraveId.accumulateAndGet(store.graves.lastKey() + 1, Math::max);
+        }
+        if (!store.bodies.isEmpty()) {
+            store.nextBodyId.accumulateAndGet(store.bodies.lastKey() + 1, Math::max);
+        }
+        return store;
+    }
+
+    /**
+     * Saves content of the store into given file. All graves are locked
+     * while the content is copied, the file is written afterwards. The file
+     * is replaced atomically, so it always contains complete snapshot.
+     *
+     * @param file snapshot file
+     * @throws IllegalArgumentException when file is null
+     * @throws ServiceFailureException when the file can't be written
+     */
+    public void saveSnapshot(Path file) throws ServiceFailureException {
+        if (file == null) throw new IllegalArgumentException("file is null");
+        List<Grave> graveCopy = new ArrayList<>(graves.size());
+        List<Body> bodyCopy = new ArrayList<>(bodies.size());
+        List<Long> bodyGraveIds = new ArrayList<>(bodies.size());
+        long graveIdCounter;
+        long bodyIdCounter;
+        lockAll();
+        try {
+            // entities in records are never modified, so they can be written without locks
+            graves.values().forEach((record) -> graveCopy.add(record.grave));
+            for (BodyRecord record : bodies.values()) {
+                long graveId = record.graveId.get();
+                if (graveId != DELETED) {
+                    bodyCopy.add(record.body);
+                    bodyGraveIds.add(graveId);
+                }
+            }
+            // creating of entities takes no locks, id is reserved before the
+            // entity is stored, so the counters must be read after the copy
+            graveIdCounter = nextGraveId.get();
+            bodyIdCounter = nextBodyId.get();
+        } finally {
+            unlockAll();
+        }
+        synchronized (snapshotFileLock) {
+            Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(locks.length);
+                out.writeLong(graveIdCounter);
+                out.writeLong(bodyIdCounter);
+                out.writeInt(graveCopy.size());
+                for (Grave grave : graveCopy) {
+                    out.writeLong(grave.getId());
+                    out.writeInt(grave.getRow());
+                    out.writeInt(grave.getColumn());
+                    out.writeInt(grave.getCapacity());
+                    writeString(out, grave.getNote());
+                }
+                out.writeInt(bodyCopy.size());
+                for (int i = 0; i < bodyCopy.size(); i++) {
+                    Body body = bodyCopy.get(i);
+                    out.writeLong(body.getId());
+                    out.writeLong(bodyGraveIds.get(i));
+                    writeString(out, body.getName());
+                    out.writeByte(body.getGender().ordinal());
+                    writeDate(out, body.getBorn());
+                    writeDate(out, body.getDied());
+                    out.writeBoolean(body.isVampire());
+                }
+            } catch (IOException ex) {
+                throw new ServiceFailureException("Error when saving snapshot " + file, ex);
+            }
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                throw new ServiceFailureException("Error when saving snapshot " + file, ex);
+            }
+        }
+    }
+
+    /**
+     * Starts saving snapshot of the store into given file periodically. The
+     * snapshots are saved by a background thread until the store is closed,
+     * failure of the last snapshot is available from
+     * {@link #getLastSnapshotFailure()}.
+     *
+     * @param file snapshot file
+     * @param period time between the end of one snapshot and the start of
+     * the next one
+     * @throws IllegalArgumentException when some argument is null or when
+     * period is not positive
+     * @throws IllegalStateException when the snapshots are already scheduled
+     */
+    public synchronized void scheduleSnapshots(Path file, Duration period) {
+        if (file == null) throw new IllegalArgumentException("file is null");
+        if (period == null) throw new IllegalArgumentException("period is null");
+        if (period.isZero() || period.isNegative()) throw new IllegalArgumentException("period is not positive");
+        if (snapshotExecutor != null) throw new IllegalStateException("snapshots are already scheduled");
+        snapshotFile = file;
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor((task) -> {
+            Thread thread = new Thread(task, "in-memory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(this::saveScheduledSnapshot,
+                period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void saveScheduledSnapshot() {
+        try {
+            saveSnapshot(snapshotFile);
+            lastSnapshotFailure = null;
+        } catch (ServiceFailureException ex) {
+            lastSnapshotFailure = ex;
+        }
+    }
+
+    /**
+     * @return failure of the last periodic snapshot or null when it was
+     * saved successfully
+     */
+    public ServiceFailureException getLastSnapshotFailure() {
+        return lastSnapshotFailure;
+    }
+
+    /**
+     * Stops periodic snapshots, if they are scheduled, and saves the final
+     * snapshot.
+     *
+     * @throws ServiceFailureException when the final snapshot can't be saved
+     */
+    @Override
+    public synchronized void close() throws ServiceFailureException {
+        if (snapshotExecutor == null) {
+            return;
+        }
+        // the thread is not interrupted, interrupted thread would close the snapshot file
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotExecutor = null;
+        saveSnapshot(snapshotFile);
+    }
+
+    ConcurrentNavigableMap<Long, GraveRecord> graves() {
+        return graves;
+    }
+
+    ConcurrentNavigableMap<Long, BodyRecord> bodies() {
+        return bodies;
+    }
+
+    /**
+     * Reserves given number of consecutive grave ids.
+     *
+     * @return the first reserved id
+     */
+    long reserveGraveIds(int count) {
+        return nextGraveId.getAndAdd(count);
+    }
+
+    /**
+     * Reserves given number of consecutive body ids.
+     *
+     * @return the first reserved id
+     */
+    long reserveBodyIds(int count) {
+        return nextBodyId.getAndAdd(count);
+    }
+
+    /**
+     * @return number of locks guarding the graves
+     */
+    int getStripes() {
+        return locks.length;
+    }
+
+    /**
+     * Returns lock guarding bodies placed in the grave with given id.
+     */
+    ReentrantLock lockOf(long graveId) {
+        return locks[(int) Math.floorMod(graveId, (long) locks.length)];
+    }
+
+    /**
+     * Acquires locks of all graves, always in the same order.
+     */
+    void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeInt(date == null ? NO_DATE : (int) date.toEpochDay());
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        int epochDay = in.readInt();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Grave stored in the memory.
+     */
+    static final class GraveRecord {
+
+        /**
+         * Private copy of the grave, it is replaced by update and never modified.
+         */
+        volatile Grave grave;
+
+        /**
+         * Number of bodies in the grave, it is changed together with bodyIds.
+         */
+        volatile int occupied;
+
+        /**
+         * Ids of bodies in the grave, guarded by {@link #lockOf(long)}.
+         */
+        final Set<Long> bodyIds = new LinkedHashSet<>();
+
+        GraveRecord(Grave grave) {
+            this.grave = grave;
+        }
+
+        int getFreeSlots() {
+            return grave.getCapacity() - occupied;
+        }
+
+        void addBody(long bodyId) {
+            bodyIds.add(bodyId);
+            occupied = bodyIds.size();
+        }
+
+        void removeBody(long bodyId) {
+            bodyIds.remove(bodyId);
+            occupied = bodyIds.size();
+        }
+    }
+
+    /**
+     * Body stored in the memory.
+     */
+    static final class BodyRecord {
+
+        /**
+         * Private copy of the body, it is replaced by update and never modified.
+         */
+        volatile Body body;
+
+        /**
+         * Id of the grave where the body is placed, {@link #NO_GRAVE} or
+         * {@link #DELETED}. It is changed only with compare-and-set, placing
+         * the body into a grave and removing it from the grave is done while
+         * holding the lock of the grave.
+         */
+        final AtomicLong graveId = new AtomicLong(NO_GRAVE);
+
+        BodyRecord(Body body) {
+            this.body = body;
+        }
+    }
+}
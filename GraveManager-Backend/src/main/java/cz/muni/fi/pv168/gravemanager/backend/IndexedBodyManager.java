@@ -0,0 +1,131 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of BodyManager which maintains in-memory interval tree of
+ * lifespans of bodies and uses it to implement {@link LifespanLocator}. The
+ * index is loaded from the database when the manager is created and then it
+ * is updated when bodies are created, updated or deleted through this
+ * manager, so all modifications of bodies must be done through this
+ * decorator.
+ *
+ * @author Petr Adámek
+ */
+public class IndexedBodyManager implements BodyManager, LifespanLocator {
+
+    private final BodyManager delegate;
+    private final LifespanTree tree = new LifespanTree();
+
+    /**
+     * Creates new manager and loads lifespans of all bodies.
+     *
+     * @param delegate decorated manager
+     * @throws ServiceFailureException when loading of bodies fails
+     */
+    public IndexedBodyManager(BodyManager delegate) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        this.delegate = delegate;
+        reload();
+    }
+
+    /**
+     * Loads lifespans of all bodies from the database again. This is needed
+     * only when bodies were modified bypassing this manager.
+     *
+     * @throws ServiceFailureException when db operation fails
+     */
+    public void reload() {
+        try (Stream<Body> bodies = delegate.streamAllBodies()) {
+            synchronized (tree) {
+                tree.clear();
+                bodies.forEach(tree::put);
+            }
+        }
+    }
+
+    @Override
+    public void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createBody(body);
+        synchronized (tree) {
+            tree.put(body);
+        }
+    }
+
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createBodies(bodies);
+        synchronized (tree) {
+            bodies.forEach(tree::put);
+        }
+    }
+
+    @Override
+    public Body getBody(Long id) throws ServiceFailureException {
+        return delegate.getBody(id);
+    }
+
+    @Override
+    public void updateBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.updateBody(body);
+        synchronized (tree) {
+            tree.put(body);
+        }
+    }
+
+    @Override
+    public void deleteBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        delegate.deleteBody(body);
+        synchronized (tree) {
+            tree.remove(body.getId());
+        }
+    }
+
+    @Override
+    public List<Body> findAllBodies() throws ServiceFailureException {
+        return delegate.findAllBodies();
+    }
+
+    @Override
+    public List<Body> findBodiesDiedBetween(LocalDate from, LocalDate to) throws ServiceFailureException {
+        return delegate.findBodiesDiedBetween(from, to);
+    }
+
+    @Override
+    public Page<Body> findBodiesPage(String token, int limit) throws ServiceFailureException {
+        return delegate.findBodiesPage(token, limit);
+    }
+
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        return delegate.streamAllBodies();
+    }
+
+    @Override
+    public BodyTable findAllBodiesAsTable() throws ServiceFailureException {
+        return delegate.findAllBodiesAsTable();
+    }
+
+    @Override
+    public List<Body> findBodiesAliveOn(LocalDate date) {
+        if (date == null) throw new IllegalArgumentException("date is null");
+        return findBodiesAliveBetween(date, date);
+    }
+
+    @Override
+    public List<Body> findBodiesAliveBetween(LocalDate from, LocalDate to) {
+        if (from == null) throw new IllegalArgumentException("from is null");
+        if (to == null) throw new IllegalArgumentException("to is null");
+        synchronized (tree) {
+            return tree.findOverlapping(from.toEpochDay(), to.toEpochDay());
+        }
+    }
+}
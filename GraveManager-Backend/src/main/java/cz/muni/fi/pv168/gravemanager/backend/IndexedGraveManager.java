@@ -0,0 +1,189 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of GraveManager which maintains in-memory grid index of grave
+ * positions and uses it to implement {@link GraveLocator}. The index is
+ * loaded from the database when the manager is created and then it is updated
+ * when graves are created, updated or deleted through this manager, so all
+ * modifications of graves must be done through this decorator.
+ * <p>
+ * Free space of graves is not indexed, because it is changed also by
+ * {@link CemeteryManager} and {@link BodyManager}. It is checked in the
+ * database for graves near given position only.
+ *
+ * @author Petr Adámek
+ */
+public class IndexedGraveManager implements GraveManager, GraveLocator {
+
+    private final GraveManager delegate;
+    private final DataSource dataSource;
+    private final GraveGrid grid = new GraveGrid();
+
+    /**
+     * Creates new manager and loads positions of all graves.
+     *
+     * @param delegate decorated manager
+     * @param dataSource datasource used for checking free space of graves
+     * @throws ServiceFailureException when loading of graves fails
+     */
+    public IndexedGraveManager(GraveManager delegate, DataSource dataSource) {
+        if (delegate == null) throw new IllegalArgumentException("delegate is null");
+        if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+        this.delegate = delegate;
+        this.dataSource = dataSource;
+        reload();
+    }
+
+    /**
+     * Loads positions of all graves from the database again. This is needed
+     * only when graves were modified bypassing this manager.
+     *
+     * @throws ServiceFailureException when db operation fails
+     */
+    public void reload() {
+        try (Stream<Grave> graves = delegate.streamAllGraves()) {
+            synchronized (grid) {
+                grid.clear();
+                graves.forEach(grid::put);
+            }
+        }
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGrave(grave);
+        synchronized (grid) {
+            grid.put(grave);
+        }
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.createGraves(graves);
+        synchronized (grid) {
+            graves.forEach(grid::put);
+        }
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        return delegate.getGrave(id);
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        delegate.updateGrave(grave);
+        synchronized (grid) {
+            grid.put(grave);
+        }
+    }
+
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        delegate.deleteGrave(grave);
+        synchronized (grid) {
+            grid.remove(grave.getId());
+        }
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        return delegate.findAllGraves();
+    }
+
+    @Override
+    public Page<Grave> findGravesPage(String token, int limit) throws ServiceFailureException {
+        return delegate.findGravesPage(token, limit);
+    }
+
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return delegate.streamAllGraves();
+    }
+
+    @Override
+    public Grave findGraveAt(int row, int column) {
+        List<Grave> graves;
+        synchronized (grid) {
+            graves = grid.findAt(row, column);
+        }
+        return graves.isEmpty() ? null : graves.get(0);
+    }
+
+    @Override
+    public List<Grave> findGravesInRectangle(int row1, int column1, int row2, int column2) {
+        synchronized (grid) {
+            return grid.findInRectangle(row1, column1, row2, column2);
+        }
+    }
+
+    @Override
+    public Grave findNearestGraveWithFreeSpace(int row, int column) throws ServiceFailureException {
+        Grave nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+        int maxRing;
+        synchronized (grid) {
+            maxRing = grid.maxRing(row, column);
+        }
+        // graves are checked ring by ring, until the ring can't contain grave nearer than the best one
+        for (int ring = 0; ring <= maxRing && GraveGrid.minDistanceInRing(ring) <= nearestDistance; ring++) {
+            List<Grave> candidates;
+            synchronized (grid) {
+                candidates = grid.findInRing(row, column, ring);
+            }
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            Set<Long> withFreeSpace = findGravesWithFreeSpace(candidates);
+            for (Grave grave : candidates) {
+                if (!withFreeSpace.contains(grave.getId())) {
+                    continue;
+                }
+                double distance = Math.hypot(grave.getRow() - row, grave.getColumn() - column);
+                if (distance < nearestDistance
+                        || (distance == nearestDistance && grave.getId() < nearest.getId())) {
+                    nearest = grave;
+                    nearestDistance = distance;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private Set<Long> findGravesWithFreeSpace(List<Grave> graves) {
+        String placeholders = String.join(",", Collections.nCopies(graves.size(), "?"));
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement st = conn.prepareStatement(
+                     "SELECT id FROM Grave WHERE free > 0 AND id IN (" + placeholders + ")")) {
+            for (int i = 0; i < graves.size(); i++) {
+                st.setLong(i + 1, graves.get(i).getId());
+            }
+            Set<Long> result = new HashSet<>();
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    result.add(rs.getLong("id"));
+                }
+            }
+            return result;
+        } catch (SQLException ex) {
+            throw new ServiceFailureException("Error when checking free space of graves", ex);
+        }
+    }
+}
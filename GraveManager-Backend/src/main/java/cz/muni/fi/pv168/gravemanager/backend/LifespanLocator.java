@@ -0,0 +1,39 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * This service allows to find bodies by their lifespan, i.e. by the interval
+ * between their date of birth and date of death. Bodies with unknown date of
+ * birth or death are never returned.
+ *
+ * @author Petr Adámek
+ */
+public interface LifespanLocator {
+
+    /**
+     * Returns bodies which were alive on given day, i.e. which were born on
+     * or before the day and died on or after the day.
+     *
+     * @param date the day.
+     * @return list of bodies ordered by date of birth, bodies born on the
+     * same day are ordered by id.
+     * @throws IllegalArgumentException when date is null.
+     */
+    List<Body> findBodiesAliveOn(LocalDate date);
+
+    /**
+     * Returns bodies which were alive at least one day within given interval,
+     * i.e. whose lifespan overlaps with the interval. Both bounds of the
+     * interval are included.
+     *
+     * @param from first day of the interval.
+     * @param to last day of the interval.
+     * @return list of bodies ordered by date of birth, bodies born on the
+     * same day are ordered by id.
+     * @throws IllegalArgumentException when from or to is null.
+     */
+    List<Body> findBodiesAliveBetween(LocalDate from, LocalDate to);
+
+}
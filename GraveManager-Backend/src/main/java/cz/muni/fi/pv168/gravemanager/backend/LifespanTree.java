@@ -0,0 +1,195 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * In-memory interval tree of lifespans of bodies. Each body is an interval
+ * [born, died] of epoch days. The tree is a treap ordered by date of birth
+ * and id, where each node also holds the latest date of death in its subtree.
+ * Subtrees where nobody died after the start of the searched interval are
+ * skipped, as well as all nodes born after its end, so the search takes
+ * O((k + 1) log n) expected time for k found bodies instead of checking all
+ * bodies. Bodies are added and removed in O(log n) expected time.
+ * <p>
+ * Bodies with unknown date of birth or death are not indexed. This class is
+ * not thread safe.
+ *
+ * @author Petr Adámek
+ */
+class LifespanTree {
+
+    private final Map<Long, Node> nodesById = new HashMap<>();
+    private final Random random = new Random();
+    private Node root;
+
+    /**
+     * Adds body to the index or updates its lifespan when it is already
+     * indexed.
+     */
+    void put(Body body) {
+        remove(body.getId());
+        if (body.getBorn() == null || body.getDied() == null) {
+            return;
+        }
+        Node node = new Node(CachingBodyManager.copyOf(body), random.nextInt());
+        nodesById.put(node.id, node);
+        root = insert(root, node);
+    }
+
+    void remove(Long id) {
+        Node node = nodesById.remove(id);
+        if (node != null) {
+            root = delete(root, node);
+        }
+    }
+
+    void clear() {
+        nodesById.clear();
+        root = null;
+    }
+
+    int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * Returns copies of bodies whose lifespan overlaps with given interval
+     * of epoch days, ordered by date of birth and id.
+     */
+    List<Body> findOverlapping(long from, long to) {
+        List<Body> result = new ArrayList<>();
+        collect(root, from, to, result);
+        return result;
+    }
+
+    private static void collect(Node node, long from, long to, List<Body> result) {
+        if (node == null || node.maxDied < from) {
+            return;
+        }
+        collect(node.left, from, to, result);
+        if (node.born > to) {
+            // the right subtree contains only bodies born even later
+            return;
+        }
+        if (node.died >= from) {
+            result.add(CachingBodyManager.copyOf(node.body));
+        }
+        collect(node.right, from, to, result);
+    }
+
+    private static Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (node.priority > tree.priority) {
+            Node[] parts = split(tree, node);
+            node.left = parts[0];
+            node.right = parts[1];
+            node.update();
+            return node;
+        }
+        if (node.isBefore(tree)) {
+            tree.left = insert(tree.left, node);
+        } else {
+            tree.right = insert(tree.right, node);
+        }
+        tree.update();
+        return tree;
+    }
+
+    /**
+     * Splits the tree into nodes before given node and nodes after it.
+     */
+    private static Node[] split(Node tree, Node node) {
+        if (tree == null) {
+            return new Node[2];
+        }
+        if (tree.isBefore(node)) {
+            Node[] parts = split(tree.right, node);
+            tree.right = parts[0];
+            tree.update();
+            parts[0] = tree;
+            return parts;
+        } else {
+            Node[] parts = split(tree.left, node);
+            tree.left = parts[1];
+            tree.update();
+            parts[1] = tree;
+            return parts;
+        }
+    }
+
+    private static Node delete(Node tree, Node node) {
+        if (tree == node) {
+            return merge(tree.left, tree.right);
+        }
+        if (node.isBefore(tree)) {
+            tree.left = delete(tree.left, node);
+        } else {
+            tree.right = delete(tree.right, node);
+        }
+        tree.update();
+        return tree;
+    }
+
+    /**
+     * Merges two trees, all nodes of the first tree are before nodes of the
+     * second one.
+     */
+    private static Node merge(Node first, Node second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            first.update();
+            return first;
+        } else {
+            second.left = merge(first, second.left);
+            second.update();
+            return second;
+        }
+    }
+
+    private static final class Node {
+
+        final Body body;
+        final long id;
+        final long born;
+        final long died;
+        final int priority;
+        long maxDied;
+        Node left;
+        Node right;
+
+        Node(Body body, int priority) {
+            this.body = body;
+            this.id = body.getId();
+            this.born = body.getBorn().toEpochDay();
+            this.died = body.getDied().toEpochDay();
+            this.priority = priority;
+            this.maxDied = died;
+        }
+
+        boolean isBefore(Node other) {
+            return born < other.born || (born == other.born && id < other.id);
+        }
+
+        void update() {
+            maxDied = died;
+            if (left != null) {
+                maxDied = Math.max(maxDied, left.maxDied);
+            }
+            if (right != null) {
+                maxDied = Math.max(maxDied, right.maxDied);
+            }
+        }
+    }
+}
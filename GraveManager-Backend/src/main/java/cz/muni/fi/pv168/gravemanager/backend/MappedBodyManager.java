@@ -0,0 +1,200 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of BodyManager which keeps bodies in {@link MappedFileStore}.
+ * Bodies are returned in the order of their ids.
+ *
+ * @author Petr Adámek
+ */
+public class MappedBodyManager implements BodyManager {
+
+    private final MappedFileStore store;
+    private final Clock clock;
+
+    /**
+     * Creates new manager.
+     *
+     * @param store store holding the bodies
+     * @param clock clock used for validation of bodies
+     */
+    public MappedBodyManager(MappedFileStore store, Clock clock) {
+        if (store == null) throw new IllegalArgumentException("store is null");
+        if (clock == null) throw new IllegalArgumentException("clock is null");
+        this.store = store;
+        this.clock = clock;
+    }
+
+    @Override
+    public void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        createBodies(Collections.singletonList(body));
+    }
+
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        for (Body body : bodies) {
+            validate(body);
+            if (body.getId() != null) throw new IllegalEntityException("body id is already set");
+        }
+        if (bodies.isEmpty()) {
+            return;
+        }
+        Map<Body, Long> copies = new LinkedHashMap<>();
+        store.writeLock().lock();
+        try {
+            long id = store.nextBodyId();
+            for (Body body : bodies) {
+                Body copy = CachingBodyManager.copyOf(body);
+                copy.setId(id++);
+                copies.put(copy, MappedFileStore.NO_GRAVE);
+            }
+            store.writeBodies(copies);
+        } finally {
+            store.writeLock().unlock();
+        }
+        Iterator<Body> copyIterator = copies.keySet().iterator();
+        for (Body body : bodies) {
+            body.setId(copyIterator.next().getId());
+        }
+    }
+
+    @Override
+    public Body getBody(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        store.readLock().lock();
+        try {
+            return store.readBody(id);
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        validate(body);
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        store.writeLock().lock();
+        try {
+            Long graveId = store.graveIdOf(body.getId());
+            if (graveId == null) throw new IllegalEntityException("updated 0 body records instead of 1");
+            store.writeBodies(Collections.singletonMap(body, graveId));
+        } finally {
+            store.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        store.writeLock().lock();
+        try {
+            if (store.graveIdOf(body.getId()) == null) {
+                throw new IllegalEntityException("deleted 0 instead of 1 body");
+            }
+            store.deleteBody(body.getId());
+        } finally {
+            store.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Body> findAllBodies() throws ServiceFailureException {
+        store.readLock().lock();
+        try {
+            List<Body> result = new ArrayList<>(store.bodyIds().size());
+            for (Long id : store.bodyIds()) {
+                result.add(store.readBody(id));
+            }
+            return result;
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Body> findBodiesDiedBetween(LocalDate from, LocalDate to) throws ServiceFailureException {
+        if (from == null) throw new IllegalArgumentException("from is null");
+        if (to == null) throw new IllegalArgumentException("to is null");
+        List<Body> result = new ArrayList<>();
+        store.readLock().lock();
+        try {
+            for (Long id : store.bodyIds()) {
+                Body body = store.readBody(id);
+                if (InMemoryBodyManager.diedBetween(body, from, to)) {
+                    result.add(body);
+                }
+            }
+        } finally {
+            store.readLock().unlock();
+        }
+        result.sort(BodyManagerImpl.BY_DIED);
+        return result;
+    }
+
+    @Override
+    public Page<Body> findBodiesPage(String token, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long afterId = Page.decodeToken(token);
+        store.readLock().lock();
+        try {
+            // one extra body tells whether there is the next page
+            List<Body> rows = new ArrayList<>();
+            for (Long id : store.bodyIds().tailSet(afterId, false)) {
+                if (rows.size() > limit) {
+                    break;
+                }
+                rows.add(store.readBody(id));
+            }
+            return Page.fromRows(rows, limit, Body::getId);
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bodies are read before the stream is returned, so the stream does
+     * not hold the lock of the store.
+     */
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        return findAllBodies().stream();
+    }
+
+    @Override
+    public BodyTable findAllBodiesAsTable() throws ServiceFailureException {
+        BodyTable.Builder builder = new BodyTable.Builder();
+        store.readLock().lock();
+        try {
+            for (Long id : store.bodyIds()) {
+                builder.addBody(store.readBody(id));
+            }
+        } finally {
+            store.readLock().unlock();
+        }
+        return builder.build();
+    }
+
+    private void validate(Body body) {
+        BodyManagerImpl.validate(body, clock);
+        MappedFileStore.checkLength(body.getName(), "name");
+    }
+}
@@ -0,0 +1,256 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of CemeteryManager over {@link MappedFileStore}.
+ * <p>
+ * Body placed into a grave or removed from it is written as a single
+ * record, the number of bodies in the grave is derived from the bodies,
+ * so it can't get out of sync after a crash.
+ * {@link #buryAll(Collection, PlacementPolicy)} writes all the bodies as one
+ * batch, so they are either all placed or none of them.
+ *
+ * @author Petr Adámek
+ */
+public class MappedCemeteryManager implements CemeteryManager {
+
+    private final MappedFileStore store;
+
+    /**
+     * Creates new manager.
+     *
+     * @param store store holding the graves and bodies
+     */
+    public MappedCemeteryManager(MappedFileStore store) {
+        if (store == null) throw new IllegalArgumentException("store is null");
+        this.store = store;
+    }
+
+    @Override
+    public Grave findGraveWithBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        store.readLock().lock();
+        try {
+            return findGrave(body.getId());
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    private Grave findGrave(long bodyId) {
+        Long graveId = store.graveIdOf(bodyId);
+        return graveId == null || graveId == MappedFileStore.NO_GRAVE ? null : store.readGrave(graveId);
+    }
+
+    @Override
+    public List<Body> findBodiesInGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        store.readLock().lock();
+        try {
+            return findBodies(grave.getId());
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    private List<Body> findBodies(long graveId) {
+        List<Body> result = new ArrayList<>();
+        for (Long bodyId : store.bodiesIn(graveId)) {
+            result.add(store.readBody(bodyId));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findBodiesInGraves(Collection<Grave> graves) throws ServiceFailureException, IllegalEntityException {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        for (Grave grave : graves) {
+            if (grave == null) throw new IllegalArgumentException("grave is null");
+            if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        }
+        Map<Grave, List<Body>> result = new LinkedHashMap<>();
+        store.readLock().lock();
+        try {
+            for (Grave grave : graves) {
+                result.put(grave, findBodies(grave.getId()));
+            }
+        } finally {
+            store.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Body, Grave> findGravesWithBodies(Collection<Body> bodies) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        Map<Body, Grave> result = new LinkedHashMap<>();
+        store.readLock().lock();
+        try {
+            for (Body body : bodies) {
+                result.put(body, findGrave(body.getId()));
+            }
+        } finally {
+            store.readLock().unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public List<Body> findUnburiedBodies() throws ServiceFailureException {
+        store.readLock().lock();
+        try {
+            List<Body> result = new ArrayList<>();
+            for (Long bodyId : store.bodyIds()) {
+                if (store.graveIdOf(bodyId) == MappedFileStore.NO_GRAVE) {
+                    result.add(store.readBody(bodyId));
+                }
+            }
+            return result;
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bodies are read before the stream is returned, so the stream does
+     * not hold the lock of the store.
+     */
+    @Override
+    public Stream<Body> streamUnburiedBodies() throws ServiceFailureException {
+        return findUnburiedBodies().stream();
+    }
+
+    @Override
+    public List<Grave> findEmptyGraves() throws ServiceFailureException {
+        store.readLock().lock();
+        try {
+            List<Grave> result = new ArrayList<>();
+            for (Long graveId : store.graveIds()) {
+                if (store.bodiesIn(graveId).isEmpty()) {
+                    result.add(store.readGrave(graveId));
+                }
+            }
+            return result;
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException {
+        store.readLock().lock();
+        try {
+            List<Grave> result = new ArrayList<>();
+            for (Long graveId : store.graveIds()) {
+                Grave grave = store.readGrave(graveId);
+                if (store.bodiesIn(graveId).size() < grave.getCapacity()) {
+                    result.add(grave);
+                }
+            }
+            return result;
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        store.writeLock().lock();
+        try {
+            Grave storedGrave = store.readGrave(grave.getId());
+            if (storedGrave == null) {
+                throw new IllegalEntityException("Grave " + grave + " does not exist in the database");
+            }
+            if (store.bodiesIn(grave.getId()).size() >= storedGrave.getCapacity()) {
+                throw new IllegalEntityException("Grave " + grave + " is already full");
+            }
+            if (!Long.valueOf(MappedFileStore.NO_GRAVE).equals(store.graveIdOf(body.getId()))) {
+                throw new IllegalEntityException("Body " + body + " not found or it is already placed in some grave");
+            }
+            store.writeBodies(Collections.singletonMap(store.readBody(body.getId()), grave.getId()));
+        } finally {
+            store.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<Body, Grave> buryAll(Collection<Body> bodies, PlacementPolicy policy) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        if (policy == null) throw new IllegalArgumentException("policy is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        Map<Body, Grave> placements = new LinkedHashMap<>();
+        if (bodies.isEmpty()) {
+            return placements;
+        }
+        store.writeLock().lock();
+        try {
+            List<GraveOccupancy> graves = new ArrayList<>();
+            for (Long graveId : store.graveIds()) {
+                Grave grave = store.readGrave(graveId);
+                int occupied = store.bodiesIn(graveId).size();
+                if (occupied < grave.getCapacity()) {
+                    graves.add(new GraveOccupancy(grave, occupied));
+                }
+            }
+            graves.sort(policy.getOrder());
+            CemeteryManagerImpl.computePlacements(bodies, graves, placements);
+            Map<Body, Long> records = new LinkedHashMap<>();
+            for (Map.Entry<Body, Grave> placement : placements.entrySet()) {
+                Body body = placement.getKey();
+                if (!Long.valueOf(MappedFileStore.NO_GRAVE).equals(store.graveIdOf(body.getId()))) {
+                    throw new IllegalEntityException("Body " + body + " not found or it is already placed in some grave");
+                }
+                records.put(store.readBody(body.getId()), placement.getValue().getId());
+            }
+            store.writeBodies(records);
+        } finally {
+            store.writeLock().unlock();
+        }
+        return placements;
+    }
+
+    @Override
+    public void removeBodyFromGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        store.writeLock().lock();
+        try {
+            if (!store.graveIds().contains(grave.getId())) {
+                throw new IllegalEntityException("updated 0 instead of 1 grave");
+            }
+            if (!grave.getId().equals(store.graveIdOf(body.getId()))) {
+                throw new IllegalEntityException("updated 0 instead of 1 body");
+            }
+            store.writeBodies(Collections.singletonMap(store.readBody(body.getId()), MappedFileStore.NO_GRAVE));
+        } finally {
+            store.writeLock().unlock();
+        }
+    }
+}
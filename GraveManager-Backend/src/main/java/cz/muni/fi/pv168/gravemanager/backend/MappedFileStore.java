@@ -0,0 +1,360 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Storage of graves and bodies in memory-mapped files, which is shared by
+ * {@link MappedGraveManager}, {@link MappedBodyManager} and
+ * {@link MappedCemeteryManager}. It is intended for deployments without
+ * database, the managers have the same semantics as the JDBC
+ * implementations.
+ * <p>
+ * Graves and bodies are kept as fixed-width records in two append-only
+ * files, {@value #GRAVE_FILE} and {@value #BODY_FILE}, in the given
+ * directory. Each change appends new version of the record and the offsets
+ * of the latest versions are kept in memory together with the ids of bodies
+ * placed in each grave, both are rebuilt when the store is opened. Records
+ * written by one operation are appended as one batch, so after a crash the
+ * store contains either all or none of them. Appended records survive crash
+ * of the application, {@link #sync()} must be called to be sure they survive
+ * crash of the operating system as well. Old versions of records are
+ * removed by {@link #compact()}.
+ * <p>
+ * Text attributes are limited to {@value #MAX_TEXT_LENGTH} characters, same
+ * as the database columns.
+ *
+ * @author Petr Adámek
+ */
+public final class MappedFileStore implements AutoCloseable {
+
+    /**
+     * Name of the file with graves.
+     */
+    public static final String GRAVE_FILE = "grave.dat";
+
+    /**
+     * Name of the file with bodies.
+     */
+    public static final String BODY_FILE = "body.dat";
+
+    /**
+     * Maximal length of name of the body and note of the grave.
+     */
+    public static final int MAX_TEXT_LENGTH = 255;
+
+    /**
+     * Grave id of unburied body.
+     */
+    static final long NO_GRAVE = 0;
+
+    private static final int TEXT_SIZE = 2 + 2 * MAX_TEXT_LENGTH;
+    private static final int GRAVE_SIZE = 4 + 4 + 4 + TEXT_SIZE;
+    private static final int BODY_SIZE = 8 + 1 + 4 + 4 + 1 + TEXT_SIZE;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RecordFile graves;
+    private final RecordFile bodies;
+    private final Map<Long, NavigableSet<Long>> bodiesByGrave = new HashMap<>();
+
+    private MappedFileStore(RecordFile graves, RecordFile bodies) {
+        this.graves = graves;
+        this.bodies = bodies;
+        for (Long bodyId : bodies.ids()) {
+            long graveId = bodies.read(bodyId).getLong(0);
+            if (graveId != NO_GRAVE) {
+                bodiesByGrave.computeIfAbsent(graveId, (id) -> new TreeSet<>()).add(bodyId);
+            }
+        }
+    }
+
+    /**
+     * Opens the store in given directory, creates the directory and the
+     * files when they don't exist yet. Incomplete changes written before
+     * a crash are discarded.
+     *
+     * @param directory directory with the files of the store
+     * @return opened store
+     * @throws IllegalArgumentException when directory is null
+     * @throws ServiceFailureException when the files can't be opened or they
+     * are not valid
+     */
+    public static MappedFileStore open(Path directory) throws ServiceFailureException {
+        if (directory == null) throw new IllegalArgumentException("directory is null");
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when creating directory " + directory, ex);
+        }
+        RecordFile graves = new RecordFile(directory.resolve(GRAVE_FILE), GRAVE_SIZE);
+        try {
+            return new MappedFileStore(graves, new RecordFile(directory.resolve(BODY_FILE), BODY_SIZE));
+        } catch (ServiceFailureException ex) {
+            graves.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes all changes to the storage device.
+     *
+     * @throws ServiceFailureException when the changes can't be written
+     */
+    public void sync() throws ServiceFailureException {
+        lock.readLock().lock();
+        try {
+            graves.force();
+            bodies.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the files, so that they contain only the latest versions of
+     * existing graves and bodies. All operations wait until the compaction
+     * is finished.
+     *
+     * @throws ServiceFailureException when the files can't be rewritten
+     */
+    public void compact() throws ServiceFailureException {
+        lock.writeLock().lock();
+        try {
+            graves.compact();
+            bodies.compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return size of both files in bytes, without the unused space
+     */
+    public long getSize() {
+        lock.readLock().lock();
+        try {
+            return (long) graves.getSize() + bodies.getSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes all changes to the storage device and closes the files.
+     *
+     * @throws ServiceFailureException when the files can't be closed
+     */
+    @Override
+    public void close() throws ServiceFailureException {
+        lock.writeLock().lock();
+        try {
+            try {
+                graves.close();
+            } finally {
+                bodies.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // Access for managers, read methods require read lock and write methods
+    // require write lock
+    //--------------------------------------------------------------------------
+
+    Lock readLock() {
+        return lock.readLock();
+    }
+
+    Lock writeLock() {
+        return lock.writeLock();
+    }
+
+    NavigableSet<Long> graveIds() {
+        return graves.ids();
+    }
+
+    NavigableSet<Long> bodyIds() {
+        return bodies.ids();
+    }
+
+    long nextGraveId() {
+        return graves.getMaxId() + 1;
+    }
+
+    long nextBodyId() {
+        return bodies.getMaxId() + 1;
+    }
+
+    Grave readGrave(long id) {
+        ByteBuffer record = graves.read(id);
+        if (record == null) {
+            return null;
+        }
+        Grave grave = new Grave();
+        grave.setId(id);
+        grave.setColumn(record.getInt());
+        grave.setRow(record.getInt());
+        grave.setCapacity(record.getInt());
+        grave.setNote(readText(record));
+        return grave;
+    }
+
+    /**
+     * Writes graves with already assigned ids as one batch.
+     */
+    void writeGraves(Collection<Grave> gravesToWrite) {
+        Map<Long, ByteBuffer> records = new LinkedHashMap<>();
+        for (Grave grave : gravesToWrite) {
+            ByteBuffer record = ByteBuffer.allocate(GRAVE_SIZE);
+            record.putInt(grave.getColumn());
+            record.putInt(grave.getRow());
+            record.putInt(grave.getCapacity());
+            writeText(record, grave.getNote());
+            records.put(grave.getId(), record);
+        }
+        graves.append(records);
+    }
+
+    void deleteGrave(long id) {
+        graves.append(Collections.singletonMap(id, null));
+        bodiesByGrave.remove(id);
+    }
+
+    Body readBody(long id) {
+        ByteBuffer record = bodies.read(id);
+        if (record == null) {
+            return null;
+        }
+        Body body = new Body();
+        body.setId(id);
+        record.getLong();
+        body.setGender(GENDERS[record.get()]);
+        body.setBorn(readDate(record));
+        body.setDied(readDate(record));
+        body.setVampire(record.get() != 0);
+        body.setName(readText(record));
+        return body;
+    }
+
+    /**
+     * @return id of the grave where the body is placed, {@link #NO_GRAVE}
+     * or null when there is no such body
+     */
+    Long graveIdOf(long bodyId) {
+        ByteBuffer record = bodies.read(bodyId);
+        return record == null ? null : record.getLong(0);
+    }
+
+    /**
+     * @return ids of bodies placed in the grave in ascending order
+     */
+    NavigableSet<Long> bodiesIn(long graveId) {
+        NavigableSet<Long> bodyIds = bodiesByGrave.get(graveId);
+        return bodyIds == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(bodyIds);
+    }
+
+    /**
+     * Writes bodies with already assigned ids as one batch.
+     *
+     * @param placements ids of the graves where the bodies are placed,
+     * {@link #NO_GRAVE} for unburied bodies
+     */
+    void writeBodies(Map<Body, Long> placements) {
+        Map<Long, ByteBuffer> records = new LinkedHashMap<>();
+        for (Map.Entry<Body, Long> placement : placements.entrySet()) {
+            Body body = placement.getKey();
+            ByteBuffer record = ByteBuffer.allocate(BODY_SIZE);
+            record.putLong(placement.getValue());
+            record.put((byte) body.getGender().ordinal());
+            writeDate(record, body.getBorn());
+            writeDate(record, body.getDied());
+            record.put((byte) (body.isVampire() ? 1 : 0));
+            writeText(record, body.getName());
+            records.put(body.getId(), record);
+        }
+        Map<Long, Long> oldGraveIds = new HashMap<>();
+        placements.keySet().forEach((body) -> oldGraveIds.put(body.getId(), graveIdOf(body.getId())));
+        bodies.append(records);
+        placements.forEach((body, graveId) -> moveBody(body.getId(), oldGraveIds.get(body.getId()), graveId));
+    }
+
+    void deleteBody(long id) {
+        Long graveId = graveIdOf(id);
+        bodies.append(Collections.singletonMap(id, null));
+        moveBody(id, graveId, NO_GRAVE);
+    }
+
+    private void moveBody(long bodyId, Long oldGraveId, long newGraveId) {
+        if (oldGraveId != null && oldGraveId != NO_GRAVE) {
+            bodiesByGrave.computeIfPresent(oldGraveId, (id, bodyIds) -> {
+                bodyIds.remove(bodyId);
+                return bodyIds.isEmpty() ? null : bodyIds;
+            });
+        }
+        if (newGraveId != NO_GRAVE) {
+            bodiesByGrave.computeIfAbsent(newGraveId, (id) -> new TreeSet<>()).add(bodyId);
+        }
+    }
+
+    /**
+     * Checks that the text fits into the record.
+     *
+     * @throws ValidationException when the text is too long
+     */
+    static void checkLength(String text, String attribute) {
+        if (text != null && text.length() > MAX_TEXT_LENGTH) {
+            throw new ValidationException(attribute + " is longer than " + MAX_TEXT_LENGTH + " characters");
+        }
+    }
+
+    private static void writeText(ByteBuffer record, String text) {
+        if (text == null) {
+            record.putShort((short) -1);
+        } else {
+            record.putShort((short) text.length());
+            for (int i = 0; i < text.length(); i++) {
+                record.putChar(text.charAt(i));
+            }
+        }
+    }
+
+    private static String readText(ByteBuffer record) {
+        short length = record.getShort();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = record.getChar();
+        }
+        return new String(chars);
+    }
+
+    private static void writeDate(ByteBuffer record, LocalDate date) {
+        record.putInt(date == null ? NO_DATE : (int) date.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer record) {
+        int epochDay = record.getInt();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
@@ -0,0 +1,168 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of GraveManager which keeps graves in {@link MappedFileStore}.
+ * Graves are returned in the order of their ids.
+ *
+ * @author Petr Adámek
+ */
+public class MappedGraveManager implements GraveManager {
+
+    private final MappedFileStore store;
+
+    /**
+     * Creates new manager.
+     *
+     * @param store store holding the graves
+     */
+    public MappedGraveManager(MappedFileStore store) {
+        if (store == null) throw new IllegalArgumentException("store is null");
+        this.store = store;
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        createGraves(Collections.singletonList(grave));
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        for (Grave grave : graves) {
+            validate(grave);
+            if (grave.getId() != null) throw new IllegalEntityException("grave id is already set");
+        }
+        if (graves.isEmpty()) {
+            return;
+        }
+        List<Grave> copies = new ArrayList<>(graves.size());
+        store.writeLock().lock();
+        try {
+            long id = store.nextGraveId();
+            for (Grave grave : graves) {
+                Grave copy = CachingGraveManager.copyOf(grave);
+                copy.setId(id++);
+                copies.add(copy);
+            }
+            store.writeGraves(copies);
+        } finally {
+            store.writeLock().unlock();
+        }
+        Iterator<Grave> copyIterator = copies.iterator();
+        for (Grave grave : graves) {
+            grave.setId(copyIterator.next().getId());
+        }
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        store.readLock().lock();
+        try {
+            return store.readGrave(id);
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        validate(grave);
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        store.writeLock().lock();
+        try {
+            if (!store.graveIds().contains(grave.getId())) {
+                throw new IllegalEntityException("updated 0 instead of 1 grave");
+            }
+            store.writeGraves(Collections.singletonList(grave));
+        } finally {
+            store.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Grave with some bodies can't be deleted, same as in the database
+     * where the bodies reference the grave.
+     */
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        store.writeLock().lock();
+        try {
+            if (!store.graveIds().contains(grave.getId())) {
+                throw new IllegalEntityException("deleted 0 instead of 1 grave");
+            }
+            if (!store.bodiesIn(grave.getId()).isEmpty()) {
+                throw new ServiceFailureException("Error when deleting grave " + grave + ", it contains some bodies");
+            }
+            store.deleteGrave(grave.getId());
+        } finally {
+            store.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        store.readLock().lock();
+        try {
+            List<Grave> result = new ArrayList<>(store.graveIds().size());
+            for (Long id : store.graveIds()) {
+                result.add(store.readGrave(id));
+            }
+            return result;
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Page<Grave> findGravesPage(String token, int limit) throws ServiceFailureException {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long afterId = Page.decodeToken(token);
+        store.readLock().lock();
+        try {
+            // one extra grave tells whether there is the next page
+            List<Grave> rows = new ArrayList<>();
+            for (Long id : store.graveIds().tailSet(afterId, false)) {
+                if (rows.size() > limit) {
+                    break;
+                }
+                rows.add(store.readGrave(id));
+            }
+            return Page.fromRows(rows, limit, Grave::getId);
+        } finally {
+            store.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The graves are read before the stream is returned, so the stream does
+     * not hold the lock of the store.
+     */
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return findAllGraves().stream();
+    }
+
+    private static void validate(Grave grave) {
+        GraveManagerImpl.validate(grave);
+        MappedFileStore.checkLength(grave.getNote(), "note");
+    }
+}
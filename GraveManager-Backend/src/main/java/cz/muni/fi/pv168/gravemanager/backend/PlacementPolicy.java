@@ -0,0 +1,83 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Comparator;
+
+/**
+ * This class represents policy for choosing graves for bodies in
+ * {@link CemeteryManager#buryAll(java.util.Collection, PlacementPolicy)}.
+ * <p>
+ * Each policy defines the order of graves in which they are filled. Body is
+ * always placed into the first grave in this order which still has some free
+ * space. Since every body occupies exactly one place, this is equivalent to
+ * choosing the best grave for each body separately.
+ *
+ * @author Petr Adámek
+ */
+public final class PlacementPolicy {
+
+    private static final Comparator<GraveOccupancy> BY_ID
+            = Comparator.comparing(occupancy -> occupancy.getGrave().getId());
+
+    private static final PlacementPolicy FIRST_FIT = new PlacementPolicy("first-fit", BY_ID);
+
+    private static final PlacementPolicy BEST_FIT = new PlacementPolicy("best-fit",
+            Comparator.comparingInt(GraveOccupancy::getFreeSlots).thenComparing(BY_ID));
+
+    private final String name;
+    private final Comparator<GraveOccupancy> order;
+
+    private PlacementPolicy(String name, Comparator<GraveOccupancy> order) {
+        this.name = name;
+        this.order = order;
+    }
+
+    /**
+     * Returns policy which places bodies into graves in the order of their ids.
+     *
+     * @return first-fit policy
+     */
+    public static PlacementPolicy firstFit() {
+        return FIRST_FIT;
+    }
+
+    /**
+     * Returns policy which places body into the grave with the least free
+     * space left, so that the graves are filled up before the empty ones are
+     * used.
+     *
+     * @return best-fit policy
+     */
+    public static PlacementPolicy bestFit() {
+        return BEST_FIT;
+    }
+
+    /**
+     * Returns policy which places body into the grave nearest to given
+     * position. Distance is euclidean distance of grave row and column from
+     * given row and column.
+     *
+     * @param row row of the position
+     * @param column column of the position
+     * @return nearest-to policy
+     */
+    public static PlacementPolicy nearestTo(int row, int column) {
+        return new PlacementPolicy("nearest-to(" + row + ", " + column + ")",
+                Comparator.comparingLong((GraveOccupancy occupancy)
+                        -> distanceSquared(occupancy.getGrave(), row, column)).thenComparing(BY_ID));
+    }
+
+    private static long distanceSquared(Grave grave, int row, int column) {
+        long rowDistance = (long) grave.getRow() - row;
+        long columnDistance = (long) grave.getColumn() - column;
+        return rowDistance * rowDistance + columnDistance * columnDistance;
+    }
+
+    Comparator<GraveOccupancy> getOrder() {
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        return "PlacementPolicy{" + name + '}';
+    }
+}
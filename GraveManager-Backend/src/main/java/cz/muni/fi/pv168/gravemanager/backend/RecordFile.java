@@ -0,0 +1,301 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of fixed-width records in a memory-mapped file. Each record
+ * holds id of some entity and its whole state, so newer record with the same
+ * id replaces the older one and tombstone record deletes the entity. Offsets
+ * of the latest records are kept in an index ordered by id.
+ * <p>
+ * Records are appended in batches and only the last record of a batch is
+ * marked as its end. When the file is opened, batches are replayed until the
+ * first incomplete or corrupted record, so a batch which was written only
+ * partially before a crash is discarded as a whole.
+ * <p>
+ * This class is not thread safe, except that concurrent reads are allowed
+ * when no records are appended meanwhile.
+ *
+ * @author Petr Adámek
+ */
+final class RecordFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x47524D46;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 1 + 8;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int MIN_MAPPED_SIZE = 1 << 16;
+
+    private static final byte EMPTY = 0;
+    private static final byte VALUE = 1;
+    private static final byte TOMBSTONE = 2;
+    private static final byte END_OF_BATCH = 4;
+
+    private final Path file;
+    private final int payloadSize;
+    private final int recordSize;
+    private final NavigableMap<Long, Integer> index = new TreeMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long maxId;
+    private int end;
+
+    /**
+     * Opens the file, creates it when it does not exist yet.
+     *
+     * @param file path of the file
+     * @param payloadSize size of the entity state in each record
+     * @throws ServiceFailureException when the file can't be opened or when
+     * it has different format
+     */
+    RecordFile(Path file, int payloadSize) throws ServiceFailureException {
+        this.file = file;
+        this.payloadSize = payloadSize;
+        this.recordSize = RECORD_HEADER_SIZE + payloadSize + CHECKSUM_SIZE;
+        open();
+    }
+
+    private void open() {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ServiceFailureException("File " + file + " is too large");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), MIN_MAPPED_SIZE));
+            if (created) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, recordSize);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != recordSize) {
+                throw new ServiceFailureException("File " + file + " is not a record file or it has different format");
+            }
+            recover();
+        } catch (IOException ex) {
+            closeQuietly();
+            throw new ServiceFailureException("Error when opening file " + file, ex);
+        } catch (ServiceFailureException ex) {
+            closeQuietly();
+            throw ex;
+        }
+    }
+
+    /**
+     * Replays complete batches into the index and erases everything after
+     * them, so the torn tail can't be mistaken for valid records later.
+     */
+    private void recover() {
+        index.clear();
+        maxId = 0;
+        int batchStart = FILE_HEADER_SIZE;
+        int offset = FILE_HEADER_SIZE;
+        while (offset + recordSize <= buffer.capacity()) {
+            byte state = buffer.get(offset);
+            if (state == EMPTY || !hasValidChecksum(offset)) {
+                break;
+            }
+            offset += recordSize;
+            if ((state & END_OF_BATCH) != 0) {
+                for (int record = batchStart; record < offset; record += recordSize) {
+                    applyToIndex(record);
+                }
+                batchStart = offset;
+            }
+        }
+        end = batchStart;
+        for (int i = end; i < buffer.capacity(); i++) {
+            buffer.put(i, EMPTY);
+        }
+    }
+
+    private boolean hasValidChecksum(int offset) {
+        return buffer.getInt(offset + RECORD_HEADER_SIZE + payloadSize) == checksum(offset, buffer.get(offset));
+    }
+
+    private int checksum(int offset, byte state) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + 1).limit(offset + RECORD_HEADER_SIZE + payloadSize);
+        CRC32 crc = new CRC32();
+        crc.update(state);
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private void applyToIndex(int offset) {
+        long id = buffer.getLong(offset + 1);
+        if ((buffer.get(offset) & TOMBSTONE) != 0) {
+            index.remove(id);
+        } else {
+            index.put(id, offset);
+        }
+        maxId = Math.max(maxId, id);
+    }
+
+    /**
+     * Appends records as one batch.
+     *
+     * @param records payloads of the records by entity id, null payload
+     * writes tombstone
+     * @throws ServiceFailureException when the file can't be extended
+     */
+    void append(Map<Long, ByteBuffer> records) throws ServiceFailureException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ensureCapacity((long) end + (long) records.size() * recordSize);
+        int offset = end;
+        int remaining = records.size();
+        for (Map.Entry<Long, ByteBuffer> record : records.entrySet()) {
+            byte state = record.getValue() == null ? TOMBSTONE : VALUE;
+            if (--remaining == 0) {
+                state |= END_OF_BATCH;
+            }
+            buffer.putLong(offset + 1, record.getKey());
+            if (record.getValue() != null) {
+                ByteBuffer payload = buffer.duplicate();
+                payload.position(offset + RECORD_HEADER_SIZE);
+                payload.put((ByteBuffer) record.getValue().duplicate().rewind());
+            }
+            buffer.putInt(offset + RECORD_HEADER_SIZE + payloadSize, checksum(offset, state));
+            // state is written as the last one, record is not visible without it
+            buffer.put(offset, state);
+            offset += recordSize;
+        }
+        for (int record = end; record < offset; record += recordSize) {
+            applyToIndex(record);
+        }
+        end = offset;
+    }
+
+    private void ensureCapacity(long size) {
+        if (size <= buffer.capacity()) {
+            return;
+        }
+        long newSize = Math.min(Math.max(size, 2L * buffer.capacity()), Integer.MAX_VALUE);
+        if (size > newSize) {
+            throw new ServiceFailureException("File " + file + " is full");
+        }
+        try {
+            // the old mapping is released by garbage collector
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when extending file " + file, ex);
+        }
+    }
+
+    /**
+     * Returns payload of the latest record with given id.
+     *
+     * @param id entity id
+     * @return read only payload or null when there is no such entity
+     */
+    ByteBuffer read(long id) {
+        Integer offset = index.get(id);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(offset + RECORD_HEADER_SIZE).limit(offset + RECORD_HEADER_SIZE + payloadSize);
+        return payload.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return ids of existing entities in ascending order
+     */
+    NavigableSet<Long> ids() {
+        return Collections.unmodifiableNavigableSet(index.navigableKeySet());
+    }
+
+    /**
+     * @return the highest id ever written, including the deleted ones
+     */
+    long getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * @return size of the log in bytes
+     */
+    int getSize() {
+        return end;
+    }
+
+    /**
+     * Writes all changes to the storage device.
+     *
+     * @throws ServiceFailureException when the changes can't be written
+     */
+    void force() throws ServiceFailureException {
+        buffer.force();
+    }
+
+    /**
+     * Rewrites the file so that it contains only the latest records of
+     * existing entities. The new file replaces the old one atomically.
+     *
+     * @throws ServiceFailureException when the file can't be rewritten
+     */
+    void compact() throws ServiceFailureException {
+        Path compactedFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(compactedFile);
+            Map<Long, ByteBuffer> records = new LinkedHashMap<>();
+            for (Long id : index.keySet()) {
+                records.put(id, read(id));
+            }
+            if (maxId != 0 && !index.containsKey(maxId)) {
+                // tombstone keeps the highest id, so the ids are not reused
+                records.put(maxId, null);
+            }
+            try (RecordFile compacted = new RecordFile(compactedFile, payloadSize)) {
+                compacted.append(records);
+            }
+            channel.close();
+            Files.move(compactedFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when compacting file " + file, ex);
+        } finally {
+            if (!channel.isOpen()) {
+                open();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws ServiceFailureException {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException ex) {
+            throw new ServiceFailureException("Error when closing file " + file, ex);
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // the original failure is more important
+        }
+    }
+}
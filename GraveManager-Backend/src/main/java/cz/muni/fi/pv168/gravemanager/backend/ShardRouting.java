@@ -0,0 +1,76 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.util.Arrays;
+
+/**
+ * This class represents function which assigns graves to shards in
+ * {@link Shards}. Graves are assigned by their row, so each shard holds
+ * whole rows (sections) of the cemetery.
+ *
+ * @author Petr Adámek
+ */
+public final class ShardRouting {
+
+    private final String name;
+    private final int[] firstRows;
+
+    private ShardRouting(String name, int[] firstRows) {
+        this.name = name;
+        this.firstRows = firstRows;
+    }
+
+    /**
+     * Returns routing which assigns consecutive ranges of rows to shards.
+     * Rows lower than {@code firstRows[0]} belong to the first shard, rows
+     * from {@code firstRows[i]} to {@code firstRows[i+1] - 1} belong to shard
+     * {@code i+1}, so this routing requires exactly
+     * {@code firstRows.length + 1} shards.
+     *
+     * @param firstRows first row of each shard except the first one, in
+     * ascending order
+     * @return row range routing
+     * @throws IllegalArgumentException when firstRows is null or it is not
+     * in ascending order
+     */
+    public static ShardRouting byRowRanges(int... firstRows) {
+        if (firstRows == null) throw new IllegalArgumentException("firstRows is null");
+        for (int i = 1; i < firstRows.length; i++) {
+            if (firstRows[i] <= firstRows[i - 1]) {
+                throw new IllegalArgumentException("firstRows are not in ascending order");
+            }
+        }
+        return new ShardRouting("row-ranges" + Arrays.toString(firstRows), firstRows.clone());
+    }
+
+    /**
+     * Returns routing which assigns rows to shards by hash of the row, so
+     * graves are spread evenly over any number of shards.
+     *
+     * @return row hash routing
+     */
+    public static ShardRouting byRowHash() {
+        return new ShardRouting("row-hash", null);
+    }
+
+    /**
+     * @return number of shards required by this routing or 0 if it works
+     * with any number of shards
+     */
+    int getRequiredShardCount() {
+        return firstRows == null ? 0 : firstRows.length + 1;
+    }
+
+    int shardOf(int row, int shardCount) {
+        if (firstRows == null) {
+            // multiplicative hashing spreads consecutive rows evenly
+            return Math.floorMod((row * 0x9E3779B1) >>> 16, shardCount);
+        }
+        int index = Arrays.binarySearch(firstRows, row);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardRouting{" + name + '}';
+    }
+}
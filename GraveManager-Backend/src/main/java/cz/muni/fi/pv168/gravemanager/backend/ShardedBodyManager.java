@@ -0,0 +1,136 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of BodyManager which stores bodies in more databases, see
+ * {@link Shards}.
+ * <p>
+ * New bodies are spread over the shards, bodies created by single call of
+ * {@link #createBodies(Collection)} are stored into the same shard, so they
+ * are still created atomically. When body is buried by
+ * {@link ShardedCemeteryManager} into grave in another shard, the body is
+ * moved there, but it keeps its id.
+ *
+ * @author Petr Adámek
+ */
+public class ShardedBodyManager implements BodyManager {
+
+    private final Shards shards;
+
+    /**
+     * Creates new manager.
+     *
+     * @param shards shards holding the bodies
+     */
+    public ShardedBodyManager(Shards shards) {
+        if (shards == null) throw new IllegalArgumentException("shards is null");
+        this.shards = shards;
+    }
+
+    @Override
+    public void createBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        int shard = shards.nextBodyShard();
+        Body local = shards.toLocal(body);
+        shards.bodyManager(shard).createBody(local);
+        body.setId(shards.toGlobalId(shard, local.getId()));
+    }
+
+    @Override
+    public void createBodies(Collection<Body> bodies) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        List<Body> local = new ArrayList<>(bodies.size());
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            local.add(shards.toLocal(body));
+        }
+        int shard = shards.nextBodyShard();
+        shards.bodyManager(shard).createBodies(local);
+        Iterator<Body> localIterator = local.iterator();
+        for (Body body : bodies) {
+            body.setId(shards.toGlobalId(shard, localIterator.next().getId()));
+        }
+    }
+
+    @Override
+    public Body getBody(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        int shard = shards.shardOfBody(id);
+        return shards.toGlobal(shard, shards.bodyManager(shard).getBody(shards.toLocalBodyId(id)));
+    }
+
+    @Override
+    public void updateBody(Body body) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        shards.bodyManager(shards.shardOfBody(body.getId())).updateBody(shards.toLocal(body));
+    }
+
+    @Override
+    public void deleteBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        shards.bodyManager(shards.shardOfBody(body.getId())).deleteBody(shards.toLocal(body));
+        shards.aliases().remove(body.getId());
+    }
+
+    @Override
+    public List<Body> findAllBodies() throws ServiceFailureException {
+        List<Body> result = new ArrayList<>();
+        shards.forEachShard((shard) -> {
+            List<Body> bodies = shards.bodyManager(shard).findAllBodies();
+            bodies.forEach((body) -> shards.toGlobal(shard, body));
+            return bodies;
+        }).forEach(result::addAll);
+        return result;
+    }
+
+    @Override
+    public List<Body> findBodiesDiedBetween(LocalDate from, LocalDate to) throws ServiceFailureException {
+        if (from == null) throw new IllegalArgumentException("from is null");
+        if (to == null) throw new IllegalArgumentException("to is null");
+        List<Body> result = new ArrayList<>();
+        shards.forEachShard((shard) -> {
+            List<Body> bodies = shards.bodyManager(shard).findBodiesDiedBetween(from, to);
+            bodies.forEach((body) -> shards.toGlobal(shard, body));
+            return bodies;
+        }).forEach(result::addAll);
+        result.sort(BodyManagerImpl.BY_DIED);
+        return result;
+    }
+
+    @Override
+    public Page<Body> findBodiesPage(String token, int limit) throws ServiceFailureException {
+        return shards.findBodiesPage(token, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Shards are read one after another, so the stream holds connection to
+     * one shard at a time.
+     */
+    @Override
+    public Stream<Body> streamAllBodies() throws ServiceFailureException {
+        return IntStream.range(0, shards.size()).boxed().flatMap((shard) ->
+                shards.bodyManager(shard).streamAllBodies().map((body) -> shards.toGlobal(shard, body)));
+    }
+
+    @Override
+    public BodyTable findAllBodiesAsTable() throws ServiceFailureException {
+        return BodyTable.concat(shards.forEachShard((shard) -> shards.bodyManager(shard).findAllBodiesAsTable()
+                .withIds((id) -> shards.toGlobalBodyId(shard, id))));
+    }
+}
@@ -0,0 +1,246 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of CemeteryManager over more databases, see {@link Shards}.
+ * <p>
+ * Body is always placed into grave in the same shard. When body from
+ * another shard is buried, it is moved into the shard of the grave first.
+ * The body keeps its id, so it can still be found by the same id and it
+ * stays equal to the caller's instance. The move is not atomic with the
+ * burial, so when the burial fails, the body stays unburied in the shard of
+ * the grave.
+ * {@link #buryAll(Collection, PlacementPolicy)} chooses graves from all
+ * shards, but the bodies are placed in one transaction per shard, so when
+ * it fails, bodies placed in other shards stay in their graves.
+ *
+ * @author Petr Adámek
+ */
+public class ShardedCemeteryManager implements CemeteryManager {
+
+    private final Shards shards;
+
+    /**
+     * Creates new manager.
+     *
+     * @param shards shards holding the graves and bodies
+     */
+    public ShardedCemeteryManager(Shards shards) {
+        if (shards == null) throw new IllegalArgumentException("shards is null");
+        this.shards = shards;
+    }
+
+    @Override
+    public Grave findGraveWithBody(Body body) throws ServiceFailureException, IllegalEntityException {
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        int shard = shards.shardOfBody(body.getId());
+        return shards.toGlobal(shard, shards.cemeteryManager(shard).findGraveWithBody(shards.toLocal(body)));
+    }
+
+    @Override
+    public List<Body> findBodiesInGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        int shard = shards.shardOfId(grave.getId());
+        List<Body> bodies = shards.cemeteryManager(shard).findBodiesInGrave(shards.toLocal(grave));
+        bodies.forEach((body) -> shards.toGlobal(shard, body));
+        return bodies;
+    }
+
+    @Override
+    public Map<Grave, List<Body>> findBodiesInGraves(Collection<Grave> graves) throws ServiceFailureException, IllegalEntityException {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        Map<Integer, List<Grave>> gravesByShard = new LinkedHashMap<>();
+        for (Grave grave : graves) {
+            if (grave == null) throw new IllegalArgumentException("grave is null");
+            if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+            gravesByShard.computeIfAbsent(shards.shardOfId(grave.getId()), (shard) -> new ArrayList<>())
+                    .add(shards.toLocal(grave));
+        }
+        Map<Long, List<Body>> bodiesByGraveId = new HashMap<>();
+        shards.forShards(gravesByShard.keySet(), (shard) -> {
+            Map<Long, List<Body>> result = new HashMap<>();
+            shards.cemeteryManager(shard).findBodiesInGraves(gravesByShard.get(shard)).forEach((grave, bodies) -> {
+                bodies.forEach((body) -> shards.toGlobal(shard, body));
+                result.put(shards.toGlobalId(shard, grave.getId()), bodies);
+            });
+            return result;
+        }).values().forEach(bodiesByGraveId::putAll);
+        Map<Grave, List<Body>> result = new LinkedHashMap<>();
+        for (Grave grave : graves) {
+            result.put(grave, bodiesByGraveId.get(grave.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Body, Grave> findGravesWithBodies(Collection<Body> bodies) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        Map<Integer, List<Body>> bodiesByShard = new LinkedHashMap<>();
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+            bodiesByShard.computeIfAbsent(shards.shardOfBody(body.getId()), (shard) -> new ArrayList<>())
+                    .add(shards.toLocal(body));
+        }
+        Map<Long, Grave> graveByBodyId = new HashMap<>();
+        shards.forShards(bodiesByShard.keySet(), (shard) -> {
+            Map<Long, Grave> result = new HashMap<>();
+            shards.cemeteryManager(shard).findGravesWithBodies(bodiesByShard.get(shard)).forEach((body, grave) ->
+                    result.put(shards.toGlobalBodyId(shard, body.getId()), shards.toGlobal(shard, grave)));
+            return result;
+        }).values().forEach(graveByBodyId::putAll);
+        Map<Body, Grave> result = new LinkedHashMap<>();
+        for (Body body : bodies) {
+            result.put(body, graveByBodyId.get(body.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Body> findUnburiedBodies() throws ServiceFailureException {
+        return findInAllShards(CemeteryManager::findUnburiedBodies, Shards::toGlobal);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Shards are read one after another, so the stream holds connection to
+     * one shard at a time.
+     */
+    @Override
+    public Stream<Body> streamUnburiedBodies() throws ServiceFailureException {
+        return IntStream.range(0, shards.size()).boxed().flatMap((shard) ->
+                shards.cemeteryManager(shard).streamUnburiedBodies().map((body) -> shards.toGlobal(shard, body)));
+    }
+
+    @Override
+    public List<Grave> findEmptyGraves() throws ServiceFailureException {
+        return findInAllShards(CemeteryManager::findEmptyGraves, Shards::toGlobal);
+    }
+
+    @Override
+    public List<Grave> findGravesWithSomeFreeSpace() throws ServiceFailureException {
+        return findInAllShards(CemeteryManager::findGravesWithSomeFreeSpace, Shards::toGlobal);
+    }
+
+    private <T> List<T> findInAllShards(Function<CemeteryManager, List<T>> query, ShardTranslation<T> translation) {
+        List<T> result = new ArrayList<>();
+        shards.forEachShard((shard) -> {
+            List<T> entities = query.apply(shards.cemeteryManager(shard));
+            entities.forEach((entity) -> translation.toGlobal(shards, shard, entity));
+            return entities;
+        }).forEach(result::addAll);
+        return result;
+    }
+
+    @Override
+    public void putBodyIntoGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        int shard = shards.shardOfId(grave.getId());
+        moveBody(body, shard);
+        shards.cemeteryManager(shard).putBodyIntoGrave(shards.toLocal(body), shards.toLocal(grave));
+    }
+
+    @Override
+    public Map<Body, Grave> buryAll(Collection<Body> bodies, PlacementPolicy policy) throws ServiceFailureException, IllegalEntityException {
+        if (bodies == null) throw new IllegalArgumentException("bodies is null");
+        if (policy == null) throw new IllegalArgumentException("policy is null");
+        for (Body body : bodies) {
+            if (body == null) throw new IllegalArgumentException("body is null");
+            if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        }
+        Map<Body, Grave> placements = new LinkedHashMap<>();
+        if (bodies.isEmpty()) {
+            return placements;
+        }
+
+        List<GraveOccupancy> graves = new ArrayList<>();
+        shards.forEachShard((shard) -> {
+            List<GraveOccupancy> occupancies = shards.cemeteryManager(shard).findGraveOccupancies();
+            occupancies.forEach((occupancy) -> shards.toGlobal(shard, occupancy.getGrave()));
+            return occupancies;
+        }).forEach(graves::addAll);
+        graves.sort(policy.getOrder());
+        CemeteryManagerImpl.computePlacements(bodies, graves, placements);
+
+        Map<Integer, Map<Body, Grave>> localPlacements = new LinkedHashMap<>();
+        for (Map.Entry<Body, Grave> placement : placements.entrySet()) {
+            Body body = placement.getKey();
+            Grave grave = placement.getValue();
+            int shard = shards.shardOfId(grave.getId());
+            moveBody(body, shard);
+            localPlacements.computeIfAbsent(shard, (s) -> new LinkedHashMap<>())
+                    .put(shards.toLocal(body), shards.toLocal(grave));
+        }
+        shards.forShards(localPlacements.keySet(), (shard) -> {
+            shards.cemeteryManager(shard).placeBodies(localPlacements.get(shard));
+            return null;
+        });
+        return placements;
+    }
+
+    @Override
+    public void removeBodyFromGrave(Body body, Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        if (body == null) throw new IllegalArgumentException("body is null");
+        if (body.getId() == null) throw new IllegalEntityException("body id is null");
+        int shard = shards.shardOfId(grave.getId());
+        if (shards.shardOfBody(body.getId()) != shard) {
+            throw new IllegalEntityException("Body " + body + " is not placed in grave " + grave);
+        }
+        shards.cemeteryManager(shard).removeBodyFromGrave(shards.toLocal(body), shards.toLocal(grave));
+    }
+
+    /**
+     * Moves unburied body into given shard, the body keeps its id.
+     */
+    private void moveBody(Body body, int shard) {
+        int bodyShard = shards.shardOfBody(body.getId());
+        if (bodyShard == shard) {
+            return;
+        }
+        BodyManagerImpl source = shards.bodyManager(bodyShard);
+        Body stored = source.getBody(shards.toLocalBodyId(body.getId()));
+        if (stored == null) {
+            throw new IllegalEntityException("Body " + body + " does not exist in the database");
+        }
+        if (shards.cemeteryManager(bodyShard).findGraveWithBody(stored) != null) {
+            throw new IllegalEntityException("Body " + body + " is already placed in some grave");
+        }
+        Body moved = CachingBodyManager.copyOf(stored);
+        moved.setId(null);
+        shards.bodyManager(shard).createBody(moved);
+        try {
+            shards.aliases().insert(shard, moved.getId(), body.getId());
+            source.deleteBody(stored);
+        } catch (RuntimeException ex) {
+            // the alias is deleted together with the body
+            shards.bodyManager(shard).deleteBody(moved);
+            throw ex;
+        }
+        shards.aliases().moved(body.getId(), new BodyAliases.Location(shard, moved.getId()));
+    }
+
+    @FunctionalInterface
+    private interface ShardTranslation<T> {
+        void toGlobal(Shards shards, int shard, T entity);
+    }
+}
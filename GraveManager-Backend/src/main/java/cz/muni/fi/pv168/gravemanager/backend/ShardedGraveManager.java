@@ -0,0 +1,134 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of GraveManager which stores graves in more databases, see
+ * {@link Shards}.
+ * <p>
+ * Graves can't be moved between shards, so the row of existing grave can be
+ * changed only to the row which belongs to the same shard.
+ * {@link #createGraves(Collection)} creates graves in one transaction per
+ * shard, so when it fails, graves created in other shards may stay in the
+ * database.
+ *
+ * @author Petr Adámek
+ */
+public class ShardedGraveManager implements GraveManager {
+
+    private final Shards shards;
+
+    /**
+     * Creates new manager.
+     *
+     * @param shards shards holding the graves
+     */
+    public ShardedGraveManager(Shards shards) {
+        if (shards == null) throw new IllegalArgumentException("shards is null");
+        this.shards = shards;
+    }
+
+    @Override
+    public void createGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        int shard = shards.shardOf(grave);
+        Grave local = shards.toLocal(grave);
+        shards.graveManager(shard).createGrave(local);
+        grave.setId(shards.toGlobalId(shard, local.getId()));
+    }
+
+    @Override
+    public void createGraves(Collection<Grave> graves) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (graves == null) throw new IllegalArgumentException("graves is null");
+        Map<Integer, List<Grave>> gravesByShard = new LinkedHashMap<>();
+        for (Grave grave : graves) {
+            if (grave == null) throw new IllegalArgumentException("grave is null");
+            GraveManagerImpl.validate(grave);
+            if (grave.getId() != null) throw new IllegalEntityException("grave id is already set");
+            gravesByShard.computeIfAbsent(shards.shardOf(grave), (shard) -> new ArrayList<>()).add(grave);
+        }
+        Map<Integer, List<Grave>> localGraves = shards.forShards(gravesByShard.keySet(), (shard) -> {
+            List<Grave> local = new ArrayList<>();
+            gravesByShard.get(shard).forEach((grave) -> local.add(shards.toLocal(grave)));
+            shards.graveManager(shard).createGraves(local);
+            return local;
+        });
+        gravesByShard.forEach((shard, shardGraves) -> {
+            Iterator<Grave> localIterator = localGraves.get(shard).iterator();
+            for (Grave grave : shardGraves) {
+                grave.setId(shards.toGlobalId(shard, localIterator.next().getId()));
+            }
+        });
+    }
+
+    @Override
+    public Grave getGrave(Long id) throws ServiceFailureException {
+        if (id == null) throw new IllegalArgumentException("id is null");
+        int shard = shards.shardOfId(id);
+        return shards.toGlobal(shard, shards.graveManager(shard).getGrave(shards.toLocalId(id)));
+    }
+
+    @Override
+    public void updateGrave(Grave grave) throws ServiceFailureException, ValidationException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        int shard = shards.shardOfId(grave.getId());
+        if (shards.shardOf(grave) != shard) {
+            throw new ValidationException("row " + grave.getRow() + " belongs to another shard");
+        }
+        shards.graveManager(shard).updateGrave(shards.toLocal(grave));
+    }
+
+    @Override
+    public void deleteGrave(Grave grave) throws ServiceFailureException, IllegalEntityException {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        if (grave.getId() == null) throw new IllegalEntityException("grave id is null");
+        shards.graveManager(shards.shardOfId(grave.getId())).deleteGrave(shards.toLocal(grave));
+    }
+
+    @Override
+    public List<Grave> findAllGraves() throws ServiceFailureException {
+        List<Grave> result = new ArrayList<>();
+        shards.forEachShard(this::findAllGraves).forEach(result::addAll);
+        return result;
+    }
+
+    private List<Grave> findAllGraves(int shard) {
+        List<Grave> graves = shards.graveManager(shard).findAllGraves();
+        graves.forEach((grave) -> shards.toGlobal(shard, grave));
+        return graves;
+    }
+
+    @Override
+    public Page<Grave> findGravesPage(String token, int limit) throws ServiceFailureException {
+        return shards.findPage(token, limit, (shard, localToken) -> {
+            Page<Grave> page = shards.graveManager(shard).findGravesPage(localToken, limit);
+            page.getItems().forEach((grave) -> shards.toGlobal(shard, grave));
+            return page;
+        }, Grave::getId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Shards are read one after another, so the stream holds connection to
+     * one shard at a time.
+     */
+    @Override
+    public Stream<Grave> streamAllGraves() throws ServiceFailureException {
+        return IntStream.range(0, shards.size()).boxed().flatMap((shard) ->
+                shards.graveManager(shard).streamAllGraves().map((grave) -> shards.toGlobal(shard, grave)));
+    }
+}
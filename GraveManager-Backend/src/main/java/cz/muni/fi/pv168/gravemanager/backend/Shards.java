@@ -0,0 +1,373 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Set of databases (shards) which together hold one cemetery. It is shared
+ * by {@link ShardedGraveManager}, {@link ShardedBodyManager} and
+ * {@link ShardedCemeteryManager}.
+ * <p>
+ * Each grave is stored in the shard chosen by {@link ShardRouting} and each
+ * buried body is stored in the same shard as its grave. New bodies are
+ * spread over the shards and they are moved to the shard of the grave when
+ * they are buried. Queries which need data from all shards are executed in
+ * all shards in parallel and their results are merged.
+ * <p>
+ * Ids of entities are unique across all shards, they are computed from the
+ * id in the shard as {@code localId * shardCount + shardIndex}. Body moved
+ * into another shard keeps its id, its new location is kept in table
+ * BODY_ALIAS of the target shard. Therefore the number and the order of
+ * data sources must never change for existing data. Each data source must
+ * contain the database schema (see
+ * {@link DatabaseSchema#migrate(DataSource)}).
+ * <p>
+ * Operations with entities in more shards are executed in one transaction
+ * per shard, so they are not atomic as a whole.
+ *
+ * @author Petr Adámek
+ */
+public final class Shards implements AutoCloseable {
+
+    /**
+     * Local id which is not assigned to any body, generated ids are positive.
+     */
+    private static final long NO_BODY = -1;
+
+    private final ShardRouting routing;
+    private final List<GraveManagerImpl> graveManagers = new ArrayList<>();
+    private final List<BodyManagerImpl> bodyManagers = new ArrayList<>();
+    private final List<CemeteryManagerImpl> cemeteryManagers = new ArrayList<>();
+    private final ExecutorService executor;
+    private final AtomicInteger nextBodyShard = new AtomicInteger();
+    private final BodyAliases aliases;
+
+    /**
+     * Creates new set of shards.
+     *
+     * @param dataSources data source of each shard
+     * @param routing routing of graves to shards
+     * @param clock clock used for validation of bodies
+     * @throws IllegalArgumentException when some argument is null, when
+     * dataSources is empty or contains null, or when the number of data
+     * sources does not match the routing
+     * @throws ServiceFailureException when loading of aliases of moved bodies
+     * fails
+     */
+    public Shards(List<DataSource> dataSources, ShardRouting routing, Clock clock) {
+        if (dataSources == null) throw new IllegalArgumentException("dataSources is null");
+        if (dataSources.isEmpty()) throw new IllegalArgumentException("dataSources is empty");
+        if (routing == null) throw new IllegalArgumentException("routing is null");
+        if (clock == null) throw new IllegalArgumentException("clock is null");
+        int requiredShardCount = routing.getRequiredShardCount();
+        if (requiredShardCount != 0 && requiredShardCount != dataSources.size()) {
+            throw new IllegalArgumentException(routing + " requires " + requiredShardCount
+                    + " shards, but there are " + dataSources.size() + " data sources");
+        }
+        for (DataSource dataSource : dataSources) {
+            if (dataSource == null) throw new IllegalArgumentException("dataSource is null");
+            graveManagers.add(new GraveManagerImpl(dataSource));
+            bodyManagers.add(new BodyManagerImpl(dataSource, clock));
+            cemeteryManagers.add(new CemeteryManagerImpl(dataSource));
+        }
+        this.routing = routing;
+        this.aliases = new BodyAliases(new ArrayList<>(dataSources));
+        this.executor = Executors.newFixedThreadPool(dataSources.size(), (task) -> {
+            Thread thread = new Thread(task, "shard-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int size() {
+        return graveManagers.size();
+    }
+
+    /**
+     * Returns index of the shard where given grave belongs.
+     *
+     * @param grave grave
+     * @return index of the shard
+     * @throws IllegalArgumentException when grave is null
+     */
+    public int shardOf(Grave grave) {
+        if (grave == null) throw new IllegalArgumentException("grave is null");
+        return routing.shardOf(grave.getRow(), size());
+    }
+
+    /**
+     * Returns index of the shard which holds grave with given id.
+     *
+     * @param id id of grave
+     * @return index of the shard
+     */
+    public int shardOfId(long id) {
+        return (int) Math.floorMod(id, (long) size());
+    }
+
+    /**
+     * Returns index of the shard which holds body with given id.
+     *
+     * @param id id of body
+     * @return index of the shard
+     */
+    public int shardOfBody(long id) {
+        BodyAliases.Location location = aliases.get(id);
+        return location == null ? shardOfId(id) : location.shard;
+    }
+
+    /**
+     * Stops threads used for parallel queries.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    long toLocalId(long id) {
+        return Math.floorDiv(id, size());
+    }
+
+    long toGlobalId(int shard, long localId) {
+        return localId * size() + shard;
+    }
+
+    long toLocalBodyId(long id) {
+        BodyAliases.Location location = aliases.get(id);
+        if (location != null) {
+            return location.localId;
+        }
+        long localId = toLocalId(id);
+        // the row belongs to a body moved here from another shard, so this id
+        // has never been assigned to any body
+        return aliases.getGlobalId(shardOfId(id), localId) == null ? localId : NO_BODY;
+    }
+
+    long toGlobalBodyId(int shard, long localId) {
+        Long globalId = aliases.getGlobalId(shard, localId);
+        return globalId == null ? toGlobalId(shard, localId) : globalId;
+    }
+
+    BodyAliases aliases() {
+        return aliases;
+    }
+
+    GraveManagerImpl graveManager(int shard) {
+        return graveManagers.get(shard);
+    }
+
+    BodyManagerImpl bodyManager(int shard) {
+        return bodyManagers.get(shard);
+    }
+
+    CemeteryManagerImpl cemeteryManager(int shard) {
+        return cemeteryManagers.get(shard);
+    }
+
+    /**
+     * @return shard for a new body, bodies are spread evenly over shards
+     */
+    int nextBodyShard() {
+        return Math.floorMod(nextBodyShard.getAndIncrement(), size());
+    }
+
+    /**
+     * Returns copy of given grave with id translated to the id in its shard.
+     */
+    Grave toLocal(Grave grave) {
+        Grave copy = CachingGraveManager.copyOf(grave);
+        if (grave.getId() != null) {
+            copy.setId(toLocalId(grave.getId()));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns copy of given body with id translated to the id in its shard.
+     */
+    Body toLocal(Body body) {
+        Body copy = CachingBodyManager.copyOf(body);
+        if (body.getId() != null) {
+            copy.setId(toLocalBodyId(body.getId()));
+        }
+        return copy;
+    }
+
+    /**
+     * Translates id of given grave loaded from given shard to global id.
+     */
+    Grave toGlobal(int shard, Grave grave) {
+        if (grave != null) {
+            grave.setId(toGlobalId(shard, grave.getId()));
+        }
+        return grave;
+    }
+
+    /**
+     * Translates id of given body loaded from given shard to global id.
+     */
+    Body toGlobal(int shard, Body body) {
+        if (body != null) {
+            body.setId(toGlobalBodyId(shard, body.getId()));
+        }
+        return body;
+    }
+
+    /**
+     * Executes given task for each shard in parallel.
+     *
+     * @return results in the order of shards
+     */
+    <R> List<R> forEachShard(IntFunction<R> task) {
+        List<Integer> all = IntStream.range(0, size()).boxed().collect(Collectors.toList());
+        return new ArrayList<>(forShards(all, task).values());
+    }
+
+    /**
+     * Executes given task for given shards in parallel. Task for single shard
+     * is executed by the calling thread.
+     *
+     * @return results by shard index in the order of given shards
+     */
+    <R> Map<Integer, R> forShards(Collection<Integer> shards, IntFunction<R> task) {
+        Map<Integer, R> results = new LinkedHashMap<>();
+        if (shards.size() == 1) {
+            int shard = shards.iterator().next();
+            results.put(shard, task.apply(shard));
+            return results;
+        }
+        Map<Integer, Future<R>> futures = new LinkedHashMap<>();
+        for (int shard : shards) {
+            futures.put(shard, executor.submit(() -> task.apply(shard)));
+        }
+        try {
+            for (Map.Entry<Integer, Future<R>> future : futures.entrySet()) {
+                results.put(future.getKey(), future.getValue().get());
+            }
+            return results;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new ServiceFailureException("Error when querying shards", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceFailureException("Querying shards was interrupted", ex);
+        } finally {
+            // Derby closes connection of interrupted thread, so running tasks are not interrupted
+            futures.values().forEach((future) -> future.cancel(false));
+        }
+    }
+
+    /**
+     * Returns page of entities from all shards ordered by global id. Page
+     * with given limit is requested from each shard, pages are merged and
+     * the first limit entities are returned.
+     *
+     * @param token continuation token with global id
+     * @param limit maximal number of entities on the page
+     * @param shardPage function returning page with global ids from given
+     * shard for given token with local id
+     * @param idGetter function returning id of the entity
+     */
+    <T> Page<T> findPage(String token, int limit, BiFunction<Integer, String, Page<T>> shardPage,
+                         ToLongFunction<T> idGetter) {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long after = Page.decodeToken(token);
+        List<Page<T>> pages = forEachShard((shard) -> shardPage.apply(shard, token == null ? null
+                // the last local id which is not greater than the global one
+                : Page.encodeToken(Math.floorDiv(after - shard, size()))));
+        List<T> rows = new ArrayList<>();
+        boolean hasNext = false;
+        for (Page<T> page : pages) {
+            rows.addAll(page.getItems());
+            hasNext |= page.hasNext();
+        }
+        rows.sort(Comparator.comparingLong(idGetter));
+        if (rows.size() <= limit && !hasNext) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, Math.min(limit, rows.size()));
+        return new Page<>(items, Page.encodeToken(idGetter.applyAsLong(items.get(items.size() - 1))));
+    }
+
+    /**
+     * Returns page of bodies from all shards ordered by global id. It works
+     * like {@link #findPage}, but bodies moved from another shard are not
+     * ordered by their global ids within the shard. So they are skipped in
+     * pages from shards and they are added from {@link BodyAliases} instead.
+     * The pages from shards are complete only up to the last global id which
+     * the row would have without alias, so rows after the smallest such id
+     * are left for the next page.
+     *
+     * @param token continuation token with global id
+     * @param limit maximal number of bodies on the page
+     */
+    Page<Body> findBodiesPage(String token, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit is not positive number");
+        long after = Page.decodeToken(token);
+        List<Page<Body>> pages = forEachShard((shard) -> bodyManager(shard).findBodiesPage(token == null ? null
+                : Page.encodeToken(Math.floorDiv(after - shard, size())), limit));
+        long last = Long.MAX_VALUE;
+        List<Body> rows = new ArrayList<>();
+        for (int shard = 0; shard < pages.size(); shard++) {
+            Page<Body> page = pages.get(shard);
+            if (page.hasNext()) {
+                long localId = page.getItems().get(page.getItems().size() - 1).getId();
+                last = Math.min(last, toGlobalId(shard, localId));
+            }
+            for (Body body : page.getItems()) {
+                if (aliases.getGlobalId(shard, body.getId()) == null) {
+                    rows.add(toGlobal(shard, body));
+                }
+            }
+        }
+        long bound = last;
+        rows.removeIf((body) -> body.getId() > bound);
+        Iterator<Map.Entry<Long, BodyAliases.Location>> moved = aliases.between(after, last).entrySet().iterator();
+        int movedCount = 0;
+        while (movedCount < limit && moved.hasNext()) {
+            Map.Entry<Long, BodyAliases.Location> entry = moved.next();
+            Body body = bodyManager(entry.getValue().shard).getBody(entry.getValue().localId);
+            // the body may have been deleted in the meantime
+            if (body != null) {
+                body.setId(entry.getKey());
+                rows.add(body);
+                movedCount++;
+            }
+        }
+        rows.sort(Comparator.comparingLong(Body::getId));
+        if (rows.size() > limit || moved.hasNext()) {
+            List<Body> items = rows.subList(0, Math.min(limit, rows.size()));
+            return new Page<>(items, Page.encodeToken(items.get(items.size() - 1).getId()));
+        }
+        // all bodies up to the last id were returned
+        return new Page<>(rows, last == Long.MAX_VALUE ? null : Page.encodeToken(last));
+    }
+}
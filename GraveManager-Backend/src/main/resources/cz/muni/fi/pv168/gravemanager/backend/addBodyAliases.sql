@@ -0,0 +1,4 @@
+CREATE TABLE "BODY_ALIAS" (
+    "BODYID" BIGINT NOT NULL PRIMARY KEY REFERENCES BODY (ID) ON DELETE CASCADE,
+    "GLOBALID" BIGINT NOT NULL UNIQUE
+);
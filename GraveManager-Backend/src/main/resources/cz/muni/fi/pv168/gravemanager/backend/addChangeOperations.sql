@@ -0,0 +1,50 @@
+ALTER TABLE "CHANGE_LOG" ADD COLUMN "OPERATION" VARCHAR(6);
+
+UPDATE "CHANGE_LOG" SET "OPERATION" = 'UPDATE';
+
+ALTER TABLE "CHANGE_LOG" ALTER COLUMN "OPERATION" NOT NULL;
+
+ALTER TABLE "CHANGE_LOG" ADD COLUMN "CREATED" TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX "CHANGE_LOG_CREATED_IDX" ON "CHANGE_LOG" ("CREATED");
+
+DROP TRIGGER "GRAVE_INSERT_LOG";
+
+DROP TRIGGER "GRAVE_UPDATE_LOG";
+
+DROP TRIGGER "GRAVE_DELETE_LOG";
+
+DROP TRIGGER "BODY_INSERT_LOG";
+
+DROP TRIGGER "BODY_UPDATE_LOG";
+
+DROP TRIGGER "BODY_DELETE_LOG";
+
+CREATE TRIGGER "GRAVE_INSERT_LOG" AFTER INSERT ON "GRAVE"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("GRAVEID", "OPERATION") VALUES (N."ID", 'CREATE');
+
+CREATE TRIGGER "GRAVE_UPDATE_LOG" AFTER UPDATE ON "GRAVE"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("GRAVEID", "OPERATION") VALUES (N."ID", 'UPDATE');
+
+CREATE TRIGGER "GRAVE_DELETE_LOG" AFTER DELETE ON "GRAVE"
+    REFERENCING OLD AS O FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("GRAVEID", "OPERATION") VALUES (O."ID", 'DELETE');
+
+CREATE TRIGGER "BODY_INSERT_LOG" AFTER INSERT ON "BODY"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("BODYID", "OPERATION") VALUES (N."ID", 'CREATE');
+
+CREATE TRIGGER "BODY_UPDATE_LOG" AFTER UPDATE ON "BODY"
+    REFERENCING OLD AS O NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("BODYID", "OPERATION") VALUES (N."ID",
+        CASE
+            WHEN O."GRAVEID" IS NULL AND N."GRAVEID" IS NOT NULL THEN 'BURY'
+            WHEN O."GRAVEID" IS NOT NULL AND N."GRAVEID" IS NULL THEN 'UNBURY'
+            ELSE 'UPDATE'
+        END);
+
+CREATE TRIGGER "BODY_DELETE_LOG" AFTER DELETE ON "BODY"
+    REFERENCING OLD AS O FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("BODYID", "OPERATION") VALUES (O."ID", 'DELETE');
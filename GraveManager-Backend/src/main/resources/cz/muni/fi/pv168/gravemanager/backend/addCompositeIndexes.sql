@@ -0,0 +1,3 @@
+CREATE INDEX "BODY_GRAVE_IDX" ON "BODY" ("GRAVEID", "ID");
+
+CREATE UNIQUE INDEX "BODY_ID_IDX" ON "BODY" ("ID", "GRAVEID");
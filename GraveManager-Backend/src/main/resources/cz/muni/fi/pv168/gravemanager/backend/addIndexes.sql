@@ -0,0 +1,7 @@
+CREATE INDEX "BODY_GRAVEID_IDX" ON "BODY" ("GRAVEID");
+
+CREATE INDEX "BODY_NAME_IDX" ON "BODY" ("NAME");
+
+CREATE INDEX "BODY_DIED_IDX" ON "BODY" ("DIED");
+
+CREATE INDEX "GRAVE_POSITION_IDX" ON "GRAVE" ("ROW", "COL");
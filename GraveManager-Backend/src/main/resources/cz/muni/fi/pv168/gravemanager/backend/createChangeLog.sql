@@ -0,0 +1,29 @@
+CREATE TABLE "CHANGE_LOG" (
+    "ID" BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
+    "GRAVEID" BIGINT,
+    "BODYID" BIGINT
+);
+
+CREATE TRIGGER "GRAVE_INSERT_LOG" AFTER INSERT ON "GRAVE"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("GRAVEID") VALUES (N."ID");
+
+CREATE TRIGGER "GRAVE_UPDATE_LOG" AFTER UPDATE ON "GRAVE"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("GRAVEID") VALUES (N."ID");
+
+CREATE TRIGGER "GRAVE_DELETE_LOG" AFTER DELETE ON "GRAVE"
+    REFERENCING OLD AS O FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("GRAVEID") VALUES (O."ID");
+
+CREATE TRIGGER "BODY_INSERT_LOG" AFTER INSERT ON "BODY"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("BODYID") VALUES (N."ID");
+
+CREATE TRIGGER "BODY_UPDATE_LOG" AFTER UPDATE ON "BODY"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("BODYID") VALUES (N."ID");
+
+CREATE TRIGGER "BODY_DELETE_LOG" AFTER DELETE ON "BODY"
+    REFERENCING OLD AS O FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("BODYID") VALUES (O."ID");
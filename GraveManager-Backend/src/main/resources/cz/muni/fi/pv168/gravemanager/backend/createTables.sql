@@ -3,9 +3,15 @@ CREATE TABLE "GRAVE" (
     "COL" INTEGER NOT NULL,
     "ROW" INTEGER NOT NULL,
     "CAPACITY" INTEGER NOT NULL,
-    "NOTE" VARCHAR(255)
+    "NOTE" VARCHAR(255),
+    "OCCUPIED" INTEGER NOT NULL DEFAULT 0,
+    "FREE" INTEGER GENERATED ALWAYS AS ("CAPACITY" - "OCCUPIED")
 );
 
+CREATE INDEX "GRAVE_OCCUPIED_IDX" ON "GRAVE" ("OCCUPIED");
+
+CREATE INDEX "GRAVE_FREE_IDX" ON "GRAVE" ("FREE");
+
 CREATE TABLE "BODY" (
     "ID" BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
     "GRAVEID" BIGINT REFERENCES GRAVE (ID),
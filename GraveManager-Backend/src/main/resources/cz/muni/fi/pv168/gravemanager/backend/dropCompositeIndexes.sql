@@ -0,0 +1,3 @@
+DROP INDEX "BODY_GRAVE_IDX";
+
+DROP INDEX "BODY_ID_IDX";
@@ -1,2 +1,5 @@
+DROP TABLE "BODY_ALIAS";
 DROP TABLE "BODY";
-DROP TABLE "GRAVE";
\ No newline at end of file
+DROP TABLE "GRAVE";
+DROP TABLE "CHANGE_LOG";
+DROP TABLE "SCHEMA_VERSION";
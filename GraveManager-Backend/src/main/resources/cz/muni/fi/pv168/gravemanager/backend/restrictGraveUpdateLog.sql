@@ -0,0 +1,5 @@
+DROP TRIGGER "GRAVE_UPDATE_LOG";
+
+CREATE TRIGGER "GRAVE_UPDATE_LOG" AFTER UPDATE OF "COL", "ROW", "CAPACITY", "NOTE" ON "GRAVE"
+    REFERENCING NEW AS N FOR EACH ROW
+    INSERT INTO "CHANGE_LOG" ("GRAVEID", "OPERATION") VALUES (N."ID", 'UPDATE');
@@ -0,0 +1,134 @@
+package cz.muni.fi.pv168.common;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncExecutor}.
+ *
+ * @author Petr Adámek
+ */
+public class AsyncExecutorTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void supplyReturnsResult() throws Exception {
+        try (AsyncExecutor executor = AsyncExecutor.create(2, Duration.ofSeconds(5))) {
+            assertThat(executor.supply(() -> 42).get(5, TimeUnit.SECONDS)).isEqualTo(42);
+            assertThat(executor.run(() -> { }).get(5, TimeUnit.SECONDS)).isNull();
+            assertThat(executor.getAvailablePermits()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void exceptionCompletesFuture() {
+        try (AsyncExecutor executor = AsyncExecutor.create(2, Duration.ofSeconds(5))) {
+            CompletableFuture<Object> result = executor.supply(() -> {
+                throw new IllegalEntityException("no such grave");
+            });
+
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(IllegalEntityException.class);
+            assertThat(executor.getAvailablePermits()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void concurrencyIsLimited() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (AsyncExecutor executor = new AsyncExecutor(threads, 3, Duration.ofSeconds(5))) {
+            List<CompletableFuture<Void>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                results.add(executor.run(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(5);
+                    running.decrementAndGet();
+                }));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        }
+        assertThat(maxRunning.get()).isBetween(1, 3);
+    }
+
+    @Test
+    public void exhaustedExecutorFailsAfterTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (AsyncExecutor executor = new AsyncExecutor(threads, 1, Duration.ofMillis(50))) {
+            CompletableFuture<Void> blocking = executor.run(() -> await(release));
+
+            CompletableFuture<Integer> rejected = executor.supply(() -> 1);
+            assertThat(rejected).isCompletedExceptionally();
+            assertThatThrownBy(rejected::join).hasCauseInstanceOf(ServiceFailureException.class);
+
+            release.countDown();
+            blocking.get(5, TimeUnit.SECONDS);
+            assertThat(executor.supply(() -> 2).get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void givenExecutorIsNotShutDown() {
+        new AsyncExecutor(threads, 1, Duration.ZERO).close();
+        assertThat(threads.isShutdown()).isFalse();
+    }
+
+    @Test
+    public void forPoolUsesPoolSize() {
+        try (HikariDataSource ds = new PooledDataSourceFactory("jdbc:derby:memory:async-test;create=true").poolSize(4).create();
+             AsyncExecutor executor = AsyncExecutor.forPool(ds)) {
+            assertThat(executor.getMaxConcurrency()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void createWithWrongArguments() {
+        assertThatThrownBy(() -> AsyncExecutor.create(0, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AsyncExecutor.create(1, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AsyncExecutor.create(1, Duration.ofSeconds(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AsyncExecutor(null, 1, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AsyncExecutor.forPool(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cz.muni.fi.pv168.common;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CsvReader} and {@link CsvWriter}.
+ *
+ * @author Petr Adámek
+ */
+public class CsvReaderTest {
+
+    private static List<List<String>> readAll(CsvReader reader) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        for (List<String> record = reader.readRecord(); record != null; record = reader.readRecord()) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    public void readSimpleRecords() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,b,c\n1,,3\r\nlast,line"));
+
+        assertThat(readAll(reader)).containsExactly(
+                asList("a", "b", "c"),
+                asList("1", "", "3"),
+                asList("last", "line"));
+    }
+
+    @Test
+    public void readQuotedFields() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(
+                "\"with, comma\",\"with \"\"quotes\"\"\",\"multi\nline\"\nnext,\"\"\n"));
+
+        assertThat(reader.readRecord()).containsExactly("with, comma", "with \"quotes\"", "multi\nline");
+        assertThat(reader.getRecordLineNumber()).isEqualTo(1);
+        assertThat(reader.readRecord()).containsExactly("next", "");
+        assertThat(reader.getRecordLineNumber()).isEqualTo(3);
+        assertThat(reader.readRecord()).isNull();
+    }
+
+    @Test
+    public void readRecordsLongerThanBuffer() throws IOException {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            data.append(i).append(",\"value ").append(i).append("\"\n");
+        }
+        CsvReader reader = new CsvReader(new StringReader(data.toString()));
+
+        List<List<String>> records = readAll(reader);
+
+        assertThat(records).hasSize(20000);
+        assertThat(records.get(12345)).containsExactly("12345", "value 12345");
+        assertThat(reader.getRecordLineNumber()).isEqualTo(20000);
+    }
+
+    @Test
+    public void readEmptyInput() throws IOException {
+        assertThat(new CsvReader(new StringReader("")).readRecord()).isNull();
+    }
+
+    @Test
+    public void readUnterminatedQuote() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,b\n\"unterminated,c\n"));
+        reader.readRecord();
+
+        assertThatThrownBy(reader::readRecord)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("line 2");
+    }
+
+    @Test
+    public void readTooLongRecord() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("short\n\"very long field"), 10);
+
+        assertThat(reader.readRecord()).containsExactly("short");
+        assertThatThrownBy(reader::readRecord)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("longer than 10");
+    }
+
+    @Test
+    public void writtenRecordsAreReadBack() throws IOException {
+        StringWriter out = new StringWriter();
+        CsvWriter writer = new CsvWriter(out);
+        writer.writeRecord("plain", null, "with, comma", "with \"quote\"", "multi\r\nline");
+        writer.writeRecord("second");
+        writer.flush();
+
+        CsvReader reader = new CsvReader(new StringReader(out.toString()));
+
+        assertThat(readAll(reader)).containsExactly(
+                asList("plain", "", "with, comma", "with \"quote\"", "multi\r\nline"),
+                asList("second"));
+    }
+
+    @Test
+    public void createWithInvalidArguments() {
+        assertThatThrownBy(() -> new CsvReader(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CsvReader(new StringReader(""), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CsvWriter(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
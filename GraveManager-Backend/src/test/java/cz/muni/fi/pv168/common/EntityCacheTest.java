@@ -0,0 +1,164 @@
+package cz.muni.fi.pv168.common;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link EntityCache}.
+ *
+ * @author Petr Adámek
+ */
+public class EntityCacheTest {
+
+    private static final Instant NOW = Instant.parse("2016-02-29T14:00:00Z");
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Function<Integer, StringBuilder> loader = (key) -> {
+        loads.incrementAndGet();
+        return key < 0 ? null : new StringBuilder("value " + key);
+    };
+
+    private static EntityCache<Integer, StringBuilder> prepareCache(int maximumSize, Duration timeToLive, Clock clock) {
+        return new EntityCache<>(maximumSize, timeToLive, clock, StringBuilder::new);
+    }
+
+    @Test
+    public void getLoadsOnlyOnce() {
+        EntityCache<Integer, StringBuilder> cache = prepareCache(10, null, Clock.systemUTC());
+
+        assertThat(cache.get(1, loader).toString()).isEqualTo("value 1");
+        assertThat(cache.get(1, loader).toString()).isEqualTo("value 1");
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getStatistics().getHitCount()).isEqualTo(1);
+        assertThat(cache.getStatistics().getMissCount()).isEqualTo(1);
+        assertThat(cache.getStatistics().getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void getReturnsDefensiveCopy() {
+        EntityCache<Integer, StringBuilder> cache = prepareCache(10, null, Clock.systemUTC());
+
+        cache.get(1, loader).append(" modified");
+        cache.get(1, loader).append(" modified");
+
+        assertThat(cache.get(1, loader).toString()).isEqualTo("value 1");
+    }
+
+    @Test
+    public void nullIsNotCached() {
+        EntityCache<Integer, StringBuilder> cache = prepareCache(10, null, Clock.systemUTC());
+
+        assertThat(cache.get(-1, loader)).isNull();
+        assertThat(cache.get(-1, loader)).isNull();
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        EntityCache<Integer, StringBuilder> cache = prepareCache(2, null, Clock.systemUTC());
+
+        cache.get(1, loader);
+        cache.get(2, loader);
+        cache.get(1, loader);
+        // 2 is the least recently used
+        cache.get(3, loader);
+        loads.set(0);
+        cache.get(1, loader);
+        cache.get(3, loader);
+        assertThat(loads.get()).isZero();
+        cache.get(2, loader);
+        assertThat(loads.get()).isEqualTo(1);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getStatistics().getEvictionCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void expiredEntityIsLoadedAgain() {
+        MutableClock clock = new MutableClock(NOW);
+        EntityCache<Integer, StringBuilder> cache = prepareCache(10, Duration.ofMinutes(1), clock);
+
+        cache.get(1, loader);
+        clock.now = NOW.plusSeconds(59);
+        cache.get(1, loader);
+        assertThat(loads.get()).isEqualTo(1);
+
+        clock.now = NOW.plusSeconds(60);
+        cache.get(1, loader);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidate() {
+        EntityCache<Integer, StringBuilder> cache = prepareCache(10, null, Clock.systemUTC());
+        cache.get(1, loader);
+        cache.get(2, loader);
+
+        cache.invalidate(1);
+        cache.get(1, loader);
+        cache.get(2, loader);
+        assertThat(loads.get()).isEqualTo(3);
+
+        cache.invalidateAll();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void invalidateDuringLoading() {
+        EntityCache<Integer, StringBuilder> cache = prepareCache(10, null, Clock.systemUTC());
+
+        StringBuilder value = cache.get(1, (key) -> {
+            cache.invalidate(key);
+            return loader.apply(key);
+        });
+
+        assertThat(value.toString()).isEqualTo("value 1");
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void createWithInvalidParameters() {
+        assertThatThrownBy(() -> prepareCache(0, null, Clock.systemUTC()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> prepareCache(10, Duration.ZERO, Clock.systemUTC()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> prepareCache(10, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package cz.muni.fi.pv168.common;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ *
+ * @author Petr Adámek
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverAllValues() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 65, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestValueOf(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(LatencyHistogram.highestValueOf(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertThat(snapshot.getCount()).isZero();
+        assertThat(snapshot.getMeanNanos()).isZero();
+        assertThat(snapshot.getValueAtQuantile(0.99)).isZero();
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(1001);
+        assertThat(snapshot.getMaxNanos()).isEqualTo(1_000_000);
+        assertThat(snapshot.getValueAtQuantile(0)).isZero();
+        assertThat(snapshot.getValueAtQuantile(0.5)).isBetween(500_000L, 516_000L);
+        assertThat(snapshot.getValueAtQuantile(0.99)).isBetween(990_000L, 1_000_000L);
+        assertThat(snapshot.getValueAtQuantile(1)).isEqualTo(1_000_000);
+        assertThat(snapshot.getMeanNanos()).isCloseTo(500_500_000.0 / 1001, within(0.001));
+        assertThatThrownBy(() -> snapshot.getValueAtQuantile(1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void concurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        histogram.record(i % 100);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(histogram.snapshot().getCount()).isEqualTo(800_000);
+        assertThat(histogram.snapshot().getMaxNanos()).isEqualTo(99);
+    }
+}
@@ -0,0 +1,105 @@
+package cz.muni.fi.pv168.common;
+
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryGraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryStore;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link ManagerMetrics}.
+ *
+ * @author Petr Adámek
+ */
+public class ManagerMetricsTest {
+
+    private ManagerMetrics metrics;
+    private GraveManager graveManager;
+
+    @Before
+    public void setUp() {
+        metrics = new ManagerMetrics();
+        graveManager = metrics.instrument(GraveManager.class, new InMemoryGraveManager(new InMemoryStore()));
+    }
+
+    private static Grave newGrave() {
+        Grave grave = new Grave();
+        grave.setColumn(1);
+        grave.setRow(2);
+        grave.setCapacity(3);
+        return grave;
+    }
+
+    @Test
+    public void countCallsAndErrors() {
+        Grave grave = newGrave();
+        graveManager.createGrave(grave);
+        graveManager.getGrave(grave.getId());
+        graveManager.getGrave(grave.getId() + 1);
+        assertThatThrownBy(() -> graveManager.createGrave(grave))
+                .isInstanceOf(IllegalEntityException.class);
+
+        MethodStats createStats = metrics.getStats(GraveManager.class, "createGrave");
+        assertThat(createStats.getCalls()).isEqualTo(2);
+        assertThat(createStats.getErrors()).isEqualTo(1);
+        assertThat(createStats.getLatencies().getCount()).isEqualTo(2);
+        MethodStats getStats = metrics.getStats(GraveManager.class, "getGrave");
+        assertThat(getStats.getCalls()).isEqualTo(2);
+        assertThat(getStats.getErrors()).isZero();
+        assertThat(getStats.getMaxMicros()).isGreaterThanOrEqualTo(getStats.getP999Micros());
+        assertThat(getStats.getP999Micros()).isGreaterThanOrEqualTo(getStats.getP50Micros());
+        assertThat(metrics.getStats(GraveManager.class, "deleteGrave").getCalls()).isZero();
+        assertThat(metrics.getStats(GraveManager.class, "noSuchMethod")).isNull();
+    }
+
+    @Test
+    public void objectMethodsAreNotMeasured() {
+        assertThat(graveManager.toString()).isNotNull();
+        assertThat(graveManager.equals(graveManager)).isFalse();
+
+        assertThat(metrics.getStats()).allSatisfy((stats) -> assertThat(stats.getCalls()).isZero());
+    }
+
+    @Test
+    public void instrumentWithWrongArguments() {
+        assertThatThrownBy(() -> metrics.instrument(null, graveManager))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> metrics.instrument(GraveManager.class, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> metrics.instrument(InMemoryGraveManager.class, new InMemoryGraveManager(new InMemoryStore())))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void dump() {
+        graveManager.createGrave(newGrave());
+        graveManager.findAllGraves();
+
+        String dump = metrics.dump();
+
+        assertThat(dump.split(System.lineSeparator())).hasSize(3);
+        assertThat(dump).contains("p999", "GraveManager.createGrave", "GraveManager.findAllGraves")
+                .doesNotContain("GraveManager.deleteGrave");
+    }
+
+    @Test
+    public void registerMBeans() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        graveManager.findAllGraves();
+
+        metrics.registerMBeans(server);
+
+        ObjectName name = new ObjectName("cz.muni.fi.pv168:type=ManagerMetrics,manager=GraveManager,method=findAllGraves");
+        assertThat(server.getAttribute(name, "Calls")).isEqualTo(1L);
+        assertThat(server.getAttribute(name, "P99Micros")).isInstanceOf(Double.class);
+        metrics.unregisterMBeans(server);
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+}
@@ -0,0 +1,113 @@
+package cz.muni.fi.pv168.common;
+
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link MigrationRunner}.
+ *
+ * @author Petr Adámek
+ */
+public class MigrationRunnerTest {
+
+    private DataSource ds;
+
+    @Before
+    public void setUp() {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:migration-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            for (String table : new String[]{"MIGRATION_TEST", "FAILED_MIGRATION_TEST", "SCHEMA_VERSION"}) {
+                if (tableExists(conn, table)) {
+                    try (PreparedStatement st = conn.prepareStatement("DROP TABLE " + table)) {
+                        st.execute();
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            return tableExists(conn, table);
+        }
+    }
+
+    private MigrationRunner prepareRunner() {
+        return new MigrationRunner(ds, MigrationRunnerTest.class)
+                .migration(1, "create test table", "createTestTable.sql");
+    }
+
+    @Test
+    public void migrate() throws SQLException {
+        MigrationRunner runner = prepareRunner();
+
+        assertThat(runner.getCurrentVersion()).isZero();
+        assertThat(runner.migrate()).isEqualTo(1);
+        assertThat(runner.getCurrentVersion()).isEqualTo(1);
+        assertThat(tableExists("MIGRATION_TEST")).isTrue();
+    }
+
+    @Test
+    public void migrateSkipsAppliedMigrations() {
+        prepareRunner().migrate();
+
+        // the script would fail when executed again, because the table exists
+        assertThat(prepareRunner().migrate()).isZero();
+        assertThat(prepareRunner().getCurrentVersion()).isEqualTo(1);
+    }
+
+    @Test
+    public void failedMigrationIsRolledBack() throws SQLException {
+        MigrationRunner runner = prepareRunner()
+                .migration(2, "failing migration", "failingMigration.sql");
+
+        assertThatThrownBy(runner::migrate).isInstanceOf(ServiceFailureException.class);
+
+        // first migration is applied, the failed one is rolled back completely
+        assertThat(runner.getCurrentVersion()).isEqualTo(1);
+        assertThat(tableExists("MIGRATION_TEST")).isTrue();
+        assertThat(tableExists("FAILED_MIGRATION_TEST")).isFalse();
+    }
+
+    @Test
+    public void migrationWithMissingScript() {
+        MigrationRunner runner = new MigrationRunner(ds, MigrationRunnerTest.class)
+                .migration(1, "missing script", "nonExistingScript.sql");
+        assertThatThrownBy(runner::migrate).isInstanceOf(ServiceFailureException.class);
+        assertThat(runner.getCurrentVersion()).isZero();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateVersion() {
+        prepareRunner().migration(1, "create test table again", "createTestTable.sql");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroVersion() {
+        new MigrationRunner(ds, MigrationRunnerTest.class)
+                .migration(0, "create test table", "createTestTable.sql");
+    }
+}
@@ -0,0 +1,117 @@
+package cz.muni.fi.pv168.common;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link PooledDataSourceFactory}.
+ *
+ * @author Petr Adámek
+ */
+public class PooledDataSourceFactoryTest {
+
+    private static final String URL = "jdbc:derby:memory:pool-test;create=true";
+
+    private HikariDataSource ds;
+
+    @Before
+    public void setUp() {
+        ds = new PooledDataSourceFactory(URL)
+                .poolSize(2)
+                .create();
+    }
+
+    @After
+    public void tearDown() {
+        ds.close();
+    }
+
+    @Test
+    public void connectionIsReused() throws SQLException {
+        Connection physical;
+        try (Connection conn = ds.getConnection()) {
+            physical = conn.unwrap(Connection.class);
+        }
+        try (Connection conn = ds.getConnection()) {
+            assertThat(conn.unwrap(Connection.class)).isSameAs(physical);
+        }
+        assertThat(ds.getHikariPoolMXBean().getTotalConnections()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void getConnectionFromExhaustedPool() throws SQLException {
+        // database is already booted by setUp(), so short timeout is enough for opening connections
+        try (HikariDataSource ds = new PooledDataSourceFactory(URL)
+                .poolSize(2)
+                .connectionTimeout(Duration.ofMillis(500))
+                .create()) {
+            try (Connection c1 = ds.getConnection();
+                 Connection c2 = ds.getConnection()) {
+                assertThat(c1.isValid(1) && c2.isValid(1)).isTrue();
+                assertThatThrownBy(() -> ds.getConnection())
+                        .isInstanceOf(SQLException.class);
+            }
+            // connections are returned back to the pool
+            try (Connection conn = ds.getConnection()) {
+                assertThat(conn.isValid(1)).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void leakIsLogged() throws SQLException, InterruptedException {
+        Logger logger = (Logger) LoggerFactory.getLogger("com.zaxxer.hikari");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        // the expected warning is not printed to the console
+        logger.setAdditive(false);
+        try (HikariDataSource ds = new PooledDataSourceFactory(URL)
+                .leakDetectionThreshold(Duration.ofSeconds(2))
+                .create()) {
+            try (Connection conn = ds.getConnection()) {
+                assertThat(conn.isValid(1)).isTrue();
+                Thread.sleep(2500);
+            }
+        } finally {
+            logger.detachAppender(appender);
+            logger.setAdditive(true);
+        }
+        assertThat(appender.list)
+                .extracting(ILoggingEvent::getFormattedMessage)
+                .anyMatch((message) -> message.contains("leak"));
+    }
+
+    @Test
+    public void createWithInvalidUrl() {
+        assertThatThrownBy(() -> new PooledDataSourceFactory("jdbc:nonexisting:db").create())
+                .isInstanceOf(ServiceFailureException.class);
+    }
+
+    @Test
+    public void invalidParameters() {
+        PooledDataSourceFactory factory = new PooledDataSourceFactory(URL);
+        assertThatThrownBy(() -> new PooledDataSourceFactory(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> factory.poolSize(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> factory.connectionTimeout(Duration.ofMillis(100)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> factory.leakDetectionThreshold(Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> factory.leakDetectionThreshold(Duration.ofSeconds(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,198 @@
+package cz.muni.fi.pv168.common;
+
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManager;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManagerImpl;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link ReadWriteRoutingDataSource}. The replica is a second
+ * database, which is updated only by {@link TestReplicator}, so the reads
+ * from the replica don't see changes until the replication.
+ *
+ * @author Petr Adámek
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private TestReplicator replicator;
+    private ReadWriteRoutingDataSource routing;
+    private GraveManager graveManager;
+    private BodyManager bodyManager;
+    private CemeteryManager cemeteryManager;
+
+    private static DataSource prepareDataSource(String name) {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:" + name);
+        ds.setCreateDatabase("create");
+        return ds;
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        primary = prepareDataSource("gravemgr-primary");
+        replica = prepareDataSource("gravemgr-replica");
+        DatabaseSchema.migrate(primary);
+        DatabaseSchema.migrate(replica);
+        replicator = new TestReplicator(primary, replica)
+                .table("GRAVE", "ID", "ROW", "COL", "CAPACITY", "NOTE", "OCCUPIED")
+                .table("BODY", "ID", "GRAVEID", "NAME", "GENDER", "BORN", "DIED", "VAMPIRE");
+        routing = new ReadWriteRoutingDataSource(primary, replica);
+        graveManager = routing.routeReads(GraveManager.class, new GraveManagerImpl(routing));
+        bodyManager = routing.routeReads(BodyManager.class, new BodyManagerImpl(routing, Clock.systemUTC()));
+        cemeteryManager = routing.routeReads(CemeteryManager.class, new CemeteryManagerImpl(routing));
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(primary, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        DBUtils.executeSqlScript(replica, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    private static Grave newGrave(int row, int column) {
+        Grave grave = new Grave();
+        grave.setRow(row);
+        grave.setColumn(column);
+        grave.setCapacity(2);
+        return grave;
+    }
+
+    private static Body newBody(String name) {
+        Body body = new Body();
+        body.setName(name);
+        body.setGender(Gender.FEMALE);
+        return body;
+    }
+
+    @Test
+    public void writesGoToPrimary() {
+        Grave grave = newGrave(1, 1);
+        graveManager.createGrave(grave);
+
+        assertThat(new GraveManagerImpl(primary).getGrave(grave.getId())).isEqualToComparingFieldByField(grave);
+        assertThat(new GraveManagerImpl(replica).findAllGraves()).isEmpty();
+    }
+
+    @Test
+    public void readsGoToReplica() throws SQLException {
+        Grave grave = newGrave(1, 1);
+        graveManager.createGrave(grave);
+        Body body = newBody("Lucy");
+        bodyManager.createBody(body);
+
+        assertThat(graveManager.getGrave(grave.getId())).isNull();
+        assertThat(bodyManager.findAllBodies()).isEmpty();
+        assertThat(cemeteryManager.findEmptyGraves()).isEmpty();
+
+        replicator.replicate();
+
+        assertThat(graveManager.getGrave(grave.getId())).isEqualToComparingFieldByField(grave);
+        assertThat(bodyManager.findAllBodies()).usingFieldByFieldElementComparator().containsExactly(body);
+        assertThat(cemeteryManager.findUnburiedBodies()).usingFieldByFieldElementComparator().containsExactly(body);
+    }
+
+    @Test
+    public void streamReadsReplica() throws SQLException {
+        graveManager.createGrave(newGrave(1, 1));
+        try (Stream<Grave> graves = graveManager.streamAllGraves()) {
+            assertThat(graves).isEmpty();
+        }
+
+        replicator.replicate();
+        try (Stream<Grave> graves = graveManager.streamAllGraves()) {
+            assertThat(graves).hasSize(1);
+        }
+    }
+
+    @Test
+    public void scopeReadsItsOwnWrites() {
+        Grave grave = newGrave(1, 1);
+        try (ReadWriteRoutingDataSource.Scope scope = routing.openScope()) {
+            assertThat(graveManager.findAllGraves()).isEmpty();
+            assertThat(scope.isWritten()).isFalse();
+
+            graveManager.createGrave(grave);
+
+            assertThat(scope.isWritten()).isTrue();
+            assertThat(graveManager.getGrave(grave.getId())).isEqualToComparingFieldByField(grave);
+        }
+        // replica is not replicated yet
+        assertThat(graveManager.getGrave(grave.getId())).isNull();
+        try (ReadWriteRoutingDataSource.Scope scope = routing.openScope()) {
+            assertThat(graveManager.getGrave(grave.getId())).isNull();
+            assertThat(scope.isWritten()).isFalse();
+        }
+    }
+
+    @Test
+    public void writeInNestedScopeIsVisibleInOuterScope() {
+        Grave grave = newGrave(1, 1);
+        try (ReadWriteRoutingDataSource.Scope outer = routing.openScope()) {
+            try (ReadWriteRoutingDataSource.Scope inner = routing.openScope()) {
+                graveManager.createGrave(grave);
+                assertThat(inner.isWritten()).isTrue();
+            }
+            assertThat(outer.isWritten()).isTrue();
+            assertThat(graveManager.getGrave(grave.getId())).isNotNull();
+        }
+    }
+
+    @Test
+    public void closeScopeOutOfOrder() {
+        ReadWriteRoutingDataSource.Scope outer = routing.openScope();
+        ReadWriteRoutingDataSource.Scope inner = routing.openScope();
+        assertThatThrownBy(outer::close).isInstanceOf(IllegalStateException.class);
+        inner.close();
+        outer.close();
+        // closing twice does nothing
+        outer.close();
+    }
+
+    @Test
+    public void managerExceptionsArePassedThrough() {
+        assertThatThrownBy(() -> graveManager.getGrave(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        Grave grave = newGrave(1, 1);
+        grave.setId(1L);
+        assertThatThrownBy(() -> graveManager.updateGrave(grave))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void routeReadsWithWrongArguments() {
+        GraveManager manager = new GraveManagerImpl(routing);
+        assertThatThrownBy(() -> routing.routeReads(null, manager))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> routing.routeReads(GraveManager.class, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> routing.routeReads(GraveManagerImpl.class, new GraveManagerImpl(routing)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void createWithNullDataSource() {
+        assertThatThrownBy(() -> new ReadWriteRoutingDataSource(null, replica))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ReadWriteRoutingDataSource(primary, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
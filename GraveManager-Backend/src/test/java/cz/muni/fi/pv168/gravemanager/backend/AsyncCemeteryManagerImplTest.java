@@ -0,0 +1,102 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.AsyncExecutor;
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncCemeteryManagerImpl}, {@link AsyncGraveManagerImpl}
+ * and {@link AsyncBodyManagerImpl}.
+ *
+ * @author Petr Adámek
+ */
+public class AsyncCemeteryManagerImplTest {
+
+    private AsyncExecutor executor;
+    private AsyncCemeteryManager manager;
+    private AsyncBodyManager bodyManager;
+    private AsyncGraveManager graveManager;
+
+    private Grave g1, g2;
+    private Body b1, b2, b3;
+
+    @Before
+    public void setUp() {
+        InMemoryStore store = new InMemoryStore(4);
+        executor = AsyncExecutor.create(4, Duration.ofSeconds(5));
+        manager = new AsyncCemeteryManagerImpl(new InMemoryCemeteryManager(store), executor);
+        bodyManager = new AsyncBodyManagerImpl(new InMemoryBodyManager(store, Clock.systemUTC()), executor);
+        graveManager = new AsyncGraveManagerImpl(new InMemoryGraveManager(store), executor);
+
+        g1 = new GraveBuilder().column(1).row(2).capacity(1).note("Grave 1").build();
+        g2 = new GraveBuilder().column(8).row(9).capacity(2).note("Grave 2").build();
+        graveManager.createGraves(Arrays.asList(g1, g2)).join();
+
+        b1 = new BodyBuilder().name("Body 1").gender(Gender.MALE).build();
+        b2 = new BodyBuilder().name("Body 2").gender(Gender.FEMALE).build();
+        b3 = new BodyBuilder().name("Body 3").gender(Gender.MALE).build();
+        bodyManager.createBodies(Arrays.asList(b1, b2, b3)).join();
+    }
+
+    @After
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void independentLookupsRunConcurrently() {
+        manager.putBodyIntoGrave(b1, g2)
+                .thenCompose((ignored) -> manager.putBodyIntoGrave(b2, g2))
+                .join();
+
+        CompletableFuture<Body> body = bodyManager.getBody(b1.getId());
+        CompletableFuture<Grave> grave = manager.findGraveWithBody(b1);
+        CompletableFuture<List<Body>> bodies = manager.findBodiesInGrave(g2);
+        CompletableFuture.allOf(body, grave, bodies).join();
+
+        assertThat(body.join()).isEqualToComparingFieldByField(b1);
+        assertThat(grave.join()).isEqualToComparingFieldByField(g2);
+        assertThat(bodies.join()).usingFieldByFieldElementComparator().containsOnly(b1, b2);
+        assertThat(manager.findUnburiedBodies().join()).usingFieldByFieldElementComparator().containsExactly(b3);
+        assertThat(manager.findGravesWithSomeFreeSpace().join()).usingFieldByFieldElementComparator().containsExactly(g1);
+    }
+
+    @Test
+    public void exceptionCompletesFuture() {
+        manager.putBodyIntoGrave(b1, g1).join();
+
+        CompletableFuture<Void> result = manager.putBodyIntoGrave(b2, g1);
+
+        assertThatThrownBy(result::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findGraveWithBody(b2).join()).isNull();
+    }
+
+    @Test
+    public void argumentsAreCheckedByDelegate() {
+        assertThatThrownBy(() -> graveManager.getGrave(null).join())
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> bodyManager.deleteBody(null).join())
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void createWithNullArguments() {
+        assertThatThrownBy(() -> new AsyncCemeteryManagerImpl(null, executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AsyncGraveManagerImpl(new InMemoryGraveManager(new InMemoryStore()), null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,739 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+
+import static java.time.Month.*;
+import static org.assertj.core.api.Assertions.*;
+
+//------------------------------------------------------------------------------
+// IMPORTANT NOTE:
+// This test contains lots of comments to help you understand well all
+// implementation details. You are not expected to use such kind of comments
+// in your tests.
+//------------------------------------------------------------------------------
+
+/**
+ * Tests of {@link BodyManager} contract. The same tests are run for each
+ * implementation, subclasses create the managers working with their storage.
+ *
+ * @author petr.adamek@bilysklep.cz
+ */
+public abstract class BodyManagerContractTest {
+
+    protected BodyManager manager;
+
+    // Our Clock mock object will be allways returning date and time
+    // corresponding to February 29 2016, 14:00 in UTC.
+    protected final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    // ExpectedException is one possible mechanisms for testing if expected
+    // exception is thrown. See createGraveWithExistingId() for usage example.
+    @Rule
+    // attribute annotated with @Rule annotation must be public :-(
+    public ExpectedException expectedException = ExpectedException.none();
+
+    //--------------------------------------------------------------------------
+    // Test initialization
+    //--------------------------------------------------------------------------
+
+    /**
+     * Creates managers working with empty storage, it is called before each
+     * test.
+     *
+     * @param clock clock returning the current time of the test
+     * @return new managers
+     * @throws Exception when the storage can't be prepared
+     */
+    protected abstract Managers createManagers(Clock clock) throws Exception;
+
+    protected static Clock prepareClockMock(ZonedDateTime now) {
+        // We don't need to use Mockito, because java already contais
+        // implementation of Clock which returns fixed time.
+        return Clock.fixed(now.toInstant(), now.getZone());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        manager = createManagers(prepareClockMock(NOW)).bodyManager;
+    }
+
+    //--------------------------------------------------------------------------
+    // Preparing test data
+    //--------------------------------------------------------------------------
+
+    // We will need to create some Body instances for testing purposes. We
+    // could create constructor or helper method for initializing all fields,
+    // but this is not well readable, especially for cases with multiple
+    // parameters of the same type:
+    //
+    // Body body = new Body("Joe",Gender.Male,LocalDate.of(1962,Month.OCTOBER,21),
+    //         LocalDate.of(2011,Month.NOVEMBER,8),false);   // constructor
+    // Body body = newBody("Joe",Gender.Male,LocalDate.of(1962,Month.OCTOBER,21),
+    //         LocalDate.of(2011,Month.NOVEMBER,8),false);   // helper method
+    //
+    // To understand this code, you need to know or look, what is the order and
+    // meaning of parameters. And it will be difficult to maintain the code when
+    // some new attributes are introduced. Another option is to use set methods:
+    //
+    // Body body = new Body();
+    // body.setName("Joe");
+    // body.setGender(Gender.MALE);
+    // body.setBorn(LocalDate.of(1962,OCTOBER,21));
+    // body.setDied(LocalDate.of(2011,NOVEMBER,8));
+    // body.setVampire(false);
+    //
+    // This is better understandable, but it needs too much code to construct
+    // the object. Alternative solution is to use Builder pattern:
+    //
+    // Body body = new BodyBuilder().name("Joe").gender(Gender.MALE)
+    //         .born(1962,OCTOBER,21).died(2011,NOVEMBER,8);
+    //
+    // Advantage of builder pattern is compact syntax based on fluent API,
+    // clear assigment of values to attribute names and flexibility allowing to
+    // set only arbitrary subset of attributes (and keeping default values for
+    // others). Disadvantage of builder pattern is the need to create and
+    // maintain builder class. See Item 2 in Effective Java from Joshua Bloch
+    // for more details.
+    //
+    // To make creation of test objects even easier, we can prepare some
+    // pre-configured builders with some reasonable default attribute values
+    // (see sampleJoeBodyBuilder() and sampleCatherineBodyBuilder() bellow).
+    // These values can be changed by subsequent calls of appropriate builder
+    // method if needed.
+    //
+    // Body bodyWithExistingId = sampleJoeBodyBuilder().id(12L).build();
+    //
+    // This mechanism allows us to focus only to attributes important for given
+    // test and use some universal reasonable value for other attribute. For
+    // example, we don't need to use some specific attribute values for
+    // createBody() test, this test works well with any valid values.
+
+    protected BodyBuilder sampleJoeBodyBuilder() {
+        return new BodyBuilder()
+                .name("Joe from depot")
+                .gender(Gender.MALE)
+                .born(1962,OCTOBER,21)
+                .died(2011,NOVEMBER,8)
+                .vampire(false);
+    }
+
+    protected BodyBuilder sampleCatherineBodyBuilder() {
+        return new BodyBuilder()
+                .name("Catherine")
+                .gender(Gender.FEMALE)
+                .born(1921,FEBRUARY,6)
+                .died(2008,DECEMBER,11)
+                .vampire(true);
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests for operations for creating and fetching graves
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void createBody() {
+        Body body = sampleJoeBodyBuilder().build();
+        manager.createBody(body);
+
+        Long bodyId = body.getId();
+        assertThat(bodyId).isNotNull();
+
+        assertThat(manager.getBody(bodyId))
+                .isNotSameAs(body)
+                .isEqualToComparingFieldByField(body);
+        assertThat(manager.getBody(bodyId + 1)).isNull();
+    }
+
+    @Test
+    public void findAllBodies() {
+
+        assertThat(manager.findAllBodies()).isEmpty();
+
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+
+        manager.createBody(joe);
+        manager.createBody(catherine);
+
+        assertThat(manager.findAllBodies())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(joe,catherine);
+    }
+
+    @Test
+    public void streamAllBodies() {
+
+        try (Stream<Body> stream = manager.streamAllBodies()) {
+            assertThat(stream).isEmpty();
+        }
+
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+
+        manager.createBody(joe);
+        manager.createBody(catherine);
+
+        try (Stream<Body> stream = manager.streamAllBodies()) {
+            assertThat(stream.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsOnly(joe,catherine);
+        }
+    }
+
+
+    @Test
+    public void findAllBodiesAsTable() {
+
+        assertThat(manager.findAllBodiesAsTable().size()).isZero();
+
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+        Body unknownDates = sampleJoeBodyBuilder().born(null).died(null).build();
+        Body anotherJoe = sampleJoeBodyBuilder().died(1999,JANUARY,1).build();
+        manager.createBodies(Arrays.asList(joe, catherine, unknownDates, anotherJoe));
+
+        BodyTable table = manager.findAllBodiesAsTable();
+
+        assertThat(table.size()).isEqualTo(4);
+        assertThat(table.distinctNameCount()).isEqualTo(2);
+        assertThat(IntStream.range(0, table.size()).mapToObj(table::toBody).collect(Collectors.toList()))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(joe, catherine, unknownDates, anotherJoe);
+        int catherineRow = table.select(table.gender(Gender.FEMALE))[0];
+        assertThat(table.getBornEpochDay(catherineRow)).isEqualTo(catherine.getBorn().toEpochDay());
+        int unknownDatesRow = table.select((row) -> table.getId(row) == unknownDates.getId())[0];
+        assertThat(table.getDiedEpochDay(unknownDatesRow)).isEqualTo(BodyTable.NO_DATE);
+        assertThatThrownBy(() -> table.getId(4))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void filterAndAggregateBodyTable() {
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+        Body unknownDates = sampleJoeBodyBuilder().born(null).died(null).build();
+        Body anotherJoe = sampleJoeBodyBuilder().died(1999,JANUARY,1).build();
+        manager.createBodies(Arrays.asList(joe, catherine, unknownDates, anotherJoe));
+        BodyTable table = manager.findAllBodiesAsTable();
+
+        assertThat(ids(table, table.name("Joe from depot")))
+                .containsOnly(joe.getId(), unknownDates.getId(), anotherJoe.getId());
+        assertThat(table.count(table.name("Nobody"))).isZero();
+        assertThat(ids(table, table.vampires())).containsOnly(catherine.getId());
+        assertThat(ids(table, table.gender(Gender.FEMALE))).containsOnly(catherine.getId());
+        assertThat(ids(table, table.diedBetween(LocalDate.of(1999, JANUARY, 1), LocalDate.of(2010, JANUARY, 1))))
+                .containsOnly(catherine.getId(), anotherJoe.getId());
+        assertThat(table.count(table.gender(Gender.MALE).and(table.vampires().negate()))).isEqualTo(3);
+        assertThat(table.countByGender((row) -> true))
+                .containsEntry(Gender.MALE, 3)
+                .containsEntry(Gender.FEMALE, 1);
+        assertThat(table.averageAgeAtDeath(table.name("Joe from depot")).getAsDouble())
+                .isCloseTo((49.05 + 36.2) / 2, within(0.1));
+        assertThat(table.averageAgeAtDeath(table.name("Nobody"))).isEmpty();
+    }
+
+    private static long[] ids(BodyTable table, IntPredicate filter) {
+        return Arrays.stream(table.select(filter)).mapToLong(table::getId).toArray();
+    }
+
+    @Test
+    public void findBodiesPage() {
+
+        Page<Body> empty = manager.findBodiesPage(null, 2);
+        assertThat(empty.getItems()).isEmpty();
+        assertThat(empty.hasNext()).isFalse();
+
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            bodies.add(sampleJoeBodyBuilder().name("Body " + i).build());
+        }
+        manager.createBodies(bodies);
+
+        Page<Body> first = manager.findBodiesPage(null, 2);
+        assertThat(first.getItems())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bodies.get(0), bodies.get(1));
+        assertThat(first.hasNext()).isTrue();
+
+        Page<Body> second = manager.findBodiesPage(first.getNextToken(), 2);
+        assertThat(second.getItems())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bodies.get(2), bodies.get(3));
+        assertThat(second.hasNext()).isTrue();
+
+        Page<Body> last = manager.findBodiesPage(second.getNextToken(), 2);
+        assertThat(last.getItems())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bodies.get(4));
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    @Test
+    public void findBodiesPageWithExactlyLimitBodies() {
+        manager.createBody(sampleJoeBodyBuilder().build());
+        manager.createBody(sampleCatherineBodyBuilder().build());
+
+        Page<Body> page = manager.findBodiesPage(null, 2);
+        assertThat(page.getItems()).hasSize(2);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test
+    public void findBodiesPageWithMaximalLimit() {
+        Body joe = sampleJoeBodyBuilder().build();
+        manager.createBody(joe);
+
+        Page<Body> page = manager.findBodiesPage(null, Integer.MAX_VALUE);
+        assertThat(page.getItems())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(joe);
+        assertThat(page.hasNext()).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBodiesPageWithZeroLimit() {
+        manager.findBodiesPage(null, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBodiesPageWithInvalidToken() {
+        manager.findBodiesPage("not a token", 10);
+    }
+
+
+    // Test exception with expected parameter of @Test annotation
+    // it does not allow to specify exact place where the exception
+    // is expected, therefor it is suitable only for simple single line tests
+    @Test(expected = IllegalArgumentException.class)
+    public void createNullBody() {
+        manager.createBody(null);
+    }
+
+    // Test exception with ExpectedException @Rule
+    @Test
+    public void createBodyWithExistingId() {
+        Body body = sampleJoeBodyBuilder()
+                .id(1L)
+                .build();
+        expectedException.expect(IllegalEntityException.class);
+        manager.createBody(body);
+    }
+
+    // Test exception using AssertJ assertThatThrownBy() method
+    // this requires Java 8 due to using lambda expression
+    @Test
+    public void createBodyWithNullName() {
+        Body body = sampleJoeBodyBuilder()
+                .name(null)
+                .build();
+        assertThatThrownBy(() -> manager.createBody(body))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void createBodyWithNullGender() {
+        Body body = sampleJoeBodyBuilder()
+                .gender(null)
+                .build();
+        assertThatThrownBy(() -> manager.createBody(body))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    // This and next test are testing special cases with border values
+    // Body died one day before born is not allowed ...
+    @Test
+    public void createBodyDeadBeforeBorn() {
+        Body body = sampleJoeBodyBuilder()
+                .born(1962,OCTOBER,21)
+                .died(1962,OCTOBER,20)
+                .build();
+        expectedException.expect(ValidationException.class);
+        manager.createBody(body);
+    }
+
+    // ... while the body died and born at the same day are allowed
+    @Test
+    public void createBodyBornAndDiedSameDay() {
+        Body body = sampleJoeBodyBuilder()
+                .born(1962,OCTOBER,21)
+                .died(1962,OCTOBER,21)
+                .build();
+        manager.createBody(body);
+
+        assertThat(manager.getBody(body.getId()))
+                .isNotNull()
+                .isEqualToComparingFieldByField(body);
+    }
+
+    @Test
+    public void createBodyWithBornTomorrow() {
+        LocalDate tomorrow = NOW.toLocalDate().plusDays(1);
+        Body body = sampleJoeBodyBuilder()
+                .born(tomorrow)
+                .died(null)
+                .build();
+        assertThatThrownBy(() -> manager.createBody(body))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void createBodyWithBornToday() {
+        LocalDate today = NOW.toLocalDate();
+        Body body = sampleJoeBodyBuilder()
+                .born(today)
+                .died(null)
+                .build();
+        manager.createBody(body);
+
+        assertThat(manager.getBody(body.getId()))
+                .isNotNull()
+                .isEqualToComparingFieldByField(body);
+    }
+
+    @Test
+    public void createBodyWithDiedTomorrow() {
+        LocalDate tomorrow = NOW.toLocalDate().plusDays(1);
+        Body body = sampleJoeBodyBuilder()
+                .died(tomorrow)
+                .build();
+        assertThatThrownBy(() -> manager.createBody(body))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void createBodyWithDiedToday() {
+        LocalDate today = NOW.toLocalDate();
+        Body body = sampleJoeBodyBuilder()
+                .died(today)
+                .build();
+        manager.createBody(body);
+
+        assertThat(manager.getBody(body.getId()))
+                .isNotNull()
+                .isEqualToComparingFieldByField(body);
+    }
+
+    @Test
+    public void createBodyNullBorn() {
+        Body body = sampleJoeBodyBuilder()
+                .born(null)
+                .build();
+        manager.createBody(body);
+        assertThat(manager.getBody(body.getId()))
+                .isNotNull()
+                .isEqualToComparingFieldByField(body);
+    }
+
+    @Test
+    public void createBodyNullDied() {
+        Body body = sampleJoeBodyBuilder()
+                .died(null)
+                .build();
+        manager.createBody(body);
+        assertThat(manager.getBody(body.getId()))
+                .isNotNull()
+                .isEqualToComparingFieldByField(body);
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests for BodyManager.createBodies(Collection<Body>) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void createBodies() {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            bodies.add(sampleJoeBodyBuilder().name("Joe " + i).build());
+        }
+        bodies.add(sampleCatherineBodyBuilder().born(null).died(null).build());
+        manager.createBodies(bodies);
+
+        assertThat(bodies).extracting(Body::getId).doesNotContainNull().doesNotHaveDuplicates();
+        for (Body body : bodies) {
+            assertThat(manager.getBody(body.getId()))
+                    .isNotSameAs(body)
+                    .isEqualToComparingFieldByField(body);
+        }
+    }
+
+    @Test
+    public void createBodiesWithEmptyCollection() {
+        manager.createBodies(new ArrayList<>());
+        assertThat(manager.findAllBodies()).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createNullBodies() {
+        manager.createBodies(null);
+    }
+
+    @Test
+    public void createBodiesWithInvalidBody() {
+        Body valid = sampleJoeBodyBuilder().build();
+        Body invalid = sampleCatherineBodyBuilder().died(NOW.toLocalDate().plusDays(1)).build();
+        assertThatThrownBy(() -> manager.createBodies(Arrays.asList(valid, invalid)))
+                .isInstanceOf(ValidationException.class);
+
+        // no body should be stored when one of them is invalid
+        assertThat(valid.getId()).isNull();
+        assertThat(manager.findAllBodies()).isEmpty();
+    }
+
+    @Test
+    public void createBodiesWithExistingId() {
+        Body valid = sampleJoeBodyBuilder().build();
+        Body withId = sampleCatherineBodyBuilder().id(1L).build();
+        assertThatThrownBy(() -> manager.createBodies(Arrays.asList(valid, withId)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findAllBodies()).isEmpty();
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests for BodyManager.updateBody(Body) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void updateBodyName() {
+        // Let us create two bodies, one will be used for testing the update
+        // and another one will be used for verification that other objects are
+        // not affected by update operation
+        Body bodyForUpdate = sampleJoeBodyBuilder().build();
+        Body anotherBody = sampleCatherineBodyBuilder().build();
+        manager.createBody(bodyForUpdate);
+        manager.createBody(anotherBody);
+
+        // Performa the update operation ...
+        bodyForUpdate.setName("New Name");
+
+        // ... and save updated body to database
+        manager.updateBody(bodyForUpdate);
+
+        // Check if body was properly updated
+        assertThat(manager.getBody(bodyForUpdate.getId()))
+                .isEqualToComparingFieldByField(bodyForUpdate);
+        // Check if updates didn't affected other records
+        assertThat(manager.getBody(anotherBody.getId()))
+                .isEqualToComparingFieldByField(anotherBody);
+    }
+
+    // Now we want to test also other update operations. We could do it the same
+    // way as in updateBodyName(), but we would get couple of almost the same
+    // test methods, which would differ from each other only in single line
+    // with update operation. To avoid duplicit code and make the test better
+    // maintainable, we need to separate the update operation from the test
+    // method and to let us call test method multiple times with differen
+    // update operation.
+
+    // Let start with functional interface which will represent update operation
+    // BTW, we could use standard Consumer<T> functional interface (and I would
+    // probably do it in real test), but I decided to define my own interface to
+    // make the test better understandable
+    @FunctionalInterface
+    protected static interface Operation<T> {
+        void callOn(T subjectOfOperation);
+    }
+
+    // The next step is implementation of generic test method. This method will
+    // perform update test with given update operation.
+    // The method is almost the same as updateBodyName(), the only difference is
+    // the line with calling given updateOperation.
+    private void testUpdateBody(Operation<Body> updateOperation) {
+        Body bodyForUpdate = sampleJoeBodyBuilder().build();
+        Body anotherBody = sampleCatherineBodyBuilder().build();
+        manager.createBody(bodyForUpdate);
+        manager.createBody(anotherBody);
+
+        updateOperation.callOn(bodyForUpdate);
+
+        manager.updateBody(bodyForUpdate);
+        assertThat(manager.getBody(bodyForUpdate.getId()))
+                .isEqualToComparingFieldByField(bodyForUpdate);
+        // Check if updates didn't affected other records
+        assertThat(manager.getBody(anotherBody.getId()))
+                .isEqualToComparingFieldByField(anotherBody);
+    }
+
+    // Now we will call testUpdateBody(...) method with different update
+    // operations. Update operation is defined with Lambda expression.
+
+    @Test
+    public void updateGender() {
+        testUpdateBody((body) -> body.setGender(Gender.FEMALE));
+    }
+
+    @Test
+    public void updateBodyBorn() {
+        testUpdateBody((body) -> body.setBorn(LocalDate.of(1999,DECEMBER,11)));
+    }
+
+    @Test
+    public void updateBodyDied() {
+        testUpdateBody((body) -> body.setDied(LocalDate.of(1999,DECEMBER,12)));
+    }
+
+    @Test
+    public void updateBodyVampire() {
+        testUpdateBody((body) -> body.setVampire(true));
+    }
+
+    // Test also if attemtpt to call update with invalid body throws
+    // the correct exception.
+
+    @Test(expected = IllegalArgumentException.class)
+    public void updateNullBody() {
+        manager.updateBody(null);
+    }
+
+    @Test
+    public void updateBodyWithNullId() {
+        Body body = sampleJoeBodyBuilder().id(null).build();
+        expectedException.expect(IllegalEntityException.class);
+        manager.updateBody(body);
+    }
+
+    @Test
+    public void updateNonExistingBody() {
+        Body body = sampleJoeBodyBuilder().id(1L).build();
+        expectedException.expect(IllegalEntityException.class);
+        manager.updateBody(body);
+    }
+
+    @Test
+    public void updateBodyWithNullName() {
+        Body body = sampleJoeBodyBuilder().build();
+        manager.createBody(body);
+        body.setName(null);
+
+        expectedException.expect(ValidationException.class);
+        manager.updateBody(body);
+    }
+
+    @Test
+    public void updateBodyWithNullGender() {
+        Body body = sampleJoeBodyBuilder().build();
+        manager.createBody(body);
+        body.setGender(null);
+
+        expectedException.expect(ValidationException.class);
+        manager.updateBody(body);
+    }
+
+    @Test
+    public void updateInvalidBodyDoesNotChangeStoredBody() {
+        Body body = sampleJoeBodyBuilder().build();
+        manager.createBody(body);
+        Body invalid = sampleCatherineBodyBuilder().id(body.getId()).name(null).build();
+
+        assertThatThrownBy(() -> manager.updateBody(invalid))
+                .isInstanceOf(ValidationException.class);
+        assertThat(manager.getBody(body.getId()))
+                .isEqualToComparingFieldByField(body);
+    }
+
+    @Test
+    public void updateBodyWithBornAfterDied() {
+        Body body = sampleJoeBodyBuilder().born(1962,OCTOBER,21).died(2011,NOVEMBER,8).build();
+        manager.createBody(body);
+        body.setBorn(LocalDate.of(2011,NOVEMBER,9));
+
+        expectedException.expect(ValidationException.class);
+        manager.updateBody(body);
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests for BodyManager.deleteBody(Body) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void deleteBody() {
+
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+        manager.createBody(joe);
+        manager.createBody(catherine);
+
+        assertThat(manager.getBody(joe.getId())).isNotNull();
+        assertThat(manager.getBody(catherine.getId())).isNotNull();
+
+        manager.deleteBody(joe);
+
+        assertThat(manager.getBody(joe.getId())).isNull();
+        assertThat(manager.getBody(catherine.getId())).isNotNull();
+
+    }
+
+    @Test
+    public void updateAndDeleteDeletedBody() {
+        Body body = sampleJoeBodyBuilder().build();
+        manager.createBody(body);
+        manager.deleteBody(body);
+
+        assertThatThrownBy(() -> manager.updateBody(body))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThatThrownBy(() -> manager.deleteBody(body))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    // Test also if attemtpt to call delete with invalid parameter throws
+    // the correct exception.
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deleteNullBody() {
+        manager.deleteBody(null);
+    }
+
+    @Test
+    public void deleteBodyWithNullId() {
+        Body body = sampleJoeBodyBuilder().id(null).build();
+        expectedException.expect(IllegalEntityException.class);
+        manager.deleteBody(body);
+    }
+
+    @Test
+    public void deleteNonExistingBody() {
+        Body body = sampleJoeBodyBuilder().id(1L).build();
+        expectedException.expect(IllegalEntityException.class);
+        manager.deleteBody(body);
+    }
+
+
+    @Test
+    public void findBodiesDiedBetween() {
+        Body joe = sampleJoeBodyBuilder().build();
+        Body catherine = sampleCatherineBodyBuilder().build();
+        Body unknownDates = sampleJoeBodyBuilder().born(null).died(null).build();
+        Body anotherJoe = sampleJoeBodyBuilder().died(1999,JANUARY,1).build();
+        Body sameDayAsJoe = sampleCatherineBodyBuilder().died(2011,NOVEMBER,8).build();
+        manager.createBodies(Arrays.asList(joe, catherine, unknownDates, anotherJoe, sameDayAsJoe));
+
+        // both bounds are included
+        assertThat(manager.findBodiesDiedBetween(LocalDate.of(1999, JANUARY, 1), LocalDate.of(2011, NOVEMBER, 8)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(anotherJoe, catherine, joe, sameDayAsJoe);
+        assertThat(manager.findBodiesDiedBetween(LocalDate.of(1999, JANUARY, 2), LocalDate.of(2010, JANUARY, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(catherine);
+        assertThat(manager.findBodiesDiedBetween(LocalDate.of(2010, JANUARY, 1), LocalDate.of(1999, JANUARY, 1)))
+                .isEmpty();
+    }
+
+    @Test
+    public void findBodiesDiedBetweenWithNullInterval() {
+        assertThatThrownBy(() -> manager.findBodiesDiedBetween(null, LocalDate.of(2010, JANUARY, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findBodiesDiedBetween(LocalDate.of(2010, JANUARY, 1), null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,72 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CachingBodyManager}.
+ *
+ * @author Petr Adámek
+ */
+public class CachingBodyManagerTest {
+
+    private BodyManager delegate;
+    private CachingBodyManager manager;
+    private Body body;
+
+    @Before
+    public void setUp() {
+        delegate = mock(BodyManager.class);
+        manager = new CachingBodyManager(delegate, 10);
+        body = new BodyBuilder().id(1L).name("Joe").gender(Gender.MALE).vampire(true).build();
+        when(delegate.getBody(1L)).thenAnswer((invocation) -> CachingBodyManager.copyOf(body));
+    }
+
+    @Test
+    public void getBodyIsCached() {
+        assertThat(manager.getBody(1L))
+                .isEqualToComparingFieldByField(body);
+        assertThat(manager.getBody(1L))
+                .isEqualToComparingFieldByField(body);
+
+        verify(delegate, times(1)).getBody(1L);
+        assertThat(manager.getStatistics().getHitCount()).isEqualTo(1);
+        assertThat(manager.getStatistics().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getBodyReturnsDefensiveCopy() {
+        manager.getBody(1L).setName("modified");
+
+        assertThat(manager.getBody(1L).getName()).isEqualTo("Joe");
+    }
+
+    @Test
+    public void updateBodyInvalidatesCache() {
+        manager.getBody(1L);
+        manager.updateBody(body);
+        manager.getBody(1L);
+
+        verify(delegate).updateBody(body);
+        verify(delegate, times(2)).getBody(1L);
+    }
+
+    @Test
+    public void deleteBodyInvalidatesCache() {
+        manager.getBody(1L);
+        manager.deleteBody(body);
+        when(delegate.getBody(1L)).thenReturn(null);
+
+        assertThat(manager.getBody(1L)).isNull();
+        verify(delegate).deleteBody(body);
+    }
+
+    @Test
+    public void getBodyWithNullId() {
+        assertThatThrownBy(() -> manager.getBody(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
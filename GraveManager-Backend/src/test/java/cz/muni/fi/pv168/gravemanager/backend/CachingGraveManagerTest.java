@@ -0,0 +1,72 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CachingGraveManager}.
+ *
+ * @author Petr Adámek
+ */
+public class CachingGraveManagerTest {
+
+    private GraveManager delegate;
+    private CachingGraveManager manager;
+    private Grave grave;
+
+    @Before
+    public void setUp() {
+        delegate = mock(GraveManager.class);
+        manager = new CachingGraveManager(delegate, 10);
+        grave = new GraveBuilder().id(1L).row(2).column(3).capacity(4).note("note").build();
+        when(delegate.getGrave(1L)).thenAnswer((invocation) -> CachingGraveManager.copyOf(grave));
+    }
+
+    @Test
+    public void getGraveIsCached() {
+        assertThat(manager.getGrave(1L))
+                .isEqualToComparingFieldByField(grave);
+        assertThat(manager.getGrave(1L))
+                .isEqualToComparingFieldByField(grave);
+
+        verify(delegate, times(1)).getGrave(1L);
+        assertThat(manager.getStatistics().getHitCount()).isEqualTo(1);
+        assertThat(manager.getStatistics().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void getGraveReturnsDefensiveCopy() {
+        manager.getGrave(1L).setNote("modified");
+
+        assertThat(manager.getGrave(1L).getNote()).isEqualTo("note");
+    }
+
+    @Test
+    public void updateGraveInvalidatesCache() {
+        manager.getGrave(1L);
+        manager.updateGrave(grave);
+        manager.getGrave(1L);
+
+        verify(delegate).updateGrave(grave);
+        verify(delegate, times(2)).getGrave(1L);
+    }
+
+    @Test
+    public void deleteGraveInvalidatesCache() {
+        manager.getGrave(1L);
+        manager.deleteGrave(grave);
+        when(delegate.getGrave(1L)).thenReturn(null);
+
+        assertThat(manager.getGrave(1L)).isNull();
+        verify(delegate).deleteGrave(grave);
+    }
+
+    @Test
+    public void getGraveWithNullId() {
+        assertThatThrownBy(() -> manager.getGrave(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,793 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.*;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.*;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.*;
+
+//------------------------------------------------------------------------------
+// IMPORTANT NOTE:
+// This test contains lots of comments to help you understand well all
+// implementation details. You are not expected to use such kind of comments
+// in your tests.
+//------------------------------------------------------------------------------
+
+/**
+ * Tests of {@link CemeteryManager} contract. The same tests are run for each
+ * implementation, subclasses create the managers working with their storage.
+ *
+ * @author petr.adamek@bilysklep.cz
+ */
+public abstract class CemeteryManagerContractTest {
+
+    protected CemeteryManager manager;
+    protected BodyManager bodyManager;
+    protected GraveManager graveManager;
+
+    private final static ZonedDateTime NOW
+            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
+
+    @Rule
+    // attribute annotated with @Rule annotation must be public :-(
+    public ExpectedException expectedException = ExpectedException.none();
+
+    //--------------------------------------------------------------------------
+    // Test initialization
+    //--------------------------------------------------------------------------
+
+    /**
+     * Creates managers working with empty storage, it is called before each
+     * test.
+     *
+     * @param clock clock returning the current time of the test
+     * @return new managers
+     * @throws Exception when the storage can't be prepared
+     */
+    protected abstract Managers createManagers(Clock clock) throws Exception;
+
+    @Before
+    public void setUp() throws Exception {
+        Managers managers = createManagers(Clock.fixed(NOW.toInstant(), NOW.getZone()));
+        manager = managers.cemeteryManager;
+        bodyManager = managers.bodyManager;
+        graveManager = managers.graveManager;
+        prepareTestData();
+    }
+
+    //--------------------------------------------------------------------------
+    // Preparing test data
+    //--------------------------------------------------------------------------
+
+    protected Grave g1, g2, g3, graveWithNullId, graveNotInDB;
+    protected Body b1, b2, b3, b4, b5, bodyWithNullId, bodyNotInDB;
+
+    private void prepareTestData() {
+
+        g1 = new GraveBuilder().column(1).row(2).capacity(1).note("Grave 1").build();
+        g2 = new GraveBuilder().column(8).row(9).capacity(2).note("Grave 2").build();
+        g3 = new GraveBuilder().column(2).row(2).capacity(3).note("Grave 3").build();
+
+        b1 = new BodyBuilder().name("Body 1").gender(Gender.MALE).build();
+        b2 = new BodyBuilder().name("Body 2").gender(Gender.MALE).build();
+        b3 = new BodyBuilder().name("Body 3").gender(Gender.MALE).build();
+        b4 = new BodyBuilder().name("Body 4").gender(Gender.MALE).build();
+        b5 = new BodyBuilder().name("Body 5").gender(Gender.MALE).build();
+
+        bodyManager.createBody(b1);
+        bodyManager.createBody(b2);
+        bodyManager.createBody(b3);
+        bodyManager.createBody(b4);
+        bodyManager.createBody(b5);
+
+        graveManager.createGrave(g1);
+        graveManager.createGrave(g2);
+        graveManager.createGrave(g3);
+
+        graveWithNullId = new GraveBuilder().id(null).build();
+        graveNotInDB = new GraveBuilder().id(g3.getId() + 100).build();
+        assertThat(graveManager.getGrave(graveNotInDB.getId())).isNull();
+
+        bodyWithNullId = new BodyBuilder().name("Body with null id").gender(Gender.MALE).id(null).build();
+        bodyNotInDB = new BodyBuilder().name("Body not in DB").gender(Gender.MALE).id(b5.getId() + 100).build();
+        assertThat(bodyManager.getBody(bodyNotInDB.getId())).isNull();
+    }
+
+    @Test
+    public void findGraveWithBody() {
+
+        assertThat(manager.findGraveWithBody(b1)).isNull();
+        assertThat(manager.findGraveWithBody(b2)).isNull();
+        assertThat(manager.findGraveWithBody(b3)).isNull();
+        assertThat(manager.findGraveWithBody(b4)).isNull();
+        assertThat(manager.findGraveWithBody(b5)).isNull();
+
+        manager.putBodyIntoGrave(b1, g3);
+
+        assertThat(manager.findGraveWithBody(b1))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b2)).isNull();
+        assertThat(manager.findGraveWithBody(b3)).isNull();
+        assertThat(manager.findGraveWithBody(b4)).isNull();
+        assertThat(manager.findGraveWithBody(b5)).isNull();
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests for find* operations
+    //--------------------------------------------------------------------------
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findGraveWithNullBody() {
+        manager.findGraveWithBody(null);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void findGraveWithBodyHavingNullId() {
+        manager.findGraveWithBody(bodyWithNullId);
+    }
+
+    @Test
+    public void findBodiesInGrave() {
+
+        assertThat(manager.findBodiesInGrave(g1)).isEmpty();
+        assertThat(manager.findBodiesInGrave(g2)).isEmpty();
+        assertThat(manager.findBodiesInGrave(g3)).isEmpty();
+
+        manager.putBodyIntoGrave(b2, g3);
+        manager.putBodyIntoGrave(b3, g2);
+        manager.putBodyIntoGrave(b4, g3);
+        manager.putBodyIntoGrave(b5, g2);
+
+        assertThat(manager.findBodiesInGrave(g1))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g2))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b3,b5);
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2,b4);
+    }
+
+    @Test
+    public void findBodiesInGraves() {
+
+        manager.putBodyIntoGrave(b2, g3);
+        manager.putBodyIntoGrave(b3, g2);
+        manager.putBodyIntoGrave(b4, g3);
+
+        Map<Grave, List<Body>> bodies = manager.findBodiesInGraves(Arrays.asList(g3, g1, g2));
+
+        assertThat(bodies).containsOnlyKeys(g1, g2, g3);
+        assertThat(bodies.keySet()).containsExactly(g3, g1, g2);
+        assertThat(bodies.get(g1)).isEmpty();
+        assertThat(bodies.get(g2))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b3);
+        assertThat(bodies.get(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2,b4);
+    }
+
+    @Test
+    public void findBodiesInNoGraves() {
+        assertThat(manager.findBodiesInGraves(Collections.emptyList())).isEmpty();
+    }
+
+    @Test
+    public void findBodiesInGravesWithNullGrave() {
+        assertThatThrownBy(() -> manager.findBodiesInGraves(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findBodiesInGraves(Arrays.asList(g1, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findBodiesInGraves(Arrays.asList(g1, graveWithNullId)))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void findGravesWithBodies() {
+
+        manager.putBodyIntoGrave(b2, g3);
+        manager.putBodyIntoGrave(b3, g2);
+        manager.putBodyIntoGrave(b4, g3);
+
+        Map<Body, Grave> graves = manager.findGravesWithBodies(Arrays.asList(b4, b1, b2, b3));
+
+        assertThat(graves.keySet()).containsExactly(b4, b1, b2, b3);
+        assertThat(graves.get(b1)).isNull();
+        assertThat(graves.get(b2)).isEqualToComparingFieldByField(g3);
+        assertThat(graves.get(b3)).isEqualToComparingFieldByField(g2);
+        assertThat(graves.get(b4)).isEqualToComparingFieldByField(g3);
+    }
+
+    @Test
+    public void findGravesWithBodiesWithNullBody() {
+        assertThatThrownBy(() -> manager.findGravesWithBodies(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findGravesWithBodies(Arrays.asList(b1, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findGravesWithBodies(Arrays.asList(b1, bodyWithNullId)))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+
+    @Test
+    public void findBodiesInGravesAndGravesWithBodiesNotInDB() {
+        manager.putBodyIntoGrave(b1, g3);
+
+        Map<Grave, List<Body>> bodies = manager.findBodiesInGraves(Arrays.asList(g3, graveNotInDB));
+        assertThat(bodies.keySet()).containsExactly(g3, graveNotInDB);
+        assertThat(bodies.get(graveNotInDB)).isEmpty();
+
+        Map<Body, Grave> graves = manager.findGravesWithBodies(Arrays.asList(b1, bodyNotInDB));
+        assertThat(graves.keySet()).containsExactly(b1, bodyNotInDB);
+        assertThat(graves.get(bodyNotInDB)).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findBodiesInNullGrave() {
+        manager.findBodiesInGrave(null);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void findBodiesInGraveHavingNullId() {
+        manager.findBodiesInGrave(graveWithNullId);
+    }
+
+    @Test
+    public void findUnburiedBodies() {
+
+        assertThat(manager.findUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b2,b3,b4,b5);
+
+        manager.putBodyIntoGrave(b3, g1);
+
+        assertThat(manager.findUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b2,b4,b5);
+    }
+
+    @Test
+    public void streamUnburiedBodies() {
+
+        manager.putBodyIntoGrave(b3, g1);
+        manager.putBodyIntoGrave(b4, g3);
+
+        try (Stream<Body> stream = manager.streamUnburiedBodies()) {
+            assertThat(stream.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsOnly(b1,b2,b5);
+        }
+    }
+
+    @Test
+    public void findEmptyGraves() {
+
+        assertThat(manager.findEmptyGraves())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g1,g2,g3);
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b3, g3);
+        manager.putBodyIntoGrave(b5, g1);
+
+        assertThat(manager.findEmptyGraves())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g2);
+    }
+
+    @Test
+    public void findGravesWithSomeFreeSpace() {
+
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g1,g2,g3);
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b3, g3);
+        manager.putBodyIntoGrave(b5, g1);
+
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g2,g3);
+    }
+
+    @Test
+    public void findGravesWithSomeFreeSpaceAfterRemovingBody() {
+
+        manager.putBodyIntoGrave(b1, g1);
+        manager.putBodyIntoGrave(b2, g2);
+        manager.putBodyIntoGrave(b3, g2);
+
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g3);
+
+        manager.removeBodyFromGrave(b2, g2);
+
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g2,g3);
+    }
+
+    @Test
+    public void findEmptyGravesAfterDeletingBody() {
+
+        manager.putBodyIntoGrave(b1, g1);
+        manager.putBodyIntoGrave(b2, g2);
+
+        bodyManager.deleteBody(b1);
+        bodyManager.deleteBody(b3);
+
+        assertThat(manager.findEmptyGraves())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g1,g3);
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g1,g2,g3);
+    }
+
+
+    //--------------------------------------------------------------------------
+    // Tests for CemeteryManager.putBodyIntoGrave(Body,Grave) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void putBodyIntoGrave() {
+
+        assertThat(manager.findGraveWithBody(b1)).isNull();
+        assertThat(manager.findGraveWithBody(b2)).isNull();
+        assertThat(manager.findGraveWithBody(b3)).isNull();
+        assertThat(manager.findGraveWithBody(b4)).isNull();
+        assertThat(manager.findGraveWithBody(b5)).isNull();
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b5, g1);
+        manager.putBodyIntoGrave(b3, g3);
+
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b5);
+        assertThat(manager.findBodiesInGrave(g2))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b3);
+
+        assertThat(manager.findGraveWithBody(b1))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b2))
+                .isNull();
+        assertThat(manager.findGraveWithBody(b3))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b4))
+                .isNull();
+        assertThat(manager.findGraveWithBody(b5))
+                .isEqualToComparingFieldByField(g1);
+    }
+
+    @Test
+    public void putBodyIntoGraveMultipleTime() {
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b5, g1);
+        manager.putBodyIntoGrave(b3, g3);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(b1, g3))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // verify that failure was atomic and no data was changed
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b5);
+        assertThat(manager.findBodiesInGrave(g2))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b3);
+    }
+
+    @Test
+    public void putBodyIntoMultipleGraves() {
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b5, g1);
+        manager.putBodyIntoGrave(b3, g3);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(b1, g2))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // verify that failure was atomic and no data was changed
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b5);
+        assertThat(manager.findBodiesInGrave(g2))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b3);
+    }
+
+    @Test
+    public void putBodyIntoFullGrave() {
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b5, g1);
+        manager.putBodyIntoGrave(b3, g3);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(b2, g1))
+                .isInstanceOf(IllegalEntityException.class)
+                .hasMessageContaining("already full");
+
+        // verify that failure was atomic and no data was changed
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b5);
+        assertThat(manager.findBodiesInGrave(g2))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b3);
+    }
+
+    @Test
+    public void putBodyIntoGraveConcurrently() throws Exception {
+        int threads = 32;
+        int bodiesPerThread = 50;
+        Grave grave = new GraveBuilder().column(5).row(5).capacity(100).build();
+        graveManager.createGrave(grave);
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < threads * bodiesPerThread; i++) {
+            bodies.add(new BodyBuilder().name("Concurrent body " + i).gender(Gender.FEMALE).build());
+        }
+        bodyManager.createBodies(bodies);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger buried = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                List<Body> threadBodies = bodies.subList(t * bodiesPerThread, (t + 1) * bodiesPerThread);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (Body body : threadBodies) {
+                        try {
+                            manager.putBodyIntoGrave(body, grave);
+                            buried.incrementAndGet();
+                        } catch (IllegalEntityException ex) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(buried.get()).isEqualTo(grave.getCapacity());
+        assertThat(rejected.get()).isEqualTo(threads * bodiesPerThread - grave.getCapacity());
+        assertThat(manager.findBodiesInGrave(grave)).hasSize(grave.getCapacity());
+        assertThat(manager.findGravesWithSomeFreeSpace()).doesNotContain(grave);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putNullBodyIntoGrave() {
+        manager.putBodyIntoGrave(null, g2);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void putBodyWithNullIdIntoGrave() {
+        manager.putBodyIntoGrave(bodyWithNullId, g2);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void putBodyNotInDBIntoGrave() {
+        manager.putBodyIntoGrave(bodyNotInDB, g2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putBodyIntoNullGrave() {
+        manager.putBodyIntoGrave(b2, null);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void putBodyIntoGraveWithNullId() {
+        manager.putBodyIntoGrave(b2, graveWithNullId);
+    }
+
+    @Test
+    public void putBodyIntoGraveNotInDB() {
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(b2, graveNotInDB))
+                .isInstanceOf(IllegalEntityException.class)
+                .hasMessageContaining("does not exist");
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests for CemeteryManager.buryAll(Collection<Body>,PlacementPolicy) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void buryAllFirstFit() {
+        manager.putBodyIntoGrave(b1, g3);
+
+        Map<Body, Grave> placements = manager.buryAll(Arrays.asList(b2, b3, b4), PlacementPolicy.firstFit());
+
+        assertThat(placements).containsExactly(entry(b2, g1), entry(b3, g2), entry(b4, g2));
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2);
+        assertThat(manager.findBodiesInGrave(g2))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b3, b4);
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1);
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g3);
+    }
+
+    @Test
+    public void buryAllBestFit() {
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b5, g3);
+
+        Map<Body, Grave> placements = manager.buryAll(Arrays.asList(b2, b3, b4), PlacementPolicy.bestFit());
+
+        assertThat(placements).containsExactly(entry(b2, g1), entry(b3, g3), entry(b4, g2));
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(g2);
+    }
+
+    @Test
+    public void buryAllNearestTo() {
+        Map<Body, Grave> placements = manager.buryAll(Arrays.asList(b2, b3, b4), PlacementPolicy.nearestTo(9, 8));
+
+        assertThat(placements).containsExactly(entry(b2, g2), entry(b3, g2), entry(b4, g3));
+        assertThat(manager.findBodiesInGrave(g2))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2, b3);
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b4);
+    }
+
+    @Test
+    public void buryAllWithoutEnoughSpace() {
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b2, g3);
+        manager.putBodyIntoGrave(b3, g3);
+        Body b6 = new BodyBuilder().name("Body 6").gender(Gender.FEMALE).build();
+        Body b7 = new BodyBuilder().name("Body 7").gender(Gender.FEMALE).build();
+        bodyManager.createBodies(Arrays.asList(b6, b7));
+
+        assertThatThrownBy(() -> manager.buryAll(Arrays.asList(b4, b5, b6, b7), PlacementPolicy.firstFit()))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // verify that failure was atomic and no data was changed
+        assertThat(manager.findUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b4, b5, b6, b7);
+    }
+
+    @Test
+    public void buryAllWithAlreadyBuriedBody() {
+        manager.putBodyIntoGrave(b1, g3);
+
+        assertThatThrownBy(() -> manager.buryAll(Arrays.asList(b2, b1), PlacementPolicy.firstFit()))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // verify that failure was atomic and no data was changed
+        assertThat(manager.findUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2, b3, b4, b5);
+    }
+
+    @Test
+    public void buryAllWithBodyNotInDB() {
+        assertThatThrownBy(() -> manager.buryAll(Arrays.asList(b2, bodyNotInDB), PlacementPolicy.firstFit()))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findGraveWithBody(b2)).isNull();
+    }
+
+    @Test
+    public void buryAllWithSameBodyTwice() {
+        assertThatThrownBy(() -> manager.buryAll(Arrays.asList(b2, b2), PlacementPolicy.firstFit()))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findGraveWithBody(b2)).isNull();
+    }
+
+    @Test
+    public void buryAllWithEmptyCollection() {
+        assertThat(manager.buryAll(Arrays.asList(), PlacementPolicy.firstFit())).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buryAllNullBodies() {
+        manager.buryAll(null, PlacementPolicy.firstFit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buryAllWithNullPolicy() {
+        manager.buryAll(Arrays.asList(b1), null);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void buryAllBodyWithNullId() {
+        manager.buryAll(Arrays.asList(b1, bodyWithNullId), PlacementPolicy.firstFit());
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests for CemeteryManager.removeBodyFromGrave(Body,Grave) operation
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void removeBodyFromGrave() {
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b3, g3);
+        manager.putBodyIntoGrave(b4, g3);
+        manager.putBodyIntoGrave(b5, g1);
+
+        assertThat(manager.findGraveWithBody(b1))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b2))
+                .isNull();
+        assertThat(manager.findGraveWithBody(b3))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b4))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b5))
+                .isEqualToComparingFieldByField(g1);
+
+        manager.removeBodyFromGrave(b3, g3);
+
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b5);
+        assertThat(manager.findBodiesInGrave(g2))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b4);
+
+
+        assertThat(manager.findGraveWithBody(b1))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b2))
+                .isNull();
+        assertThat(manager.findGraveWithBody(b3))
+                .isNull();
+        assertThat(manager.findGraveWithBody(b4))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveWithBody(b5))
+                .isEqualToComparingFieldByField(g1);
+    }
+
+    @Test
+    public void removeUnburiedBodyFromGrave() {
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b4, g3);
+        manager.putBodyIntoGrave(b5, g1);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(b3, g1))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // Check that previous tests didn't affect data in database
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b5);
+        assertThat(manager.findBodiesInGrave(g2))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b4);
+    }
+
+    @Test
+    public void removeBodyFromGraveWhereItIsNotBuried() {
+
+        manager.putBodyIntoGrave(b1, g3);
+        manager.putBodyIntoGrave(b4, g3);
+        manager.putBodyIntoGrave(b5, g1);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(b1, g1))
+                .isInstanceOf(IllegalEntityException.class);
+
+        // Check that previous tests didn't affect data in database
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b5);
+        assertThat(manager.findBodiesInGrave(g2))
+                .isEmpty();
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1,b4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removeNullBodyFromGrave() {
+        manager.removeBodyFromGrave(null, g2);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void removeBodyWithNullIdFromGrave() {
+        manager.removeBodyFromGrave(bodyWithNullId, g2);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void removeBodyNotInDBFromGrave() {
+        manager.removeBodyFromGrave(bodyNotInDB, g2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void removeBodyFromNullGrave() {
+        manager.removeBodyFromGrave(b2, null);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void removeBodyFromGraveWithNullId() {
+        manager.removeBodyFromGrave(b2, graveWithNullId);
+    }
+
+    @Test(expected = IllegalEntityException.class)
+    public void removeBodyFromGraveNotInDB() {
+        manager.removeBodyFromGrave(b2, graveNotInDB);
+    }
+
+    //--------------------------------------------------------------------------
+    // Tests of deleting buried bodies and graves with bodies
+    //--------------------------------------------------------------------------
+
+    @Test
+    public void deleteBuriedBody() {
+        manager.putBodyIntoGrave(b1, g1);
+
+        bodyManager.deleteBody(b1);
+
+        assertThat(manager.findEmptyGraves())
+                .usingFieldByFieldElementComparator()
+                .contains(g1);
+        manager.putBodyIntoGrave(b2, g1);
+        assertThat(manager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b2);
+    }
+
+    @Test
+    public void deleteGraveWithBody() {
+        manager.putBodyIntoGrave(b1, g1);
+
+        assertThatThrownBy(() -> graveManager.deleteGrave(g1))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThat(manager.findGraveWithBody(b1)).isEqualToComparingFieldByField(g1);
+
+        manager.removeBodyFromGrave(b1, g1);
+        graveManager.deleteGrave(g1);
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(b1, g1))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+}
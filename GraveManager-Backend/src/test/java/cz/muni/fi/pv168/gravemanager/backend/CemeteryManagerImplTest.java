@@ -3,14 +3,20 @@ package cz.muni.fi.pv168.gravemanager.backend;
 import cz.muni.fi.pv168.common.*;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.time.*;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import javax.sql.DataSource;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.*;
-import org.junit.rules.ExpectedException;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
 import static org.mockito.Mockito.*;
 
 //------------------------------------------------------------------------------
@@ -21,24 +27,17 @@ import static org.mockito.Mockito.*;
 //------------------------------------------------------------------------------
 
 /**
- * Example test class for {@link CemeteryManagerImpl}.
+ * Example test class for {@link CemeteryManagerImpl}. Tests of the contract
+ * common for all implementations are inherited from
+ * {@link CemeteryManagerContractTest}, this class adds tests specific for
+ * JDBC.
  *
  * @author petr.adamek@bilysklep.cz
  */
-public class CemeteryManagerImplTest {
+public class CemeteryManagerImplTest extends CemeteryManagerContractTest {
 
-    private CemeteryManagerImpl manager;
-    private BodyManagerImpl bodyManager;
-    private GraveManagerImpl graveManager;
     private DataSource ds;
 
-    private final static ZonedDateTime NOW
-            = LocalDateTime.of(2016, Month.FEBRUARY, 29, 14, 00).atZone(ZoneId.of("UTC"));
-
-    @Rule
-    // attribute annotated with @Rule annotation must be public :-(
-    public ExpectedException expectedException = ExpectedException.none();
-
     //--------------------------------------------------------------------------
     // Test initialization
     //--------------------------------------------------------------------------
@@ -52,14 +51,15 @@ public class CemeteryManagerImplTest {
         return ds;
     }
 
-    @Before
-    public void setUp() throws SQLException, IOException {
+    @Override
+    protected Managers createManagers(Clock clock) throws SQLException {
         ds = prepareDataSource();
-        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("createTables.sql"));
-        manager = new CemeteryManagerImpl(ds);
-        bodyManager = new BodyManagerImpl(ds,Clock.fixed(NOW.toInstant(), NOW.getZone()));
-        graveManager = new GraveManagerImpl(ds);
-        prepareTestData();
+        DatabaseSchema.migrate(ds);
+        CemeteryManagerImpl cemeteryManager = new CemeteryManagerImpl(ds);
+        // batches smaller than number of bodies used by the tests to test
+        // also multiple round trips
+        cemeteryManager.setBatchSize(2);
+        return new Managers(new GraveManagerImpl(ds), new BodyManagerImpl(ds, clock), cemeteryManager);
     }
 
     @After
@@ -67,403 +67,75 @@ public class CemeteryManagerImplTest {
         DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
     }
 
-    //--------------------------------------------------------------------------
-    // Preparing test data
-    //--------------------------------------------------------------------------
-
-    private Grave g1, g2, g3, graveWithNullId, graveNotInDB;
-    private Body b1, b2, b3, b4, b5, bodyWithNullId, bodyNotInDB;
-
-    private void prepareTestData() {
-
-        g1 = new GraveBuilder().column(1).row(2).capacity(1).note("Grave 1").build();
-        g2 = new GraveBuilder().column(8).row(9).capacity(2).note("Grave 2").build();
-        g3 = new GraveBuilder().column(2).row(2).capacity(3).note("Grave 3").build();
-
-        b1 = new BodyBuilder().name("Body 1").gender(Gender.MALE).build();
-        b2 = new BodyBuilder().name("Body 2").gender(Gender.MALE).build();
-        b3 = new BodyBuilder().name("Body 3").gender(Gender.MALE).build();
-        b4 = new BodyBuilder().name("Body 4").gender(Gender.MALE).build();
-        b5 = new BodyBuilder().name("Body 5").gender(Gender.MALE).build();
-
-        bodyManager.createBody(b1);
-        bodyManager.createBody(b2);
-        bodyManager.createBody(b3);
-        bodyManager.createBody(b4);
-        bodyManager.createBody(b5);
-
-        graveManager.createGrave(g1);
-        graveManager.createGrave(g2);
-        graveManager.createGrave(g3);
-
-        graveWithNullId = new GraveBuilder().id(null).build();
-        graveNotInDB = new GraveBuilder().id(g3.getId() + 100).build();
-        assertThat(graveManager.getGrave(graveNotInDB.getId())).isNull();
-
-        bodyWithNullId = new BodyBuilder().name("Body with null id").gender(Gender.MALE).id(null).build();
-        bodyNotInDB = new BodyBuilder().name("Body not in DB").gender(Gender.MALE).id(b5.getId() + 100).build();
-        assertThat(bodyManager.getBody(bodyNotInDB.getId())).isNull();
-    }
-
-    @Test
-    public void findGraveWithBody() {
-
-        assertThat(manager.findGraveWithBody(b1)).isNull();
-        assertThat(manager.findGraveWithBody(b2)).isNull();
-        assertThat(manager.findGraveWithBody(b3)).isNull();
-        assertThat(manager.findGraveWithBody(b4)).isNull();
-        assertThat(manager.findGraveWithBody(b5)).isNull();
-
-        manager.putBodyIntoGrave(b1, g3);
-
-        assertThat(manager.findGraveWithBody(b1))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b2)).isNull();
-        assertThat(manager.findGraveWithBody(b3)).isNull();
-        assertThat(manager.findGraveWithBody(b4)).isNull();
-        assertThat(manager.findGraveWithBody(b5)).isNull();
-    }
-
-    //--------------------------------------------------------------------------
-    // Tests for find* operations
-    //--------------------------------------------------------------------------
-
-    @Test(expected = IllegalArgumentException.class)
-    public void findGraveWithNullBody() {
-        manager.findGraveWithBody(null);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void findGraveWithBodyHavingNullId() {
-        manager.findGraveWithBody(bodyWithNullId);
-    }
-
-    @Test
-    public void findBodiesInGrave() {
-
-        assertThat(manager.findBodiesInGrave(g1)).isEmpty();
-        assertThat(manager.findBodiesInGrave(g2)).isEmpty();
-        assertThat(manager.findBodiesInGrave(g3)).isEmpty();
-
-        manager.putBodyIntoGrave(b2, g3);
-        manager.putBodyIntoGrave(b3, g2);
-        manager.putBodyIntoGrave(b4, g3);
-        manager.putBodyIntoGrave(b5, g2);
-
-        assertThat(manager.findBodiesInGrave(g1))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g2))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b3,b5);
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b2,b4);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void findBodiesInNullGrave() {
-        manager.findBodiesInGrave(null);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void findBodiesInGraveHavingNullId() {
-        manager.findBodiesInGrave(graveWithNullId);
-    }
-
     @Test
-    public void findUnburiedBodies() {
-
-        assertThat(manager.findUnburiedBodies())
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b2,b3,b4,b5);
-
-        manager.putBodyIntoGrave(b3, g1);
-
-        assertThat(manager.findUnburiedBodies())
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b2,b4,b5);
-    }
-
-    @Test
-    public void findEmptyGraves() {
-
-        assertThat(manager.findEmptyGraves())
-                .usingFieldByFieldElementComparator()
-                .containsOnly(g1,g2,g3);
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b3, g3);
-        manager.putBodyIntoGrave(b5, g1);
-
+    public void findBodiesInManyGravesUsesConstantNumberOfStatements() throws SQLException {
+        List<Grave> graves = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            graves.add(new GraveBuilder().column(i % 50).row(i / 50).capacity(2).build());
+        }
+        graveManager.createGraves(graves);
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 750; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.MALE).build());
+        }
+        bodyManager.createBodies(bodies);
+        // default batch size, batches of the contract tests would be too slow here
+        Map<Body, Grave> placements = new CemeteryManagerImpl(ds).buryAll(bodies, PlacementPolicy.firstFit());
+        // some bodies are placed into graves created in setUp
+        long buriedInNewGraves = placements.values().stream().filter(graves::contains).count();
+
+        List<Connection> connections = new ArrayList<>();
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer((invocation) -> {
+            // prepareStatement() of Derby connection is final, so it can't be spied directly
+            Connection connection = mock(Connection.class, delegatesTo(ds.getConnection()));
+            connections.add(connection);
+            return connection;
+        });
+        manager = new CemeteryManagerImpl(dataSource);
+
+        Map<Grave, List<Body>> bodiesInGraves = manager.findBodiesInGraves(graves);
+        assertThat(bodiesInGraves.values().stream().mapToLong(List::size).sum()).isEqualTo(buriedInNewGraves);
+        Map<Body, Grave> gravesWithBodies = manager.findGravesWithBodies(bodies);
+        assertThat(gravesWithBodies.values()).doesNotContainNull();
+
+        // one connection and one statement for each method, regardless of number of graves and bodies
+        assertThat(connections).hasSize(2);
+        for (Connection connection : connections) {
+            verify(connection, times(1)).prepareStatement(anyString());
+        }
+    }
+
+    @Test
+    public void repairOccupancy() throws SQLException {
+
+        manager.putBodyIntoGrave(b1, g1);
+        manager.putBodyIntoGrave(b2, g2);
+        assertThat(new CemeteryManagerImpl(ds).repairOccupancy()).isZero();
+
+        // modify the bodies directly in the database, bypassing the managers
+        try (Connection conn = ds.getConnection();
+             PreparedStatement st = conn.prepareStatement("UPDATE Body SET graveId = ? WHERE id = ?")) {
+            st.setLong(1, g3.getId());
+            st.setLong(2, b1.getId());
+            st.executeUpdate();
+        }
+
+        assertThat(new CemeteryManagerImpl(ds).repairOccupancy()).isEqualTo(2);
         assertThat(manager.findEmptyGraves())
                 .usingFieldByFieldElementComparator()
-                .containsOnly(g2);
-    }
-
-    @Test
-    public void findGravesWithSomeFreeSpace() {
-
+                .containsOnly(g1);
         assertThat(manager.findGravesWithSomeFreeSpace())
                 .usingFieldByFieldElementComparator()
                 .containsOnly(g1,g2,g3);
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b3, g3);
-        manager.putBodyIntoGrave(b5, g1);
-
-        assertThat(manager.findGravesWithSomeFreeSpace())
-                .usingFieldByFieldElementComparator()
-                .containsOnly(g2,g3);
-    }
-
-    //--------------------------------------------------------------------------
-    // Tests for CemeteryManager.putBodyIntoGrave(Body,Grave) operation
-    //--------------------------------------------------------------------------
-
-    @Test
-    public void putBodyIntoGrave() {
-
-        assertThat(manager.findGraveWithBody(b1)).isNull();
-        assertThat(manager.findGraveWithBody(b2)).isNull();
-        assertThat(manager.findGraveWithBody(b3)).isNull();
-        assertThat(manager.findGraveWithBody(b4)).isNull();
-        assertThat(manager.findGraveWithBody(b5)).isNull();
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b5, g1);
-        manager.putBodyIntoGrave(b3, g3);
-
-        assertThat(manager.findBodiesInGrave(g1))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b5);
-        assertThat(manager.findBodiesInGrave(g2))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b3);
-
-        assertThat(manager.findGraveWithBody(b1))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b2))
-                .isNull();
-        assertThat(manager.findGraveWithBody(b3))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b4))
-                .isNull();
-        assertThat(manager.findGraveWithBody(b5))
-                .isEqualToComparingFieldByField(g1);
-    }
-
-    @Test
-    public void putBodyIntoGraveMultipleTime() {
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b5, g1);
-        manager.putBodyIntoGrave(b3, g3);
-
-        assertThatThrownBy(() -> manager.putBodyIntoGrave(b1, g3))
-                .isInstanceOf(IllegalEntityException.class);
-
-        // verify that failure was atomic and no data was changed
-        assertThat(manager.findBodiesInGrave(g1))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b5);
-        assertThat(manager.findBodiesInGrave(g2))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b3);
-    }
-
-    @Test
-    public void putBodyIntoMultipleGraves() {
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b5, g1);
-        manager.putBodyIntoGrave(b3, g3);
-
-        assertThatThrownBy(() -> manager.putBodyIntoGrave(b1, g2))
-                .isInstanceOf(IllegalEntityException.class);
-
-        // verify that failure was atomic and no data was changed
-        assertThat(manager.findBodiesInGrave(g1))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b5);
-        assertThat(manager.findBodiesInGrave(g2))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b3);
     }
 
+    @Override
     @Test
-    public void putBodyIntoFullGrave() {
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b5, g1);
-        manager.putBodyIntoGrave(b3, g3);
-
-        assertThatThrownBy(() -> manager.putBodyIntoGrave(b2, g1))
-                .isInstanceOf(IllegalEntityException.class);
-
-        // verify that failure was atomic and no data was changed
-        assertThat(manager.findBodiesInGrave(g1))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b5);
-        assertThat(manager.findBodiesInGrave(g2))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b3);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void putNullBodyIntoGrave() {
-        manager.putBodyIntoGrave(null, g2);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void putBodyWithNullIdIntoGrave() {
-        manager.putBodyIntoGrave(bodyWithNullId, g2);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void putBodyNotInDBIntoGrave() {
-        manager.putBodyIntoGrave(bodyNotInDB, g2);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void putBodyIntoNullGrave() {
-        manager.putBodyIntoGrave(b2, null);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void putBodyIntoGraveWithNullId() {
-        manager.putBodyIntoGrave(b2, graveWithNullId);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void putBodyIntoGraveNotInDB() {
-        manager.putBodyIntoGrave(b2, graveNotInDB);
-    }
-
-    //--------------------------------------------------------------------------
-    // Tests for CemeteryManager.removeBodyFromGrave(Body,Grave) operation
-    //--------------------------------------------------------------------------
-
-    @Test
-    public void removeBodyFromGrave() {
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b3, g3);
-        manager.putBodyIntoGrave(b4, g3);
-        manager.putBodyIntoGrave(b5, g1);
-
-        assertThat(manager.findGraveWithBody(b1))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b2))
-                .isNull();
-        assertThat(manager.findGraveWithBody(b3))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b4))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b5))
-                .isEqualToComparingFieldByField(g1);
-
-        manager.removeBodyFromGrave(b3, g3);
-
-        assertThat(manager.findBodiesInGrave(g1))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b5);
-        assertThat(manager.findBodiesInGrave(g2))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b4);
-
-
-        assertThat(manager.findGraveWithBody(b1))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b2))
-                .isNull();
-        assertThat(manager.findGraveWithBody(b3))
-                .isNull();
-        assertThat(manager.findGraveWithBody(b4))
-                .isEqualToComparingFieldByField(g3);
-        assertThat(manager.findGraveWithBody(b5))
-                .isEqualToComparingFieldByField(g1);
-    }
-
-    @Test
-    public void removeUnburiedBodyFromGrave() {
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b4, g3);
-        manager.putBodyIntoGrave(b5, g1);
-
-        assertThatThrownBy(() -> manager.putBodyIntoGrave(b3, g1))
-                .isInstanceOf(IllegalEntityException.class);
-
-        // Check that previous tests didn't affect data in database
-        assertThat(manager.findBodiesInGrave(g1))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b5);
-        assertThat(manager.findBodiesInGrave(g2))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b4);
-    }
-
-    @Test
-    public void removeBodyFromGraveWhereItIsNotBuried() {
-
-        manager.putBodyIntoGrave(b1, g3);
-        manager.putBodyIntoGrave(b4, g3);
-        manager.putBodyIntoGrave(b5, g1);
-
-        assertThatThrownBy(() -> manager.putBodyIntoGrave(b1, g1))
-                .isInstanceOf(IllegalEntityException.class);
-
-        // Check that previous tests didn't affect data in database
-        assertThat(manager.findBodiesInGrave(g1))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b5);
-        assertThat(manager.findBodiesInGrave(g2))
-                .isEmpty();
-        assertThat(manager.findBodiesInGrave(g3))
-                .usingFieldByFieldElementComparator()
-                .containsOnly(b1,b4);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void removeNullBodyFromGrave() {
-        manager.removeBodyFromGrave(null, g2);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void removeBodyWithNullIdFromGrave() {
-        manager.removeBodyFromGrave(bodyWithNullId, g2);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void removeBodyNotInDBFromGrave() {
-        manager.removeBodyFromGrave(bodyNotInDB, g2);
-    }
-
-    @Test(expected = IllegalArgumentException.class)
-    public void removeBodyFromNullGrave() {
-        manager.removeBodyFromGrave(b2, null);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void removeBodyFromGraveWithNullId() {
-        manager.removeBodyFromGrave(b2, graveWithNullId);
-    }
-
-    @Test(expected = IllegalEntityException.class)
-    public void removeBodyFromGraveNotInDB() {
-        manager.removeBodyFromGrave(b2, graveNotInDB);
+    public void putBodyIntoGraveConcurrently() throws Exception {
+        super.putBodyIntoGraveConcurrently();
+        // stored occupancy matches the real number of bodies
+        assertThat(new CemeteryManagerImpl(ds).repairOccupancy()).isZero();
     }
 
     //--------------------------------------------------------------------------
@@ -491,6 +163,16 @@ public class CemeteryManagerImplTest {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findBodiesInGrave(g1));
     }
 
+    @Test
+    public void findBodiesInGravesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findBodiesInGraves(Arrays.asList(g1)));
+    }
+
+    @Test
+    public void findGravesWithBodiesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findGravesWithBodies(Arrays.asList(b1)));
+    }
+
     @Test
     public void findEmptyGravesWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findEmptyGraves());
@@ -506,6 +188,11 @@ public class CemeteryManagerImplTest {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findGravesWithSomeFreeSpace());
     }
 
+    @Test
+    public void streamUnburiedBodiesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.streamUnburiedBodies());
+    }
+
     @Test
     public void findUnburiedBodiesWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.findUnburiedBodies());
@@ -516,6 +203,22 @@ public class CemeteryManagerImplTest {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.putBodyIntoGrave(b1, g1));
     }
 
+    @Test
+    public void buryAllWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.buryAll(Arrays.asList(b1), PlacementPolicy.firstFit()));
+    }
+
+    @Test
+    public void repairOccupancyWithSqlExceptionThrown() throws SQLException {
+        SQLException sqlException = new SQLException();
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(sqlException);
+        CemeteryManagerImpl failingManager = new CemeteryManagerImpl(failingDataSource);
+        assertThatThrownBy(failingManager::repairOccupancy)
+                .isInstanceOf(ServiceFailureException.class)
+                .hasCause(sqlException);
+    }
+
     @Test
     public void removeBodyIntoGraveWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((cemeteryManager) -> cemeteryManager.removeBodyFromGrave(b1, g1));
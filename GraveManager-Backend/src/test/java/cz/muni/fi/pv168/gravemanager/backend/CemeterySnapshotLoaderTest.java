@@ -0,0 +1,232 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CemeterySnapshotLoader} and {@link CemeterySnapshot}.
+ *
+ * @author Petr Adámek
+ */
+public class CemeterySnapshotLoaderTest {
+
+    private CemeterySnapshotLoader loader;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private DataSource ds;
+
+    private Grave g1, g2, g3;
+    private List<Body> bodies;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+        DatabaseSchema.migrate(ds);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+        loader = new CemeterySnapshotLoader(ds);
+
+        g1 = new GraveBuilder().row(1).column(1).capacity(1).note("Grave 1").build();
+        g2 = new GraveBuilder().row(1).column(2).capacity(2).note("Grave 2").build();
+        g3 = new GraveBuilder().row(1).column(3).capacity(20).note("Grave 3").build();
+        graveManager.createGrave(g1);
+        graveManager.createGrave(g2);
+        graveManager.createGrave(g3);
+
+        bodies = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.FEMALE).build());
+        }
+        bodyManager.createBodies(bodies);
+        cemeteryManager.putBodyIntoGrave(bodies.get(0), g2);
+        cemeteryManager.putBodyIntoGrave(bodies.get(1), g3);
+        cemeteryManager.putBodyIntoGrave(bodies.get(2), g3);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Test
+    public void load() {
+        CemeterySnapshot snapshot = loader.load();
+
+        assertThat(snapshot.getGraveCount()).isEqualTo(3);
+        assertThat(snapshot.getGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g2, g3);
+
+        int i1 = snapshot.indexOfGrave(g1.getId());
+        int i2 = snapshot.indexOfGrave(g2.getId());
+        int i3 = snapshot.indexOfGrave(g3.getId());
+        assertThat(snapshot.getGrave(i2)).isEqualToComparingFieldByField(g2);
+        assertThat(snapshot.getBodiesInGrave(i1)).isEmpty();
+        assertThat(snapshot.getBodiesInGrave(i2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bodies.get(0));
+        assertThat(snapshot.getBodiesInGrave(i3))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bodies.get(1), bodies.get(2));
+        assertThat(snapshot.getOccupied(i1)).isZero();
+        assertThat(snapshot.getOccupied(i3)).isEqualTo(2);
+        assertThat(snapshot.getFreeSlots(i1)).isEqualTo(1);
+        assertThat(snapshot.getFreeSlots(i2)).isEqualTo(1);
+        assertThat(snapshot.getFreeSlots(i3)).isEqualTo(18);
+        assertThat(snapshot.getUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(bodies.subList(3, 40));
+        assertThat(snapshot.getUnburiedBodyCount()).isEqualTo(37);
+
+        assertThat(snapshot.getTotalCapacity()).isEqualTo(23);
+        assertThat(snapshot.getTotalOccupied()).isEqualTo(3);
+        assertThat(snapshot.getTotalFreeSlots()).isEqualTo(20);
+        assertThat(snapshot.indexOfGrave(g3.getId() + 1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void loadEmptyCemetery() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        DatabaseSchema.migrate(ds);
+
+        CemeterySnapshot snapshot = loader.load();
+
+        assertThat(snapshot.getGraveCount()).isZero();
+        assertThat(snapshot.getUnburiedBodies()).isEmpty();
+        assertThat(snapshot.getTotalCapacity()).isZero();
+        assertThat(snapshot.getVersion()).isZero();
+        assertThat(loader.refresh(snapshot)).isSameAs(snapshot);
+    }
+
+    @Test
+    public void returnedEntitiesAreCopies() {
+        CemeterySnapshot snapshot = loader.load();
+        int i3 = snapshot.indexOfGrave(g3.getId());
+
+        snapshot.getGrave(i3).setCapacity(100);
+        snapshot.getBodiesInGrave(i3).get(0).setName("Changed");
+        snapshot.getUnburiedBodies().get(0).setName("Changed");
+
+        assertThat(snapshot.getGrave(i3)).isEqualToComparingFieldByField(g3);
+        assertThat(snapshot.getBodiesInGrave(i3).get(0)).isEqualToComparingFieldByField(bodies.get(1));
+        assertThat(snapshot.getUnburiedBodies().get(0)).isEqualToComparingFieldByField(bodies.get(3));
+    }
+
+    @Test
+    public void refreshWithoutChangesReturnsSameSnapshot() {
+        CemeterySnapshot snapshot = loader.load();
+
+        assertThat(loader.refresh(snapshot)).isSameAs(snapshot);
+    }
+
+    @Test
+    public void refreshLoadsOnlyChangedEntities() throws SQLException {
+        CemeterySnapshot snapshot = loader.load();
+
+        cemeteryManager.putBodyIntoGrave(bodies.get(3), g1);
+        cemeteryManager.removeBodyFromGrave(bodies.get(1), g3);
+        g2.setNote("Changed note");
+        graveManager.updateGrave(g2);
+        bodyManager.deleteBody(bodies.get(39));
+        Grave g4 = new GraveBuilder().row(2).column(1).capacity(1).build();
+        graveManager.createGrave(g4);
+
+        List<Connection> connections = new ArrayList<>();
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer((invocation) -> {
+            Connection connection = mock(Connection.class, delegatesTo(ds.getConnection()));
+            connections.add(connection);
+            return connection;
+        });
+        CemeterySnapshot refreshed = new CemeterySnapshotLoader(dataSource).refresh(snapshot);
+
+        assertThat(refreshed.getVersion()).isGreaterThan(snapshot.getVersion());
+        assertSnapshotsEqual(refreshed, loader.load());
+        assertThat(refreshed.getOccupied(refreshed.indexOfGrave(g1.getId()))).isEqualTo(1);
+        assertThat(refreshed.getOccupied(refreshed.indexOfGrave(g3.getId()))).isEqualTo(1);
+        assertThat(refreshed.getUnburiedBodyCount()).isEqualTo(36);
+        assertThat(refreshed.indexOfGrave(g4.getId())).isEqualTo(3);
+        // the original snapshot is not modified
+        assertThat(snapshot.getGraveCount()).isEqualTo(3);
+        assertThat(snapshot.getOccupied(snapshot.indexOfGrave(g1.getId()))).isZero();
+
+        assertThat(connections).hasSize(1);
+        verify(connections.get(0), never()).prepareStatement(contains("LEFT JOIN"));
+    }
+
+    @Test
+    public void refreshWithManyChangesLoadsWholeSnapshot() {
+        CemeterySnapshot snapshot = loader.load();
+
+        cemeteryManager.buryAll(bodies.subList(3, 15), PlacementPolicy.firstFit());
+
+        assertSnapshotsEqual(loader.refresh(snapshot), loader.load());
+    }
+
+    @Test
+    public void refreshAfterCompactionOfNewerChanges() {
+        CemeterySnapshot old = loader.load();
+        cemeteryManager.putBodyIntoGrave(bodies.get(3), g1);
+        CemeterySnapshot current = loader.refresh(old);
+        cemeteryManager.putBodyIntoGrave(bodies.get(4), g2);
+
+        assertThat(new ChangeFeed(ds, Clock.systemUTC()).compact(current.getVersion())).isPositive();
+
+        assertSnapshotsEqual(loader.refresh(current), loader.load());
+        assertSnapshotsEqual(loader.refresh(old), loader.load());
+    }
+
+    @Test
+    public void refreshNullSnapshot() {
+        assertThatThrownBy(() -> loader.refresh(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void loadWithSqlExceptionThrown() throws SQLException {
+        CemeterySnapshot snapshot = loader.load();
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(SQLException.class);
+        loader = new CemeterySnapshotLoader(failingDataSource);
+
+        assertThatThrownBy(loader::load)
+                .isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> loader.refresh(snapshot))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+
+    private static void assertSnapshotsEqual(CemeterySnapshot actual, CemeterySnapshot expected) {
+        assertThat(actual.getGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected.getGraves());
+        for (int i = 0; i < expected.getGraveCount(); i++) {
+            assertThat(actual.getBodiesInGrave(i))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expected.getBodiesInGrave(i));
+        }
+        assertThat(actual.getUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected.getUnburiedBodies());
+    }
+}
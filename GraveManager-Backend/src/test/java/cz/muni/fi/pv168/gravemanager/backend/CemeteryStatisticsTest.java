@@ -0,0 +1,159 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.time.Month.*;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link CemeteryStatistics} and {@link CemeteryReport}.
+ *
+ * @author Petr Adámek
+ */
+public class CemeteryStatisticsTest {
+
+    private CemeteryStatistics statistics;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private DataSource ds;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+        DatabaseSchema.migrate(ds);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+        statistics = new CemeteryStatistics(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    private void prepareCemetery() {
+        Grave g1 = new GraveBuilder().row(1).column(1).capacity(2).build();
+        Grave g2 = new GraveBuilder().row(1).column(2).capacity(3).build();
+        Grave g3 = new GraveBuilder().row(2).column(1).capacity(1).build();
+        graveManager.createGraves(Arrays.asList(g1, g2, g3));
+
+        Body b1 = new BodyBuilder().name("Body 1").gender(Gender.MALE)
+                .born(1900, JANUARY, 1).died(1975, MARCH, 2).build();
+        Body b2 = new BodyBuilder().name("Body 2").gender(Gender.FEMALE)
+                .born(1920, MAY, 10).died(2001, MAY, 9).vampire(true).build();
+        Body b3 = new BodyBuilder().name("Body 3").gender(Gender.FEMALE)
+                .born(1950, JUNE, 1).died(2001, JULY, 1).build();
+        Body b4 = new BodyBuilder().name("Body 4").gender(Gender.MALE)
+                .vampire(true).build();
+        Body b5 = new BodyBuilder().name("Body 5").gender(Gender.FEMALE)
+                .born(1990, JANUARY, 1).died(1995, JANUARY, 1).build();
+        bodyManager.createBodies(Arrays.asList(b1, b2, b3, b4, b5));
+
+        cemeteryManager.putBodyIntoGrave(b1, g1);
+        cemeteryManager.putBodyIntoGrave(b2, g1);
+        cemeteryManager.putBodyIntoGrave(b3, g2);
+        cemeteryManager.putBodyIntoGrave(b4, g3);
+    }
+
+    @Test
+    public void compute() {
+        prepareCemetery();
+
+        CemeteryReport report = statistics.compute();
+
+        assertReport(report);
+    }
+
+    @Test
+    public void computeInParallel() {
+        prepareCemetery();
+
+        assertReport(statistics.compute(3));
+        assertReport(statistics.compute(16));
+    }
+
+    private static void assertReport(CemeteryReport report) {
+        assertThat(report.getBodyCount()).isEqualTo(5);
+        assertThat(report.getBuriedCount()).isEqualTo(4);
+        assertThat(report.getUnburiedCount()).isEqualTo(1);
+        assertThat(report.getVampireCount()).isEqualTo(2);
+        assertThat(report.getBuriedVampireCount()).isEqualTo(2);
+        assertThat(report.getGenderCounts())
+                .containsEntry(Gender.MALE, 2L)
+                .containsEntry(Gender.FEMALE, 3L);
+        // lifespans 75, 80, 51 and 5 years
+        assertThat(report.getLifespanCounts()).containsExactly(1, 0, 0, 0, 0, 1, 0, 1, 1);
+        assertThat(report.getAverageLifespan()).hasValue((75 + 80 + 51 + 5) / 4.0);
+        assertThat(report.getBurialsByYearOfDeath())
+                .containsExactly(entry(1975, 1L), entry(2001, 2L));
+
+        assertThat(report.getOccupancyByRow()).containsOnlyKeys(1, 2);
+        CemeteryReport.RowOccupancy row1 = report.getOccupancyByRow().get(1);
+        assertThat(row1.getGraveCount()).isEqualTo(2);
+        assertThat(row1.getCapacity()).isEqualTo(5);
+        assertThat(row1.getOccupied()).isEqualTo(3);
+        assertThat(row1.getFree()).isEqualTo(2);
+        CemeteryReport.RowOccupancy row2 = report.getOccupancyByRow().get(2);
+        assertThat(row2.getCapacity()).isEqualTo(1);
+        assertThat(row2.getFree()).isZero();
+    }
+
+    @Test
+    public void computeEmptyCemetery() {
+        for (CemeteryReport report : Arrays.asList(statistics.compute(), statistics.compute(4))) {
+            assertThat(report.getBodyCount()).isZero();
+            assertThat(report.getLifespanCounts()).isEmpty();
+            assertThat(report.getAverageLifespan()).isEmpty();
+            assertThat(report.getBurialsByYearOfDeath()).isEmpty();
+            assertThat(report.getOccupancyByRow()).isEmpty();
+            assertThat(report.getGenderCounts()).containsEntry(Gender.MALE, 0L);
+        }
+    }
+
+    @Test
+    public void computeInParallelManyBodies() {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(i % 3 == 0 ? Gender.MALE : Gender.FEMALE)
+                    .born(1900, JANUARY, 1).died(1900 + i % 100, DECEMBER, 31).vampire(i % 7 == 0).build());
+        }
+        bodyManager.createBodies(bodies);
+        statistics.setFetchSize(10);
+
+        CemeteryReport sequential = statistics.compute();
+        CemeteryReport parallel = statistics.compute(7);
+
+        assertThat(parallel.getBodyCount()).isEqualTo(1000);
+        assertThat(parallel.getVampireCount()).isEqualTo(sequential.getVampireCount()).isEqualTo(143);
+        assertThat(parallel.getGenderCounts()).isEqualTo(sequential.getGenderCounts());
+        assertThat(parallel.getLifespanCounts()).containsExactly(sequential.getLifespanCounts());
+        assertThat(parallel.getAverageLifespan()).isEqualTo(sequential.getAverageLifespan());
+    }
+
+    @Test
+    public void wrongArguments() {
+        assertThatThrownBy(() -> new CemeteryStatistics(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> statistics.compute(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> statistics.setFetchSize(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,248 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static cz.muni.fi.pv168.gravemanager.backend.Change.EntityType.BODY;
+import static cz.muni.fi.pv168.gravemanager.backend.Change.EntityType.GRAVE;
+import static cz.muni.fi.pv168.gravemanager.backend.Change.Operation.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link ChangeFeed}.
+ *
+ * @author Petr Adámek
+ */
+public class ChangeFeedTest {
+
+    private ChangeFeed feed;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private DataSource ds;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+        DatabaseSchema.migrate(ds);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+        feed = new ChangeFeed(ds, Clock.systemUTC());
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        feed.close();
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Test
+    public void pollRecordsAllOperations() {
+        assertThat(feed.getLastSequence()).isZero();
+        assertThat(feed.poll(0, 100).getChanges()).isEmpty();
+
+        Grave grave = new GraveBuilder().row(1).column(1).capacity(1).build();
+        graveManager.createGrave(grave);
+        Body body = new BodyBuilder().name("Joe").gender(Gender.MALE).build();
+        bodyManager.createBody(body);
+        body.setName("Joe from depot");
+        bodyManager.updateBody(body);
+        grave.setNote("Family grave");
+        graveManager.updateGrave(grave);
+        cemeteryManager.putBodyIntoGrave(body, grave);
+        cemeteryManager.removeBodyFromGrave(body, grave);
+        bodyManager.deleteBody(body);
+        graveManager.deleteGrave(grave);
+
+        ChangeFeed.Batch batch = feed.poll(0, 100);
+
+        assertThat(batch.isTruncated()).isFalse();
+        assertThat(batch.getChanges())
+                .extracting(Change::getEntityType, Change::getEntityId, Change::getOperation)
+                .containsExactly(
+                        tuple(GRAVE, grave.getId(), CREATE),
+                        tuple(BODY, body.getId(), CREATE),
+                        tuple(BODY, body.getId(), UPDATE),
+                        tuple(GRAVE, grave.getId(), UPDATE),
+                        // occupancy of the grave changed too, but only the body is logged
+                        tuple(BODY, body.getId(), BURY),
+                        tuple(BODY, body.getId(), UNBURY),
+                        tuple(BODY, body.getId(), DELETE),
+                        tuple(GRAVE, grave.getId(), DELETE));
+        assertThat(batch.getChanges()).extracting(Change::getSequence).isSorted();
+        assertThat(batch.getLastSequence()).isEqualTo(feed.getLastSequence());
+        assertThat(feed.poll(batch.getLastSequence(), 100).getChanges()).isEmpty();
+        assertThat(feed.poll(batch.getLastSequence(), 100).getLastSequence()).isEqualTo(batch.getLastSequence());
+    }
+
+    @Test
+    public void pollCatchesUpIncrementally() {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.FEMALE).build());
+        }
+        bodyManager.createBodies(bodies);
+
+        List<Change> changes = new ArrayList<>();
+        long sequence = 0;
+        for (ChangeFeed.Batch batch = feed.poll(sequence, 10); !batch.getChanges().isEmpty(); batch = feed.poll(sequence, 10)) {
+            assertThat(batch.getChanges()).hasSizeLessThanOrEqualTo(10);
+            changes.addAll(batch.getChanges());
+            sequence = batch.getLastSequence();
+        }
+
+        assertThat(changes)
+                .extracting(Change::getEntityId)
+                .containsExactlyElementsOf(bodies.stream().map(Body::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void changesOfRolledBackTransactionAreNotRecorded() {
+        Grave grave = new GraveBuilder().row(1).column(1).capacity(1).build();
+        graveManager.createGrave(grave);
+        Body catherine = new BodyBuilder().name("Catherine").gender(Gender.FEMALE).build();
+        bodyManager.createBody(catherine);
+        cemeteryManager.putBodyIntoGrave(catherine, grave);
+        Body body = new BodyBuilder().name("Joe").gender(Gender.MALE).build();
+        bodyManager.createBody(body);
+        long sequence = feed.getLastSequence();
+
+        assertThatThrownBy(() -> cemeteryManager.putBodyIntoGrave(body, grave))
+                .isInstanceOf(IllegalEntityException.class);
+
+        assertThat(feed.poll(sequence, 100).getChanges()).isEmpty();
+    }
+
+    @Test
+    public void compactBySequence() {
+        for (int i = 0; i < 5; i++) {
+            graveManager.createGrave(new GraveBuilder().row(i).column(1).capacity(1).build());
+        }
+        long last = feed.getLastSequence();
+
+        assertThat(feed.compact(last - 1)).isEqualTo(3);
+
+        assertThat(feed.poll(last - 2, 100).isTruncated()).isFalse();
+        assertThat(feed.poll(last - 2, 100).getChanges()).hasSize(2);
+        assertThat(feed.poll(last - 3, 100).isTruncated()).isTrue();
+        // the latest change is never compacted, so consumers can detect missed changes
+        assertThat(feed.compact(last + 10)).isEqualTo(1);
+        assertThat(feed.getLastSequence()).isEqualTo(last);
+        assertThat(feed.poll(last, 100).isTruncated()).isFalse();
+        assertThat(feed.poll(last - 2, 100).isTruncated()).isTrue();
+    }
+
+    @Test
+    public void compactByRetention() {
+        for (int i = 0; i < 5; i++) {
+            graveManager.createGrave(new GraveBuilder().row(i).column(1).capacity(1).build());
+        }
+        long last = feed.getLastSequence();
+
+        assertThat(feed.compact(Duration.ofDays(1))).isZero();
+
+        ChangeFeed futureFeed = new ChangeFeed(ds, Clock.offset(Clock.systemUTC(), Duration.ofDays(2)));
+        assertThat(futureFeed.compact(Duration.ofDays(1))).isEqualTo(4);
+        assertThat(feed.poll(0, 100).getChanges())
+                .extracting(Change::getSequence)
+                .containsExactly(last);
+    }
+
+    @Test
+    public void scheduledCompaction() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            graveManager.createGrave(new GraveBuilder().row(i).column(1).capacity(1).build());
+        }
+        long last = feed.getLastSequence();
+
+        feed = new ChangeFeed(ds, Clock.offset(Clock.systemUTC(), Duration.ofDays(2)));
+        feed.scheduleCompaction(Duration.ofDays(1), Duration.ofMillis(10));
+        assertThatThrownBy(() -> feed.scheduleCompaction(Duration.ofDays(1), Duration.ofMillis(10)))
+                .isInstanceOf(IllegalStateException.class);
+        for (int i = 0; i < 500 && feed.poll(0, 100).getChanges().size() > 1; i++) {
+            Thread.sleep(10);
+        }
+        feed.close();
+
+        assertThat(feed.getLastCompactionFailure()).isNull();
+        assertThat(feed.poll(0, 100).getChanges())
+                .extracting(Change::getSequence)
+                .containsExactly(last);
+    }
+
+    @Test
+    public void scheduleCompactionWithWrongArguments() {
+        assertThatThrownBy(() -> feed.scheduleCompaction(null, Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> feed.scheduleCompaction(Duration.ofDays(-1), Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> feed.scheduleCompaction(Duration.ofDays(1), null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> feed.scheduleCompaction(Duration.ofDays(1), Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void pollWithInvalidLimit() {
+        assertThatThrownBy(() -> feed.poll(0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void compactWithInvalidRetention() {
+        assertThatThrownBy(() -> feed.compact(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> feed.compact(Duration.ofDays(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void operationsWithSqlExceptionThrown() throws SQLException {
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(SQLException.class);
+        feed = new ChangeFeed(failingDataSource, Clock.systemUTC());
+
+        assertThatThrownBy(feed::getLastSequence)
+                .isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> feed.poll(0, 10))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> feed.compact(10))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> feed.compact(Duration.ofDays(1)))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+
+    @Test
+    public void scheduledCompactionWithSqlExceptionThrown() throws SQLException, InterruptedException {
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(SQLException.class);
+        feed = new ChangeFeed(failingDataSource, Clock.systemUTC());
+
+        feed.scheduleCompaction(Duration.ofDays(1), Duration.ofMillis(10));
+        for (int i = 0; i < 500 && feed.getLastCompactionFailure() == null; i++) {
+            Thread.sleep(10);
+        }
+        feed.close();
+
+        assertThat(feed.getLastCompactionFailure()).isInstanceOf(ServiceFailureException.class);
+    }
+}
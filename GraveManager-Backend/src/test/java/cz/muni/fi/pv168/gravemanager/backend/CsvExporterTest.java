@@ -0,0 +1,137 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CsvExporter}.
+ *
+ * @author Petr Adámek
+ */
+public class CsvExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CsvExporter exporter;
+    private BodyManagerImpl bodyManager;
+    private GraveManagerImpl graveManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private DataSource ds;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+        DatabaseSchema.migrate(ds);
+        exporter = new CsvExporter(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        graveManager = new GraveManagerImpl(ds);
+        cemeteryManager = new CemeteryManagerImpl(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Test
+    public void exportBodies() {
+        Grave grave = new GraveBuilder().row(1).column(1).capacity(1).build();
+        graveManager.createGrave(grave);
+        Body dracula = new BodyBuilder().name("Dracula, Count").gender(Gender.MALE)
+                .born(LocalDate.of(1431, 11, 2)).died(LocalDate.of(1476, 12, 1)).vampire(true).build();
+        bodyManager.createBody(dracula);
+        cemeteryManager.putBodyIntoGrave(dracula, grave);
+        StringWriter out = new StringWriter();
+
+        assertThat(exporter.exportBodies(out)).isEqualTo(1);
+
+        assertThat(out.toString()).isEqualTo(
+                "id,graveId,name,gender,born,died,vampire\n"
+                        + dracula.getId() + "," + grave.getId() + ",\"Dracula, Count\",MALE,1431-11-02,1476-12-01,true\n");
+    }
+
+    @Test
+    public void exportGraves() {
+        Grave grave = new GraveBuilder().row(2).column(3).capacity(4).note("Note with \"quotes\"").build();
+        graveManager.createGrave(grave);
+        StringWriter out = new StringWriter();
+
+        assertThat(exporter.exportGraves(out)).isEqualTo(1);
+
+        assertThat(out.toString()).isEqualTo(
+                "id,row,column,capacity,note\n"
+                        + grave.getId() + ",2,3,4,\"Note with \"\"quotes\"\"\"\n");
+    }
+
+    @Test
+    public void exportedFileCanBeImported() {
+        List<Grave> graves = Arrays.asList(
+                new GraveBuilder().row(1).column(1).capacity(1).note("multi\nline").build(),
+                new GraveBuilder().row(2).column(2).capacity(2).note(null).build());
+        graveManager.createGraves(graves);
+        List<Body> bodies = Arrays.asList(
+                new BodyBuilder().name("Joe").gender(Gender.MALE).born(null).died(null).build(),
+                new BodyBuilder().name("Jane").gender(Gender.FEMALE)
+                        .born(LocalDate.of(1900, 1, 1)).died(LocalDate.of(1980, 5, 6)).vampire(true).build());
+        bodyManager.createBodies(bodies);
+        Path bodyFile = folder.getRoot().toPath().resolve("bodies.csv.gz");
+        Path graveFile = folder.getRoot().toPath().resolve("graves.csv");
+
+        exporter.setFetchSize(1);
+        assertThat(exporter.exportBodies(bodyFile)).isEqualTo(2);
+        assertThat(exporter.exportGraves(graveFile)).isEqualTo(2);
+        bodies.forEach(bodyManager::deleteBody);
+        graves.forEach(graveManager::deleteGrave);
+        CsvImporter importer = new CsvImporter(ds, Clock.systemUTC());
+
+        assertThat(importer.importBodies(bodyFile).getImportedRows()).isEqualTo(2);
+        assertThat(importer.importGraves(graveFile).getImportedRows()).isEqualTo(2);
+        assertThat(bodyManager.findAllBodies())
+                .usingElementComparatorIgnoringFields("id")
+                .containsExactlyInAnyOrderElementsOf(bodies);
+        assertThat(graveManager.findAllGraves())
+                .usingElementComparatorIgnoringFields("id")
+                .containsExactlyInAnyOrderElementsOf(graves);
+    }
+
+    @Test
+    public void exportWithSqlExceptionThrown() throws SQLException {
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(SQLException.class);
+        exporter = new CsvExporter(failingDataSource);
+
+        assertThatThrownBy(() -> exporter.exportBodies(new StringWriter()))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> exporter.exportGraves(new StringWriter()))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+
+    @Test
+    public void setInvalidFetchSize() {
+        assertThatThrownBy(() -> exporter.setFetchSize(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
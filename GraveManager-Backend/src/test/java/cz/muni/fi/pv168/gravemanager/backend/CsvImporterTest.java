@@ -0,0 +1,244 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import cz.muni.fi.pv168.common.ValidationException;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CsvImporter}.
+ *
+ * @author Petr Adámek
+ */
+public class CsvImporterTest {
+
+    private static final LocalDate NOW = LocalDate.of(2016, 2, 29);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CsvImporter importer;
+    private BodyManagerImpl bodyManager;
+    private GraveManagerImpl graveManager;
+    private DataSource ds;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+        DatabaseSchema.migrate(ds);
+        Clock clock = Clock.fixed(NOW.atStartOfDay(ZoneId.of("UTC")).toInstant(), ZoneId.of("UTC"));
+        importer = new CsvImporter(ds, clock);
+        bodyManager = new BodyManagerImpl(ds, clock);
+        graveManager = new GraveManagerImpl(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Test
+    public void importBodies() {
+        ImportResult result = importer.importBodies(new StringReader(
+                "id,name,gender,born,died,vampire\n"
+                        + "7,\"Dracula, Count\",MALE,1431-11-02,1476-12-01,true\n"
+                        + "\n"
+                        + ",Catherine,FEMALE,,,\n"));
+
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(result.getRejectedRows()).isZero();
+        assertThat(result.getRejections()).isEmpty();
+        assertThat(bodyManager.findAllBodies())
+                .usingElementComparatorIgnoringFields("id")
+                .containsExactlyInAnyOrder(
+                        new BodyBuilder().name("Dracula, Count").gender(Gender.MALE)
+                                .born(LocalDate.of(1431, 11, 2)).died(LocalDate.of(1476, 12, 1)).vampire(true).build(),
+                        new BodyBuilder().name("Catherine").gender(Gender.FEMALE)
+                                .born(null).died(null).vampire(false).build());
+    }
+
+    @Test
+    public void importGraves() {
+        ImportResult result = importer.importGraves(new StringReader(
+                "row,column,capacity,note\n"
+                        + "1,2,3,\"multi\nline note\"\n"
+                        + "4,5,1,\n"));
+
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(graveManager.findAllGraves())
+                .usingElementComparatorIgnoringFields("id")
+                .containsExactlyInAnyOrder(
+                        new GraveBuilder().row(1).column(2).capacity(3).note("multi\nline note").build(),
+                        new GraveBuilder().row(4).column(5).capacity(1).note(null).build());
+    }
+
+    @Test
+    public void invalidRowsAreRejected() {
+        ImportResult result = importer.importBodies(new StringReader(
+                "name,gender,born,died,vampire\n"
+                        + "Joe,MALE,,,\n"
+                        + ",MALE,,,\n"
+                        + "Jane,ALIEN,,,\n"
+                        + "Jack,MALE,yesterday,,\n"
+                        + "Jim,MALE,1950-01-01,1940-01-01,\n"
+                        + "Jill,FEMALE,2100-01-01,,\n"
+                        + "John,MALE,,,maybe\n"
+                        + "Joan,FEMALE,,,false\n"));
+
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(result.getRejectedRows()).isEqualTo(6);
+        assertThat(result.getRejections())
+                .extracting(ImportResult.RejectedRow::getLineNumber, ImportResult.RejectedRow::getMessage)
+                .containsExactly(
+                        tuple(3L, "name is null"),
+                        tuple(4L, "gender ALIEN is not valid"),
+                        tuple(5L, "born yesterday is not valid date"),
+                        tuple(6L, "died is before born"),
+                        tuple(7L, "born is in future"),
+                        tuple(8L, "vampire maybe is not true or false"));
+        assertThat(bodyManager.findAllBodies())
+                .extracting(Body::getName)
+                .containsExactlyInAnyOrder("Joe", "Joan");
+    }
+
+    @Test
+    public void invalidGravesAreRejected() {
+        ImportResult result = importer.importGraves(new StringReader(
+                "row,column,capacity\n"
+                        + "1,1,0\n"
+                        + "-1,1,1\n"
+                        + "x,1,1\n"
+                        + "2,2,2\n"));
+
+        assertThat(result.getImportedRows()).isEqualTo(1);
+        assertThat(result.getRejections())
+                .extracting(ImportResult.RejectedRow::getMessage)
+                .containsExactly("capacity is not positive number", "row is negative number", "row x is not valid number");
+    }
+
+    @Test
+    public void importWithMissingColumn() {
+        assertThatThrownBy(() -> importer.importBodies(new StringReader("name,born\nJoe,\n")))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("gender");
+        assertThat(bodyManager.findAllBodies()).isEmpty();
+    }
+
+    @Test
+    public void importEmptyFile() {
+        ImportResult result = importer.importGraves(new StringReader(""));
+
+        assertThat(result.getImportedRows()).isZero();
+        assertThat(result.getRejectedRows()).isZero();
+    }
+
+    @Test
+    public void importManyRowsInParallel() {
+        StringBuilder data = new StringBuilder("name,gender,vampire\n");
+        for (int i = 0; i < 5000; i++) {
+            data.append("Body ").append(i).append(',').append(i % 2 == 0 ? "MALE" : "FEMALE")
+                    .append(',').append(i % 100 == 0).append('\n');
+        }
+        importer.setBatchSize(100);
+        importer.setThreads(3);
+
+        ImportResult result = importer.importBodies(new StringReader(data.toString()));
+
+        assertThat(result.getImportedRows()).isEqualTo(5000);
+        assertThat(result.getRowsPerSecond()).isPositive();
+        BodyTable table = bodyManager.findAllBodiesAsTable();
+        assertThat(table.size()).isEqualTo(5000);
+        assertThat(table.count(table.vampires())).isEqualTo(50);
+    }
+
+    @Test
+    public void importGzippedFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("graves.csv.gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8)) {
+            writer.write("row,column,capacity\n1,1,1\n2,2,2\n");
+        }
+
+        ImportResult result = importer.importGraves(file);
+
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(graveManager.findAllGraves()).hasSize(2);
+    }
+
+    @Test
+    public void importMissingFile() {
+        assertThatThrownBy(() -> importer.importBodies(folder.getRoot().toPath().resolve("missing.csv")))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+
+    @Test
+    public void importWithSqlExceptionThrown() throws SQLException {
+        DataSource failingDataSource = mock(DataSource.class);
+        when(failingDataSource.getConnection()).thenThrow(SQLException.class);
+        importer = new CsvImporter(failingDataSource, Clock.systemUTC());
+
+        assertThatThrownBy(() -> importer.importGraves(new StringReader("row,column,capacity\n1,1,1\n")))
+                .isInstanceOf(ServiceFailureException.class)
+                .hasCauseInstanceOf(SQLException.class);
+    }
+
+    @Test
+    public void failedImportReportsCommittedLines() {
+        StringBuilder longNote = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longNote.append('x');
+        }
+        importer.setBatchSize(2);
+        importer.setThreads(1);
+
+        // note longer than the column fails in db, so the third batch is rolled back
+        assertThatThrownBy(() -> importer.importGraves(new StringReader(
+                "row,column,capacity,note\n"
+                        + "1,1,1,\n"
+                        + "1,2,1,\n"
+                        + "1,-3,1,\n"
+                        + "1,4,1,\n"
+                        + "1,5,1,\n"
+                        + "1,6,1," + longNote + "\n"
+                        + "1,7,1,\n"
+                        + "1,8,1,\n")))
+                .isInstanceOf(ServiceFailureException.class)
+                .hasCauseInstanceOf(SQLException.class)
+                .hasMessageContaining("4 rows from lines 2-6 are committed");
+        assertThat(graveManager.findAllGraves())
+                .extracting(Grave::getColumn)
+                .containsExactlyInAnyOrder(1, 2, 4, 5);
+    }
+
+    @Test
+    public void setInvalidParameters() {
+        assertThatThrownBy(() -> importer.setBatchSize(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> importer.setThreads(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -4,10 +4,11 @@ import cz.muni.fi.pv168.common.*;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Clock;
+import java.util.Arrays;
 import javax.sql.DataSource;
 import org.apache.derby.jdbc.EmbeddedDataSource;
 import org.junit.*;
-import org.junit.rules.ExpectedException;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -20,21 +21,16 @@ import static org.mockito.Mockito.*;
 //------------------------------------------------------------------------------
 
 /**
- * Example test class for {@link GraveManagerImpl}.
+ * Example test class for {@link GraveManagerImpl}. Tests of the contract
+ * common for all implementations are inherited from
+ * {@link GraveManagerContractTest}, this class adds tests specific for JDBC.
  *
  * @author petr.adamek@bilysklep.cz
  */
-public class GraveManagerImplTest {
+public class GraveManagerImplTest extends GraveManagerContractTest {
 
-    private GraveManagerImpl manager;
     private DataSource ds;
 
-    // ExpectedException is one possible mechanisms for testing if expected
-    // exception is thrown. See createGraveWithExistingId() for usage example.
-    @Rule
-    // attribute annotated with @Rule annotation must be public :-(
-    public ExpectedException expectedException = ExpectedException.none();
-
     //--------------------------------------------------------------------------
     // Test initialization
     //--------------------------------------------------------------------------
@@ -48,11 +44,16 @@ public class GraveManagerImplTest {
         return ds;
     }
 
-    @Before
-    public void setUp() throws SQLException, IOException {
+    @Override
+    protected Managers createManagers(Clock clock) throws SQLException {
         ds = prepareDataSource();
-        DBUtils.executeSqlScript(ds,GraveManager.class.getResourceAsStream("createTables.sql"));
-        manager = new GraveManagerImpl(ds);
+        DatabaseSchema.migrate(ds);
+        GraveManagerImpl graveManager = new GraveManagerImpl(ds);
+        // batches and fetches smaller than number of graves used by the tests
+        // to test also multiple round trips
+        graveManager.setBatchSize(2);
+        graveManager.setFetchSize(1);
+        return new Managers(graveManager, new BodyManagerImpl(ds, clock), new CemeteryManagerImpl(ds));
     }
 
     @After
@@ -61,368 +62,14 @@ public class GraveManagerImplTest {
         DBUtils.executeSqlScript(ds,GraveManager.class.getResourceAsStream("dropTables.sql"));
     }
 
-    //--------------------------------------------------------------------------
-    // Preparing test data
-    //--------------------------------------------------------------------------
-
-    // We will need to create some Grave instances for testing purposes. We
-    // could create constructor or helper method for initializing all fields,
-    // but this is not well readable, especially for cases with multiple
-    // parameters of the same type:
-    //
-    // Grave grave = new Grave(12,13,1,"Small Grave"); // constructoor
-    // Grave grave = newGrave(12,13,1,"Small Grave");  // helper method
-    //
-    // To understand this code, you need to know or look, what is the order and
-    // meaning of parameters. And it will be difficult to maintain the code when
-    // some new attributes are introduced. Another option is to use set methods:
-    //
-    // Grave grave = new Grave();
-    // grave.setColumn(12);
-    // grave.setRow(13);
-    // grave.setCapacity(1);
-    // grave.setNote("Small Grave");
-    //
-    // This is better understandable, but it needs too much code to construct
-    // the object. Alternative solution is to use Builder pattern:
-    //
-    // Grave grave = new GraveBuilder().column(12).row(13).note("Small Grave").build();
-    //
-    // Advantage of builder pattern is compact syntax based on fluent API,
-    // clear assigment of values to attribute names and flexibility allowing to
-    // set only arbitrary subset of attributes (and keeping default values for
-    // others). Disadvantage of builder pattern is the need to create and
-    // maintain builder class. See Item 2 in Effective Java from Joshua Bloch
-    // for more details.
-    //
-    // To make creation of test objects even easier, we can prepare some
-    // pre-configured builders with some reasonable default attribute values
-    // (see sampleSmallGraveBuilder() and sampleBigGraveBuilder() bellow).
-    // These values can be changed by subsequent calls of appropriate builder
-    // method if needed.
-    //
-    // Grave graveWithExistingId = sampleSmallGraveBuilder().id(12L).build();
-    //
-    // This mechanism allows us to focus only to attributes important for given
-    // test and use some universal reasonable value for other attribute. For
-    // example, we don't need to use some specific attribute values for
-    // createGrave() test, this test works well with any valid values.
-
-    private GraveBuilder sampleSmallGraveBuilder() {
-        return new GraveBuilder()
-                .id(null)
-                .column(12)
-                .row(13)
-                .capacity(1)
-                .note("Small Grave");
-    }
-
-    private GraveBuilder sampleBigGraveBuilder() {
-        return new GraveBuilder()
-                .id(null)
-                .column(22)
-                .row(27)
-                .capacity(6)
-                .note("Big Grave");
-    }
-
-    //--------------------------------------------------------------------------
-    // Tests for operations for creating and fetching graves
-    //--------------------------------------------------------------------------
-
-    @Test
-    public void createGrave() {
-        Grave grave = sampleSmallGraveBuilder().build();
-        manager.createGrave(grave);
-
-        Long graveId = grave.getId();
-        assertThat(graveId).isNotNull();
-
-        assertThat(manager.getGrave(graveId))
-                .isNotSameAs(grave)
-                .isEqualToComparingFieldByField(grave);
-    }
-
-    @Test
-    public void findAllGraves() {
-
-        assertThat(manager.findAllGraves()).isEmpty();
-
-        Grave g1 = sampleSmallGraveBuilder().build();
-        Grave g2 = sampleBigGraveBuilder().build();
-
-        manager.createGrave(g1);
-        manager.createGrave(g2);
-
-        assertThat(manager.findAllGraves())
-                .usingFieldByFieldElementComparator()
-                .containsOnly(g1,g2);
-    }
-
-    // Test exception with expected parameter of @Test annotation
-    // it does not allow to specify exact place where the exception
-    // is expected, therefor it is suitable only for simple single line tests
-    @Test(expected = IllegalArgumentException.class)
-    public void createNullGrave() {
-        manager.createGrave(null);
-    }
-
-    // Test exception with ExpectedException @Rule
-    @Test
-    public void createGraveWithExistingId() {
-        Grave grave = sampleSmallGraveBuilder().id(1L).build();
-        expectedException.expect(IllegalEntityException.class);
-        manager.createGrave(grave);
-    }
-
-    // Test exception using AssertJ assertThatThrownBy() method
-    // this requires Java 8 due to using lambda expression
-    @Test
-    public void createGraveWithNegativeColumn() {
-        Grave grave = sampleSmallGraveBuilder().column(-1).build();
-        assertThatThrownBy(() -> manager.createGrave(grave))
-                .isInstanceOf(ValidationException.class);
-    }
-
-    @Test
-    public void createGraveWithNegativeRow() {
-        Grave grave = sampleSmallGraveBuilder().row(-1).build();
-        expectedException.expect(ValidationException.class);
-        manager.createGrave(grave);
-    }
-
-    @Test
-    public void createGraveWithNegativeCapacity() {
-        Grave grave = sampleSmallGraveBuilder().capacity(-1).build();
-        expectedException.expect(ValidationException.class);
-        manager.createGrave(grave);
-    }
-
-    @Test
-    public void createGraveWithZeroCapacity() {
-        Grave grave = sampleSmallGraveBuilder().capacity(0).build();
-        expectedException.expect(ValidationException.class);
-        manager.createGrave(grave);
-    }
-
-    @Test
-    public void createGraveWithZeroColumn() {
-        Grave grave = sampleSmallGraveBuilder().column(0).build();
-        manager.createGrave(grave);
-
-        assertThat(manager.getGrave(grave.getId()))
-                .isNotNull()
-                .isEqualToComparingFieldByField(grave);
-    }
-
-    @Test
-    public void createGraveWithZeroRow() {
-        Grave grave = sampleSmallGraveBuilder().row(0).build();
-        manager.createGrave(grave);
-
-        assertThat(manager.getGrave(grave.getId()))
-                .isNotNull()
-                .isEqualToComparingFieldByField(grave);
-    }
-
-    @Test
-    public void createGraveWithNullNote() {
-        Grave grave = sampleSmallGraveBuilder().note(null).build();
-        manager.createGrave(grave);
-
-        assertThat(manager.getGrave(grave.getId()))
-                .isNotNull()
-                .isEqualToComparingFieldByField(grave);
-    }
-
-    //--------------------------------------------------------------------------
-    // Tests for GraveManager.updateGrave(Grave) operation
-    //--------------------------------------------------------------------------
-
-    @Test
-    public void updateGraveColumn() {
-        // Let us create two graves, one will be used for testing the update
-        // and another one will be used for verification that other objects are
-        // not affected by update operation
-        Grave graveForUpdate = sampleSmallGraveBuilder().build();
-        Grave anotherGrave = sampleBigGraveBuilder().build();
-        manager.createGrave(graveForUpdate);
-        manager.createGrave(anotherGrave);
-
-        // Performa the update operation ...
-        graveForUpdate.setColumn(1);
-
-        // ... and save updated grave to database
-        manager.updateGrave(graveForUpdate);
-
-        // Check if grave was properly updated
-        assertThat(manager.getGrave(graveForUpdate.getId()))
-                .isEqualToComparingFieldByField(graveForUpdate);
-        // Check if updates didn't affected other records
-        assertThat(manager.getGrave(anotherGrave.getId()))
-                .isEqualToComparingFieldByField(anotherGrave);
-    }
-
-    // Now we want to test also other update operations. We could do it the same
-    // way as in updateGraveColumn(), but we would get couple of almost the same
-    // test methods, which would differ from each other only in single line
-    // with update operation. To avoid duplicit code and make the test better
-    // maintainable, we need to separate the update operation from the test
-    // method and to let us call test method multiple times with differen
-    // update operation.
-
-    // Let start with functional interface which will represent update operation
-    // BTW, we could use standard Consumer<T> functional interface (and I would
-    // probably do it in real test), but I decided to define my own interface to
-    // make the test better understandable
-    @FunctionalInterface
-    private static interface Operation<T> {
-        void callOn(T subjectOfOperation);
-    }
-
-    // The next step is implementation of generic test method. This method will
-    // perform update test with given update operation.
-    // The method is almost the same as updateGraveColumn(), the only difference
-    // is the line with calling given updateOperation.
-    private void testUpdateGrave(Operation<Grave> updateOperation) {
-        Grave sourceGrave = sampleSmallGraveBuilder().build();
-        Grave anotherGrave = sampleBigGraveBuilder().build();
-        manager.createGrave(sourceGrave);
-        manager.createGrave(anotherGrave);
-
-        updateOperation.callOn(sourceGrave);
-
-        manager.updateGrave(sourceGrave);
-        assertThat(manager.getGrave(sourceGrave.getId()))
-                .isEqualToComparingFieldByField(sourceGrave);
-        // Check if updates didn't affected other records
-        assertThat(manager.getGrave(anotherGrave.getId()))
-                .isEqualToComparingFieldByField(anotherGrave);
-    }
-
-    // Now we will call testUpdateGrave(...) method with different update
-    // operations. Update operation is defined with Lambda expression.
-
-    @Test
-    public void updateGraveRow() {
-        testUpdateGrave((grave) -> grave.setRow(3));
-    }
-
-    @Test
-    public void updateGraveCapacity() {
-        testUpdateGrave((grave) -> grave.setCapacity(5));
-    }
-
-    @Test
-    public void updateGraveNote() {
-        testUpdateGrave((grave) -> grave.setNote("Not so nice grave"));
-    }
-
-    @Test
-    public void updateGraveNoteToNull() {
-        testUpdateGrave((grave) -> grave.setNote(null));
-    }
-
-    // Test also if attemtpt to call update with invalid grave throws
-    // the correct exception.
-
     @Test(expected = IllegalArgumentException.class)
-    public void updateNullGrave() {
-        manager.updateGrave(null);
-    }
-
-    @Test
-    public void updateGraveWithNullId() {
-        Grave grave = sampleSmallGraveBuilder().id(null).build();
-        expectedException.expect(IllegalEntityException.class);
-        manager.updateGrave(grave);
-    }
-
-    @Test
-    public void updateGraveWithNonExistingId() {
-        Grave grave = sampleSmallGraveBuilder().id(1L).build();
-        expectedException.expect(IllegalEntityException.class);
-        manager.updateGrave(grave);
-    }
-
-    @Test
-    public void updateGraveWithNegativeColumn() {
-        Grave grave = sampleSmallGraveBuilder().build();
-        manager.createGrave(grave);
-        grave.setColumn(-1);
-        expectedException.expect(ValidationException.class);
-        manager.updateGrave(grave);
-    }
-
-    @Test
-    public void updateGraveWithNegativeRow() {
-        Grave grave = sampleSmallGraveBuilder().build();
-        manager.createGrave(grave);
-        grave.setRow(-1);
-        expectedException.expect(ValidationException.class);
-        manager.updateGrave(grave);
-    }
-
-    @Test
-    public void updateGraveWithZeroCapacity() {
-        Grave grave = sampleSmallGraveBuilder().build();
-        manager.createGrave(grave);
-        grave.setCapacity(0);
-        expectedException.expect(ValidationException.class);
-        manager.updateGrave(grave);
-    }
-
-    @Test
-    public void updateGraveWithNegativeCapacity() {
-        Grave grave = sampleSmallGraveBuilder().build();
-        manager.createGrave(grave);
-        grave.setCapacity(-1);
-        expectedException.expect(ValidationException.class);
-        manager.updateGrave(grave);
+    public void setZeroBatchSize() {
+        new GraveManagerImpl(ds).setBatchSize(0);
     }
 
-    //--------------------------------------------------------------------------
-    // Tests for GraveManager.deleteGrave(Grave) operation
-    //--------------------------------------------------------------------------
-
-    @Test
-    public void deleteGrave() {
-
-        Grave g1 = sampleSmallGraveBuilder().build();
-        Grave g2 = sampleBigGraveBuilder().build();
-        manager.createGrave(g1);
-        manager.createGrave(g2);
-
-        assertThat(manager.getGrave(g1.getId())).isNotNull();
-        assertThat(manager.getGrave(g2.getId())).isNotNull();
-
-        manager.deleteGrave(g1);
-
-        assertThat(manager.getGrave(g1.getId())).isNull();
-        assertThat(manager.getGrave(g2.getId())).isNotNull();
-
-    }
-
-    // Test also if attemtpt to call delete with invalid parameter throws
-    // the correct exception.
-
     @Test(expected = IllegalArgumentException.class)
-    public void deleteNullGrave() {
-        manager.deleteGrave(null);
-    }
-
-    @Test
-    public void deleteGraveWithNullId() {
-        Grave grave = sampleSmallGraveBuilder().id(null).build();
-        expectedException.expect(IllegalEntityException.class);
-        manager.deleteGrave(grave);
-    }
-
-    @Test
-    public void deleteGraveWithNonExistingId() {
-        Grave grave = sampleSmallGraveBuilder().id(1L).build();
-        expectedException.expect(IllegalEntityException.class);
-        manager.deleteGrave(grave);
+    public void setZeroFetchSize() {
+        new GraveManagerImpl(ds).setFetchSize(0);
     }
 
     //--------------------------------------------------------------------------
@@ -469,6 +116,12 @@ public class GraveManagerImplTest {
                 .hasCause(sqlException);
     }
 
+    @Test
+    public void createGravesWithSqlExceptionThrown() throws SQLException {
+        Grave grave = sampleSmallGraveBuilder().build();
+        testExpectedServiceFailureException((graveManager) -> graveManager.createGraves(Arrays.asList(grave)));
+    }
+
     @Test
     public void updateGraveWithSqlExceptionThrown() throws SQLException {
         Grave grave = sampleSmallGraveBuilder().build();
@@ -490,6 +143,16 @@ public class GraveManagerImplTest {
         testExpectedServiceFailureException((graveManager) -> graveManager.deleteGrave(grave));
     }
 
+    @Test
+    public void streamAllGravesWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((graveManager) -> graveManager.streamAllGraves());
+    }
+
+    @Test
+    public void findGravesPageWithSqlExceptionThrown() throws SQLException {
+        testExpectedServiceFailureException((graveManager) -> graveManager.findGravesPage(null, 10));
+    }
+
     @Test
     public void findAllGravesWithSqlExceptionThrown() throws SQLException {
         testExpectedServiceFailureException((graveManager) -> graveManager.findAllGraves());
@@ -0,0 +1,19 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import java.time.Clock;
+
+/**
+ * Tests for {@link InMemoryBodyManager}, the tests are inherited from
+ * {@link BodyManagerContractTest}.
+ *
+ * @author Petr Adámek
+ */
+public class InMemoryBodyManagerTest extends BodyManagerContractTest {
+
+    @Override
+    protected Managers createManagers(Clock clock) {
+        InMemoryStore store = new InMemoryStore(4);
+        return new Managers(new InMemoryGraveManager(store), new InMemoryBodyManager(store, clock),
+                new InMemoryCemeteryManager(store));
+    }
+}
@@ -0,0 +1,151 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static java.time.Month.*;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for snapshots of {@link InMemoryStore}.
+ *
+ * @author Petr Adámek
+ */
+public class InMemoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private InMemoryStore store;
+    private Grave g1, g2;
+    private Body b1, b2, b3;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("cemetery.snapshot");
+        store = new InMemoryStore(4);
+        g1 = new GraveBuilder().column(1).row(2).capacity(2).note("Grave 1").build();
+        g2 = new GraveBuilder().column(3).row(4).capacity(1).note(null).build();
+        new InMemoryGraveManager(store).createGraves(Arrays.asList(g1, g2));
+        b1 = new BodyBuilder().name("Body 1").gender(Gender.MALE).born(1900, JANUARY, 1).died(1950, MAY, 5).build();
+        b2 = new BodyBuilder().name("Body 2").gender(Gender.FEMALE).vampire(true).build();
+        b3 = new BodyBuilder().name("Body 3").gender(Gender.MALE).build();
+        new InMemoryBodyManager(store, Clock.systemUTC()).createBodies(Arrays.asList(b1, b2, b3));
+        new InMemoryCemeteryManager(store).putBodyIntoGrave(b1, g1);
+        new InMemoryCemeteryManager(store).putBodyIntoGrave(b2, g1);
+    }
+
+    @Test
+    public void saveAndLoadSnapshot() {
+        store.saveSnapshot(file);
+
+        InMemoryStore loaded = InMemoryStore.loadSnapshot(file);
+        InMemoryGraveManager graveManager = new InMemoryGraveManager(loaded);
+        InMemoryBodyManager bodyManager = new InMemoryBodyManager(loaded, Clock.systemUTC());
+        InMemoryCemeteryManager cemeteryManager = new InMemoryCemeteryManager(loaded);
+
+        assertThat(graveManager.findAllGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g2);
+        assertThat(bodyManager.findAllBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b1, b2, b3);
+        assertThat(cemeteryManager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(b1, b2);
+        assertThat(cemeteryManager.findGravesWithSomeFreeSpace()).containsExactly(g2);
+        assertThatThrownBy(() -> cemeteryManager.putBodyIntoGrave(b3, g1))
+                .hasMessageContaining("already full");
+
+        // ids continue after the loaded ones
+        Grave g3 = new GraveBuilder().column(5).row(6).build();
+        graveManager.createGrave(g3);
+        assertThat(g3.getId()).isGreaterThan(g2.getId());
+        assertThat(loaded.getStripes()).isEqualTo(4);
+    }
+
+    @Test
+    public void saveSnapshotWhileCreatingBodies() throws Exception {
+        InMemoryBodyManager bodyManager = new InMemoryBodyManager(store, Clock.systemUTC());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> creators = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                creators.add(executor.submit(() -> {
+                    for (int j = 0; j < 5000; j++) {
+                        bodyManager.createBody(new BodyBuilder().name("Body").gender(Gender.FEMALE).build());
+                    }
+                }));
+            }
+            // snapshots are saved while the bodies are being created
+            while (!creators.stream().allMatch(Future::isDone)) {
+                store.saveSnapshot(file);
+            }
+            for (Future<?> creator : creators) {
+                creator.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        InMemoryStore loaded = InMemoryStore.loadSnapshot(file);
+        InMemoryBodyManager loadedBodyManager = new InMemoryBodyManager(loaded, Clock.systemUTC());
+        List<Long> loadedIds = loadedBodyManager.findAllBodies().stream()
+                .map(Body::getId)
+                .collect(Collectors.toList());
+        Body body = new BodyBuilder().name("New body").gender(Gender.MALE).build();
+        loadedBodyManager.createBody(body);
+
+        assertThat(loadedIds).doesNotContain(body.getId());
+        assertThat(loadedBodyManager.findAllBodies()).hasSize(loadedIds.size() + 1);
+    }
+
+    @Test
+    public void scheduledSnapshotsAndClose() throws Exception {
+        store.scheduleSnapshots(file, Duration.ofMillis(10));
+        assertThatThrownBy(() -> store.scheduleSnapshots(file, Duration.ofMillis(10)))
+                .isInstanceOf(IllegalStateException.class);
+
+        new InMemoryCemeteryManager(store).putBodyIntoGrave(b3, g2);
+        store.close();
+
+        assertThat(store.getLastSnapshotFailure()).isNull();
+        InMemoryStore loaded = InMemoryStore.loadSnapshot(file);
+        assertThat(new InMemoryCemeteryManager(loaded).findGraveWithBody(b3)).isEqualTo(g2);
+    }
+
+    @Test
+    public void scheduleSnapshotsWithWrongArguments() {
+        assertThatThrownBy(() -> store.scheduleSnapshots(null, Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.scheduleSnapshots(file, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void loadInvalidSnapshot() throws IOException {
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertThatThrownBy(() -> InMemoryStore.loadSnapshot(file))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> InMemoryStore.loadSnapshot(folder.getRoot().toPath().resolve("missing")))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+}
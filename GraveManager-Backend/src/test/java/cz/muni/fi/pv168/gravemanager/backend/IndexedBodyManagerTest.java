@@ -0,0 +1,180 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static java.time.Month.*;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link IndexedBodyManager}.
+ *
+ * @author Petr Adámek
+ */
+public class IndexedBodyManagerTest {
+
+    private IndexedBodyManager manager;
+    private BodyManagerImpl bodyManager;
+    private DataSource ds;
+
+    private Body grandfather, father, son, unknownDates;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+        DatabaseSchema.migrate(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+
+        grandfather = new BodyBuilder().name("Grandfather").gender(Gender.MALE)
+                .born(1890, MARCH, 1).died(1960, MAY, 5).build();
+        father = new BodyBuilder().name("Father").gender(Gender.MALE)
+                .born(1920, JULY, 10).died(1990, JANUARY, 1).build();
+        son = new BodyBuilder().name("Son").gender(Gender.MALE)
+                .born(1960, MAY, 5).died(2010, DECEMBER, 24).build();
+        unknownDates = new BodyBuilder().name("Unknown").gender(Gender.FEMALE).build();
+        bodyManager.createBodies(Arrays.asList(grandfather, father));
+
+        // bodies created before the manager are loaded from the database
+        manager = new IndexedBodyManager(bodyManager);
+        manager.createBody(son);
+        manager.createBody(unknownDates);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Test
+    public void findBodiesAliveOn() {
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(1930, JANUARY, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(grandfather, father);
+        // both the day of birth and the day of death are included
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(1960, MAY, 5)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(grandfather, father, son);
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(2000, JANUARY, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(son);
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(1800, JANUARY, 1))).isEmpty();
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(2015, JANUARY, 1))).isEmpty();
+    }
+
+    @Test
+    public void findBodiesAliveBetween() {
+        assertThat(manager.findBodiesAliveBetween(LocalDate.of(1880, JANUARY, 1), LocalDate.of(1919, JANUARY, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(grandfather);
+        assertThat(manager.findBodiesAliveBetween(LocalDate.of(1989, JANUARY, 1), LocalDate.of(2020, JANUARY, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(father, son);
+        assertThat(manager.findBodiesAliveBetween(LocalDate.of(2020, JANUARY, 1), LocalDate.of(1880, JANUARY, 1)))
+                .isEmpty();
+    }
+
+    @Test
+    public void indexIsUpdated() {
+        son.setDied(LocalDate.of(1999, JANUARY, 1));
+        manager.updateBody(son);
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(2000, JANUARY, 1))).isEmpty();
+
+        unknownDates.setBorn(LocalDate.of(1995, JUNE, 1));
+        unknownDates.setDied(LocalDate.of(2005, JUNE, 1));
+        manager.updateBody(unknownDates);
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(2000, JANUARY, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(unknownDates);
+
+        manager.deleteBody(father);
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(1960, MAY, 5)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(grandfather, son);
+    }
+
+    @Test
+    public void reloadFindsBodiesModifiedBypassingManager() {
+        Body mother = new BodyBuilder().name("Mother").gender(Gender.FEMALE)
+                .born(1925, APRIL, 2).died(1995, APRIL, 3).build();
+        bodyManager.createBody(mother);
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(1930, JANUARY, 1))).hasSize(2);
+
+        manager.reload();
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(1930, JANUARY, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(grandfather, father, mother);
+    }
+
+    @Test
+    public void returnedBodiesAreCopies() {
+        manager.findBodiesAliveOn(LocalDate.of(2000, JANUARY, 1)).get(0).setName("Changed");
+
+        assertThat(manager.findBodiesAliveOn(LocalDate.of(2000, JANUARY, 1)).get(0).getName()).isEqualTo("Son");
+    }
+
+    @Test
+    public void findBodiesAliveBetweenMatchesFullScan() {
+        Random random = new Random(42);
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            LocalDate born = LocalDate.of(1700, JANUARY, 1).plusDays(random.nextInt(60_000));
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.MALE)
+                    .born(born).died(born.plusDays(random.nextInt(40_000))).build());
+        }
+        manager.createBodies(bodies);
+        // some bodies are moved and deleted to exercise removal from the tree
+        for (int i = 0; i < 100; i++) {
+            Body body = bodies.get(i);
+            body.setDied(body.getBorn().plusDays(random.nextInt(10_000)));
+            manager.updateBody(body);
+        }
+        for (Body body : bodies.subList(100, 150)) {
+            manager.deleteBody(body);
+        }
+        List<Body> all = manager.findAllBodies();
+
+        for (int i = 0; i < 50; i++) {
+            LocalDate from = LocalDate.of(1700, JANUARY, 1).plusDays(random.nextInt(100_000));
+            LocalDate to = from.plusDays(random.nextInt(5_000));
+            List<Long> expected = all.stream()
+                    .filter((body) -> body.getBorn() != null && body.getDied() != null)
+                    .filter((body) -> !body.getBorn().isAfter(to) && !body.getDied().isBefore(from))
+                    .sorted(Comparator.comparing(Body::getBorn).thenComparing(Body::getId))
+                    .map(Body::getId)
+                    .collect(Collectors.toList());
+            assertThat(manager.findBodiesAliveBetween(from, to))
+                    .extracting(Body::getId)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void wrongArguments() {
+        assertThatThrownBy(() -> new IndexedBodyManager(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findBodiesAliveOn(null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findBodiesAliveBetween(null, LocalDate.of(2000, JANUARY, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findBodiesAliveBetween(LocalDate.of(2000, JANUARY, 1), null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
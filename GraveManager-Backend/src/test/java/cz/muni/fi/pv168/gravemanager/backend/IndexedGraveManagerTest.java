@@ -0,0 +1,136 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link IndexedGraveManager}.
+ *
+ * @author Petr Adámek
+ */
+public class IndexedGraveManagerTest {
+
+    private IndexedGraveManager manager;
+    private GraveManagerImpl graveManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private BodyManagerImpl bodyManager;
+    private DataSource ds;
+
+    private Grave g1, g2, g3, farGrave;
+
+    @Before
+    public void setUp() throws SQLException {
+        EmbeddedDataSource ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-test");
+        ds.setCreateDatabase("create");
+        this.ds = ds;
+        DatabaseSchema.migrate(ds);
+        graveManager = new GraveManagerImpl(ds);
+        cemeteryManager = new CemeteryManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+
+        g1 = new GraveBuilder().row(2).column(1).capacity(1).note("Grave 1").build();
+        g2 = new GraveBuilder().row(9).column(8).capacity(2).note("Grave 2").build();
+        g3 = new GraveBuilder().row(2).column(2).capacity(3).note("Grave 3").build();
+        farGrave = new GraveBuilder().row(1000).column(5000).capacity(1).note("Far grave").build();
+        graveManager.createGrave(g1);
+        graveManager.createGrave(g2);
+
+        // graves created before the manager are loaded from the database
+        manager = new IndexedGraveManager(graveManager, ds);
+        manager.createGrave(g3);
+        manager.createGrave(farGrave);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Test
+    public void findGraveAt() {
+        assertThat(manager.findGraveAt(2, 1))
+                .isEqualToComparingFieldByField(g1);
+        assertThat(manager.findGraveAt(2, 2))
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findGraveAt(1000, 5000))
+                .isEqualToComparingFieldByField(farGrave);
+        assertThat(manager.findGraveAt(1, 2)).isNull();
+    }
+
+    @Test
+    public void findGravesInRectangle() {
+        assertThat(manager.findGravesInRectangle(9, 8, 2, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g2, g3);
+        assertThat(manager.findGravesInRectangle(0, 0, 100, 100))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g2, g3);
+        assertThat(manager.findGravesInRectangle(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g2, g3, farGrave);
+        assertThat(manager.findGravesInRectangle(3, 3, 8, 8)).isEmpty();
+    }
+
+    @Test
+    public void indexIsUpdated() {
+        g1.setRow(50);
+        g1.setColumn(60);
+        manager.updateGrave(g1);
+        manager.deleteGrave(g3);
+
+        assertThat(manager.findGraveAt(2, 1)).isNull();
+        assertThat(manager.findGraveAt(2, 2)).isNull();
+        assertThat(manager.findGraveAt(50, 60))
+                .isEqualToComparingFieldByField(g1);
+    }
+
+    @Test
+    public void returnedGravesAreCopies() {
+        manager.findGraveAt(2, 1).setRow(100);
+
+        assertThat(manager.findGraveAt(2, 1))
+                .isEqualToComparingFieldByField(g1);
+    }
+
+    @Test
+    public void findNearestGraveWithFreeSpace() {
+        assertThat(manager.findNearestGraveWithFreeSpace(2, 0))
+                .isEqualToComparingFieldByField(g1);
+        assertThat(manager.findNearestGraveWithFreeSpace(100, 100))
+                .isEqualToComparingFieldByField(g2);
+        assertThat(manager.findNearestGraveWithFreeSpace(900, 4900))
+                .isEqualToComparingFieldByField(farGrave);
+
+        Body body = new BodyBuilder().name("Body").gender(Gender.MALE).build();
+        bodyManager.createBody(body);
+        cemeteryManager.putBodyIntoGrave(body, g1);
+
+        assertThat(manager.findNearestGraveWithFreeSpace(2, 0))
+                .isEqualToComparingFieldByField(g3);
+    }
+
+    @Test
+    public void findNearestGraveWithFreeSpaceWhenAllGravesAreFull() {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.MALE).build());
+        }
+        bodyManager.createBodies(bodies);
+        cemeteryManager.buryAll(bodies, PlacementPolicy.firstFit());
+
+        assertThat(manager.findNearestGraveWithFreeSpace(2, 0)).isNull();
+    }
+}
@@ -0,0 +1,21 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+/**
+ * Grave, body and cemetery managers working with the same storage. Contract
+ * tests, e.g. {@link CemeteryManagerContractTest}, get them from the factory
+ * method implemented for each storage.
+ *
+ * @author Petr Adámek
+ */
+final class Managers {
+
+    final GraveManager graveManager;
+    final BodyManager bodyManager;
+    final CemeteryManager cemeteryManager;
+
+    Managers(GraveManager graveManager, BodyManager bodyManager, CemeteryManager cemeteryManager) {
+        this.graveManager = graveManager;
+        this.bodyManager = bodyManager;
+        this.cemeteryManager = cemeteryManager;
+    }
+}
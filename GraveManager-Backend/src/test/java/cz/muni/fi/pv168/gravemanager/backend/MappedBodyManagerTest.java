@@ -0,0 +1,49 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ValidationException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link MappedBodyManager}, the tests of the contract are
+ * inherited from {@link BodyManagerContractTest}.
+ *
+ * @author Petr Adámek
+ */
+public class MappedBodyManagerTest extends BodyManagerContractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedFileStore store;
+
+    @Override
+    protected Managers createManagers(Clock clock) throws IOException {
+        store = MappedFileStore.open(folder.newFolder().toPath());
+        return new Managers(new MappedGraveManager(store), new MappedBodyManager(store, clock),
+                new MappedCemeteryManager(store));
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void createBodyWithTooLongName() {
+        Body body = sampleJoeBodyBuilder()
+                .name(String.join("", Collections.nCopies(MappedFileStore.MAX_TEXT_LENGTH + 1, "x")))
+                .build();
+        assertThatThrownBy(() -> manager.createBody(body))
+                .isInstanceOf(ValidationException.class);
+        assertThat(manager.findAllBodies()).isEmpty();
+    }
+}
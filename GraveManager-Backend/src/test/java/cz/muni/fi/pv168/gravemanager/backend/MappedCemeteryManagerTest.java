@@ -0,0 +1,34 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Clock;
+
+/**
+ * Tests for {@link MappedCemeteryManager}, the tests are inherited from
+ * {@link CemeteryManagerContractTest}.
+ *
+ * @author Petr Adámek
+ */
+public class MappedCemeteryManagerTest extends CemeteryManagerContractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedFileStore store;
+
+    @Override
+    protected Managers createManagers(Clock clock) throws IOException {
+        store = MappedFileStore.open(folder.newFolder().toPath());
+        return new Managers(new MappedGraveManager(store), new MappedBodyManager(store, clock),
+                new MappedCemeteryManager(store));
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+}
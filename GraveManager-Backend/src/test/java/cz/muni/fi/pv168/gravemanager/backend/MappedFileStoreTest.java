@@ -0,0 +1,125 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+
+import static java.time.Month.*;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for persistence of {@link MappedFileStore}.
+ *
+ * @author Petr Adámek
+ */
+public class MappedFileStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private MappedFileStore store;
+    private Grave g1, g2;
+    private Body b1, b2, b3;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath().resolve("store");
+        store = MappedFileStore.open(directory);
+        g1 = new GraveBuilder().column(1).row(2).capacity(2).note("Hrob č. 1").build();
+        g2 = new GraveBuilder().column(3).row(4).capacity(1).note(null).build();
+        new MappedGraveManager(store).createGraves(Arrays.asList(g1, g2));
+        b1 = new BodyBuilder().name("Body 1").gender(Gender.MALE).born(1900, JANUARY, 1).died(1950, MAY, 5).build();
+        b2 = new BodyBuilder().name("Body 2").gender(Gender.FEMALE).vampire(true).build();
+        b3 = new BodyBuilder().name("Body 3").gender(Gender.MALE).build();
+        new MappedBodyManager(store, Clock.systemUTC()).createBodies(Arrays.asList(b1, b2, b3));
+        new MappedCemeteryManager(store).buryAll(Arrays.asList(b1, b2), PlacementPolicy.firstFit());
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private void reopen() {
+        store.close();
+        store = MappedFileStore.open(directory);
+    }
+
+    @Test
+    public void reopenStore() {
+        reopen();
+
+        MappedCemeteryManager cemeteryManager = new MappedCemeteryManager(store);
+        assertThat(new MappedGraveManager(store).findAllGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g1, g2);
+        assertThat(new MappedBodyManager(store, Clock.systemUTC()).findAllBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b1, b2, b3);
+        assertThat(cemeteryManager.findBodiesInGrave(g1))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(b1, b2);
+        assertThat(cemeteryManager.findGravesWithSomeFreeSpace()).containsExactly(g2);
+        assertThatThrownBy(() -> cemeteryManager.putBodyIntoGrave(b3, g1))
+                .hasMessageContaining("already full");
+    }
+
+    @Test
+    public void idsAreNotReused() {
+        MappedBodyManager bodyManager = new MappedBodyManager(store, Clock.systemUTC());
+        bodyManager.deleteBody(b3);
+        store.compact();
+        reopen();
+
+        Body b4 = new BodyBuilder().name("Body 4").gender(Gender.FEMALE).build();
+        new MappedBodyManager(store, Clock.systemUTC()).createBody(b4);
+
+        assertThat(b4.getId()).isGreaterThan(b3.getId());
+    }
+
+    @Test
+    public void compact() {
+        MappedGraveManager graveManager = new MappedGraveManager(store);
+        for (int i = 0; i < 100; i++) {
+            g2.setNote("Version " + i);
+            graveManager.updateGrave(g2);
+        }
+        long size = store.getSize();
+
+        store.compact();
+
+        assertThat(store.getSize()).isLessThan(size);
+        reopen();
+        assertThat(new MappedGraveManager(store).getGrave(g2.getId())).isEqualToComparingFieldByField(g2);
+        assertThat(new MappedCemeteryManager(store).findGraveWithBody(b2)).isEqualTo(g1);
+    }
+
+    @Test
+    public void sync() {
+        store.sync();
+
+        assertThat(Files.exists(directory.resolve(MappedFileStore.GRAVE_FILE))).isTrue();
+        assertThat(Files.exists(directory.resolve(MappedFileStore.BODY_FILE))).isTrue();
+    }
+
+    @Test
+    public void openInvalidStore() throws IOException {
+        Path invalid = folder.newFolder().toPath();
+        Files.write(invalid.resolve(MappedFileStore.BODY_FILE), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertThatThrownBy(() -> MappedFileStore.open(invalid))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThatThrownBy(() -> MappedFileStore.open(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
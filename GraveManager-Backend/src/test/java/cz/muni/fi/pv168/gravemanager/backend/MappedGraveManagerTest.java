@@ -0,0 +1,49 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ValidationException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link MappedGraveManager}, the tests of the contract are
+ * inherited from {@link GraveManagerContractTest}.
+ *
+ * @author Petr Adámek
+ */
+public class MappedGraveManagerTest extends GraveManagerContractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedFileStore store;
+
+    @Override
+    protected Managers createManagers(Clock clock) throws IOException {
+        store = MappedFileStore.open(folder.newFolder().toPath());
+        return new Managers(new MappedGraveManager(store), new MappedBodyManager(store, clock),
+                new MappedCemeteryManager(store));
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void createGraveWithTooLongNote() {
+        Grave grave = sampleSmallGraveBuilder()
+                .note(String.join("", Collections.nCopies(MappedFileStore.MAX_TEXT_LENGTH + 1, "x")))
+                .build();
+        assertThatThrownBy(() -> manager.createGrave(grave))
+                .isInstanceOf(ValidationException.class);
+        assertThat(manager.findAllGraves()).isEmpty();
+    }
+}
@@ -0,0 +1,204 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * This test checks that queries of the managers use indexes. Runtime
+ * statistics of Derby are enabled on single shared connection and the
+ * execution plan of the last executed statement is checked after each
+ * manager call. Queries reading the whole table (findAll*) are not checked.
+ *
+ * @author Petr Adámek
+ */
+public class QueryPlanTest {
+
+    private static final int GRAVES = 200;
+    private static final int CAPACITY = 5;
+    private static final int BODIES = 1000;
+
+    private EmbeddedDataSource realDataSource;
+    private Connection connection;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private List<Grave> graves;
+    private List<Body> bodies;
+
+    @Before
+    public void setUp() throws SQLException {
+        realDataSource = new EmbeddedDataSource();
+        realDataSource.setDatabaseName("memory:gravemgr-test");
+        realDataSource.setCreateDatabase("create");
+        DatabaseSchema.migrate(realDataSource);
+
+        connection = realDataSource.getConnection();
+        DataSource ds = prepareSingleConnectionDataSource(connection);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemDefaultZone());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+
+        prepareTestData();
+        execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'GRAVE', NULL)");
+        execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'BODY', NULL)");
+        execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        connection.close();
+        DBUtils.executeSqlScript(realDataSource, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    /**
+     * Returns DataSource which always returns the same connection, closing
+     * of the connection is ignored.
+     */
+    private static DataSource prepareSingleConnectionDataSource(Connection connection) throws SQLException {
+        Connection unclosableConnection = (Connection) Proxy.newProxyInstance(
+                QueryPlanTest.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+        DataSource ds = mock(DataSource.class);
+        when(ds.getConnection()).thenReturn(unclosableConnection);
+        return ds;
+    }
+
+    private void prepareTestData() {
+        graves = new ArrayList<>();
+        for (int i = 0; i < GRAVES; i++) {
+            graves.add(new GraveBuilder().row(i / 20).column(i % 20).capacity(CAPACITY).build());
+        }
+        graveManager.createGraves(graves);
+
+        bodies = new ArrayList<>();
+        for (int i = 0; i < BODIES; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.FEMALE).build());
+        }
+        bodyManager.createBodies(bodies);
+        // most of graves are full and most of bodies are buried
+        cemeteryManager.buryAll(bodies.subList(0, BODIES - 2 * CAPACITY), PlacementPolicy.firstFit());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(sql)) {
+            st.execute();
+        }
+    }
+
+    private String lastExecutionPlan() throws SQLException {
+        try (CallableStatement st = connection.prepareCall("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()");
+             ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    /**
+     * Checks the plan of the last executed statement and returns it, the
+     * plan can't be read again as reading of the plan is a statement too.
+     */
+    private String assertIndexUsed(String... tables) throws SQLException {
+        String plan = lastExecutionPlan();
+        for (String table : tables) {
+            assertThat(plan).contains("Index Scan ResultSet for " + table);
+        }
+        assertThat(plan).doesNotContain("Table Scan ResultSet");
+        return plan;
+    }
+
+    @Test
+    public void getGrave() throws SQLException {
+        graveManager.getGrave(graves.get(7).getId());
+        assertIndexUsed("GRAVE");
+    }
+
+    @Test
+    public void getBody() throws SQLException {
+        bodyManager.getBody(bodies.get(7).getId());
+        assertIndexUsed("BODY");
+    }
+
+    @Test
+    public void findGraveWithBody() throws SQLException {
+        cemeteryManager.findGraveWithBody(bodies.get(7));
+        assertIndexUsed("BODY", "GRAVE");
+    }
+
+    @Test
+    public void findBodiesInGrave() throws SQLException {
+        cemeteryManager.findBodiesInGrave(graves.get(7));
+        assertIndexUsed("BODY", "GRAVE");
+    }
+
+    @Test
+    public void findBodiesInGraves() throws SQLException {
+        cemeteryManager.findBodiesInGraves(graves.subList(10, 20));
+        String plan = assertIndexUsed("BODY");
+        // index of the foreign key, not any extra index
+        assertThat(plan).contains("Index Scan ResultSet for BODY using constraint");
+    }
+
+    @Test
+    public void findGravesWithBodies() throws SQLException {
+        cemeteryManager.findGravesWithBodies(bodies.subList(10, 20));
+        String plan = assertIndexUsed("BODY", "GRAVE");
+        // bodies are found by primary key, then their graves by primary key
+        assertThat(plan)
+                .contains("Nested Loop")
+                .contains("Index Scan ResultSet for BODY using constraint")
+                .contains("Index Scan ResultSet for GRAVE using constraint");
+    }
+
+    @Test
+    public void findUnburiedBodies() throws SQLException {
+        cemeteryManager.findUnburiedBodies();
+        assertIndexUsed("BODY");
+    }
+
+    @Test
+    public void findEmptyGraves() throws SQLException {
+        cemeteryManager.findEmptyGraves();
+        assertIndexUsed("GRAVE");
+    }
+
+    @Test
+    public void findGravesWithSomeFreeSpace() throws SQLException {
+        cemeteryManager.findGravesWithSomeFreeSpace();
+        assertIndexUsed("GRAVE");
+    }
+
+    @Test
+    public void findBodiesDiedBetween() throws SQLException {
+        bodyManager.findBodiesDiedBetween(LocalDate.of(1990, 1, 1), LocalDate.of(1999, 12, 31));
+        assertIndexUsed("BODY");
+    }
+}
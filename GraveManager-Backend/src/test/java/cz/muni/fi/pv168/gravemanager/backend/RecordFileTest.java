@@ -0,0 +1,160 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.ServiceFailureException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link RecordFile}.
+ *
+ * @author Petr Adámek
+ */
+public class RecordFileTest {
+
+    private static final int PAYLOAD_SIZE = 8;
+    // file header, then state, id, payload and checksum of each record
+    private static final int FIRST_RECORD = 16;
+    private static final int RECORD_SIZE = 1 + 8 + PAYLOAD_SIZE + 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve("records.dat");
+    }
+
+    private static ByteBuffer payload(long value) {
+        return (ByteBuffer) ByteBuffer.allocate(PAYLOAD_SIZE).putLong(value).flip();
+    }
+
+    private static Map<Long, ByteBuffer> batch(long... idsAndValues) {
+        Map<Long, ByteBuffer> records = new LinkedHashMap<>();
+        for (int i = 0; i < idsAndValues.length; i += 2) {
+            records.put(idsAndValues[i], idsAndValues[i + 1] < 0 ? null : payload(idsAndValues[i + 1]));
+        }
+        return records;
+    }
+
+    @Test
+    public void appendAndRead() {
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            records.append(batch(2, 20, 1, 10, 3, 30));
+            records.append(batch(2, 21));
+            records.append(batch(3, -1));
+
+            assertThat(records.ids()).containsExactly(1L, 2L);
+            assertThat(records.read(1).getLong(0)).isEqualTo(10);
+            assertThat(records.read(2).getLong(0)).isEqualTo(21);
+            assertThat(records.read(3)).isNull();
+            assertThat(records.getMaxId()).isEqualTo(3);
+            assertThat(records.getSize()).isEqualTo(FIRST_RECORD + 5 * RECORD_SIZE);
+        }
+    }
+
+    @Test
+    public void reopen() {
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            records.append(batch(1, 10, 2, 20));
+            records.append(batch(2, -1));
+        }
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            assertThat(records.ids()).containsExactly(1L);
+            assertThat(records.read(1).getLong(0)).isEqualTo(10);
+            assertThat(records.getMaxId()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void growBeyondInitialMapping() {
+        int count = 10_000;
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            for (long id = 1; id <= count; id++) {
+                records.append(batch(id, id * 10));
+            }
+        }
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            assertThat(records.ids()).hasSize(count);
+            assertThat(records.read(count).getLong(0)).isEqualTo(count * 10L);
+        }
+    }
+
+    @Test
+    public void recoverFromTornBatch() throws IOException {
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            records.append(batch(1, 10));
+            records.append(batch(2, 20, 3, 30, 1, 11));
+        }
+        // the second record of the second batch was not completely written
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(FIRST_RECORD + 2 * RECORD_SIZE + 9);
+            raf.writeLong(999);
+        }
+
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            assertThat(records.ids()).containsExactly(1L);
+            assertThat(records.read(1).getLong(0)).isEqualTo(10);
+            assertThat(records.getSize()).isEqualTo(FIRST_RECORD + RECORD_SIZE);
+            records.append(batch(4, 40));
+        }
+        // the rest of the torn batch was erased, so it is not replayed after new records
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            assertThat(records.ids()).containsExactly(1L, 4L);
+            assertThat(records.read(1).getLong(0)).isEqualTo(10);
+        }
+    }
+
+    @Test
+    public void compact() {
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            records.append(batch(1, 10, 2, 20, 3, 30));
+            records.append(batch(1, 11, 3, -1));
+
+            records.compact();
+
+            assertThat(records.getSize()).isEqualTo(FIRST_RECORD + 3 * RECORD_SIZE);
+            assertThat(records.ids()).containsExactly(1L, 2L);
+            assertThat(records.read(1).getLong(0)).isEqualTo(11);
+            records.append(batch(4, 40));
+        }
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            assertThat(records.ids()).containsExactly(1L, 2L, 4L);
+            assertThat(records.getMaxId()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void compactKeepsHighestDeletedId() {
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            records.append(batch(1, 10, 2, 20));
+            records.append(Collections.singletonMap(2L, null));
+            records.compact();
+        }
+        try (RecordFile records = new RecordFile(file, PAYLOAD_SIZE)) {
+            assertThat(records.ids()).containsExactly(1L);
+            assertThat(records.getMaxId()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void openFileWithDifferentFormat() {
+        new RecordFile(file, PAYLOAD_SIZE).close();
+
+        assertThatThrownBy(() -> new RecordFile(file, PAYLOAD_SIZE + 1))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+}
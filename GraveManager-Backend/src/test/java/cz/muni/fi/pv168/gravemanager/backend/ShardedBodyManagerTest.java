@@ -0,0 +1,151 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.Page;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cz.muni.fi.pv168.gravemanager.backend.ShardedGraveManagerTest.dropShards;
+import static cz.muni.fi.pv168.gravemanager.backend.ShardedGraveManagerTest.prepareShards;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link ShardedBodyManager}.
+ *
+ * @author Petr Adámek
+ */
+public class ShardedBodyManagerTest {
+
+    private List<DataSource> dataSources;
+    private Shards shards;
+    private ShardedBodyManager manager;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSources = prepareShards(3);
+        shards = new Shards(dataSources, ShardRouting.byRowHash(), Clock.systemUTC());
+        manager = new ShardedBodyManager(shards);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        shards.close();
+        dropShards(dataSources);
+    }
+
+    private List<Body> createBodies(int count) {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Body body = new BodyBuilder().name("Body " + i).gender(i % 2 == 0 ? Gender.MALE : Gender.FEMALE)
+                    .born(LocalDate.of(1900, 1, 1)).died(LocalDate.of(1950 + i, 1, 1)).vampire(i % 5 == 0).build();
+            manager.createBody(body);
+            bodies.add(body);
+        }
+        return bodies;
+    }
+
+    @Test
+    public void bodiesAreSpreadOverShards() {
+        List<Body> bodies = createBodies(9);
+
+        assertThat(bodies).extracting(Body::getId).doesNotHaveDuplicates();
+        assertThat(bodies.stream().map((body) -> shards.shardOfId(body.getId())).distinct().count()).isEqualTo(3);
+        for (DataSource ds : dataSources) {
+            assertThat(new BodyManagerImpl(ds, Clock.systemUTC()).findAllBodies()).hasSize(3);
+        }
+        for (Body body : bodies) {
+            assertThat(manager.getBody(body.getId())).isEqualToComparingFieldByField(body);
+        }
+        assertThat(manager.findAllBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(bodies);
+    }
+
+    @Test
+    public void createBodiesStoresThemIntoOneShard() {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            bodies.add(new BodyBuilder().name("Body " + i).gender(Gender.MALE).build());
+        }
+        manager.createBodies(bodies);
+
+        assertThat(bodies.stream().map((body) -> shards.shardOfId(body.getId())).distinct().count()).isEqualTo(1);
+        assertThat(manager.findAllBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(bodies);
+    }
+
+    @Test
+    public void updateAndDeleteBody() {
+        List<Body> bodies = createBodies(3);
+        Body body = bodies.get(1);
+
+        body.setName("Updated");
+        manager.updateBody(body);
+        assertThat(manager.getBody(body.getId())).isEqualToComparingFieldByField(body);
+
+        manager.deleteBody(body);
+        assertThat(manager.getBody(body.getId())).isNull();
+        assertThat(manager.findAllBodies()).hasSize(2);
+    }
+
+    @Test
+    public void findBodiesPageAndStream() {
+        List<Body> bodies = createBodies(20);
+
+        List<Body> found = new ArrayList<>();
+        for (Page<Body> page = manager.findBodiesPage(null, 6); ; page = manager.findBodiesPage(page.getNextToken(), 6)) {
+            found.addAll(page.getItems());
+            if (!page.hasNext()) {
+                break;
+            }
+        }
+        assertThat(found).extracting(Body::getId).isSorted();
+        assertThat(found)
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(bodies);
+
+        try (Stream<Body> stream = manager.streamAllBodies()) {
+            assertThat(stream.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(bodies);
+        }
+    }
+
+    @Test
+    public void findAllBodiesAsTableMergesShards() {
+        List<Body> bodies = createBodies(10);
+
+        BodyTable table = manager.findAllBodiesAsTable();
+
+        assertThat(table.size()).isEqualTo(10);
+        assertThat(table.distinctNameCount()).isEqualTo(10);
+        assertThat(table.count(table.vampires())).isEqualTo(2);
+        List<Body> rows = new ArrayList<>();
+        for (int row = 0; row < table.size(); row++) {
+            rows.add(table.toBody(row));
+        }
+        assertThat(rows)
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(bodies);
+    }
+
+    @Test
+    public void findBodiesDiedBetweenMergesShards() {
+        List<Body> bodies = createBodies(10);
+
+        assertThat(manager.findBodiesDiedBetween(LocalDate.of(1952, 1, 1), LocalDate.of(1956, 1, 1)))
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(bodies.subList(2, 7));
+    }
+}
@@ -0,0 +1,284 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cz.muni.fi.pv168.gravemanager.backend.ShardedGraveManagerTest.dropShards;
+import static cz.muni.fi.pv168.gravemanager.backend.ShardedGraveManagerTest.prepareShards;
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link ShardedCemeteryManager}.
+ *
+ * @author Petr Adámek
+ */
+public class ShardedCemeteryManagerTest {
+
+    private List<DataSource> dataSources;
+    private Shards shards;
+    private ShardedGraveManager graveManager;
+    private ShardedBodyManager bodyManager;
+    private ShardedCemeteryManager manager;
+
+    private Grave g1, g2, g3;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSources = prepareShards(3);
+        shards = new Shards(dataSources, ShardRouting.byRowRanges(10, 20), Clock.systemUTC());
+        graveManager = new ShardedGraveManager(shards);
+        bodyManager = new ShardedBodyManager(shards);
+        manager = new ShardedCemeteryManager(shards);
+
+        g1 = new GraveBuilder().row(1).column(1).capacity(1).build();
+        g2 = new GraveBuilder().row(11).column(1).capacity(2).build();
+        g3 = new GraveBuilder().row(21).column(1).capacity(3).build();
+        graveManager.createGraves(Arrays.asList(g1, g2, g3));
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        shards.close();
+        dropShards(dataSources);
+    }
+
+    private List<Body> createBodies(int count) {
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Body body = new BodyBuilder().name("Body " + i).gender(Gender.MALE).build();
+            bodyManager.createBody(body);
+            bodies.add(body);
+        }
+        return bodies;
+    }
+
+    @Test
+    public void bodyIsMovedIntoShardOfGrave() {
+        List<Body> bodies = createBodies(3);
+        Body body = bodies.stream()
+                .filter((b) -> shards.shardOfBody(b.getId()) != shards.shardOfId(g3.getId()))
+                .findFirst().get();
+        Long id = body.getId();
+
+        manager.putBodyIntoGrave(body, g3);
+
+        assertThat(body.getId()).isEqualTo(id);
+        assertThat(shards.shardOfBody(body.getId())).isEqualTo(shards.shardOfId(g3.getId()));
+        assertThat(bodyManager.getBody(id)).isEqualToComparingFieldByField(body);
+        assertThat(bodyManager.findAllBodies()).hasSize(3);
+        assertThat(manager.findGraveWithBody(body)).isEqualToComparingFieldByField(g3);
+        assertThat(manager.findBodiesInGrave(g3))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(body);
+        assertThat(manager.findUnburiedBodies()).hasSize(2).doesNotContain(body);
+
+        manager.removeBodyFromGrave(body, g3);
+        assertThat(manager.findGraveWithBody(body)).isNull();
+        assertThat(manager.findUnburiedBodies()).hasSize(3);
+    }
+
+    @Test
+    public void putBodyIntoFullGrave() {
+        List<Body> bodies = createBodies(2);
+        manager.putBodyIntoGrave(bodies.get(0), g1);
+
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(bodies.get(1), g1))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThatThrownBy(() -> manager.putBodyIntoGrave(bodies.get(0), g2))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findGraveWithBody(bodies.get(0))).isEqualToComparingFieldByField(g1);
+        assertThat(bodyManager.findAllBodies()).hasSize(2);
+    }
+
+    @Test
+    public void scatterGatherQueries() {
+        List<Body> bodies = createBodies(4);
+        manager.putBodyIntoGrave(bodies.get(0), g1);
+        manager.putBodyIntoGrave(bodies.get(1), g2);
+
+        assertThat(manager.findEmptyGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g3);
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(g2, g3);
+        assertThat(manager.findUnburiedBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(bodies.get(2), bodies.get(3));
+        try (Stream<Body> stream = manager.streamUnburiedBodies()) {
+            assertThat(stream.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrder(bodies.get(2), bodies.get(3));
+        }
+
+        Map<Grave, List<Body>> bodiesInGraves = manager.findBodiesInGraves(Arrays.asList(g3, g2, g1));
+        assertThat(bodiesInGraves.keySet()).containsExactly(g3, g2, g1);
+        assertThat(bodiesInGraves.get(g3)).isEmpty();
+        assertThat(bodiesInGraves.get(g2)).usingFieldByFieldElementComparator().containsExactly(bodies.get(1));
+        assertThat(bodiesInGraves.get(g1)).usingFieldByFieldElementComparator().containsExactly(bodies.get(0));
+
+        Map<Body, Grave> gravesWithBodies = manager.findGravesWithBodies(bodies);
+        assertThat(gravesWithBodies.keySet()).containsExactlyElementsOf(bodies);
+        assertThat(gravesWithBodies.get(bodies.get(0))).isEqualToComparingFieldByField(g1);
+        assertThat(gravesWithBodies.get(bodies.get(1))).isEqualToComparingFieldByField(g2);
+        assertThat(gravesWithBodies.get(bodies.get(2))).isNull();
+    }
+
+    @Test
+    public void buryAllChoosesGravesFromAllShards() {
+        List<Body> bodies = createBodies(5);
+
+        Map<Body, Grave> placements = manager.buryAll(bodies, PlacementPolicy.bestFit());
+
+        assertThat(placements.keySet()).containsExactlyElementsOf(bodies);
+        assertThat(placements.values()).containsExactly(g1, g2, g2, g3, g3);
+        for (Map.Entry<Body, Grave> placement : placements.entrySet()) {
+            assertThat(shards.shardOfBody(placement.getKey().getId()))
+                    .isEqualTo(shards.shardOfId(placement.getValue().getId()));
+            assertThat(manager.findGraveWithBody(placement.getKey())).isEqualTo(placement.getValue());
+        }
+        assertThat(manager.findGravesWithSomeFreeSpace())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(g3);
+        assertThat(manager.findUnburiedBodies()).isEmpty();
+    }
+
+    @Test
+    public void buryAllWithoutEnoughSpace() {
+        List<Body> bodies = createBodies(7);
+
+        assertThatThrownBy(() -> manager.buryAll(bodies, PlacementPolicy.firstFit()))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.findUnburiedBodies()).hasSize(7);
+        assertThat(manager.findEmptyGraves()).hasSize(3);
+    }
+
+    @Test
+    public void removeBodyFromGraveInAnotherShard() {
+        List<Body> bodies = createBodies(1);
+        manager.putBodyIntoGrave(bodies.get(0), g1);
+
+        assertThatThrownBy(() -> manager.removeBodyFromGrave(bodies.get(0), g2))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void buryAllKeepsIdsOfBodies() {
+        List<Body> bodies = createBodies(5);
+        List<Long> ids = bodies.stream().map(Body::getId).collect(Collectors.toList());
+        Set<Body> set = new HashSet<>(bodies);
+
+        manager.buryAll(bodies, PlacementPolicy.bestFit());
+
+        assertThat(bodies).extracting(Body::getId).containsExactlyElementsOf(ids);
+        for (Body body : bodies) {
+            assertThat(set).contains(body);
+            assertThat(bodyManager.getBody(body.getId())).isEqualToComparingFieldByField(body);
+        }
+        assertThat(bodyManager.findAllBodies())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(bodies);
+    }
+
+    @Test
+    public void movedBodiesAreFoundAfterReopeningShards() {
+        List<Body> bodies = createBodies(6);
+        manager.buryAll(bodies.subList(0, 3), PlacementPolicy.firstFit());
+        // moved away and back into the shard where the body was created
+        manager.removeBodyFromGrave(bodies.get(0), g1);
+        manager.putBodyIntoGrave(bodies.get(0), g3);
+        manager.removeBodyFromGrave(bodies.get(0), g3);
+        manager.putBodyIntoGrave(bodies.get(0), g1);
+        shards.close();
+
+        shards = new Shards(dataSources, ShardRouting.byRowRanges(10, 20), Clock.systemUTC());
+        bodyManager = new ShardedBodyManager(shards);
+        manager = new ShardedCemeteryManager(shards);
+
+        for (Body body : bodies) {
+            assertThat(bodyManager.getBody(body.getId())).isEqualToComparingFieldByField(body);
+        }
+        assertThat(manager.findBodiesInGrave(g2))
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(bodies.get(1), bodies.get(2));
+        assertThat(manager.findGravesWithBodies(bodies).values()).containsExactly(g1, g2, g2, null, null, null);
+        List<Body> found = new ArrayList<>();
+        for (Page<Body> page = bodyManager.findBodiesPage(null, 2); ; page = bodyManager.findBodiesPage(page.getNextToken(), 2)) {
+            found.addAll(page.getItems());
+            if (!page.hasNext()) {
+                break;
+            }
+        }
+        assertThat(found).extracting(Body::getId).isSorted().containsExactlyInAnyOrderElementsOf(
+                bodies.stream().map(Body::getId).collect(Collectors.toList()));
+        try (Stream<Body> stream = bodyManager.streamAllBodies()) {
+            assertThat(stream.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(bodies);
+        }
+    }
+
+    @Test
+    public void deleteMovedBody() {
+        List<Body> bodies = createBodies(3);
+        manager.buryAll(bodies, PlacementPolicy.firstFit());
+        Body moved = bodies.stream()
+                .filter((b) -> shards.shardOfBody(b.getId()) != shards.shardOfId(b.getId()))
+                .findFirst().get();
+        // id computed from the id of the row in the shard was never assigned
+        long unassignedId = shards.toGlobalId(shards.shardOfBody(moved.getId()), shards.toLocalBodyId(moved.getId()));
+        assertThat(bodyManager.getBody(unassignedId)).isNull();
+
+        manager.removeBodyFromGrave(moved, manager.findGraveWithBody(moved));
+        bodyManager.deleteBody(moved);
+
+        assertThat(bodyManager.getBody(moved.getId())).isNull();
+        assertThat(bodyManager.findAllBodies()).hasSize(2);
+    }
+
+    @Test
+    public void findBodiesPageWithMovedBodies() {
+        List<Grave> graves = new ArrayList<>();
+        for (int row = 0; row < 30; row += 3) {
+            graves.add(new GraveBuilder().row(row).column(2).capacity(40).build());
+        }
+        graveManager.createGraves(graves);
+        List<Body> bodies = createBodies(40);
+        Random random = new Random(7);
+        for (Body body : bodies) {
+            if (random.nextBoolean()) {
+                manager.putBodyIntoGrave(body, graves.get(random.nextInt(graves.size())));
+            }
+        }
+        List<Long> ids = bodies.stream().map(Body::getId).sorted().collect(Collectors.toList());
+
+        for (int limit = 1; limit <= 8; limit++) {
+            List<Long> found = new ArrayList<>();
+            for (Page<Body> page = bodyManager.findBodiesPage(null, limit); ; page = bodyManager.findBodiesPage(page.getNextToken(), limit)) {
+                assertThat(page.getItems().size()).isLessThanOrEqualTo(limit);
+                page.getItems().forEach((body) -> found.add(body.getId()));
+                if (!page.hasNext()) {
+                    break;
+                }
+            }
+            assertThat(found).containsExactlyElementsOf(ids);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package cz.muni.fi.pv168.gravemanager.backend;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.common.ValidationException;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for {@link ShardedGraveManager}.
+ *
+ * @author Petr Adámek
+ */
+public class ShardedGraveManagerTest {
+
+    private List<DataSource> dataSources;
+    private Shards shards;
+    private ShardedGraveManager manager;
+
+    static List<DataSource> prepareShards(int count) throws SQLException {
+        List<DataSource> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            EmbeddedDataSource ds = new EmbeddedDataSource();
+            ds.setDatabaseName("memory:gravemgr-shard-" + i);
+            ds.setCreateDatabase("create");
+            DatabaseSchema.migrate(ds);
+            result.add(ds);
+        }
+        return result;
+    }
+
+    static void dropShards(List<DataSource> dataSources) throws SQLException, IOException {
+        for (DataSource ds : dataSources) {
+            DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSources = prepareShards(3);
+        shards = new Shards(dataSources, ShardRouting.byRowRanges(10, 20), Clock.systemUTC());
+        manager = new ShardedGraveManager(shards);
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        shards.close();
+        dropShards(dataSources);
+    }
+
+    @Test
+    public void gravesAreRoutedByRow() {
+        Grave g1 = new GraveBuilder().row(5).column(1).build();
+        Grave g2 = new GraveBuilder().row(10).column(1).build();
+        Grave g3 = new GraveBuilder().row(25).column(1).build();
+        manager.createGrave(g1);
+        manager.createGraves(Arrays.asList(g2, g3));
+
+        assertThat(shards.shardOfId(g1.getId())).isZero();
+        assertThat(shards.shardOfId(g2.getId())).isEqualTo(1);
+        assertThat(shards.shardOfId(g3.getId())).isEqualTo(2);
+        assertThat(new GraveManagerImpl(dataSources.get(1)).findAllGraves())
+                .extracting(Grave::getRow)
+                .containsExactly(10);
+        assertThat(manager.getGrave(g3.getId()))
+                .isNotSameAs(g3)
+                .isEqualToComparingFieldByField(g3);
+        assertThat(manager.findAllGraves())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrder(g1, g2, g3);
+    }
+
+    @Test
+    public void idsAreUniqueAcrossShards() {
+        List<Grave> graves = new ArrayList<>();
+        for (int row = 0; row < 30; row += 3) {
+            graves.add(new GraveBuilder().row(row).column(1).build());
+        }
+        manager.createGraves(graves);
+
+        assertThat(graves).extracting(Grave::getId).doesNotHaveDuplicates();
+        for (Grave grave : graves) {
+            assertThat(manager.getGrave(grave.getId())).isEqualToComparingFieldByField(grave);
+        }
+    }
+
+    @Test
+    public void updateAndDeleteGrave() {
+        Grave grave = new GraveBuilder().row(12).column(1).capacity(2).note(null).build();
+        Grave other = new GraveBuilder().row(13).column(1).build();
+        manager.createGraves(Arrays.asList(grave, other));
+
+        grave.setRow(19);
+        grave.setNote("moved within shard");
+        manager.updateGrave(grave);
+        assertThat(manager.getGrave(grave.getId())).isEqualToComparingFieldByField(grave);
+
+        grave.setRow(20);
+        assertThatThrownBy(() -> manager.updateGrave(grave))
+                .isInstanceOf(ValidationException.class);
+
+        manager.deleteGrave(grave);
+        assertThat(manager.getGrave(grave.getId())).isNull();
+        assertThat(manager.getGrave(other.getId())).isEqualToComparingFieldByField(other);
+        assertThatThrownBy(() -> manager.deleteGrave(grave))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void findGravesPageMergesShards() {
+        List<Grave> graves = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            graves.add(new GraveBuilder().row(i % 30).column(i).build());
+        }
+        manager.createGraves(graves);
+
+        List<Grave> found = new ArrayList<>();
+        Page<Grave> page = manager.findGravesPage(null, 7);
+        found.addAll(page.getItems());
+        while (page.hasNext()) {
+            page = manager.findGravesPage(page.getNextToken(), 7);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(7);
+            found.addAll(page.getItems());
+        }
+
+        assertThat(found).extracting(Grave::getId).isSorted();
+        assertThat(found)
+                .usingFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(graves);
+    }
+
+    @Test
+    public void streamAllGraves() {
+        List<Grave> graves = Arrays.asList(
+                new GraveBuilder().row(1).column(1).build(),
+                new GraveBuilder().row(11).column(1).build(),
+                new GraveBuilder().row(21).column(1).build());
+        manager.createGraves(graves);
+
+        try (Stream<Grave> stream = manager.streamAllGraves()) {
+            assertThat(stream.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(graves);
+        }
+    }
+
+    @Test
+    public void createGravesWithInvalidGrave() {
+        List<Grave> graves = Arrays.asList(
+                new GraveBuilder().row(1).column(1).build(),
+                new GraveBuilder().row(11).column(1).capacity(0).build());
+
+        assertThatThrownBy(() -> manager.createGraves(graves))
+                .isInstanceOf(ValidationException.class);
+        assertThat(manager.findAllGraves()).isEmpty();
+    }
+
+    @Test
+    public void hashRoutingSpreadsGraves() {
+        Shards hashShards = new Shards(dataSources, ShardRouting.byRowHash(), Clock.systemUTC());
+        int[] counts = new int[3];
+        for (int row = 0; row < 3000; row++) {
+            counts[hashShards.shardOf(new GraveBuilder().row(row).build())]++;
+        }
+        hashShards.close();
+
+        for (int count : counts) {
+            assertThat(count).isBetween(800, 1200);
+        }
+    }
+
+    @Test
+    public void createShardsWithInvalidArguments() {
+        assertThatThrownBy(() -> new Shards(dataSources.subList(0, 2), ShardRouting.byRowRanges(10, 20), Clock.systemUTC()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new Shards(new ArrayList<>(), ShardRouting.byRowHash(), Clock.systemUTC()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ShardRouting.byRowRanges(20, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,3 @@
+CREATE TABLE "MIGRATION_TEST" (
+    "ID" BIGINT NOT NULL PRIMARY KEY
+);
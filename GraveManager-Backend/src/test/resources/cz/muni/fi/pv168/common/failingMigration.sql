@@ -0,0 +1,5 @@
+CREATE TABLE "FAILED_MIGRATION_TEST" (
+    "ID" BIGINT NOT NULL PRIMARY KEY
+);
+
+INSERT INTO "NON_EXISTING_TABLE" ("ID") VALUES (1);
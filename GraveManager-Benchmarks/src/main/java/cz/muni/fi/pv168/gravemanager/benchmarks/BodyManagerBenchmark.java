@@ -0,0 +1,46 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks of {@link cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl}.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BodyManagerBenchmark {
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    @Benchmark
+    public Body createBody(CemeteryState cemetery) {
+        Body body = CemeteryState.newBody(counter.incrementAndGet());
+        cemetery.bodyManager.createBody(body);
+        return body;
+    }
+
+    @Benchmark
+    public Body getBody(CemeteryState cemetery) {
+        return cemetery.bodyManager.getBody(cemetery.randomBodyId());
+    }
+
+    @Benchmark
+    public List<Body> findAllBodies(CemeteryState cemetery) {
+        return cemetery.bodyManager.findAllBodies();
+    }
+}
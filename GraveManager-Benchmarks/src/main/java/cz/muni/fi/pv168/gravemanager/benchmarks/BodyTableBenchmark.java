@@ -0,0 +1,149 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.BodyTable;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * List of {@link Body} objects returned by
+ * {@link BodyManager#findAllBodies()} compared with {@link BodyTable}
+ * returned by {@link BodyManager#findAllBodiesAsTable()}. Load time and
+ * time of simple aggregation over loaded bodies are measured.
+ * <p>
+ * JMH does not measure retained heap, so it is measured once when the trial
+ * is set up and printed as bytes per body into the output of the forked
+ * JVM.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BodyTableBenchmark {
+
+    private static final int CHUNK = 10_000;
+    private static final LocalDate FROM = LocalDate.of(1900, 1, 1);
+    private static final LocalDate TO = LocalDate.of(1950, 1, 1);
+
+    @Param({"1000", "100000", "1000000"})
+    public int bodies;
+
+    private EmbeddedDataSource ds;
+    private BodyManagerImpl bodyManager;
+    private List<Body> list;
+    private BodyTable table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-benchmark");
+        ds.setCreateDatabase("create");
+        DatabaseSchema.migrate(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+
+        List<Body> chunk = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            Body body = new Body();
+            // names repeat, as they do in real cemeteries
+            body.setName("Body " + i % 10_000);
+            body.setGender(i % 2 == 0 ? Gender.MALE : Gender.FEMALE);
+            body.setBorn(LocalDate.of(1800, 1, 1).plusDays(i % 30_000));
+            body.setDied(LocalDate.of(1900, 1, 1).plusDays(i % 30_000));
+            body.setVampire(i % 100 == 0);
+            chunk.add(body);
+            if (chunk.size() == CHUNK) {
+                bodyManager.createBodies(chunk);
+                chunk.clear();
+            }
+        }
+        bodyManager.createBodies(chunk);
+
+        list = measureRetained("List<Body>", bodyManager::findAllBodies);
+        table = measureRetained("BodyTable", bodyManager::findAllBodiesAsTable);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Benchmark
+    public List<Body> loadList() {
+        return bodyManager.findAllBodies();
+    }
+
+    @Benchmark
+    public BodyTable loadTable() {
+        return bodyManager.findAllBodiesAsTable();
+    }
+
+    /**
+     * Counts male vampires which died in the first half of 20th century.
+     */
+    @Benchmark
+    public int aggregateList() {
+        int count = 0;
+        for (Body body : list) {
+            if (body.getGender() == Gender.MALE && body.isVampire() && body.getDied() != null
+                    && !body.getDied().isBefore(FROM) && !body.getDied().isAfter(TO)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts male vampires which died in the first half of 20th century.
+     */
+    @Benchmark
+    public int aggregateTable() {
+        return table.count(table.gender(Gender.MALE).and(table.vampires()).and(table.diedBetween(FROM, TO)));
+    }
+
+    private <T> T measureRetained(String model, Supplier<T> loader) {
+        long usedBefore = usedMemory();
+        T loaded = loader.get();
+        long retained = usedMemory() - usedBefore;
+        System.out.printf("%s retains %d bytes per body%n", model, retained / bodies);
+        return loaded;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
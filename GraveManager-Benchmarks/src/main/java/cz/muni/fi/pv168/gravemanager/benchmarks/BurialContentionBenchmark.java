@@ -0,0 +1,158 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManagerImpl;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent burials into a single grave. It compares
+ * {@link CemeteryManagerImpl#putBodyIntoGrave(Body, Grave)}, which reserves
+ * space with single conditional update, with the original implementation,
+ * which checked capacity with separate SELECT. Each thread puts its body
+ * into the grave and removes it again, the grave has capacity for half of
+ * the threads. Latency percentiles are reported by the sample time mode.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(BurialContentionBenchmark.THREADS)
+@State(Scope.Benchmark)
+public class BurialContentionBenchmark {
+
+    static final int THREADS = 32;
+
+    @Param({"original", "conditional"})
+    public String implementation;
+
+    private EmbeddedDataSource ds;
+    private CemeteryManagerImpl cemeteryManager;
+    private Grave grave;
+    private List<Body> bodies;
+    private final AtomicInteger nextBody = new AtomicInteger();
+
+    /**
+     * Body owned by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class BurialState {
+
+        Body body;
+
+        @Setup(Level.Trial)
+        public void setUp(BurialContentionBenchmark benchmark) {
+            body = benchmark.bodies.get(benchmark.nextBody.getAndIncrement());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-benchmark");
+        ds.setCreateDatabase("create");
+        DatabaseSchema.migrate(ds);
+        cemeteryManager = new CemeteryManagerImpl(ds);
+
+        grave = new Grave();
+        grave.setRow(1);
+        grave.setColumn(1);
+        grave.setCapacity(THREADS / 2);
+        new GraveManagerImpl(ds).createGrave(grave);
+        bodies = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Body body = new Body();
+            body.setName("Body " + i);
+            body.setGender(Gender.MALE);
+            bodies.add(body);
+        }
+        new BodyManagerImpl(ds, Clock.systemUTC()).createBodies(bodies);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Benchmark
+    public void buryAndRemove(BurialState burial) throws SQLException {
+        try {
+            if (implementation.equals("original")) {
+                originalPutBodyIntoGrave(burial.body);
+            } else {
+                cemeteryManager.putBodyIntoGrave(burial.body, grave);
+            }
+        } catch (IllegalEntityException ex) {
+            // grave is full
+            return;
+        }
+        cemeteryManager.removeBodyFromGrave(burial.body, grave);
+    }
+
+    /**
+     * Original implementation of putBodyIntoGrave() which checked capacity
+     * with separate SELECT before updating the body.
+     */
+    private void originalPutBodyIntoGrave(Body body) throws SQLException {
+        try (Connection conn = ds.getConnection()) {
+            try (PreparedStatement st = conn.prepareStatement("UPDATE Body SET graveId = ? WHERE id = ? AND graveId IS NULL");
+                 PreparedStatement checkSt = conn.prepareStatement("SELECT capacity, occupied FROM Grave WHERE id = ?");
+                 PreparedStatement occupiedSt = conn.prepareStatement("UPDATE Grave SET occupied = occupied + 1 WHERE id = ?")) {
+                conn.setAutoCommit(false);
+                checkSt.setLong(1, grave.getId());
+                try (ResultSet rs = checkSt.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt("capacity") <= rs.getInt("occupied")) {
+                        throw new IllegalEntityException("Grave " + grave + " is already full");
+                    }
+                }
+                st.setLong(1, grave.getId());
+                st.setLong(2, body.getId());
+                st.executeUpdate();
+                occupiedSt.setLong(1, grave.getId());
+                occupiedSt.executeUpdate();
+                conn.commit();
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl}.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CemeteryManagerBenchmark {
+
+    /**
+     * Body owned by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class BurialState {
+
+        Body body;
+
+        @Setup(Level.Trial)
+        public void setUp(CemeteryState cemetery) {
+            body = cemetery.takeSpareBody();
+        }
+    }
+
+    @Benchmark
+    public List<Body> findUnburiedBodies(CemeteryState cemetery) {
+        return cemetery.cemeteryManager.findUnburiedBodies();
+    }
+
+    @Benchmark
+    public List<Grave> findGravesWithSomeFreeSpace(CemeteryState cemetery) {
+        return cemetery.cemeteryManager.findGravesWithSomeFreeSpace();
+    }
+
+    /**
+     * Each thread puts its body into a random grave and removes it again,
+     * so the dataset does not change. Threads compete for the same grave
+     * only occasionally, when the grave is full the body is not placed.
+     */
+    @Benchmark
+    @Threads(8)
+    public void putBodyIntoGrave(CemeteryState cemetery, BurialState burial) {
+        Grave grave = cemetery.randomFreeGrave();
+        try {
+            cemetery.cemeteryManager.putBodyIntoGrave(burial.body, grave);
+        } catch (IllegalEntityException ex) {
+            return;
+        }
+        cemetery.cemeteryManager.removeBodyFromGrave(burial.body, grave);
+    }
+}
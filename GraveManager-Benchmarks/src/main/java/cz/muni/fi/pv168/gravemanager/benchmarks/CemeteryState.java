@@ -0,0 +1,154 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.PlacementPolicy;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cemetery in the in-memory Derby database shared by all benchmark threads.
+ * It contains given number of bodies and a quarter as many graves with
+ * capacity 4. Half of the bodies is buried, so half of the graves is full
+ * and the other half is empty.
+ *
+ * @author Petr Adámek
+ */
+@State(Scope.Benchmark)
+public class CemeteryState {
+
+    /**
+     * Number of bodies created beside the dataset for the benchmark threads.
+     */
+    static final int SPARE_BODIES = 256;
+
+    private static final int CAPACITY = 4;
+    private static final int CHUNK = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int bodies;
+
+    EmbeddedDataSource ds;
+    GraveManagerImpl graveManager;
+    BodyManagerImpl bodyManager;
+    CemeteryManagerImpl cemeteryManager;
+    long firstBodyId;
+    List<Grave> freeGraves;
+    private List<Body> spareBodies;
+    private final AtomicInteger nextSpareBody = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-benchmark");
+        ds.setCreateDatabase("create");
+        DatabaseSchema.migrate(ds);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+
+        List<Grave> graves = new ArrayList<>();
+        for (int i = 0; i < bodies / CAPACITY; i++) {
+            graves.add(newGrave(i));
+            if (graves.size() == CHUNK) {
+                graveManager.createGraves(graves);
+                graves.clear();
+            }
+        }
+        graveManager.createGraves(graves);
+
+        List<Body> chunk = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            chunk.add(newBody(i));
+            if (chunk.size() == CHUNK || i == bodies - 1) {
+                bodyManager.createBodies(chunk);
+                if (i < CHUNK) {
+                    firstBodyId = chunk.get(0).getId();
+                }
+                // every other body is buried
+                List<Body> buried = new ArrayList<>();
+                for (int j = 0; j < chunk.size(); j += 2) {
+                    buried.add(chunk.get(j));
+                }
+                cemeteryManager.buryAll(buried, PlacementPolicy.firstFit());
+                chunk.clear();
+            }
+        }
+
+        spareBodies = new ArrayList<>();
+        for (int i = 0; i < SPARE_BODIES; i++) {
+            spareBodies.add(newBody(bodies + i));
+        }
+        bodyManager.createBodies(spareBodies);
+        freeGraves = cemeteryManager.findGravesWithSomeFreeSpace();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    static Grave newGrave(int i) {
+        Grave grave = new Grave();
+        grave.setRow(i / 1000);
+        grave.setColumn(i % 1000);
+        grave.setCapacity(CAPACITY);
+        return grave;
+    }
+
+    static Body newBody(int i) {
+        Body body = new Body();
+        body.setName("Body " + i);
+        body.setGender(i % 2 == 0 ? Gender.MALE : Gender.FEMALE);
+        body.setBorn(LocalDate.of(1900, 1, 1).plusDays(i % 10_000));
+        body.setVampire(i % 100 == 0);
+        return body;
+    }
+
+    /**
+     * @return id of random body from the dataset
+     */
+    long randomBodyId() {
+        return firstBodyId + ThreadLocalRandom.current().nextInt(bodies);
+    }
+
+    /**
+     * @return random grave which had some free space when the dataset was
+     * created
+     */
+    Grave randomFreeGrave() {
+        return freeGraves.get(ThreadLocalRandom.current().nextInt(freeGraves.size()));
+    }
+
+    /**
+     * @return unburied body which is not used by any other thread
+     */
+    Body takeSpareBody() {
+        int index = nextSpareBody.getAndIncrement();
+        if (index >= spareBodies.size()) {
+            throw new IllegalStateException("There are more than " + SPARE_BODIES + " benchmark threads");
+        }
+        return spareBodies.get(index);
+    }
+}
@@ -0,0 +1,169 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.PooledDataSourceFactory;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryReport;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryStatistics;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.PlacementPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CemeteryStatistics} compared with computing the same statistics
+ * from lists returned by the managers, looping over them once for each
+ * statistic. Four fifths of the bodies are buried into graves with capacity
+ * 8, there is one grave for each ten bodies.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CemeteryStatisticsBenchmark {
+
+    private static final int GRAVE_CAPACITY = 8;
+    private static final int CHUNK = 10_000;
+    private static final int PARALLELISM = 4;
+
+    @Param({"50000", "500000"})
+    public int bodies;
+
+    private HikariDataSource ds;
+    private GraveManagerImpl graveManager;
+    private BodyManagerImpl bodyManager;
+    private CemeteryManagerImpl cemeteryManager;
+    private CemeteryStatistics statistics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new PooledDataSourceFactory("jdbc:derby:memory:gravemgr-benchmark;create=true")
+                .poolSize(PARALLELISM + 1)
+                .create();
+        DatabaseSchema.migrate(ds);
+        graveManager = new GraveManagerImpl(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+        statistics = new CemeteryStatistics(ds);
+
+        List<Grave> graves = new ArrayList<>();
+        for (int i = 0; i < bodies / 10; i++) {
+            Grave grave = new Grave();
+            grave.setRow(i / 100);
+            grave.setColumn(i % 100);
+            grave.setCapacity(GRAVE_CAPACITY);
+            graves.add(grave);
+        }
+        graveManager.createGraves(graves);
+
+        List<Body> chunk = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            LocalDate born = LocalDate.of(1700, 1, 1).plusDays(i % 70_000);
+            Body body = new Body();
+            body.setName("Body " + i);
+            body.setGender(i % 2 == 0 ? Gender.MALE : Gender.FEMALE);
+            body.setBorn(born);
+            body.setDied(born.plusDays(i % 36_500));
+            body.setVampire(i % 13 == 0);
+            chunk.add(body);
+            if (chunk.size() == CHUNK || i == bodies - 1) {
+                bodyManager.createBodies(chunk);
+                // every fifth body stays unburied
+                List<Body> buried = new ArrayList<>();
+                for (Body created : chunk) {
+                    if (created.getId() % 5 != 0) {
+                        buried.add(created);
+                    }
+                }
+                cemeteryManager.buryAll(buried, PlacementPolicy.firstFit());
+                chunk.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        try {
+            DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        } finally {
+            ds.close();
+        }
+    }
+
+    @Benchmark
+    public Object listsAndLoops() {
+        List<Body> bodies = bodyManager.findAllBodies();
+        List<Grave> graves = graveManager.findAllGraves();
+        Map<Body, Grave> gravesOfBodies = cemeteryManager.findGravesWithBodies(bodies);
+
+        long vampires = bodies.stream().filter(Body::isVampire).count();
+        Map<Gender, Long> genders = new EnumMap<>(Gender.class);
+        for (Body body : bodies) {
+            genders.merge(body.getGender(), 1L, Long::sum);
+        }
+        long[] lifespans = new long[16];
+        for (Body body : bodies) {
+            if (body.getBorn() != null && body.getDied() != null) {
+                lifespans[(int) Math.min(ChronoUnit.YEARS.between(body.getBorn(), body.getDied()) / 10, 15)]++;
+            }
+        }
+        Map<Integer, Long> burialsByYear = new TreeMap<>();
+        Map<Integer, Long> occupiedByRow = new TreeMap<>();
+        for (Map.Entry<Body, Grave> entry : gravesOfBodies.entrySet()) {
+            if (entry.getValue() != null) {
+                burialsByYear.merge(entry.getKey().getDied().getYear(), 1L, Long::sum);
+                occupiedByRow.merge(entry.getValue().getRow(), 1L, Long::sum);
+            }
+        }
+        Map<Integer, Long> capacityByRow = new TreeMap<>();
+        for (Grave grave : graves) {
+            long capacity = grave.getCapacity();
+            capacityByRow.merge(grave.getRow(), capacity, Long::sum);
+        }
+        return new Object[]{vampires, genders, lifespans, burialsByYear, occupiedByRow, capacityByRow};
+    }
+
+    @Benchmark
+    public CemeteryReport singlePass() {
+        return statistics.compute();
+    }
+
+    @Benchmark
+    public CemeteryReport singlePassInRanges() {
+        return statistics.compute(PARALLELISM);
+    }
+}
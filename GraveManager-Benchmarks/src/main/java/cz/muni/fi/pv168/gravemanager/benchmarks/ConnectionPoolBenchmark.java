@@ -0,0 +1,124 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.PooledDataSourceFactory;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CRUD operations of {@link BodyManagerImpl} using raw
+ * {@link EmbeddedDataSource}, which opens new connection for each
+ * operation, compared with pooled datasource created by
+ * {@link PooledDataSourceFactory}. The cost of connections does not depend
+ * on the size of the table, so the dataset has fixed 10k bodies.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ConnectionPoolBenchmark {
+
+    private static final String DATABASE = "memory:gravemgr-benchmark";
+    private static final int BODIES = 10_000;
+
+    @Param({"embedded", "pooled"})
+    public String dataSource;
+
+    private EmbeddedDataSource embedded;
+    private HikariDataSource pooled;
+    private BodyManagerImpl bodyManager;
+    private long firstBodyId;
+    private Body updatedBody;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        embedded = new EmbeddedDataSource();
+        embedded.setDatabaseName(DATABASE);
+        embedded.setCreateDatabase("create");
+        DatabaseSchema.migrate(embedded);
+        DataSource ds = embedded;
+        if (dataSource.equals("pooled")) {
+            pooled = new PooledDataSourceFactory("jdbc:derby:" + DATABASE).create();
+            ds = pooled;
+        }
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < BODIES; i++) {
+            bodies.add(newBody(i));
+        }
+        bodyManager.createBodies(bodies);
+        firstBodyId = bodies.get(0).getId();
+        updatedBody = bodies.get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        try {
+            DBUtils.executeSqlScript(embedded, GraveManager.class.getResourceAsStream("dropTables.sql"));
+        } finally {
+            if (pooled != null) {
+                pooled.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public Body getBody() {
+        return bodyManager.getBody(firstBodyId + ThreadLocalRandom.current().nextInt(BODIES));
+    }
+
+    @Benchmark
+    public void updateBody() {
+        updatedBody.setVampire(!updatedBody.isVampire());
+        bodyManager.updateBody(updatedBody);
+    }
+
+    /**
+     * The body is deleted again, so the table does not grow.
+     */
+    @Benchmark
+    public void createAndDeleteBody() {
+        Body body = newBody(BODIES);
+        bodyManager.createBody(body);
+        bodyManager.deleteBody(body);
+    }
+
+    private static Body newBody(int i) {
+        Body body = new Body();
+        body.setName("Body " + i);
+        body.setGender(Gender.FEMALE);
+        return body;
+    }
+}
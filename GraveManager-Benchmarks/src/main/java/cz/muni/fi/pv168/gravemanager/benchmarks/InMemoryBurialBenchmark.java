@@ -0,0 +1,102 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.IllegalEntityException;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryBodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryCemeteryManager;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryGraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Burial simulation over {@link InMemoryStore} with different number of
+ * lock stripes. Each thread puts its body into a random grave and removes
+ * it again, so threads sometimes compete for the same lock stripe or find
+ * the grave full. The store does not use the database, so the dataset has
+ * fixed 10k graves.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class InMemoryBurialBenchmark {
+
+    private static final int GRAVES = 10_000;
+
+    @Param({"1", "16", "256"})
+    public int stripes;
+
+    private InMemoryBodyManager bodyManager;
+    private InMemoryCemeteryManager cemeteryManager;
+    private List<Grave> graves;
+
+    /**
+     * Body owned by one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class BurialState {
+
+        Body body;
+
+        @Setup(Level.Trial)
+        public void setUp(InMemoryBurialBenchmark benchmark) {
+            body = new Body();
+            body.setName("Body " + Thread.currentThread().getId());
+            body.setGender(Gender.FEMALE);
+            benchmark.bodyManager.createBody(body);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryStore store = new InMemoryStore(stripes);
+        bodyManager = new InMemoryBodyManager(store, Clock.systemUTC());
+        cemeteryManager = new InMemoryCemeteryManager(store);
+        graves = new ArrayList<>();
+        for (int i = 0; i < GRAVES; i++) {
+            Grave grave = new Grave();
+            grave.setRow(i / 100);
+            grave.setColumn(i % 100);
+            grave.setCapacity(4);
+            graves.add(grave);
+        }
+        new InMemoryGraveManager(store).createGraves(graves);
+    }
+
+    @Benchmark
+    public void buryAndRemove(BurialState burial) {
+        Grave grave = graves.get(ThreadLocalRandom.current().nextInt(GRAVES));
+        try {
+            cemeteryManager.putBodyIntoGrave(burial.body, grave);
+        } catch (IllegalEntityException ex) {
+            // grave is full
+            return;
+        }
+        cemeteryManager.removeBodyFromGrave(burial.body, grave);
+    }
+}
@@ -0,0 +1,123 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.IndexedBodyManager;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Date queries answered by filtering {@link BodyManager#findAllBodies()} in
+ * Java compared with
+ * {@link BodyManager#findBodiesDiedBetween(LocalDate, LocalDate)} and with
+ * the interval tree of {@link IndexedBodyManager}. Bodies are born within
+ * about 220 years from 1700 and live up to about 80 years.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class LifespanBenchmark {
+
+    private static final int CHUNK = 10_000;
+    private static final LocalDate FIRST_BORN = LocalDate.of(1700, 1, 1);
+    private static final LocalDate DATE = LocalDate.of(1850, 6, 1);
+    private static final LocalDate DIED_FROM = LocalDate.of(1900, 1, 1);
+    private static final LocalDate DIED_TO = LocalDate.of(1900, 12, 31);
+
+    @Param({"20000", "200000"})
+    public int bodies;
+
+    private EmbeddedDataSource ds;
+    private BodyManagerImpl bodyManager;
+    private IndexedBodyManager indexedManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-benchmark");
+        ds.setCreateDatabase("create");
+        DatabaseSchema.migrate(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+
+        Random random = new Random(1);
+        List<Body> chunk = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            LocalDate born = FIRST_BORN.plusDays(random.nextInt(80_000));
+            Body body = new Body();
+            body.setName("Body " + i);
+            body.setGender(Gender.MALE);
+            body.setBorn(born);
+            body.setDied(born.plusDays(random.nextInt(30_000)));
+            chunk.add(body);
+            if (chunk.size() == CHUNK) {
+                bodyManager.createBodies(chunk);
+                chunk.clear();
+            }
+        }
+        bodyManager.createBodies(chunk);
+        indexedManager = new IndexedBodyManager(bodyManager);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Benchmark
+    public List<Body> aliveOnFilter() {
+        return bodyManager.findAllBodies().stream()
+                .filter((body) -> body.getBorn() != null && body.getDied() != null)
+                .filter((body) -> !body.getBorn().isAfter(DATE) && !body.getDied().isBefore(DATE))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Body> aliveOnIntervalTree() {
+        return indexedManager.findBodiesAliveOn(DATE);
+    }
+
+    @Benchmark
+    public List<Body> diedBetweenFilter() {
+        return bodyManager.findAllBodies().stream()
+                .filter((body) -> body.getDied() != null
+                        && !body.getDied().isBefore(DIED_FROM) && !body.getDied().isAfter(DIED_TO))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Body> diedBetweenIndexRangeScan() {
+        return bodyManager.findBodiesDiedBetween(DIED_FROM, DIED_TO);
+    }
+}
@@ -0,0 +1,86 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.ManagerMetrics;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryGraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.InMemoryStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link ManagerMetrics}: the same cheap in-memory call with and
+ * without the metrics proxy. The difference of the two scores is the cost
+ * of recording one call.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManagerMetricsBenchmark {
+
+    private static final int GRAVES = 1000;
+
+    private InMemoryStore store;
+    private GraveManager raw;
+    private GraveManager instrumented;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new InMemoryStore();
+        raw = new InMemoryGraveManager(store);
+        instrumented = new ManagerMetrics().instrument(GraveManager.class, raw);
+        for (int i = 0; i < GRAVES; i++) {
+            raw.createGrave(CemeteryState.newGrave(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.close();
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(GRAVES) + 1;
+    }
+
+    @Benchmark
+    public Grave getGrave() {
+        return raw.getGrave(randomId());
+    }
+
+    @Benchmark
+    public Grave getGraveInstrumented() {
+        return instrumented.getGrave(randomId());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Grave getGraveContended() {
+        return raw.getGrave(randomId());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Grave getGraveInstrumentedContended() {
+        return instrumented.getGrave(randomId());
+    }
+}
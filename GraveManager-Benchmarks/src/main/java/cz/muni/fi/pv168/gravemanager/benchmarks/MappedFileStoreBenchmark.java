@@ -0,0 +1,140 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.MappedBodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.MappedFileStore;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link MappedBodyManager} compared with {@link BodyManagerImpl} over Derby
+ * database stored on disk, both in a temporary directory. The dataset has
+ * fixed 20k bodies. Creating of bodies is measured in batches of the same
+ * size, because the mapped store is append-only and running it for fixed
+ * time would fill the disk.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MappedFileStoreBenchmark {
+
+    private static final int BODIES = 20_000;
+
+    @Param({"mapped", "jdbc"})
+    public String implementation;
+
+    private Path directory;
+    private MappedFileStore store;
+    private EmbeddedDataSource ds;
+    private BodyManager bodyManager;
+    private long firstBodyId;
+    private int created;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gravemgr-benchmark");
+        if (implementation.equals("mapped")) {
+            store = MappedFileStore.open(directory);
+            bodyManager = new MappedBodyManager(store, Clock.systemUTC());
+        } else {
+            ds = new EmbeddedDataSource();
+            ds.setDatabaseName(directory.resolve("derby").toString());
+            ds.setCreateDatabase("create");
+            DatabaseSchema.migrate(ds);
+            bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        }
+
+        List<Body> bodies = new ArrayList<>();
+        for (int i = 0; i < BODIES; i++) {
+            bodies.add(newBody(i));
+        }
+        bodyManager.createBodies(bodies);
+        firstBodyId = bodies.get(0).getId();
+        created = BODIES;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try {
+            if (store != null) {
+                store.close();
+            } else {
+                ds.setShutdownDatabase("shutdown");
+                try {
+                    ds.getConnection().close();
+                } catch (SQLException ex) {
+                    // Derby reports successful shutdown with exception
+                }
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Creates one body, the time is reported for the whole batch.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = BODIES)
+    @Measurement(iterations = 5, batchSize = BODIES)
+    public void createBody() {
+        bodyManager.createBody(newBody(created++));
+    }
+
+    @Benchmark
+    public Body getBody() {
+        return bodyManager.getBody(firstBodyId + ThreadLocalRandom.current().nextInt(BODIES));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Body> findAllBodies() {
+        return bodyManager.findAllBodies();
+    }
+
+    private static Body newBody(int i) {
+        Body body = new Body();
+        body.setName("Body " + i);
+        body.setGender(Gender.FEMALE);
+        body.setBorn(LocalDate.of(1900, 5, 1));
+        return body;
+    }
+}
@@ -0,0 +1,137 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.CemeteryManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.Grave;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.PlacementPolicy;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries for graves with free space based on maintained occupancy counter
+ * compared with the original GROUP BY query over BODY table. The number of
+ * graves is fixed while the number of bodies grows with the dataset, so the
+ * time of occupancy based queries should stay flat.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class OccupancyBenchmark {
+
+    private static final int GRAVES = 1_000;
+    private static final int CAPACITY = 1_000;
+    private static final int CHUNK = 10_000;
+
+    private static final String GROUP_BY_QUERY = "SELECT Grave.id, col, row, capacity, note " +
+            "FROM Grave LEFT JOIN Body ON Grave.id = Body.graveId " +
+            "GROUP BY Grave.id, col, row, capacity, note " +
+            "HAVING COUNT(Body.id) < capacity";
+
+    @Param({"10000", "100000", "500000"})
+    public int bodies;
+
+    private EmbeddedDataSource ds;
+    private CemeteryManagerImpl cemeteryManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-benchmark");
+        ds.setCreateDatabase("create");
+        DatabaseSchema.migrate(ds);
+        GraveManagerImpl graveManager = new GraveManagerImpl(ds);
+        BodyManagerImpl bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+        cemeteryManager = new CemeteryManagerImpl(ds);
+
+        List<Grave> graves = new ArrayList<>();
+        for (int i = 0; i < GRAVES; i++) {
+            Grave grave = new Grave();
+            grave.setRow(i / 100);
+            grave.setColumn(i % 100);
+            grave.setCapacity(CAPACITY);
+            graves.add(grave);
+        }
+        graveManager.createGraves(graves);
+
+        List<Body> chunk = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            Body body = new Body();
+            body.setName("Body " + i);
+            body.setGender(Gender.MALE);
+            chunk.add(body);
+            if (chunk.size() == CHUNK || i == bodies - 1) {
+                bodyManager.createBodies(chunk);
+                // graves are filled in the order of their ids
+                cemeteryManager.buryAll(chunk, PlacementPolicy.firstFit());
+                chunk.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Benchmark
+    public List<Grave> findEmptyGraves() {
+        return cemeteryManager.findEmptyGraves();
+    }
+
+    @Benchmark
+    public List<Grave> findGravesWithSomeFreeSpace() {
+        return cemeteryManager.findGravesWithSomeFreeSpace();
+    }
+
+    @Benchmark
+    public List<Grave> groupByQuery() throws SQLException {
+        try (Connection conn = ds.getConnection();
+             PreparedStatement st = conn.prepareStatement(GROUP_BY_QUERY);
+             ResultSet rs = st.executeQuery()) {
+            List<Grave> result = new ArrayList<>();
+            while (rs.next()) {
+                Grave grave = new Grave();
+                grave.setId(rs.getLong("id"));
+                grave.setColumn(rs.getInt("col"));
+                grave.setRow(rs.getInt("row"));
+                grave.setCapacity(rs.getInt("capacity"));
+                grave.setNote(rs.getString("note"));
+                result.add(grave);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.common.Page;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keyset pagination of bodies compared with pagination based on OFFSET.
+ * The page is taken from given relative depth of the table, the time of
+ * keyset pagination should stay flat while OFFSET has to skip all previous
+ * rows.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class PaginationBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int CHUNK = 10_000;
+
+    private static final String OFFSET_QUERY = "SELECT id, name, gender, born, died, vampire " +
+            "FROM Body ORDER BY id OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+
+    @Param({"1000", "100000", "1000000"})
+    public int bodies;
+
+    /**
+     * Position of the page as a fraction of the table.
+     */
+    @Param({"0", "0.5", "0.95"})
+    public double depth;
+
+    private EmbeddedDataSource ds;
+    private BodyManagerImpl bodyManager;
+    private int offset;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-benchmark");
+        ds.setCreateDatabase("create");
+        DatabaseSchema.migrate(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+
+        List<Body> chunk = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            Body body = new Body();
+            body.setName("Body " + i);
+            body.setGender(Gender.MALE);
+            chunk.add(body);
+            if (chunk.size() == CHUNK) {
+                bodyManager.createBodies(chunk);
+                chunk.clear();
+            }
+        }
+        bodyManager.createBodies(chunk);
+
+        long firstId = bodyManager.findBodiesPage(null, 1).getItems().get(0).getId();
+        offset = (int) (bodies * depth);
+        // token pointing after the body at given depth
+        token = offset == 0 ? null : Page.encodeToken(firstId + offset - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Benchmark
+    public Page<Body> findBodiesPage() {
+        return bodyManager.findBodiesPage(token, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Body> offsetQuery() throws SQLException {
+        try (Connection conn = ds.getConnection();
+             PreparedStatement st = conn.prepareStatement(OFFSET_QUERY)) {
+            st.setInt(1, offset);
+            st.setInt(2, PAGE_SIZE);
+            try (ResultSet rs = st.executeQuery()) {
+                List<Body> result = new ArrayList<>();
+                while (rs.next()) {
+                    Body body = new Body();
+                    body.setId(rs.getLong("id"));
+                    body.setName(rs.getString("name"));
+                    body.setGender(Gender.valueOf(rs.getString("gender")));
+                    Date born = rs.getDate("born");
+                    body.setBorn(born == null ? null : born.toLocalDate());
+                    Date died = rs.getDate("died");
+                    body.setDied(died == null ? null : died.toLocalDate());
+                    body.setVampire(rs.getBoolean("vampire"));
+                    result.add(body);
+                }
+                return result;
+            }
+        }
+    }
+}
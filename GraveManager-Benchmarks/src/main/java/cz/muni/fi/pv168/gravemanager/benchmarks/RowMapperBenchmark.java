@@ -0,0 +1,125 @@
+package cz.muni.fi.pv168.gravemanager.benchmarks;
+
+import cz.muni.fi.pv168.common.DBUtils;
+import cz.muni.fi.pv168.gravemanager.backend.Body;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManager;
+import cz.muni.fi.pv168.gravemanager.backend.BodyManagerImpl;
+import cz.muni.fi.pv168.gravemanager.backend.DatabaseSchema;
+import cz.muni.fi.pv168.gravemanager.backend.Gender;
+import cz.muni.fi.pv168.gravemanager.backend.GraveManager;
+import org.apache.derby.jdbc.EmbeddedDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan over all bodies with {@link BodyManager#findAllBodies()}, which maps
+ * rows by column positions resolved once per ResultSet, compared with the
+ * original mapping which looked up columns by their names for each row.
+ * Allocated memory per scan is reported with {@code -prof gc}.
+ *
+ * @author Petr Adámek
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class RowMapperBenchmark {
+
+    private static final int CHUNK = 10_000;
+    private static final String QUERY = "SELECT id, name, gender, born, died, vampire FROM Body";
+
+    @Param({"1000", "100000", "1000000"})
+    public int bodies;
+
+    private EmbeddedDataSource ds;
+    private BodyManagerImpl bodyManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new EmbeddedDataSource();
+        ds.setDatabaseName("memory:gravemgr-benchmark");
+        ds.setCreateDatabase("create");
+        DatabaseSchema.migrate(ds);
+        bodyManager = new BodyManagerImpl(ds, Clock.systemUTC());
+
+        List<Body> chunk = new ArrayList<>();
+        for (int i = 0; i < bodies; i++) {
+            Body body = new Body();
+            body.setName("Body " + i);
+            body.setGender(i % 2 == 0 ? Gender.MALE : Gender.FEMALE);
+            body.setBorn(LocalDate.of(1800, 1, 1).plusDays(i % 30_000));
+            body.setDied(LocalDate.of(1900, 1, 1).plusDays(i % 30_000));
+            chunk.add(body);
+            if (chunk.size() == CHUNK) {
+                bodyManager.createBodies(chunk);
+                chunk.clear();
+            }
+        }
+        bodyManager.createBodies(chunk);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, IOException {
+        DBUtils.executeSqlScript(ds, GraveManager.class.getResourceAsStream("dropTables.sql"));
+    }
+
+    @Benchmark
+    public List<Body> byName() throws SQLException {
+        try (Connection conn = ds.getConnection();
+             PreparedStatement st = conn.prepareStatement(QUERY);
+             ResultSet rs = st.executeQuery()) {
+            List<Body> result = new ArrayList<>();
+            while (rs.next()) {
+                result.add(originalRowToBody(rs));
+            }
+            return result;
+        }
+    }
+
+    @Benchmark
+    public List<Body> byPosition() {
+        return bodyManager.findAllBodies();
+    }
+
+    /**
+     * Original mapping which looked up columns by their names.
+     */
+    private static Body originalRowToBody(ResultSet rs) throws SQLException {
+        Body body = new Body();
+        body.setId(rs.getLong("id"));
+        body.setName(rs.getString("name"));
+        String gender = rs.getString("gender");
+        body.setGender(gender == null ? null : Gender.valueOf(gender));
+        Date born = rs.getDate("born");
+        body.setBorn(born == null ? null : born.toLocalDate());
+        Date died = rs.getDate("died");
+        body.setDied(died == null ? null : died.toLocalDate());
+        body.setVampire(rs.getBoolean("vampire"));
+        return body;
+    }
+}